@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.model;
+
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryParameterDescriptor;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Query metadata of a {@link Model} class, read from its field annotations: the available query 
+ *   parameters, including those of {@link ForeignKey} models, and the {@link Alias} names of its 
+ *   fields.  Metadata is built once per class and cached in a shared registry, so that request 
+ *   handling does not repeat the reflection.  Instances are immutable, and the returned 
+ *   {@link QueryParameterDescriptor} objects should not be modified.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ModelMetadata {
+
+	private static final Map<Class<?>, ModelMetadata> registry = new ConcurrentHashMap<>();
+	private static final ConversionService conversionService = new DefaultConversionService();
+
+	private final Class<? extends Model<?>> model;
+	private final Map<String, QueryParameterDescriptor> queryParameters;
+	private final Map<String, QueryParameterDescriptor> declaredQueryParameters;
+	private final Map<String, String> aliases;
+
+	private ModelMetadata(Class<? extends Model<?>> model) {
+		this.model = model;
+		this.queryParameters = Collections.unmodifiableMap(createQueryParameters(model, true));
+		this.declaredQueryParameters = Collections.unmodifiableMap(createQueryParameters(model, false));
+		this.aliases = Collections.unmodifiableMap(createAliases(model));
+	}
+
+	/**
+	 * Returns the metadata of the {@link Model} class, building it on first use.
+	 *
+	 * @param model {@link Model} class
+	 * @return {@link ModelMetadata}
+	 */
+	public static ModelMetadata forModel(Class<? extends Model<?>> model){
+		Assert.notNull(model);
+		ModelMetadata metadata = registry.get(model);
+		if (metadata == null){
+			metadata = new ModelMetadata(model);
+			ModelMetadata existing = registry.putIfAbsent(model, metadata);
+			if (existing != null) metadata = existing;
+		}
+		return metadata;
+	}
+
+	/**
+	 * Returns the shared {@link ConversionService} used to convert query parameter values into 
+	 *   model field types.  Converter lookups are cached by the service, so it should be reused 
+	 *   rather than created per value.
+	 *
+	 * @return {@link ConversionService}
+	 */
+	public static ConversionService getConversionService(){
+		return conversionService;
+	}
+
+	/**
+	 * Inspects a {@link Model} class and returns all of the available query parameter definitions, 
+	 *   keyed by parameter name.  Fields annotated with {@link Ignored} are skipped, and the 
+	 *   parameters of {@link ForeignKey} models are added, prefixed with the relationship name, 
+	 *   when {@code recursive} is true.
+	 */
+	private static Map<String, QueryParameterDescriptor> createQueryParameters(
+			Class<? extends Model<?>> model, boolean recursive){
+		Map<String,QueryParameterDescriptor> paramMap = new HashMap<>();
+		for (Field field: model.getDeclaredFields()){
+			String fieldName = field.getName();
+			Class<?> type = field.getType();
+			if (Collection.class.isAssignableFrom(field.getType())){
+				ParameterizedType parameterizedType = (ParameterizedType) field.getGenericType();
+				type = (Class<?>) parameterizedType.getActualTypeArguments()[0];
+			} 
+			if (field.isAnnotationPresent(Ignored.class)) {
+				continue;
+			} else {
+				paramMap.put(fieldName, new QueryParameterDescriptor(fieldName, fieldName, type, Evaluation.EQUALS));
+			}
+			if (field.isAnnotationPresent(ForeignKey.class)){
+				if (!recursive) continue;
+				ForeignKey foreignKey = field.getAnnotation(ForeignKey.class);
+				String relField = !"".equals(foreignKey.rel()) ? foreignKey.rel() : fieldName;
+				for (QueryParameterDescriptor descriptor: createQueryParameters(foreignKey.model(), false).values()){
+					String newParamName = relField + "." + descriptor.getParamName();
+					descriptor.setParamName(newParamName);
+					paramMap.put(newParamName, descriptor);
+				}
+			}
+			if (field.isAnnotationPresent(Aliases.class)){
+				Aliases aliases = field.getAnnotation(Aliases.class);
+				for (Alias alias: aliases.value()){
+					paramMap.put(alias.value(), new QueryParameterDescriptor(alias.value(), 
+							alias.fieldName().equals("") ? fieldName : alias.fieldName(), type, alias.evaluation()));
+				}
+			} else if (field.isAnnotationPresent(Alias.class)){
+				Alias alias = field.getAnnotation(Alias.class);
+				paramMap.put(alias.value(), new QueryParameterDescriptor(alias.value(), 
+						alias.fieldName().equals("") ? fieldName : alias.fieldName(), type, alias.evaluation()));
+			}
+		}
+		return paramMap;
+	}
+
+	/**
+	 * Maps each {@link Alias} name to the name of the annotated field.  Where several fields share 
+	 *   an alias, the first declared field is used.
+	 */
+	private static Map<String, String> createAliases(Class<? extends Model<?>> model){
+		Map<String, String> aliasMap = new HashMap<>();
+		for (Field field: model.getDeclaredFields()){
+			if (field.isAnnotationPresent(Aliases.class)){
+				for (Alias alias: field.getAnnotation(Aliases.class).value()){
+					aliasMap.putIfAbsent(alias.value(), field.getName());
+				}
+			} else if (field.isAnnotationPresent(Alias.class)){
+				aliasMap.putIfAbsent(field.getAnnotation(Alias.class).value(), field.getName());
+			}
+		}
+		return aliasMap;
+	}
+
+	/**
+	 * Returns the repository field name for a request parameter or sort property name, resolving 
+	 *   {@link Alias} names to the annotated field.  Other names are returned unchanged.
+	 *
+	 * @param param parameter name
+	 * @return field name
+	 */
+	public String getFieldName(String param){
+		String fieldName = aliases.get(param);
+		return fieldName != null ? fieldName : param;
+	}
+
+	/**
+	 * Returns the repository field name for a parameter naming one of the model's own queryable
+	 *   fields or {@link Alias} names, or null if the model declares no such parameter.  Used to
+	 *   validate client-supplied field names, such as {@code distinct} and {@code aggregate} fields,
+	 *   before they reach the repository.
+	 *
+	 * @param param parameter name
+	 * @return field name, or null.
+	 */
+	public String getDeclaredFieldName(String param){
+		if (param == null || !declaredQueryParameters.containsKey(param)) return null;
+		return getFieldName(param);
+	}
+
+	/**
+	 * Returns the descriptor of a query parameter, or null if the parameter is not available.
+	 *
+	 * @param param parameter name
+	 * @return {@link QueryParameterDescriptor}, or null.
+	 */
+	public QueryParameterDescriptor getQueryParameter(String param){
+		return queryParameters.get(param);
+	}
+
+	public Class<? extends Model<?>> getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns all available query parameters, including those of {@link ForeignKey} models.
+	 */
+	public Map<String, QueryParameterDescriptor> getQueryParameters() {
+		return queryParameters;
+	}
+
+	/**
+	 * Returns the query parameters of the model's own fields, without those of 
+	 *   {@link ForeignKey} models.
+	 */
+	public Map<String, QueryParameterDescriptor> getDeclaredQueryParameters() {
+		return declaredQueryParameters;
+	}
+
+	/**
+	 * Returns the map of {@link Alias} names to field names.
+	 */
+	public Map<String, String> getAliases() {
+		return aliases;
+	}
+}
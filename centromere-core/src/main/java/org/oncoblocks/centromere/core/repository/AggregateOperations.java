@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository operations for computing grouped summary statistics within the database, so that 
+ *   clients do not need to fetch and aggregate whole result sets.  Implemented alongside 
+ *   {@link RepositoryOperations} by repositories whose backend supports aggregation.
+ * 
+ * @author woemler
+ * @since 0.4.1
+ */
+public interface AggregateOperations {
+
+	/**
+	 * Groups the records matching the supplied criteria and computes the requested accumulators for
+	 *   each group.  Each result row maps the group field names and accumulator aliases, in the order
+	 *   given by {@link AggregateQuery#getOutputNames()}, to their values.  Rows are ordered by the 
+	 *   query's sort field, or by the group fields if none is set.
+	 * 
+	 * @param queryCriterias Query criteria to filter the aggregated records by.
+	 * @param aggregateQuery {@link AggregateQuery} describing the groups and accumulators.
+	 * @return one row per group.
+	 */
+	List<Map<String, Object>> aggregate(Iterable<QueryCriteria> queryCriterias, AggregateQuery aggregateQuery);
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a grouped aggregation, executed by {@link AggregateOperations} implementations.  Records
+ *   are grouped by zero or more model fields, and each group is summarized by a list of 
+ *   {@link Accumulator} functions.  Groups may be ordered by any group field or accumulator alias
+ *   and limited, so that the top-K groups by a statistic can be fetched without returning the rest.
+ *   Nested fields are addressed with dot-notation.
+ * 
+ * Example usage:
+ * 
+ *   AggregateQuery query = AggregateQuery.groupBy("entrezGeneId")
+ *     .count()
+ *     .avg("value")
+ *     .top(10, "avg_value");
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class AggregateQuery {
+	
+	private final List<String> groupFields;
+	private final List<Accumulator> accumulators = new ArrayList<>();
+	private String sortField;
+	private Sort.Direction sortDirection = Sort.Direction.ASC;
+	private int limit = 0;
+
+	public AggregateQuery(List<String> groupFields) {
+		Assert.notNull(groupFields);
+		this.groupFields = Collections.unmodifiableList(new ArrayList<>(groupFields));
+	}
+
+	/**
+	 * Creates a query grouping records by the supplied fields.  With no fields, all matching records
+	 *   are summarized as a single group.
+	 */
+	public static AggregateQuery groupBy(String... fields){
+		Assert.notNull(fields);
+		List<String> groupFields = new ArrayList<>();
+		Collections.addAll(groupFields, fields);
+		return new AggregateQuery(groupFields);
+	}
+
+	/**
+	 * Adds an accumulator, returned under the supplied alias.
+	 */
+	public AggregateQuery accumulate(AggregateFunction function, String field, String alias){
+		Assert.notNull(function);
+		Assert.hasText(alias, "Accumulator alias must not be empty.");
+		Assert.isTrue(function == AggregateFunction.COUNT || field != null, 
+				"Accumulator field must not be null.");
+		Assert.isTrue(!getOutputNames().contains(alias), "Duplicate aggregate output name: " + alias);
+		accumulators.add(new Accumulator(function, field, alias));
+		return this;
+	}
+
+	/**
+	 * Adds a record count, returned as {@code count}.
+	 */
+	public AggregateQuery count(){
+		return accumulate(AggregateFunction.COUNT, null, getDefaultAlias(AggregateFunction.COUNT, null));
+	}
+
+	/**
+	 * Adds a count of the records with a non-null value of the field, returned as 
+	 *   {@code count_field}.
+	 */
+	public AggregateQuery count(String field){
+		Assert.notNull(field, "Accumulator field must not be null.");
+		return accumulate(AggregateFunction.COUNT, field, getDefaultAlias(AggregateFunction.COUNT, field));
+	}
+
+	/**
+	 * Adds the minimum value of the field, returned as {@code min_field}.
+	 */
+	public AggregateQuery min(String field){
+		return accumulate(AggregateFunction.MIN, field, getDefaultAlias(AggregateFunction.MIN, field));
+	}
+
+	/**
+	 * Adds the maximum value of the field, returned as {@code max_field}.
+	 */
+	public AggregateQuery max(String field){
+		return accumulate(AggregateFunction.MAX, field, getDefaultAlias(AggregateFunction.MAX, field));
+	}
+
+	/**
+	 * Adds the sum of the field values, returned as {@code sum_field}.
+	 */
+	public AggregateQuery sum(String field){
+		return accumulate(AggregateFunction.SUM, field, getDefaultAlias(AggregateFunction.SUM, field));
+	}
+
+	/**
+	 * Adds the mean of the field values, returned as {@code avg_field}.
+	 */
+	public AggregateQuery avg(String field){
+		return accumulate(AggregateFunction.AVG, field, getDefaultAlias(AggregateFunction.AVG, field));
+	}
+
+	/**
+	 * Orders the groups by a group field or accumulator alias.
+	 */
+	public AggregateQuery orderBy(String name, Sort.Direction direction){
+		Assert.hasText(name);
+		Assert.notNull(direction);
+		this.sortField = name;
+		this.sortDirection = direction;
+		return this;
+	}
+
+	/**
+	 * Limits the number of groups returned, or removes the limit if less than one.
+	 */
+	public AggregateQuery limit(int limit){
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Returns only the {@code k} groups with the highest values of the named group field or 
+	 *   accumulator alias.
+	 */
+	public AggregateQuery top(int k, String name){
+		Assert.isTrue(k > 0, "The number of groups must be positive.");
+		return orderBy(name, Sort.Direction.DESC).limit(k);
+	}
+
+	/**
+	 * Returns the default output name for an accumulator: the lower-case function name and the 
+	 *   field name, joined by underscores, eg. {@code avg_value} or {@code max_attributes_value}.  
+	 *   A record count without a field is returned as {@code count}.
+	 */
+	public static String getDefaultAlias(AggregateFunction function, String field){
+		if (function == AggregateFunction.COUNT && field == null) return "count";
+		return function.name().toLowerCase() + "_" + field.replace(".", "_");
+	}
+
+	/**
+	 * Returns the group field names followed by the accumulator aliases, in result order.
+	 */
+	public List<String> getOutputNames(){
+		List<String> names = new ArrayList<>(groupFields);
+		for (Accumulator accumulator: accumulators){
+			names.add(accumulator.getAlias());
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the position of the sort field within {@link #getOutputNames()}, or -1 if no sort 
+	 *   field is set.
+	 * 
+	 * @throws IllegalArgumentException if the sort field is not a group field or accumulator alias.
+	 */
+	public int getSortIndex(){
+		if (sortField == null) return -1;
+		int index = getOutputNames().indexOf(sortField);
+		Assert.isTrue(index > -1, "Aggregate results can only be sorted by a group field or " 
+				+ "accumulator alias: " + sortField);
+		return index;
+	}
+
+	public List<String> getGroupFields() {
+		return groupFields;
+	}
+
+	public List<Accumulator> getAccumulators() {
+		return Collections.unmodifiableList(accumulators);
+	}
+
+	public String getSortField() {
+		return sortField;
+	}
+
+	public Sort.Direction getSortDirection() {
+		return sortDirection;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override 
+	public String toString() {
+		return "AggregateQuery{" +
+				"groupFields=" + groupFields +
+				", accumulators=" + accumulators +
+				", sortField='" + sortField + '\'' +
+				", sortDirection=" + sortDirection +
+				", limit=" + limit +
+				'}';
+	}
+
+	/**
+	 * A single summary statistic computed for each group.
+	 */
+	public static class Accumulator {
+		
+		private final AggregateFunction function;
+		private final String field;
+		private final String alias;
+
+		public Accumulator(AggregateFunction function, String field, String alias) {
+			this.function = function;
+			this.field = field;
+			this.alias = alias;
+		}
+
+		public AggregateFunction getFunction() {
+			return function;
+		}
+
+		/**
+		 * Returns the accumulated field, or null for a {@link AggregateFunction#COUNT} of records.
+		 */
+		public String getField() {
+			return field;
+		}
+
+		public String getAlias() {
+			return alias;
+		}
+
+		@Override 
+		public String toString() {
+			return function + "(" + (field != null ? field : "*") + ") as " + alias;
+		}
+	}
+
+}
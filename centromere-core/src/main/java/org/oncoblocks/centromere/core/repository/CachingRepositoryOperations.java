@@ -0,0 +1,599 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import org.oncoblocks.centromere.core.model.Model;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link RepositoryOperations} decorator that caches query results in memory, so that repeated 
+ *   queries do not reach the database.  Works with any repository implementation:
+ * 
+ * <ul>
+ *   <li>Query results are cached by the operation, the {@link CanonicalCriteria}, and the 
+ *   requested sort, page, and projection.  The cache is bounded by the total number of records 
+ *   held in cached results.</li>
+ *   <li>Records fetched by identifier are held in a separate entity cache, bounded by record count, 
+ *   which also serves {@link #exists(Serializable)} and {@link #findAll(Iterable)}.</li>
+ *   <li>A result is only admitted once it has been requested {@code admissionThreshold} times, as 
+ *   estimated by a decaying frequency sketch, so that one-off queries do not evict popular 
+ *   results.</li>
+ *   <li>Every write made through this decorator clears the query cache and removes the affected 
+ *   records from the entity cache.  Writes made directly to the wrapped repository, or to the 
+ *   database, are only picked up once cached entries expire, or after {@link #invalidateAll()}.</li>
+ * </ul>
+ * 
+ * Cached results and records are not copied: every caller receives the same mutable instances, 
+ *   which are also the instances held by the cache.  A record modified by one caller is therefore 
+ *   seen, modified, by every later caller served from the cache, until the entry is evicted or a 
+ *   write through this decorator invalidates it, even if the change is never saved.  Callers that 
+ *   need to modify a record should copy it first, and save the copy.  Streams and keyset slices 
+ *   are never cached.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class CachingRepositoryOperations<T extends Model<ID>, ID extends Serializable> 
+		implements RepositoryOperations<T, ID> {
+	
+	private final RepositoryOperations<T, ID> repository;
+	private final Cache<List<Object>, Object> queryCache;
+	private final Cache<ID, T> entityCache;
+	private final FrequencySketch frequencySketch;
+	private final AtomicLong generation = new AtomicLong();
+	private final AtomicLong queryHits = new AtomicLong();
+	private final AtomicLong queryMisses = new AtomicLong();
+	private final AtomicLong entityHits = new AtomicLong();
+	private final AtomicLong entityMisses = new AtomicLong();
+	private int admissionThreshold = DEFAULT_ADMISSION_THRESHOLD;
+
+	/** Default maximum number of records held across all cached query results. */
+	public static final long DEFAULT_MAXIMUM_QUERY_WEIGHT = 100000L;
+	/** Default maximum number of records held in the entity cache. */
+	public static final long DEFAULT_MAXIMUM_ENTITIES = 10000L;
+	/** Default time-to-live of cached entries, in seconds. */
+	public static final long DEFAULT_TTL = 600L;
+	/** Default number of requests required before a result is cached. */
+	public static final int DEFAULT_ADMISSION_THRESHOLD = 2;
+
+	public CachingRepositoryOperations(RepositoryOperations<T, ID> repository) {
+		this(repository, DEFAULT_MAXIMUM_QUERY_WEIGHT, DEFAULT_MAXIMUM_ENTITIES, DEFAULT_TTL);
+	}
+
+	/**
+	 * @param repository the repository to cache results of.
+	 * @param maximumQueryWeight maximum number of records held across all cached query results.
+	 * @param maximumEntities maximum number of records held in the entity cache.
+	 * @param ttl time-to-live of cached entries, in seconds, or zero for no expiration.
+	 */
+	public CachingRepositoryOperations(RepositoryOperations<T, ID> repository, long maximumQueryWeight,
+			long maximumEntities, long ttl) {
+		Assert.notNull(repository);
+		Assert.isTrue(maximumQueryWeight > 0, "Maximum query weight must be greater than zero.");
+		Assert.isTrue(maximumEntities > 0, "Maximum entity count must be greater than zero.");
+		Assert.isTrue(ttl >= 0, "Cache TTL must not be negative.");
+		this.repository = repository;
+		CacheBuilder<Object, Object> queryCacheBuilder = CacheBuilder.newBuilder()
+				.maximumWeight(maximumQueryWeight)
+				.weigher(new Weigher<Object, Object>() {
+					@Override 
+					public int weigh(Object key, Object value) {
+						return getWeight(value);
+					}
+				});
+		CacheBuilder<Object, Object> entityCacheBuilder = CacheBuilder.newBuilder()
+				.maximumSize(maximumEntities);
+		if (ttl > 0){
+			queryCacheBuilder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+			entityCacheBuilder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+		}
+		this.queryCache = queryCacheBuilder.build();
+		this.entityCache = entityCacheBuilder.build();
+		this.frequencySketch = new FrequencySketch(
+				(int) Math.min(Math.max(maximumEntities, 1024L), 1L << 16));
+	}
+
+	/**
+	 * Returns the cached result for the key, or loads it from the wrapped repository, caching it if 
+	 *   it has been requested often enough.  Results loaded while a write was in progress are not 
+	 *   cached.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> R query(List<Object> key, Supplier<R> loader){
+		Object cached = queryCache.getIfPresent(key);
+		if (cached != null){
+			queryHits.incrementAndGet();
+			return (R) cached;
+		}
+		queryMisses.incrementAndGet();
+		long current = generation.get();
+		R result = loader.get();
+		if (result != null && frequencySketch.increment(key) >= admissionThreshold 
+				&& current == generation.get()){
+			queryCache.put(key, result);
+			if (current != generation.get()) queryCache.invalidate(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads a query that returns a collection of records, materializing it so that it can be cached 
+	 *   and iterated more than once.
+	 */
+	private <R> List<R> queryList(List<Object> key, Supplier<Iterable<R>> loader){
+		return query(key, () -> Collections.unmodifiableList(Lists.newArrayList(loader.get())));
+	}
+
+	private static List<Object> getKey(String operation, Iterable<QueryCriteria> queryCriterias, 
+			Object... parameters){
+		List<Object> key = new ArrayList<>();
+		key.add(operation);
+		key.add(CanonicalCriteria.of(queryCriterias));
+		key.addAll(Arrays.asList(parameters));
+		return key;
+	}
+
+	/**
+	 * Cached results are weighed by the number of records they hold.
+	 */
+	private static int getWeight(Object value){
+		if (value instanceof Collection) return ((Collection<?>) value).size() + 1;
+		if (value instanceof Slice) return ((Slice<?>) value).getNumberOfElements() + 1;
+		return 1;
+	}
+
+	private void cacheEntity(T entity, long current){
+		if (entity == null || entity.getId() == null) return;
+		if (frequencySketch.increment(entity.getId()) >= admissionThreshold && current == generation.get()){
+			entityCache.put(entity.getId(), entity);
+			if (current != generation.get()) entityCache.invalidate(entity.getId());
+		}
+	}
+
+	/**
+	 * Clears cached query results after a write, along with the cached copies of the written records.
+	 */
+	private void invalidate(Iterable<? extends T> entities){
+		invalidateQueries();
+		if (entities == null) return;
+		for (T entity: entities){
+			if (entity != null && entity.getId() != null) entityCache.invalidate(entity.getId());
+		}
+	}
+
+	private void invalidateQueries(){
+		generation.incrementAndGet();
+		queryCache.invalidateAll();
+	}
+
+	private void invalidate(T entity){
+		invalidate(Collections.singletonList(entity));
+	}
+
+	/**
+	 * Removes all cached query results and records, for example after the database has been 
+	 *   modified without going through this repository.
+	 */
+	public void invalidateAll(){
+		invalidateQueries();
+		entityCache.invalidateAll();
+	}
+
+	/** {@link RepositoryOperations#find(Iterable)} */
+	@Override 
+	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias) {
+		return queryList(getKey("find", queryCriterias), () -> repository.find(queryCriterias));
+	}
+
+	/** {@link RepositoryOperations#find(Iterable, Sort)} */
+	@Override 
+	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		return queryList(getKey("find", queryCriterias, sort), () -> repository.find(queryCriterias, sort));
+	}
+
+	/** {@link RepositoryOperations#find(Iterable, Pageable)} */
+	@Override 
+	public Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable) {
+		return query(getKey("find", queryCriterias, pageable), () -> repository.find(queryCriterias, pageable));
+	}
+
+	/** {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy)} */
+	@Override 
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy) {
+		return query(getKey("find", queryCriterias, pageable, countStrategy), 
+				() -> repository.find(queryCriterias, pageable, countStrategy));
+	}
+
+	/** {@link RepositoryOperations#find(Iterable, Sort, Projection)} */
+	@Override 
+	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection) {
+		return queryList(getKey("find", queryCriterias, sort, projection), 
+				() -> repository.find(queryCriterias, sort, projection));
+	}
+
+	/** {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy, Projection)} */
+	@Override 
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy, Projection projection) {
+		return query(getKey("find", queryCriterias, pageable, countStrategy, projection), 
+				() -> repository.find(queryCriterias, pageable, countStrategy, projection));
+	}
+
+	/** {@link RepositoryOperations#findAfter(Iterable, Sort, int, String)} */
+	@Override 
+	public KeysetSlice<T> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size, 
+			String continuationToken) {
+		return repository.findAfter(queryCriterias, sort, size, continuationToken);
+	}
+
+	/** {@link RepositoryOperations#stream(Iterable, Sort)} */
+	@Override 
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		return repository.stream(queryCriterias, sort);
+	}
+
+	/** {@link RepositoryOperations#stream(Iterable, Sort, Projection)} */
+	@Override 
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort, 
+			Projection projection) {
+		return repository.stream(queryCriterias, sort, projection);
+	}
+
+	/** {@link RepositoryOperations#count(Iterable)} */
+	@Override 
+	public long count(Iterable<QueryCriteria> queryCriterias) {
+		return query(getKey("count", queryCriterias), () -> repository.count(queryCriterias));
+	}
+
+	/** {@link RepositoryOperations#distinct(String)} */
+	@Override 
+	public Iterable<Object> distinct(String field) {
+		return queryList(getKey("distinct", null, field), () -> repository.distinct(field));
+	}
+
+	/** {@link RepositoryOperations#distinct(String, Iterable)} */
+	@Override 
+	public Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias) {
+		return queryList(getKey("distinct", queryCriterias, field), 
+				() -> repository.distinct(field, queryCriterias));
+	}
+
+	/** {@link RepositoryOperations#distinct(String, Iterable, String, int, int)} */
+	@Override 
+	public Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias, String prefix, 
+			int offset, int limit) {
+		return queryList(getKey("distinct", queryCriterias, field, prefix, offset, limit), 
+				() -> repository.distinct(field, queryCriterias, prefix, offset, limit));
+	}
+
+	@Override 
+	public Iterable<T> findAll(Sort sort) {
+		return queryList(getKey("findAll", null, sort), () -> repository.findAll(sort));
+	}
+
+	@Override 
+	public Page<T> findAll(Pageable pageable) {
+		return query(getKey("findAll", null, pageable), () -> repository.findAll(pageable));
+	}
+
+	@Override 
+	public Iterable<T> findAll() {
+		return queryList(getKey("findAll", null), repository::findAll);
+	}
+
+	@Override 
+	public long count() {
+		return query(getKey("count", null), repository::count);
+	}
+
+	/**
+	 * Returns the cached record, where available.  The record is shared with other callers, and 
+	 *   should be copied before it is modified.
+	 */
+	@Override 
+	public T findOne(ID id) {
+		Assert.notNull(id);
+		T entity = entityCache.getIfPresent(id);
+		if (entity != null){
+			entityHits.incrementAndGet();
+			return entity;
+		}
+		entityMisses.incrementAndGet();
+		long current = generation.get();
+		entity = repository.findOne(id);
+		cacheEntity(entity, current);
+		return entity;
+	}
+
+	@Override 
+	public boolean exists(ID id) {
+		Assert.notNull(id);
+		if (entityCache.getIfPresent(id) != null){
+			entityHits.incrementAndGet();
+			return true;
+		}
+		entityMisses.incrementAndGet();
+		return repository.exists(id);
+	}
+
+	/**
+	 * Returns cached records where available, and fetches the remaining identifiers from the wrapped
+	 *   repository in a single call.
+	 */
+	@Override 
+	public Iterable<T> findAll(Iterable<ID> ids) {
+		Assert.notNull(ids);
+		List<T> entities = new ArrayList<>();
+		List<ID> missing = new ArrayList<>();
+		for (ID id: ids){
+			T entity = id != null ? entityCache.getIfPresent(id) : null;
+			if (entity != null){
+				entityHits.incrementAndGet();
+				entities.add(entity);
+			} else if (id != null) {
+				entityMisses.incrementAndGet();
+				missing.add(id);
+			}
+		}
+		if (!missing.isEmpty()){
+			long current = generation.get();
+			for (T entity: repository.findAll(missing)){
+				cacheEntity(entity, current);
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+
+	/** {@link RepositoryOperations#insert(Model)} */
+	@Override 
+	public <S extends T> S insert(S entity) {
+		try {
+			return repository.insert(entity);
+		} finally {
+			invalidate(entity);
+		}
+	}
+
+	/** {@link RepositoryOperations#insert(Iterable)} */
+	@Override 
+	public <S extends T> Iterable<S> insert(Iterable<S> entities) {
+		try {
+			return repository.insert(entities);
+		} finally {
+			invalidate(entities);
+		}
+	}
+
+	/** {@link RepositoryOperations#update(Model)} */
+	@Override 
+	public <S extends T> S update(S entity) {
+		try {
+			return repository.update(entity);
+		} finally {
+			invalidate(entity);
+		}
+	}
+
+	/** {@link RepositoryOperations#update(Iterable)} */
+	@Override 
+	public <S extends T> Iterable<S> update(Iterable<S> entities) {
+		try {
+			return repository.update(entities);
+		} finally {
+			invalidate(entities);
+		}
+	}
+
+	/** {@link RepositoryOperations#upsert(Iterable)} */
+	@Override 
+	public <S extends T> Iterable<S> upsert(Iterable<S> entities) {
+		try {
+			return repository.upsert(entities);
+		} finally {
+			invalidate(entities);
+		}
+	}
+
+	@Override 
+	public <S extends T> S save(S entity) {
+		try {
+			return repository.save(entity);
+		} finally {
+			invalidate(entity);
+		}
+	}
+
+	@Override 
+	public <S extends T> Iterable<S> save(Iterable<S> entities) {
+		try {
+			return repository.save(entities);
+		} finally {
+			invalidate(entities);
+		}
+	}
+
+	@Override 
+	public void delete(ID id) {
+		try {
+			repository.delete(id);
+		} finally {
+			invalidateQueries();
+			if (id != null) entityCache.invalidate(id);
+		}
+	}
+
+	@Override 
+	public void delete(T entity) {
+		try {
+			repository.delete(entity);
+		} finally {
+			invalidate(entity);
+		}
+	}
+
+	@Override 
+	public void delete(Iterable<? extends T> entities) {
+		try {
+			repository.delete(entities);
+		} finally {
+			invalidate(entities);
+		}
+	}
+
+	@Override 
+	public void deleteAll() {
+		try {
+			repository.deleteAll();
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	/** {@link RepositoryOperations#deleteAll(Iterable)} */
+	@Override 
+	public long deleteAll(Iterable<QueryCriteria> queryCriterias) {
+		try {
+			return repository.deleteAll(queryCriterias);
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	public RepositoryOperations<T, ID> getRepository() {
+		return repository;
+	}
+
+	public int getAdmissionThreshold() {
+		return admissionThreshold;
+	}
+
+	/**
+	 * Sets the number of times a result must be requested before it is cached.  A value of one 
+	 *   caches every result.
+	 */
+	public void setAdmissionThreshold(int admissionThreshold) {
+		Assert.isTrue(admissionThreshold > 0, "Admission threshold must be greater than zero.");
+		this.admissionThreshold = admissionThreshold;
+	}
+
+	/**
+	 * Number of query requests served from the cache.
+	 */
+	public long getQueryHitCount() {
+		return queryHits.get();
+	}
+
+	/**
+	 * Number of query requests passed on to the wrapped repository.
+	 */
+	public long getQueryMissCount() {
+		return queryMisses.get();
+	}
+
+	/**
+	 * Number of identifier lookups served from the entity cache.
+	 */
+	public long getEntityHitCount() {
+		return entityHits.get();
+	}
+
+	/**
+	 * Number of identifier lookups passed on to the wrapped repository.
+	 */
+	public long getEntityMissCount() {
+		return entityMisses.get();
+	}
+
+	/**
+	 * Number of query results and records currently cached.
+	 */
+	public long size(){
+		return queryCache.size() + entityCache.size();
+	}
+
+	/**
+	 * Count-min sketch of recent request frequencies.  Each key increments one counter in each of 
+	 *   {@code DEPTH} rows, and its frequency is estimated as the smallest of those counters.  All 
+	 *   counters are halved once the number of increments reaches ten times the row width, so that 
+	 *   the estimates favor recent requests.
+	 */
+	static final class FrequencySketch {
+
+		private static final int DEPTH = 4;
+		private static final int[] SEEDS = { 0x97cb3127, 0xb0ba1c4b, 0x3a6e7d37, 0x74dc5ba5 };
+		
+		private final int[][] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions = 0;
+
+		FrequencySketch(int width){
+			int size = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+			this.table = new int[DEPTH][size];
+			this.mask = size - 1;
+			this.sampleSize = size * 10;
+		}
+
+		/**
+		 * Records a request for the key and returns its estimated frequency, including this request.
+		 */
+		synchronized int increment(Object key){
+			int hash = key.hashCode();
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < DEPTH; i++){
+				int index = indexOf(hash, i);
+				frequency = Math.min(frequency, ++table[i][index]);
+			}
+			if (++additions >= sampleSize) reset();
+			return frequency;
+		}
+
+		private int indexOf(int hash, int row){
+			int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+			h ^= h >>> 16;
+			return h & mask;
+		}
+
+		private void reset(){
+			for (int[] row: table){
+				for (int i = 0; i < row.length; i++){
+					row[i] >>>= 1;
+				}
+			}
+			additions /= 2;
+		}
+
+	}
+
+}
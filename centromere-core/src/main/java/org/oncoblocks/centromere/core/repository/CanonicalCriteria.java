@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.*;
+
+/**
+ * Immutable, canonical form of a {@link QueryCriteria} list, for use as a key by caches and other 
+ *   components that need to recognize equivalent queries.  Two criteria lists that differ only in 
+ *   the order of their criteria, or in the order or repetition of {@code IN} and {@code NOT_IN} 
+ *   values, produce equal instances:
+ * 
+ * <ul>
+ *   <li>criteria are sorted by field name, then by evaluation and value, and exact duplicates are 
+ *   removed;</li>
+ *   <li>{@code IN} and {@code NOT_IN} values are de-duplicated and sorted;</li>
+ *   <li>other multi-valued criteria, such as {@code BETWEEN} bounds, keep their order;</li>
+ *   <li>array and collection values are both represented as lists;</li>
+ *   <li>the members of {@link QueryCriteriaGroup} instances are canonicalized the same way, 
+ *   recursively.</li>
+ * </ul>
+ * 
+ * A 64-bit fingerprint of the canonical form is computed once, on creation, and is used for 
+ *   {@link #hashCode()} and as a fast path in {@link #equals(Object)}.  The fingerprint does not 
+ *   depend on JVM-specific hash codes of strings and numbers, so it may also be used as a key 
+ *   outside of the current process.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public final class CanonicalCriteria {
+	
+	private final List<Criterion> criteria;
+	private final long fingerprint;
+	
+	private static final CanonicalCriteria EMPTY = new CanonicalCriteria(Collections.<Criterion>emptyList());
+
+	private CanonicalCriteria(List<Criterion> criteria) {
+		this.criteria = criteria;
+		this.fingerprint = computeFingerprint(criteria);
+	}
+
+	/**
+	 * Creates the canonical form of the supplied criteria.  Null lists and null criteria are allowed,
+	 *   and are treated as no criteria.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @return {@link CanonicalCriteria}
+	 */
+	public static CanonicalCriteria of(Iterable<QueryCriteria> queryCriterias){
+		if (queryCriterias == null) return EMPTY;
+		SortedSet<Criterion> sorted = new TreeSet<>();
+		for (QueryCriteria queryCriteria: queryCriterias){
+			if (queryCriteria != null) sorted.add(new Criterion(queryCriteria));
+		}
+		if (sorted.isEmpty()) return EMPTY;
+		return new CanonicalCriteria(Collections.unmodifiableList(new ArrayList<>(sorted)));
+	}
+
+	/**
+	 * Returns new {@link QueryCriteria} instances for the canonical criteria, which may be passed to 
+	 *   any repository.
+	 */
+	public List<QueryCriteria> toQueryCriteria(){
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		for (Criterion criterion: criteria){
+			queryCriterias.add(criterion.toQueryCriteria());
+		}
+		return queryCriterias;
+	}
+
+	public List<Criterion> getCriteria() {
+		return criteria;
+	}
+
+	/**
+	 * 64-bit fingerprint of the canonical criteria.  Equal instances always have the same 
+	 *   fingerprint; unequal instances are very unlikely to.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+	
+	public boolean isEmpty(){
+		return criteria.isEmpty();
+	}
+
+	private static long computeFingerprint(List<Criterion> criteria){
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Criterion criterion: criteria){
+			putCriterion(hasher, criterion);
+		}
+		return hasher.hash().asLong();
+	}
+
+	private static void putCriterion(Hasher hasher, Criterion criterion){
+		hasher.putString(criterion.getKey(), Charsets.UTF_8).putByte((byte) 0)
+				.putInt(criterion.getEvaluation().ordinal())
+				.putInt(criterion.getOperator() != null ? criterion.getOperator().ordinal() + 1 : 0);
+		putValue(hasher, criterion.getValue());
+		hasher.putByte((byte) 1);
+	}
+
+	private static void putValue(Hasher hasher, Object value){
+		if (value instanceof List){
+			List<?> values = (List<?>) value;
+			hasher.putByte((byte) 'L').putInt(values.size());
+			for (Object v: values) putValue(hasher, v);
+		} else if (value instanceof Criterion){
+			hasher.putByte((byte) 'C');
+			putCriterion(hasher, (Criterion) value);
+		} else if (value == null){
+			hasher.putByte((byte) 'N');
+		} else {
+			hasher.putString(value.getClass().getName(), Charsets.UTF_8).putByte((byte) 0)
+					.putString(value.toString(), Charsets.UTF_8).putByte((byte) 0);
+		}
+	}
+
+	@Override 
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CanonicalCriteria)) return false;
+		CanonicalCriteria that = (CanonicalCriteria) o;
+		return fingerprint == that.fingerprint && criteria.equals(that.criteria);
+	}
+
+	@Override 
+	public int hashCode() {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	@Override 
+	public String toString() {
+		return "CanonicalCriteria{" +
+				"criteria=" + criteria +
+				", fingerprint=" + Long.toHexString(fingerprint) +
+				'}';
+	}
+
+	/**
+	 * A single immutable criterion, with its value in canonical form.  Criteria groups are 
+	 *   represented by a criterion with an empty key, the group operator, and the sorted list of its 
+	 *   member criteria as the value.
+	 */
+	public static final class Criterion implements Comparable<Criterion> {
+		
+		private final String key;
+		private final Evaluation evaluation;
+		private final QueryCriteriaGroup.Operator operator;
+		private final Object value;
+
+		private Criterion(QueryCriteria queryCriteria) {
+			this.key = queryCriteria.getKey() != null ? queryCriteria.getKey() : "";
+			this.evaluation = queryCriteria.getEvaluation() != null 
+					? queryCriteria.getEvaluation() : Evaluation.EQUALS;
+			if (queryCriteria instanceof QueryCriteriaGroup){
+				QueryCriteriaGroup group = (QueryCriteriaGroup) queryCriteria;
+				this.operator = group.getOperator();
+				this.value = CanonicalCriteria.of(group.getQueryCriterias()).getCriteria();
+			} else {
+				this.operator = null;
+				this.value = canonicalize(queryCriteria.getValue(),
+						evaluation == Evaluation.IN || evaluation == Evaluation.NOT_IN);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private QueryCriteria toQueryCriteria(){
+			if (operator == null) return new QueryCriteria(key, value, evaluation);
+			List<QueryCriteria> members = new ArrayList<>();
+			for (Criterion criterion: (List<Criterion>) value){
+				members.add(criterion.toQueryCriteria());
+			}
+			return new QueryCriteriaGroup(operator, members);
+		}
+
+		/**
+		 * Converts arrays and collections to unmodifiable lists, sorting and de-duplicating set-valued
+		 *   evaluations.
+		 */
+		private static Object canonicalize(Object value, boolean isSet){
+			Collection<?> values;
+			if (value instanceof Object[]){
+				values = Arrays.asList((Object[]) value);
+			} else if (value instanceof Collection){
+				values = (Collection<?>) value;
+			} else {
+				return value;
+			}
+			List<Object> list;
+			if (isSet){
+				list = new ArrayList<>(new LinkedHashSet<>(values));
+				Collections.sort(list, VALUE_COMPARATOR);
+			} else {
+				list = new ArrayList<>(values);
+			}
+			return Collections.unmodifiableList(list);
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public Evaluation getEvaluation() {
+			return evaluation;
+		}
+
+		/**
+		 * Returns the operator of a criteria group, or null if this is not a group.
+		 */
+		public QueryCriteriaGroup.Operator getOperator() {
+			return operator;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		@Override 
+		public int compareTo(Criterion other) {
+			int result = key.compareTo(other.key);
+			if (result != 0) return result;
+			if (operator != other.operator){
+				if (operator == null) return -1;
+				if (other.operator == null) return 1;
+				return operator.compareTo(other.operator);
+			}
+			result = evaluation.compareTo(other.evaluation);
+			if (result != 0) return result;
+			return VALUE_COMPARATOR.compare(value, other.value);
+		}
+
+		@Override 
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Criterion)) return false;
+			Criterion that = (Criterion) o;
+			return key.equals(that.key) && evaluation == that.evaluation && operator == that.operator
+					&& (value != null ? value.equals(that.value) : that.value == null);
+		}
+
+		@Override 
+		public int hashCode() {
+			int result = key.hashCode();
+			result = 31 * result + evaluation.hashCode();
+			result = 31 * result + (operator != null ? operator.hashCode() : 0);
+			result = 31 * result + (value != null ? value.hashCode() : 0);
+			return result;
+		}
+
+		@Override 
+		public String toString() {
+			return operator != null ? operator + " " + value : key + " " + evaluation + " " + value;
+		}
+		
+	}
+
+	/**
+	 * Orders values of the same comparable type naturally, and all other values by type and string 
+	 *   representation, with nulls first.  Lists are compared element by element.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>() {
+		@Override 
+		public int compare(Object a, Object b) {
+			if (a == b) return 0;
+			if (a == null) return -1;
+			if (b == null) return 1;
+			if (a instanceof List && b instanceof List){
+				List<?> x = (List<?>) a;
+				List<?> y = (List<?>) b;
+				for (int i = 0; i < Math.min(x.size(), y.size()); i++){
+					int result = compare(x.get(i), y.get(i));
+					if (result != 0) return result;
+				}
+				return Integer.compare(x.size(), y.size());
+			}
+			if (a.getClass().equals(b.getClass()) && a instanceof Comparable){
+				return ((Comparable<Object>) a).compareTo(b);
+			}
+			int result = a.getClass().getName().compareTo(b.getClass().getName());
+			if (result != 0) return result;
+			return a.toString().compareTo(b.toString());
+		}
+	};
+
+}
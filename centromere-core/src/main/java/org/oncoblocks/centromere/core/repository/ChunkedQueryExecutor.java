@@ -0,0 +1,411 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor.PagedQuery;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Executes queries with large lists of values, such as multi-ID lookups, by splitting the values 
+ *   into chunks of a configurable size.  Each chunk is fetched with a single {@code IN} query, and 
+ *   chunks are fetched concurrently when there is more than one.  Lists no larger than the chunk 
+ *   size are fetched with a single query on the calling thread.
+ * 
+ * Criteria queries with an oversized {@code IN} criteria on a single-valued field are executed the 
+ *   same way: the criteria are copied once per chunk of values, each copy is queried separately, 
+ *   and the results are merged in the requested sort order.  Because each record can match only 
+ *   one chunk, counts may simply be summed.  Other criteria are executed as a single query.  The 
+ *   merge compares property values of the returned records, which should sort the same way as the 
+ *   database, except possibly for strings under a non-binary collation.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ChunkedQueryExecutor {
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int maxPagedOffset = DEFAULT_MAX_PAGED_OFFSET;
+	private Executor executor = PagedQueryExecutor.DEFAULT_EXECUTOR;
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	public static final int DEFAULT_MAX_PAGED_OFFSET = 10000;
+
+	/**
+	 * Database-specific query for a single chunk of values.
+	 */
+	public interface ChunkQuery<V, T> {
+
+		/**
+		 * Fetches all records matching any of the supplied values.
+		 */
+		List<T> fetch(List<V> values);
+
+	}
+
+	/**
+	 * Fetches the records matching all of the supplied values.
+	 *
+	 * @param values values to query, for example record IDs.
+	 * @param query {@link ChunkQuery}
+	 * @param concurrent whether chunks may be fetched on other threads.  Queries bound to a 
+	 *   thread-local resource, such as a transactional connection, should pass false.
+	 * @return all fetched records, in no particular order.
+	 */
+	public <V, T> List<T> execute(List<V> values, ChunkQuery<V, T> query, boolean concurrent){
+		Assert.notNull(values);
+		Assert.notNull(query);
+		if (values.isEmpty()) return new ArrayList<>();
+		if (values.size() <= chunkSize) return new ArrayList<>(query.fetch(values));
+		List<List<V>> chunks = new ArrayList<>();
+		for (int i = 0; i < values.size(); i += chunkSize){
+			chunks.add(values.subList(i, Math.min(i + chunkSize, values.size())));
+		}
+		List<T> results = new ArrayList<>();
+		for (List<T> chunkResults: fetchAll(chunks, query::fetch, concurrent)){
+			results.addAll(chunkResults);
+		}
+		return results;
+	}
+
+	/**
+	 * Applies the query function to each chunk, concurrently if requested, and returns the results 
+	 *   in chunk order.
+	 */
+	private <C, R> List<R> fetchAll(List<C> chunks, Function<C, R> query, boolean concurrent){
+		List<R> results = new ArrayList<>();
+		if (!concurrent || chunks.size() == 1){
+			for (C chunk: chunks){
+				results.add(query.apply(chunk));
+			}
+			return results;
+		}
+		List<CompletableFuture<R>> futures = new ArrayList<>();
+		for (final C chunk: chunks){
+			futures.add(CompletableFuture.supplyAsync(() -> query.apply(chunk), executor));
+		}
+		try {
+			for (CompletableFuture<R> future: futures){
+				results.add(future.join());
+			}
+		} catch (CompletionException e){
+			for (CompletableFuture<R> future: futures){
+				future.cancel(false);
+			}
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the first top-level {@code IN} criteria on a single-valued field with more values than 
+	 *   the chunk size, or null if there is none.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param singleValuedFields tests whether a field holds at most one value per record.
+	 * @return oversized {@link QueryCriteria}, or null.
+	 */
+	public QueryCriteria getOversizedCriteria(Iterable<QueryCriteria> queryCriterias, 
+			Predicate<String> singleValuedFields){
+		if (queryCriterias == null) return null;
+		for (QueryCriteria queryCriteria: queryCriterias){
+			if (queryCriteria == null || queryCriteria instanceof QueryCriteriaGroup 
+					|| queryCriteria.getEvaluation() != Evaluation.IN) continue;
+			Object value = queryCriteria.getValue();
+			int size = value instanceof Collection ? ((Collection<?>) value).size() 
+					: value instanceof Object[] ? ((Object[]) value).length : 0;
+			if (size > chunkSize && singleValuedFields.test(queryCriteria.getKey())) return queryCriteria;
+		}
+		return null;
+	}
+
+	/**
+	 * Splits the criteria into one copy per chunk of values of the oversized criteria.  Duplicate 
+	 *   values are removed.
+	 */
+	private List<List<QueryCriteria>> split(Iterable<QueryCriteria> queryCriterias, QueryCriteria oversized){
+		Object value = oversized.getValue();
+		List<Object> values = new ArrayList<>(new LinkedHashSet<>(value instanceof Collection 
+				? (Collection<?>) value : Arrays.asList((Object[]) value)));
+		List<List<QueryCriteria>> chunks = new ArrayList<>();
+		for (int i = 0; i < values.size(); i += chunkSize){
+			List<QueryCriteria> chunk = new ArrayList<>();
+			for (QueryCriteria queryCriteria: queryCriterias){
+				if (queryCriteria == oversized){
+					chunk.add(new QueryCriteria(oversized.getKey(), 
+							values.subList(i, Math.min(i + chunkSize, values.size())), Evaluation.IN));
+				} else if (queryCriteria != null){
+					chunk.add(queryCriteria);
+				}
+			}
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Fetches all records matching the criteria.  If the criteria include an oversized {@code IN} 
+	 *   criteria, the query is executed once per chunk of values, and the sorted results are merged.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort sort order applied by the query, may be null.
+	 * @param singleValuedFields tests whether a field holds at most one value per record.
+	 * @param query fetches the sorted records matching a set of criteria.
+	 * @param concurrent whether chunks may be fetched on other threads.
+	 * @return matching records, in sort order.
+	 */
+	public <T> List<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, 
+			Predicate<String> singleValuedFields, Function<Iterable<QueryCriteria>, List<T>> query, 
+			boolean concurrent){
+		QueryCriteria oversized = getOversizedCriteria(queryCriterias, singleValuedFields);
+		if (oversized == null) return query.apply(queryCriterias);
+		return merge(fetchAll(split(queryCriterias, oversized), query::apply, concurrent), sort, 0, 
+				Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Counts the records matching the criteria, summing the counts of each chunk of an oversized 
+	 *   {@code IN} criteria.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param singleValuedFields tests whether a field holds at most one value per record.
+	 * @param query counts the records matching a set of criteria.
+	 * @param concurrent whether chunks may be counted on other threads.
+	 * @return number of matching records.
+	 */
+	public long count(Iterable<QueryCriteria> queryCriterias, Predicate<String> singleValuedFields, 
+			Function<Iterable<QueryCriteria>, Long> query, boolean concurrent){
+		QueryCriteria oversized = getOversizedCriteria(queryCriterias, singleValuedFields);
+		if (oversized == null) return query.apply(queryCriterias);
+		long count = 0L;
+		for (Long chunkCount: fetchAll(split(queryCriterias, oversized), query::apply, concurrent)){
+			count += chunkCount;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a {@link PagedQuery} for the criteria.  If the criteria include an oversized 
+	 *   {@code IN} criteria, each page is assembled from the first {@code offset + limit} sorted 
+	 *   records of each chunk, and the count is the sum of the chunk counts.  Since every chunk 
+	 *   must fetch all of the skipped records, the cost of a page grows with its offset times the 
+	 *   number of chunks, so offsets greater than {@link #getMaxPagedOffset()} are rejected; such 
+	 *   results should be read with keyset pagination or a stream instead.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort sort order applied by the queries, may be null.
+	 * @param singleValuedFields tests whether a field holds at most one value per record.
+	 * @param query creates a {@link PagedQuery} for a set of criteria.
+	 * @param concurrent whether chunks may be fetched on other threads.
+	 * @return {@link PagedQuery}
+	 */
+	public <T> PagedQuery<T> getPagedQuery(Iterable<QueryCriteria> queryCriterias, final Sort sort, 
+			Predicate<String> singleValuedFields, Function<Iterable<QueryCriteria>, PagedQuery<T>> query, 
+			final boolean concurrent){
+		QueryCriteria oversized = getOversizedCriteria(queryCriterias, singleValuedFields);
+		if (oversized == null) return query.apply(queryCriterias);
+		final List<PagedQuery<T>> queries = new ArrayList<>();
+		for (List<QueryCriteria> chunk: split(queryCriterias, oversized)){
+			queries.add(query.apply(chunk));
+		}
+		return new PagedQuery<T>() {
+			@Override 
+			public List<T> fetch(int offset, int limit) {
+				Assert.isTrue(offset <= maxPagedOffset, String.format("Page offset %d exceeds the maximum " 
+						+ "of %d for queries split into chunks.", offset, maxPagedOffset));
+				int size = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+				return merge(fetchAll(queries, q -> q.fetch(0, size), concurrent), sort, offset, limit);
+			}
+			@Override 
+			public long count() {
+				long count = 0L;
+				for (Long chunkCount: fetchAll(queries, PagedQuery::count, concurrent)){
+					count += chunkCount;
+				}
+				return count;
+			}
+			@Override 
+			public boolean isConcurrentCountSupported() {
+				return concurrent;
+			}
+		};
+	}
+
+	/**
+	 * Merges lists of records, each already in sort order, into a single sorted list, skipping the 
+	 *   first {@code offset} records and returning at most {@code limit}.  Unsorted lists are 
+	 *   concatenated.
+	 */
+	private static <T> List<T> merge(List<List<T>> lists, Sort sort, int offset, int limit){
+		List<T> merged = new ArrayList<>();
+		if (sort == null){
+			for (List<T> list: lists){
+				merged.addAll(list);
+			}
+			return page(merged, offset, limit);
+		}
+		final Comparator<T> comparator = getComparator(sort);
+		PriorityQueue<ListCursor<T>> queue = new PriorityQueue<>(Math.max(lists.size(), 1), 
+				(a, b) -> comparator.compare(a.current(), b.current()));
+		for (List<T> list: lists){
+			if (!list.isEmpty()) queue.add(new ListCursor<>(list));
+		}
+		int skipped = 0;
+		while (!queue.isEmpty() && merged.size() < limit){
+			ListCursor<T> cursor = queue.poll();
+			if (skipped < offset){
+				skipped++;
+			} else {
+				merged.add(cursor.current());
+			}
+			if (cursor.advance()) queue.add(cursor);
+		}
+		return merged;
+	}
+
+	private static <T> List<T> page(List<T> list, int offset, int limit){
+		if (offset >= list.size()) return new ArrayList<>();
+		return new ArrayList<>(list.subList(offset, (int) Math.min((long) offset + limit, list.size())));
+	}
+
+	/**
+	 * Compares records by the property values named in the {@link Sort}, with nulls first in 
+	 *   ascending order.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Comparator<T> getComparator(Sort sort){
+		return (a, b) -> {
+			for (Sort.Order order: sort){
+				Object x = PropertyAccessorFactory.forDirectFieldAccess(a).getPropertyValue(order.getProperty());
+				Object y = PropertyAccessorFactory.forDirectFieldAccess(b).getPropertyValue(order.getProperty());
+				int result;
+				if (x == y){
+					result = 0;
+				} else if (x == null){
+					result = -1;
+				} else if (y == null){
+					result = 1;
+				} else {
+					result = ((Comparable<Object>) x).compareTo(y);
+				}
+				if (result != 0) return order.getDirection() == Sort.Direction.ASC ? result : -result;
+			}
+			return 0;
+		};
+	}
+
+	/**
+	 * Position within one of the lists being merged.
+	 */
+	private static class ListCursor<T> {
+		
+		private final List<T> list;
+		private int index = 0;
+
+		public ListCursor(List<T> list) {
+			this.list = list;
+		}
+		
+		public T current(){
+			return list.get(index);
+		}
+		
+		public boolean advance(){
+			return ++index < list.size();
+		}
+		
+	}
+
+	/**
+	 * Fetches the records with the supplied IDs, returning them in the order of the requested IDs.  
+	 *   Duplicate IDs are fetched once, and IDs with no matching record are skipped.
+	 *
+	 * @param ids requested record IDs.
+	 * @param query {@link ChunkQuery} that fetches records by ID.
+	 * @param concurrent whether chunks may be fetched on other threads.
+	 * @return matching records, in the order of {@code ids}.
+	 */
+	public <T extends Model<ID>, ID extends Serializable> List<T> findByIds(Iterable<ID> ids,
+			ChunkQuery<ID, T> query, boolean concurrent){
+		Assert.notNull(ids);
+		Set<ID> idSet = new LinkedHashSet<>();
+		for (ID id: ids){
+			if (id != null) idSet.add(id);
+		}
+		List<ID> idList = new ArrayList<>(idSet);
+		Map<ID, T> found = new HashMap<>();
+		for (T entity: execute(idList, query, concurrent)){
+			found.put(entity.getId(), entity);
+		}
+		List<T> ordered = new ArrayList<>();
+		for (ID id: idList){
+			T entity = found.get(id);
+			if (entity != null) ordered.add(entity);
+		}
+		return ordered;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Sets the maximum number of values included in a single query.
+	 */
+	public void setChunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "Chunk size must be greater than zero.");
+		this.chunkSize = chunkSize;
+	}
+
+	public int getMaxPagedOffset() {
+		return maxPagedOffset;
+	}
+
+	/**
+	 * Sets the largest page offset allowed for paged queries split into chunks.  Fetching a page 
+	 *   at a greater offset throws an {@link IllegalArgumentException}.
+	 */
+	public void setMaxPagedOffset(int maxPagedOffset) {
+		Assert.isTrue(maxPagedOffset >= 0, "Maximum paged offset must not be negative.");
+		this.maxPagedOffset = maxPagedOffset;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the {@link Executor} used to fetch chunks concurrently.  Defaults to the bounded pool 
+	 *   shared with {@link PagedQueryExecutor}.
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor);
+		this.executor = executor;
+	}
+
+}
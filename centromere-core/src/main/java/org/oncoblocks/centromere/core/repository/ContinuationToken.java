@@ -0,0 +1,349 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Opaque position marker used for keyset (seek) pagination.  A token captures the values of each
+ *   sort key, followed by the record's primary ID, for the last record of a page.  The next page is
+ *   then fetched with a range condition on those keys, rather than by skipping over all preceding
+ *   records, so its cost does not depend on how deep into the result set the client is.
+ *
+ * Tokens are serialized as URL-safe Base64 strings with simple type tags, rather than with Java
+ *   serialization, so that decoding a client-supplied token can never instantiate arbitrary classes.
+ *   Supported values are strings, numbers, booleans, dates, {@code java.time} instants and local 
+ *   dates, UUIDs, enums, and MongoDB {@code ObjectId}s; other types, and strings longer than 64KB 
+ *   when encoded, are rejected.  Each token also records the sort it was created with, and is 
+ *   rejected if it is used with a different one.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ContinuationToken {
+
+	private static final byte VERSION = 1;
+	private static final String OBJECT_ID_CLASS = "org.bson.types.ObjectId";
+
+	private final String sortSignature;
+	private final List<Object> values;
+
+	/**
+	 * @param keysetSort the complete keyset sort, including the identifier fields.  See
+	 *   {@link #getKeysetSort(Sort, List)}.
+	 * @param values sort key values of the last record on the page, in the same order as the sort.
+	 */
+	public ContinuationToken(Sort keysetSort, List<Object> values) {
+		Assert.notNull(keysetSort);
+		Assert.notNull(values);
+		this.sortSignature = getSortSignature(keysetSort);
+		this.values = Collections.unmodifiableList(new ArrayList<>(values));
+		Assert.isTrue(this.values.size() == getOrders(keysetSort).size(),
+				"Number of continuation token values does not match the number of sort keys.");
+	}
+
+	private ContinuationToken(String sortSignature, List<Object> values) {
+		this.sortSignature = sortSignature;
+		this.values = Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * Creates a token from the last record of a page, by reading the value of each sorted field from
+	 *   the entity object.
+	 *
+	 * @param entity the last record on the page.
+	 * @param keysetSort the complete keyset sort.
+	 * @return {@link ContinuationToken}
+	 */
+	public static ContinuationToken fromEntity(Object entity, Sort keysetSort){
+		Assert.notNull(entity);
+		DirectFieldAccessor accessor = new DirectFieldAccessor(entity);
+		List<Object> values = new ArrayList<>();
+		for (Sort.Order order: keysetSort){
+			values.add(accessor.getPropertyValue(order.getProperty()));
+		}
+		return new ContinuationToken(keysetSort, values);
+	}
+
+	/**
+	 * Appends the record identifier fields to the requested sort, so that every record has a unique
+	 *   position in the ordering.  Identifier fields that are already part of the sort are not added
+	 *   again.
+	 *
+	 * @param sort requested {@link Sort}, may be null.
+	 * @param idFields names of the fields that make up the record identifier.
+	 * @return the complete keyset {@link Sort}.
+	 */
+	public static Sort getKeysetSort(Sort sort, List<String> idFields){
+		List<Sort.Order> orders = getOrders(sort);
+		Set<String> sorted = new HashSet<>();
+		for (Sort.Order order: orders){
+			sorted.add(order.getProperty());
+		}
+		for (String idField: idFields){
+			if (!sorted.contains(idField)) orders.add(new Sort.Order(Sort.Direction.ASC, idField));
+		}
+		return new Sort(orders);
+	}
+
+	/**
+	 * Decodes a token string, verifying that it was created for the supplied keyset sort.
+	 *
+	 * @param token encoded token string
+	 * @param keysetSort the complete keyset sort of the current request.
+	 * @return {@link ContinuationToken}
+	 * @throws IllegalArgumentException if the token is malformed, or was created with a different sort.
+	 */
+	public static ContinuationToken decode(String token, Sort keysetSort){
+		Assert.notNull(token);
+		byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder().decode(token);
+		} catch (IllegalArgumentException e){
+			throw new IllegalArgumentException("Malformed continuation token.", e);
+		}
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if (in.readByte() != VERSION) {
+				throw new IllegalArgumentException("Unsupported continuation token version.");
+			}
+			String signature = in.readUTF();
+			if (!signature.equals(getSortSignature(keysetSort))){
+				throw new IllegalArgumentException("Continuation token does not match the requested sort.");
+			}
+			int size = in.readShort();
+			List<Object> values = new ArrayList<>();
+			for (int i = 0; i < size; i++){
+				values.add(readValue(in));
+			}
+			if (values.size() != getOrders(keysetSort).size() || in.available() > 0){
+				throw new IllegalArgumentException("Malformed continuation token.");
+			}
+			return new ContinuationToken(signature, values);
+		} catch (IOException e){
+			throw new IllegalArgumentException("Malformed continuation token.", e);
+		}
+	}
+
+	/**
+	 * Serializes the token as a URL-safe string.
+	 *
+	 * @return encoded token
+	 * @throws IllegalArgumentException if a value has an unsupported type, or is too long to encode.
+	 */
+	public String encode(){
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			writeString(out, sortSignature);
+			out.writeShort(values.size());
+			for (Object value: values){
+				writeValue(out, value);
+			}
+			out.flush();
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public List<Object> getValues() {
+		return values;
+	}
+
+	private static List<Sort.Order> getOrders(Sort sort){
+		List<Sort.Order> orders = new ArrayList<>();
+		if (sort != null){
+			for (Sort.Order order: sort){
+				orders.add(order);
+			}
+		}
+		return orders;
+	}
+
+	private static String getSortSignature(Sort sort){
+		StringBuilder builder = new StringBuilder();
+		for (Sort.Order order: getOrders(sort)){
+			builder.append(order.getProperty()).append(":").append(order.getDirection()).append(";");
+		}
+		return builder.toString();
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte('N');
+		} else if (value instanceof Long) {
+			out.writeByte('L');
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			out.writeByte('I');
+			out.writeInt(((Number) value).intValue());
+		} else if (value instanceof Double) {
+			out.writeByte('D');
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte('F');
+			out.writeFloat((Float) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte('M');
+			writeString(out, value.toString());
+		} else if (value instanceof Boolean) {
+			out.writeByte('B');
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			out.writeByte('T');
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof Instant) {
+			out.writeByte('P');
+			out.writeLong(((Instant) value).getEpochSecond());
+			out.writeInt(((Instant) value).getNano());
+		} else if (value instanceof LocalDate) {
+			out.writeByte('A');
+			out.writeLong(((LocalDate) value).toEpochDay());
+		} else if (value instanceof LocalDateTime) {
+			out.writeByte('Z');
+			writeString(out, value.toString());
+		} else if (value instanceof UUID) {
+			out.writeByte('U');
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		} else if (value instanceof Enum) {
+			out.writeByte('E');
+			writeString(out, ((Enum<?>) value).getDeclaringClass().getName());
+			writeString(out, ((Enum<?>) value).name());
+		} else if (OBJECT_ID_CLASS.equals(value.getClass().getName())) {
+			out.writeByte('O');
+			writeString(out, value.toString());
+		} else if (value instanceof String) {
+			out.writeByte('S');
+			writeString(out, (String) value);
+		} else {
+			throw new IllegalArgumentException("Unsupported continuation token value type: " 
+					+ value.getClass().getName());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		try {
+			out.writeUTF(value);
+		} catch (UTFDataFormatException e){
+			throw new IllegalArgumentException("Continuation token value is too long to encode.", e);
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type){
+			case 'N':
+				return null;
+			case 'L':
+				return in.readLong();
+			case 'I':
+				return in.readInt();
+			case 'D':
+				return in.readDouble();
+			case 'F':
+				return in.readFloat();
+			case 'M':
+				try {
+					return new BigDecimal(in.readUTF());
+				} catch (NumberFormatException e){
+					throw new IllegalArgumentException("Malformed continuation token.", e);
+				}
+			case 'B':
+				return in.readBoolean();
+			case 'T':
+				return new Date(in.readLong());
+			case 'P':
+				try {
+					return Instant.ofEpochSecond(in.readLong(), in.readInt());
+				} catch (DateTimeException e){
+					throw new IllegalArgumentException("Malformed continuation token.", e);
+				}
+			case 'A':
+				try {
+					return LocalDate.ofEpochDay(in.readLong());
+				} catch (DateTimeException e){
+					throw new IllegalArgumentException("Malformed continuation token.", e);
+				}
+			case 'Z':
+				try {
+					return LocalDateTime.parse(in.readUTF());
+				} catch (DateTimeException e){
+					throw new IllegalArgumentException("Malformed continuation token.", e);
+				}
+			case 'U':
+				return new UUID(in.readLong(), in.readLong());
+			case 'E':
+				return readEnum(in.readUTF(), in.readUTF());
+			case 'O':
+				return readObjectId(in.readUTF());
+			case 'S':
+				return in.readUTF();
+			default:
+				throw new IllegalArgumentException("Malformed continuation token.");
+		}
+	}
+
+	/**
+	 * Resolves an enum constant, without initializing the named class unless it is an enum.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readEnum(String className, String name){
+		try {
+			Class<?> type = Class.forName(className, false, ContinuationToken.class.getClassLoader());
+			if (!type.isEnum()) throw new IllegalArgumentException("Malformed continuation token.");
+			return Enum.valueOf((Class<? extends Enum>) type, name);
+		} catch (ClassNotFoundException | LinkageError e){
+			throw new IllegalArgumentException("Malformed continuation token.", e);
+		}
+	}
+
+	/**
+	 * Creates an {@code ObjectId} from its hex string, when the MongoDB driver is on the classpath.
+	 */
+	private static Object readObjectId(String hex){
+		ClassLoader classLoader = ContinuationToken.class.getClassLoader();
+		if (!ClassUtils.isPresent(OBJECT_ID_CLASS, classLoader)){
+			throw new IllegalArgumentException("Malformed continuation token.");
+		}
+		try {
+			return ClassUtils.forName(OBJECT_ID_CLASS, classLoader).getConstructor(String.class).newInstance(hex);
+		} catch (ReflectiveOperationException e){
+			throw new IllegalArgumentException("Malformed continuation token.", e);
+		}
+	}
+
+	@Override public String toString() {
+		return "ContinuationToken{" +
+				"sortSignature='" + sortSignature + '\'' +
+				", values=" + values +
+				'}';
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+/**
+ * Determines how the total number of matching records is calculated for a paged query.  Counting
+ *   every matching record can be more expensive than fetching the page itself, so repositories and
+ *   individual requests may choose a cheaper strategy when an exact total is not required.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public enum CountStrategy {
+
+	/**
+	 * An exact count, executed concurrently with the page query where the repository supports it.
+	 */
+	EXACT,
+
+	/**
+	 * An exact count, cached for a limited time and keyed by the normalized query criteria.  Totals
+	 *   may be stale by up to the cache's time-to-live.
+	 */
+	CACHED,
+
+	/**
+	 * An approximate count, taken from the database's query planner or collection statistics.  
+	 *   Repositories that cannot produce an estimate for a query fall back to an exact count.
+	 */
+	ESTIMATED,
+
+	/**
+	 * No count at all.  The query returns a {@link org.springframework.data.domain.Slice}, which only 
+	 *   reports whether another page follows the current one.
+	 */
+	NONE
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * {@link Page} implementation that records the {@link CountStrategy} used to calculate its total
+ *   number of elements.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+	private final CountStrategy countStrategy;
+
+	/**
+	 * @param content records in this page.
+	 * @param pageable the requested {@link Pageable}.
+	 * @param total total number of matching records, as calculated by the {@code countStrategy}.
+	 * @param countStrategy {@link CountStrategy} used to calculate the total.
+	 */
+	public CountedPage(List<T> content, Pageable pageable, long total, CountStrategy countStrategy) {
+		super(content, pageable, total);
+		this.countStrategy = countStrategy;
+	}
+
+	public CountStrategy getCountStrategy() {
+		return countStrategy;
+	}
+
+	/**
+	 * Determines the {@link CountStrategy} that was used to produce the supplied slice of records.
+	 *   Pages of other types are assumed to be exactly counted, and slices that are not pages are not
+	 *   counted at all.
+	 *
+	 * @param slice {@link Slice}
+	 * @return {@link CountStrategy}
+	 */
+	public static CountStrategy getCountStrategy(Slice<?> slice){
+		if (slice instanceof CountedPage) return ((CountedPage<?>) slice).getCountStrategy();
+		return slice instanceof Page ? CountStrategy.EXACT : CountStrategy.NONE;
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * {@link org.springframework.data.domain.Slice} of records returned by a keyset-paginated query,
+ *   carrying the encoded {@link ContinuationToken} needed to request the next slice.  The token is
+ *   null when there are no more records.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+	private final String continuationToken;
+
+	/**
+	 * @param content records in this slice.
+	 * @param size requested slice size.
+	 * @param sort the keyset {@link Sort} used to order the records.
+	 * @param hasNext whether more records follow this slice.
+	 * @param continuationToken encoded token for the next slice, or null.
+	 */
+	public KeysetSlice(List<T> content, int size, Sort sort, boolean hasNext, String continuationToken) {
+		super(content, new PageRequest(0, size, sort), hasNext);
+		this.continuationToken = continuationToken;
+	}
+
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+
+}
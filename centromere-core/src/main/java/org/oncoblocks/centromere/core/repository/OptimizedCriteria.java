@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Result of a {@link QueryCriteriaOptimizer} pass: the rewritten {@link QueryCriteria}, which can be 
+ *   passed to a repository in place of the original criteria, and whether the criteria were found 
+ *   to be contradictory.  Repositories should return an empty result for unsatisfiable criteria, 
+ *   without querying the database.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class OptimizedCriteria implements Iterable<QueryCriteria> {
+	
+	private final List<QueryCriteria> queryCriterias;
+	private final boolean unsatisfiable;
+
+	public OptimizedCriteria(List<QueryCriteria> queryCriterias, boolean unsatisfiable) {
+		this.queryCriterias = Collections.unmodifiableList(queryCriterias);
+		this.unsatisfiable = unsatisfiable;
+	}
+
+	public List<QueryCriteria> getQueryCriterias() {
+		return queryCriterias;
+	}
+
+	/**
+	 * Returns true if no record can satisfy all of the original criteria.
+	 */
+	public boolean isUnsatisfiable() {
+		return unsatisfiable;
+	}
+
+	public boolean isEmpty(){
+		return queryCriterias.isEmpty();
+	}
+
+	@Override 
+	public Iterator<QueryCriteria> iterator() {
+		return queryCriterias.iterator();
+	}
+
+	@Override 
+	public String toString() {
+		return "OptimizedCriteria{" +
+				"queryCriterias=" + queryCriterias +
+				", unsatisfiable=" + unsatisfiable +
+				'}';
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes paged queries using a configurable {@link CountStrategy}.  Repository implementations 
+ *   supply the database-specific page, count, and estimate queries as a {@link PagedQuery}, and 
+ *   this class takes care of scheduling them:
+ * 
+ * <ul>
+ *   <li>{@link CountStrategy#EXACT}: the count is submitted to an {@link Executor} before the page 
+ *   is fetched, so that both queries run concurrently.  When the fetched page is the last one, the 
+ *   total is derived from its size instead.</li>
+ *   <li>{@link CountStrategy#CACHED}: exact counts are cached for a configurable time-to-live, keyed 
+ *   by the {@link CanonicalCriteria} form of the query criteria.</li>
+ *   <li>{@link CountStrategy#ESTIMATED}: the count is taken from {@link PagedQuery#estimateCount()}, 
+ *   falling back to an exact count when no estimate is available.</li>
+ *   <li>{@link CountStrategy#NONE}: one extra record is fetched to determine whether another page 
+ *   follows, and a {@link Slice} is returned.</li>
+ * </ul>
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class PagedQueryExecutor {
+	
+	private CountStrategy defaultCountStrategy = CountStrategy.EXACT;
+	private Executor executor = DEFAULT_EXECUTOR;
+	private long countCacheTtl = DEFAULT_COUNT_CACHE_TTL;
+	private Cache<CanonicalCriteria, Long> countCache = createCache(DEFAULT_COUNT_CACHE_TTL);
+	
+	/** Default time-to-live of cached counts, in seconds. */
+	public static final long DEFAULT_COUNT_CACHE_TTL = 60L;
+	private static final long MAX_CACHED_COUNTS = 10000L;
+	/** Default maximum number of threads of the shared query executor. */
+	public static final int DEFAULT_EXECUTOR_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	/** Default maximum number of tasks queued by the shared query executor. */
+	public static final int DEFAULT_EXECUTOR_QUEUE_CAPACITY = 1000;
+	static final Executor DEFAULT_EXECUTOR = createExecutor(DEFAULT_EXECUTOR_THREADS, 
+			DEFAULT_EXECUTOR_QUEUE_CAPACITY);
+
+	/**
+	 * Database-specific operations required to execute a paged query.
+	 */
+	public interface PagedQuery<T> {
+
+		/**
+		 * Fetches up to {@code limit} records, starting at {@code offset}.
+		 */
+		List<T> fetch(int offset, int limit);
+
+		/**
+		 * Returns the exact number of matching records.
+		 */
+		long count();
+
+		/**
+		 * Returns an approximate number of matching records, or null if no estimate is available.
+		 */
+		default Long estimateCount(){
+			return null;
+		}
+
+		/**
+		 * Whether {@link #count()} may be executed on a different thread than {@link #fetch(int, int)}.
+		 *   Queries bound to a thread-local resource, such as a transactional connection, should 
+		 *   return false.
+		 */
+		default boolean isConcurrentCountSupported(){
+			return true;
+		}
+
+		/**
+		 * Returns a query that matches no records, for criteria that are known to be unsatisfiable.
+		 */
+		static <T> PagedQuery<T> empty(){
+			return new PagedQuery<T>() {
+				@Override 
+				public List<T> fetch(int offset, int limit) {
+					return new ArrayList<>();
+				}
+				@Override 
+				public long count() {
+					return 0L;
+				}
+				@Override 
+				public boolean isConcurrentCountSupported() {
+					return false;
+				}
+			};
+		}
+
+	}
+
+	/**
+	 * Executes the paged query with the requested {@link CountStrategy}.
+	 *
+	 * @param query {@link PagedQuery}
+	 * @param queryCriterias criteria of the query, used as the key for cached counts.
+	 * @param pageable {@link Pageable}
+	 * @param countStrategy {@link CountStrategy}, or null to use the default strategy.
+	 * @return a {@link CountedPage}, or a {@link Slice} if {@link CountStrategy#NONE} is used.
+	 */
+	public <T> Slice<T> execute(PagedQuery<T> query, Iterable<QueryCriteria> queryCriterias, 
+			Pageable pageable, CountStrategy countStrategy){
+		Assert.notNull(query);
+		Assert.notNull(pageable);
+		if (countStrategy == null) countStrategy = defaultCountStrategy;
+		switch (countStrategy){
+			case NONE:
+				List<T> content = query.fetch(pageable.getOffset(), pageable.getPageSize() + 1);
+				boolean hasNext = content.size() > pageable.getPageSize();
+				if (hasNext) content = new ArrayList<>(content.subList(0, pageable.getPageSize()));
+				return new SliceImpl<>(content, pageable, hasNext);
+			case CACHED:
+				CanonicalCriteria key = getCacheKey(queryCriterias);
+				Long cached = countCache.getIfPresent(key);
+				if (cached != null){
+					return new CountedPage<>(query.fetch(pageable.getOffset(), pageable.getPageSize()), 
+							pageable, cached, CountStrategy.CACHED);
+				}
+				CountedPage<T> page = executeExact(query, pageable, CountStrategy.CACHED);
+				countCache.put(key, page.getTotalElements());
+				return page;
+			case ESTIMATED:
+				Long estimate = query.estimateCount();
+				if (estimate == null) return executeExact(query, pageable, CountStrategy.EXACT);
+				content = query.fetch(pageable.getOffset(), pageable.getPageSize());
+				long total = content.size() < pageable.getPageSize() && (!content.isEmpty() || pageable.getOffset() == 0)
+						? pageable.getOffset() + content.size() 
+						: Math.max(estimate, pageable.getOffset() + content.size());
+				return new CountedPage<>(content, pageable, total, CountStrategy.ESTIMATED);
+			default:
+				return executeExact(query, pageable, CountStrategy.EXACT);
+		}
+	}
+
+	/**
+	 * Fetches the page and counts all matching records, concurrently if supported.  If the page 
+	 *   turns out to be the last one, the total is derived from the page itself.
+	 */
+	private <T> CountedPage<T> executeExact(PagedQuery<T> query, Pageable pageable, CountStrategy countStrategy){
+		CompletableFuture<Long> future = null;
+		if (query.isConcurrentCountSupported()){
+			future = CompletableFuture.supplyAsync(query::count, executor);
+		}
+		List<T> content;
+		try {
+			content = query.fetch(pageable.getOffset(), pageable.getPageSize());
+		} catch (RuntimeException e){
+			if (future != null) future.cancel(false);
+			throw e;
+		}
+		long total;
+		if (content.size() < pageable.getPageSize() && (!content.isEmpty() || pageable.getOffset() == 0)){
+			if (future != null) future.cancel(false);
+			total = pageable.getOffset() + content.size();
+		} else if (future != null){
+			try {
+				total = future.join();
+			} catch (CompletionException e){
+				if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+				throw e;
+			}
+		} else {
+			total = query.count();
+		}
+		return new CountedPage<>(content, pageable, total, countStrategy);
+	}
+
+	/**
+	 * Creates a bounded {@link Executor} for running count and chunk queries concurrently, with at 
+	 *   most {@code threads} daemon threads and {@code queueCapacity} waiting tasks.  Idle threads 
+	 *   are released after one minute.  Once the pool and queue are full, further tasks are run on 
+	 *   the submitting thread, so that load is pushed back onto request threads rather than creating
+	 *   more database connections.  The shared default executor is created this way, with 
+	 *   {@link #DEFAULT_EXECUTOR_THREADS} threads, and is used by every repository that has not been 
+	 *   given its own.
+	 *
+	 * @param threads maximum number of threads.
+	 * @param queueCapacity maximum number of queued tasks.
+	 * @return {@link ThreadPoolExecutor}
+	 */
+	public static ThreadPoolExecutor createExecutor(int threads, int queueCapacity){
+		Assert.isTrue(threads > 0, "Thread count must be greater than zero.");
+		Assert.isTrue(queueCapacity > 0, "Queue capacity must be greater than zero.");
+		final AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(queueCapacity), 
+				runnable -> {
+					Thread thread = new Thread(runnable, "centromere-query-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, 
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates an order-independent key from the query criteria, so that equivalent queries share 
+	 *   cached counts.
+	 */
+	protected CanonicalCriteria getCacheKey(Iterable<QueryCriteria> queryCriterias){
+		return CanonicalCriteria.of(queryCriterias);
+	}
+
+	/**
+	 * Removes all cached counts, for example after the underlying records have been modified.
+	 */
+	public void invalidateCountCache(){
+		countCache.invalidateAll();
+	}
+
+	private static Cache<CanonicalCriteria, Long> createCache(long ttl){
+		return CacheBuilder.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.SECONDS)
+				.maximumSize(MAX_CACHED_COUNTS)
+				.build();
+	}
+
+	public CountStrategy getDefaultCountStrategy() {
+		return defaultCountStrategy;
+	}
+
+	public void setDefaultCountStrategy(CountStrategy defaultCountStrategy) {
+		Assert.notNull(defaultCountStrategy);
+		this.defaultCountStrategy = defaultCountStrategy;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the {@link Executor} used to run exact counts concurrently with page queries.  Defaults 
+	 *   to a bounded pool shared by all repositories; see {@link #createExecutor(int, int)}.
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor);
+		this.executor = executor;
+	}
+
+	public long getCountCacheTtl() {
+		return countCacheTtl;
+	}
+
+	/**
+	 * Sets the time-to-live of cached counts, in seconds.  Clears any counts already cached.
+	 */
+	public void setCountCacheTtl(long countCacheTtl) {
+		Assert.isTrue(countCacheTtl > 0, "Count cache TTL must be greater than zero.");
+		this.countCacheTtl = countCacheTtl;
+		this.countCache = createCache(countCacheTtl);
+	}
+	
+}
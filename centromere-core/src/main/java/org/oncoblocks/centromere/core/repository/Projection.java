@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.util.Assert;
+
+import java.util.*;
+
+/**
+ * Describes the subset of model fields a query should return, so that repositories can avoid 
+ *   fetching columns or document keys that the client did not ask for.  A projection either 
+ *   includes a set of fields, or excludes a set of fields; if both are given, the included set 
+ *   takes precedence.  Nested fields are addressed with dot-notation.  Repositories always fetch 
+ *   the record identifier, and may fetch more than the requested fields, so projections should be 
+ *   treated as an optimization hint, rather than as a replacement for response filtering.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class Projection {
+	
+	private final Set<String> include;
+	private final Set<String> exclude;
+
+	/**
+	 * @param include fields to include, may be empty or null.
+	 * @param exclude fields to exclude, may be empty or null.
+	 */
+	public Projection(Collection<String> include, Collection<String> exclude) {
+		this.include = include != null 
+				? Collections.unmodifiableSet(new LinkedHashSet<>(include)) : Collections.<String>emptySet();
+		this.exclude = exclude != null 
+				? Collections.unmodifiableSet(new LinkedHashSet<>(exclude)) : Collections.<String>emptySet();
+	}
+
+	/**
+	 * Creates a projection that selects only the supplied fields.
+	 */
+	public static Projection include(String... fields){
+		Assert.notNull(fields);
+		return new Projection(Arrays.asList(fields), null);
+	}
+
+	/**
+	 * Creates a projection that selects all fields except the supplied ones.
+	 */
+	public static Projection exclude(String... fields){
+		Assert.notNull(fields);
+		return new Projection(null, Arrays.asList(fields));
+	}
+
+	/**
+	 * Returns true if the projection does not restrict the returned fields at all.
+	 */
+	public boolean isEmpty(){
+		return include.isEmpty() && exclude.isEmpty();
+	}
+
+	/**
+	 * Returns true if the projection is defined by a set of included fields.
+	 */
+	public boolean isInclusive(){
+		return !include.isEmpty();
+	}
+
+	/**
+	 * Tests whether the top-level field is needed to satisfy the projection.  A field is needed if 
+	 *   it, or any of its nested fields, is included, or if it is not itself excluded.  Exclusions of
+	 *   nested fields do not exclude the parent field.
+	 *
+	 * @param field top-level model field name.
+	 * @return true if the field should be fetched.
+	 */
+	public boolean isSelected(String field){
+		if (!include.isEmpty()){
+			for (String included: include){
+				if (included.equals(field) || included.startsWith(field + ".")) return true;
+			}
+			return false;
+		}
+		return !exclude.contains(field);
+	}
+
+	public Set<String> getInclude() {
+		return include;
+	}
+
+	public Set<String> getExclude() {
+		return exclude;
+	}
+
+	@Override 
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Projection)) return false;
+		Projection that = (Projection) o;
+		return include.equals(that.include) && exclude.equals(that.exclude);
+	}
+
+	@Override 
+	public int hashCode() {
+		return 31 * include.hashCode() + exclude.hashCode();
+	}
+
+	@Override 
+	public String toString() {
+		return "Projection{" +
+				"include=" + include +
+				", exclude=" + exclude +
+				'}';
+	}
+}
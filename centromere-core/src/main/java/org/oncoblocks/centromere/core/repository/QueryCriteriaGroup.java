@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Logical grouping of {@link QueryCriteria}, allowing criteria to be combined with {@code OR} and 
+ *   {@code NOT}, as well as the implicit {@code AND} of a top-level criteria list.  Groups may be 
+ *   nested, and may be passed to any {@link RepositoryOperations} method in place of, or alongside, 
+ *   regular criteria, so that a compound query can be executed in a single database request:
+ * 
+ * <pre>
+ *   criterias.add(QueryCriteriaGroup.or(
+ *       new QueryCriteria("primaryGeneSymbol", "AKT1"), 
+ *       new QueryCriteria("aliases", "AKT1")));
+ * </pre>
+ * 
+ * A {@code NOT} group negates the conjunction of its members.  Groups have no key or evaluation of
+ *   their own, and their value is the list of member criteria.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+@SuppressWarnings("unchecked")
+public class QueryCriteriaGroup extends QueryCriteria {
+	
+	public enum Operator { AND, OR, NOT }
+	
+	private final Operator operator;
+	private final List<QueryCriteria> queryCriterias;
+
+	public QueryCriteriaGroup(Operator operator, List<QueryCriteria> queryCriterias) {
+		super(null, copy(queryCriterias), null);
+		Assert.notNull(operator, "Group operator must not be null.");
+		this.operator = operator;
+		this.queryCriterias = (List<QueryCriteria>) getValue();
+	}
+
+	public static QueryCriteriaGroup and(QueryCriteria... queryCriterias){
+		return new QueryCriteriaGroup(Operator.AND, Arrays.asList(queryCriterias));
+	}
+
+	public static QueryCriteriaGroup or(QueryCriteria... queryCriterias){
+		return new QueryCriteriaGroup(Operator.OR, Arrays.asList(queryCriterias));
+	}
+
+	public static QueryCriteriaGroup not(QueryCriteria... queryCriterias){
+		return new QueryCriteriaGroup(Operator.NOT, Arrays.asList(queryCriterias));
+	}
+
+	private static List<QueryCriteria> copy(List<QueryCriteria> queryCriterias){
+		Assert.notEmpty(queryCriterias, "Criteria group must have at least one member.");
+		Assert.noNullElements(queryCriterias.toArray(), "Criteria group must not have null members.");
+		return Collections.unmodifiableList(new ArrayList<>(queryCriterias));
+	}
+
+	public Operator getOperator() {
+		return operator;
+	}
+
+	public List<QueryCriteria> getQueryCriterias() {
+		return queryCriterias;
+	}
+
+	@Override 
+	public String toString() {
+		return "QueryCriteriaGroup{" +
+				"operator=" + operator +
+				", queryCriterias=" + queryCriterias +
+				'}';
+	}
+}
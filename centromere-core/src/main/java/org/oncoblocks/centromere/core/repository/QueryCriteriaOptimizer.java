@@ -0,0 +1,489 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.repository;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Backend-independent optimization pass for {@link QueryCriteria} lists, applied by repositories 
+ *   before the criteria are translated into a database query.  The following rewrites are made:
+ * 
+ * <ul>
+ *   <li>{@code IN} and {@code NOT_IN} criteria with a single value become {@code EQUALS} and 
+ *   {@code NOT_EQUALS}; an empty {@code IN} list can never match, and an empty {@code NOT_IN} list 
+ *   is dropped.</li>
+ *   <li>Exact duplicate criteria are dropped, as are {@code NOT_NULL} criteria on fields that 
+ *   another criterion already requires to have a value.</li>
+ *   <li>On single-valued fields, equality, set membership, and range criteria are merged: 
+ *   overlapping ranges collapse into the tightest {@code BETWEEN} or {@code BETWEEN_INCLUSIVE} 
+ *   range, equality and {@code IN} values are intersected and filtered by the range and by any 
+ *   excluded values, and contradictions, such as {@code x = 1} and {@code x = 2}, mark the 
+ *   criteria as unsatisfiable.</li>
+ *   <li>The members of {@link QueryCriteriaGroup} {@code AND} groups are merged with the 
+ *   surrounding criteria; {@code OR} and {@code NOT} groups are optimized separately, and members 
+ *   or groups that can never match, or that always match, are removed.</li>
+ * </ul>
+ * 
+ * Merging is only attempted when all of the values involved are numbers, or are all dates, since 
+ *   the database ordering of other types, such as collation-dependent strings, cannot be predicted.
+ *   Fields that may hold several values per record, such as array fields in MongoDB, or joined 
+ *   collections in JPA, are exempt from merging, because criteria on them may be satisfied by 
+ *   different values.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class QueryCriteriaOptimizer {
+	
+	private final Predicate<String> singleValuedFields;
+	
+	private static final Set<Evaluation> MERGEABLE = EnumSet.of(Evaluation.EQUALS, Evaluation.IN, 
+			Evaluation.NOT_EQUALS, Evaluation.NOT_IN, Evaluation.GREATER_THAN, Evaluation.GREATER_THAN_EQUALS,
+			Evaluation.LESS_THAN, Evaluation.LESS_THAN_EQUALS, Evaluation.BETWEEN, 
+			Evaluation.BETWEEN_INCLUSIVE, Evaluation.IS_NULL);
+	private static final Set<Evaluation> NON_NULL = EnumSet.of(Evaluation.EQUALS, Evaluation.IN,
+			Evaluation.GREATER_THAN, Evaluation.GREATER_THAN_EQUALS, Evaluation.LESS_THAN, 
+			Evaluation.LESS_THAN_EQUALS, Evaluation.BETWEEN, Evaluation.BETWEEN_INCLUSIVE, 
+			Evaluation.OUTSIDE, Evaluation.OUTSIDE_INCLUSIVE, Evaluation.LIKE, Evaluation.STARTS_WITH, 
+			Evaluation.ENDS_WITH, Evaluation.IS_TRUE, Evaluation.IS_FALSE);
+
+	/**
+	 * Creates an optimizer that treats every field as single-valued, as is the case for the columns 
+	 *   of a SQL query.
+	 */
+	public QueryCriteriaOptimizer() {
+		this(field -> true);
+	}
+
+	/**
+	 * @param singleValuedFields tests whether a criteria key refers to a field that holds at most one 
+	 *   value per record.
+	 */
+	public QueryCriteriaOptimizer(Predicate<String> singleValuedFields) {
+		Assert.notNull(singleValuedFields);
+		this.singleValuedFields = singleValuedFields;
+	}
+
+	/**
+	 * Creates an optimizer for queries against documents or entities of the given model class.  A 
+	 *   key is considered single-valued if each of its dot-separated parts resolves to a declared 
+	 *   field that is not an array, collection, map, or untyped object.  Keys that cannot be resolved
+	 *   are treated as multi-valued.
+	 *
+	 * @param model model class
+	 * @return {@link QueryCriteriaOptimizer}
+	 */
+	public static QueryCriteriaOptimizer forModel(Class<?> model){
+		Assert.notNull(model);
+		Map<String, Boolean> fields = new ConcurrentHashMap<>();
+		return new QueryCriteriaOptimizer(key -> fields.computeIfAbsent(key, k -> isSingleValued(model, k)));
+	}
+
+	private static boolean isSingleValued(Class<?> model, String key){
+		Class<?> type = model;
+		for (String name: key.split("\\.")){
+			Field field = ReflectionUtils.findField(type, name);
+			if (field == null) return false;
+			type = field.getType();
+			if (type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) 
+					|| Object.class.equals(type)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the key refers to a field that holds at most one value per record, so that 
+	 *   each record can match at most one of the values of an {@code IN} criteria.
+	 *
+	 * @param key criteria key
+	 * @return true if the field is single-valued.
+	 */
+	public boolean isSingleValued(String key){
+		return key != null && singleValuedFields.test(key);
+	}
+
+	/**
+	 * Rewrites the criteria.  The input is not modified.  If the criteria are found to be 
+	 *   unsatisfiable, the returned instance still holds criteria equivalent to the input, so that 
+	 *   callers that do not check {@link OptimizedCriteria#isUnsatisfiable()} remain correct.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}, may be null.
+	 * @return {@link OptimizedCriteria}
+	 */
+	public OptimizedCriteria optimize(Iterable<QueryCriteria> queryCriterias){
+		if (queryCriterias instanceof OptimizedCriteria) return (OptimizedCriteria) queryCriterias;
+		Map<String, List<QueryCriteria>> fields = new LinkedHashMap<>();
+		List<QueryCriteriaGroup> groups = new ArrayList<>();
+		List<QueryCriteria> original = new ArrayList<>();
+		if (queryCriterias != null){
+			for (QueryCriteria queryCriteria: queryCriterias){
+				if (queryCriteria == null) continue;
+				original.add(queryCriteria);
+				addCriteria(queryCriteria, fields, groups);
+			}
+		}
+		List<QueryCriteria> optimized = new ArrayList<>();
+		for (Map.Entry<String, List<QueryCriteria>> entry: fields.entrySet()){
+			if (!optimizeField(entry.getKey(), entry.getValue(), optimized)){
+				return new OptimizedCriteria(original, true);
+			}
+		}
+		for (QueryCriteriaGroup group: groups){
+			if (!optimizeGroup(group, optimized)){
+				return new OptimizedCriteria(original, true);
+			}
+		}
+		return new OptimizedCriteria(optimized, false);
+	}
+
+	/**
+	 * Sorts criteria by field, and collects {@code OR} and {@code NOT} groups.  The members of 
+	 *   {@code AND} groups are added as top-level criteria, so that they may be merged with the rest.
+	 */
+	private static void addCriteria(QueryCriteria queryCriteria, Map<String, List<QueryCriteria>> fields, 
+			List<QueryCriteriaGroup> groups){
+		if (queryCriteria instanceof QueryCriteriaGroup){
+			QueryCriteriaGroup group = (QueryCriteriaGroup) queryCriteria;
+			if (group.getOperator() == QueryCriteriaGroup.Operator.AND){
+				for (QueryCriteria member: group.getQueryCriterias()){
+					addCriteria(member, fields, groups);
+				}
+			} else {
+				groups.add(group);
+			}
+			return;
+		}
+		List<QueryCriteria> criterias = fields.get(queryCriteria.getKey());
+		if (criterias == null){
+			criterias = new ArrayList<>();
+			fields.put(queryCriteria.getKey(), criterias);
+		}
+		criterias.add(queryCriteria);
+	}
+
+	/**
+	 * Optimizes the members of an {@code OR} or {@code NOT} group, adding the resulting group, if one
+	 *   is still needed, to {@code optimized}.  {@code OR} members that can never match are dropped, 
+	 *   and a group that always matches is removed entirely.  Returns false if the group can never 
+	 *   match.
+	 */
+	private boolean optimizeGroup(QueryCriteriaGroup group, List<QueryCriteria> optimized){
+		if (group.getOperator() == QueryCriteriaGroup.Operator.NOT){
+			OptimizedCriteria result = optimize(group.getQueryCriterias());
+			if (result.isUnsatisfiable()) return true;
+			if (result.isEmpty()) return false;
+			optimized.add(new QueryCriteriaGroup(QueryCriteriaGroup.Operator.NOT, result.getQueryCriterias()));
+			return true;
+		}
+		List<QueryCriteria> members = new ArrayList<>();
+		for (QueryCriteria member: group.getQueryCriterias()){
+			OptimizedCriteria result = optimize(Collections.singletonList(member));
+			if (result.isUnsatisfiable()) continue;
+			if (result.isEmpty()) return true;
+			members.add(result.getQueryCriterias().size() == 1 ? result.getQueryCriterias().get(0) 
+					: new QueryCriteriaGroup(QueryCriteriaGroup.Operator.AND, result.getQueryCriterias()));
+		}
+		if (members.isEmpty()) return false;
+		optimized.add(members.size() == 1 ? members.get(0) 
+				: new QueryCriteriaGroup(QueryCriteriaGroup.Operator.OR, members));
+		return true;
+	}
+
+	/**
+	 * Optimizes the criteria of a single field, adding the results to {@code optimized}.  Returns 
+	 *   false if the criteria cannot all be satisfied.
+	 */
+	private boolean optimizeField(String key, List<QueryCriteria> criterias, List<QueryCriteria> optimized){
+		List<QueryCriteria> rewritten = new ArrayList<>();
+		boolean nonNull = false;
+		for (QueryCriteria criteria: criterias){
+			Evaluation evaluation = criteria.getEvaluation();
+			Object value = criteria.getValue();
+			if (evaluation == Evaluation.IN || evaluation == Evaluation.NOT_IN){
+				List<Object> values = toList(value);
+				if (values != null){
+					if (values.isEmpty()){
+						if (evaluation == Evaluation.IN) return false;
+						continue;
+					} else if (values.size() == 1){
+						evaluation = evaluation == Evaluation.IN ? Evaluation.EQUALS : Evaluation.NOT_EQUALS;
+						value = values.get(0);
+					} else {
+						value = values;
+					}
+				}
+			}
+			QueryCriteria copy = new QueryCriteria(key, value, evaluation);
+			if (!contains(rewritten, copy)) rewritten.add(copy);
+			if (evaluation != null && NON_NULL.contains(evaluation) && !hasNullValue(copy)) nonNull = true;
+		}
+		if (nonNull){
+			Iterator<QueryCriteria> iterator = rewritten.iterator();
+			while (iterator.hasNext()){
+				if (iterator.next().getEvaluation() == Evaluation.NOT_NULL) iterator.remove();
+			}
+		}
+		if (key == null || !singleValuedFields.test(key) || !isMergeable(rewritten)){
+			optimized.addAll(rewritten);
+			return true;
+		}
+		return merge(key, rewritten, optimized);
+	}
+
+	/**
+	 * Merges the equality, membership, and range criteria of a single-valued field.
+	 */
+	private boolean merge(String key, List<QueryCriteria> criterias, List<QueryCriteria> optimized){
+		List<Object> allowed = null;
+		List<Object> excluded = new ArrayList<>();
+		Bound lower = null;
+		Bound upper = null;
+		boolean isNull = false;
+		List<QueryCriteria> others = new ArrayList<>();
+		for (QueryCriteria criteria: criterias){
+			Evaluation evaluation = criteria.getEvaluation();
+			Object value = criteria.getValue();
+			if (evaluation == null){
+				others.add(criteria);
+				continue;
+			}
+			switch (evaluation){
+				case EQUALS:
+					allowed = intersect(allowed, Collections.singletonList(value));
+					break;
+				case IN:
+					allowed = intersect(allowed, toList(value));
+					break;
+				case NOT_EQUALS:
+					excluded.add(value);
+					break;
+				case NOT_IN:
+					excluded.addAll(toList(value));
+					break;
+				case GREATER_THAN:
+				case GREATER_THAN_EQUALS:
+					lower = Bound.tighter(lower, new Bound(value, evaluation == Evaluation.GREATER_THAN_EQUALS), true);
+					break;
+				case LESS_THAN:
+				case LESS_THAN_EQUALS:
+					upper = Bound.tighter(upper, new Bound(value, evaluation == Evaluation.LESS_THAN_EQUALS), false);
+					break;
+				case BETWEEN:
+				case BETWEEN_INCLUSIVE:
+					boolean inclusive = evaluation == Evaluation.BETWEEN_INCLUSIVE;
+					List<Object> bounds = toList(value);
+					lower = Bound.tighter(lower, new Bound(bounds.get(0), inclusive), true);
+					upper = Bound.tighter(upper, new Bound(bounds.get(1), inclusive), false);
+					break;
+				case IS_NULL:
+					isNull = true;
+					break;
+				default:
+					others.add(criteria);
+			}
+		}
+		if (isNull){
+			if (allowed != null || lower != null || upper != null) return false;
+			for (QueryCriteria criteria: others){
+				if (criteria.getEvaluation() == Evaluation.NOT_NULL) return false;
+			}
+			optimized.add(new QueryCriteria(key, null, Evaluation.IS_NULL));
+		}
+		if (lower != null && upper != null){
+			int comparison = compare(lower.value, upper.value);
+			if (comparison > 0 || (comparison == 0 && !(lower.inclusive && upper.inclusive))) return false;
+			if (comparison == 0){
+				allowed = intersect(allowed, Collections.singletonList(lower.value));
+				lower = null;
+				upper = null;
+			}
+		}
+		if (allowed != null){
+			List<Object> values = new ArrayList<>();
+			for (Object value: allowed){
+				if (isInRange(value, lower, upper) && indexOf(excluded, value) < 0) values.add(value);
+			}
+			if (values.isEmpty()) return false;
+			optimized.add(values.size() == 1 ? new QueryCriteria(key, values.get(0), Evaluation.EQUALS) 
+					: new QueryCriteria(key, values, Evaluation.IN));
+		} else {
+			if (lower != null && upper != null && lower.inclusive == upper.inclusive){
+				optimized.add(new QueryCriteria(key, Arrays.asList(lower.value, upper.value), 
+						lower.inclusive ? Evaluation.BETWEEN_INCLUSIVE : Evaluation.BETWEEN));
+			} else {
+				if (lower != null){
+					optimized.add(new QueryCriteria(key, lower.value, 
+							lower.inclusive ? Evaluation.GREATER_THAN_EQUALS : Evaluation.GREATER_THAN));
+				}
+				if (upper != null){
+					optimized.add(new QueryCriteria(key, upper.value, 
+							upper.inclusive ? Evaluation.LESS_THAN_EQUALS : Evaluation.LESS_THAN));
+				}
+			}
+			List<Object> values = new ArrayList<>();
+			for (Object value: excluded){
+				if (isInRange(value, lower, upper) && indexOf(values, value) < 0) values.add(value);
+			}
+			if (values.size() == 1){
+				optimized.add(new QueryCriteria(key, values.get(0), Evaluation.NOT_EQUALS));
+			} else if (values.size() > 1){
+				optimized.add(new QueryCriteria(key, values, Evaluation.NOT_IN));
+			}
+		}
+		optimized.addAll(others);
+		return true;
+	}
+
+	/**
+	 * Merging requires that the values of all mergeable criteria be non-null and of the same 
+	 *   orderable kind, and that range criteria have two bounds.
+	 */
+	private static boolean isMergeable(List<QueryCriteria> criterias){
+		Boolean numeric = null;
+		for (QueryCriteria criteria: criterias){
+			Evaluation evaluation = criteria.getEvaluation();
+			if (evaluation == null || !MERGEABLE.contains(evaluation) || evaluation == Evaluation.IS_NULL) continue;
+			List<Object> values;
+			if (evaluation == Evaluation.IN || evaluation == Evaluation.NOT_IN 
+					|| evaluation == Evaluation.BETWEEN || evaluation == Evaluation.BETWEEN_INCLUSIVE){
+				values = toList(criteria.getValue());
+				if (values == null) return false;
+				if ((evaluation == Evaluation.BETWEEN || evaluation == Evaluation.BETWEEN_INCLUSIVE) 
+						&& values.size() != 2) return false;
+			} else {
+				values = Collections.singletonList(criteria.getValue());
+			}
+			for (Object value: values){
+				boolean isNumber = value instanceof Number && toDecimal((Number) value) != null;
+				if (!isNumber && !(value instanceof Date)) return false;
+				if (numeric == null) numeric = isNumber;
+				else if (numeric != isNumber) return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Object> intersect(List<Object> allowed, List<Object> values){
+		List<Object> distinct = new ArrayList<>();
+		for (Object value: values){
+			if (indexOf(distinct, value) < 0) distinct.add(value);
+		}
+		if (allowed == null) return distinct;
+		List<Object> intersection = new ArrayList<>();
+		for (Object value: allowed){
+			if (indexOf(distinct, value) >= 0) intersection.add(value);
+		}
+		return intersection;
+	}
+
+	private static int indexOf(List<Object> values, Object value){
+		for (int i = 0; i < values.size(); i++){
+			if (compare(values.get(i), value) == 0) return i;
+		}
+		return -1;
+	}
+
+	private static boolean isInRange(Object value, Bound lower, Bound upper){
+		if (lower != null){
+			int comparison = compare(value, lower.value);
+			if (comparison < 0 || (comparison == 0 && !lower.inclusive)) return false;
+		}
+		if (upper != null){
+			int comparison = compare(value, upper.value);
+			if (comparison > 0 || (comparison == 0 && !upper.inclusive)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two numbers by value, regardless of their types, or two dates.
+	 */
+	private static int compare(Object a, Object b){
+		if (a instanceof Number){
+			return toDecimal((Number) a).compareTo(toDecimal((Number) b));
+		}
+		return ((Date) a).compareTo((Date) b);
+	}
+
+	private static BigDecimal toDecimal(Number number){
+		if (number instanceof BigDecimal) return (BigDecimal) number;
+		try {
+			return new BigDecimal(number.toString());
+		} catch (NumberFormatException e){
+			return null;
+		}
+	}
+
+	private static List<Object> toList(Object value){
+		if (value instanceof Object[]) return Arrays.asList((Object[]) value);
+		if (value instanceof Collection) return new ArrayList<Object>((Collection<?>) value);
+		return null;
+	}
+
+	private static boolean hasNullValue(QueryCriteria criteria){
+		Object value = criteria.getValue();
+		if (criteria.getEvaluation() == Evaluation.IS_TRUE || criteria.getEvaluation() == Evaluation.IS_FALSE){
+			return false;
+		}
+		if (value == null) return true;
+		List<Object> values = toList(value);
+		return values != null && values.contains(null);
+	}
+
+	private static boolean contains(List<QueryCriteria> criterias, QueryCriteria criteria){
+		for (QueryCriteria other: criterias){
+			if (other.getEvaluation() == criteria.getEvaluation() 
+					&& Objects.equals(other.getValue(), criteria.getValue())) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A lower or upper range bound.
+	 */
+	private static class Bound {
+		
+		private final Object value;
+		private final boolean inclusive;
+
+		private Bound(Object value, boolean inclusive) {
+			this.value = value;
+			this.inclusive = inclusive;
+		}
+
+		/**
+		 * Returns the more restrictive of the two bounds.
+		 */
+		private static Bound tighter(Bound current, Bound bound, boolean isLower){
+			if (current == null) return bound;
+			int comparison = compare(bound.value, current.value);
+			if (comparison == 0) return current.inclusive ? bound : current;
+			return (comparison > 0) == isLower ? bound : current;
+		}
+		
+	}
+	
+}
@@ -20,16 +20,20 @@ package org.oncoblocks.centromere.core.repository;
 import org.oncoblocks.centromere.core.model.Model;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.util.CloseableIterator;
 
 import java.io.Serializable;
 
 /**
  * Basic operations that all repositories must implement, regardless database technology used.  Based
  *   on {@link org.springframework.data.repository.PagingAndSortingRepository}, but with some additions
- *   to support dynamic queries.  
+ *   to support dynamic queries.  Operations are declared abstract, rather than as default 
+ *   methods, because Spring Data repository proxies invoke interface default methods directly, 
+ *   bypassing the implementations in the repository base classes.
  * 
  * @author woemler
  */
@@ -65,6 +69,88 @@ public interface RepositoryOperations<T extends Model<ID>, ID extends Serializab
 	 */
 	Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable);
 
+	/**
+	 * Searches for all records that satisfy the requested criteria, and returns them as a paged
+	 *   collection, with the total number of records calculated using the requested 
+	 *   {@link CountStrategy}.  Implementations should provide a repository-wide default strategy,
+	 *   which is used when {@code countStrategy} is null.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param pageable {@link Pageable}
+	 * @param countStrategy {@link CountStrategy}, or null for the repository default.
+	 * @return a {@link CountedPage}, or a {@link Slice} without a total if {@link CountStrategy#NONE} 
+	 *   is used.
+	 */
+	Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, CountStrategy countStrategy);
+
+	/**
+	 * Searches for all records that satisfy the requested criteria, and returns them in the
+	 *   requested order, fetching only the fields required by the {@link Projection}.  Fields that 
+	 *   are not fetched are left unset in the returned objects.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @param projection {@link Projection}, or null to fetch all fields.
+	 * @return all matching {@code T} records.
+	 */
+	Iterable<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection);
+
+	/**
+	 * Paged version of {@link #find(Iterable, Sort, Projection)}, with the total number of records 
+	 *   calculated using the requested {@link CountStrategy}.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param pageable {@link Pageable}
+	 * @param countStrategy {@link CountStrategy}, or null for the repository default.
+	 * @param projection {@link Projection}, or null to fetch all fields.
+	 * @return a {@link CountedPage}, or a {@link Slice} if {@link CountStrategy#NONE} is used.
+	 */
+	Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, CountStrategy countStrategy,
+			Projection projection);
+
+	/**
+	 * Keyset (seek) pagination: returns up to {@code size} records that satisfy the requested criteria
+	 *   and follow the position marked by {@code continuationToken}, in the requested order.  The
+	 *   record identifier is always appended to the sort, so that record positions are unique.  Rather
+	 *   than skipping over preceding records, the next slice is selected with a range condition on 
+	 *   the sort keys, so its cost does not depend on how far into the result set the caller is.
+	 *   Records with null values in any sort field are not supported by the range condition.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, may be null to order by identifier alone.
+	 * @param size maximum number of records to return.
+	 * @param continuationToken encoded {@link ContinuationToken} from the previous slice, or null for 
+	 *   the first slice.
+	 * @return {@link KeysetSlice} with the token for the following slice.
+	 * @throws IllegalArgumentException if the token is malformed or does not match the sort.
+	 */
+	KeysetSlice<T> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size, 
+			String continuationToken);
+
+	/**
+	 * Opens a cursor over all records that satisfy the requested criteria, returned in the requested 
+	 *   order.  Implementations should fetch records from the database in batches as the iterator is 
+	 *   consumed, rather than materializing the entire result set in memory.  The returned iterator 
+	 *   holds open database resources, and must be closed once the caller is done with it.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @return {@link CloseableIterator} over all matching {@code T} records.
+	 */
+	CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort);
+
+	/**
+	 * Opens a cursor over all records that satisfy the requested criteria, as with 
+	 *   {@link #stream(Iterable, Sort)}, fetching only the fields required by the {@link Projection}.
+	 *   Fields that are not fetched are left unset in the returned objects.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @param projection {@link Projection}, or null to fetch all fields.
+	 * @return {@link CloseableIterator} over all matching {@code T} records.
+	 */
+	CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection);
+
 	/**
 	 * Returns a count of all records that satify the requested criteria.
 	 *
@@ -91,6 +177,22 @@ public interface RepositoryOperations<T extends Model<ID>, ID extends Serializab
 	 */
 	Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias);
 
+	/**
+	 * Returns a page of the distinct values of the requested field, sorted in ascending order, 
+	 *   filtered using a {@link QueryCriteria} based query and, optionally, a value prefix.  The 
+	 *   de-duplication, filtering and paging are all performed by the database, so that only the 
+	 *   requested values are returned to the application.
+	 *
+	 * @param field Model field name.
+	 * @param queryCriterias Query criteria to filter the field values by.
+	 * @param prefix Only values starting with this string are returned, or null for all values.
+	 * @param offset Number of distinct values to skip.
+	 * @param limit Maximum number of values to return, or a value less than one for no limit.
+	 * @return Sorted list of distinct values of {@code field}.
+	 */
+	Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias, String prefix, 
+			int offset, int limit);
+
 	/* Create records */
 
 	/**
@@ -127,4 +229,28 @@ public interface RepositoryOperations<T extends Model<ID>, ID extends Serializab
 	 */
 	<S extends T> Iterable<S> update(Iterable<S> entities);
 
+	/**
+	 * Inserts new records, or replaces existing records with the same identifiers, and returns 
+	 *   their instances.  Implementations should write the records in as few round trips as possible.
+	 *
+	 * @param entities collection of records to insert or replace.
+	 * @return persisted instances of the entity objects.
+	 */
+	<S extends T> Iterable<S> upsert(Iterable<S> entities);
+
+	/* Delete records */
+
+	/**
+	 * Deletes all records that satisfy the requested criteria, with a single bulk operation where 
+	 *   the database supports it, rather than one delete per record.  At least one criteria must be 
+	 *   supplied; use {@link #deleteAll()} to delete every record.  Implementations may still 
+	 *   delete records one at a time when their mapping requires it, such as JPA entities with 
+	 *   associations that cannot be cleaned up by bulk statements.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @return the number of records deleted.
+	 * @throws IllegalArgumentException if no criteria are supplied.
+	 */
+	long deleteAll(Iterable<QueryCriteria> queryCriterias);
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.CachingRepositoryOperations;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {CachingRepositoryOperationsTests.EmptyContext.class})
+public class CachingRepositoryOperationsTests {
+
+	private CountingRepository repository;
+	private CachingRepositoryOperations<EntrezGene, Long> cachingRepository;
+	private List<QueryCriteria> queryCriterias;
+
+	@Before
+	public void setup(){
+		repository = new CountingRepository();
+		cachingRepository = new CachingRepositoryOperations<>(repository);
+		queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("geneType", "protein-coding", Evaluation.EQUALS));
+		queryCriterias.add(new QueryCriteria("taxId", 9606, Evaluation.EQUALS));
+	}
+
+	@Test
+	public void admissionTest(){
+
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		Assert.isTrue(cachingRepository.getQueryMissCount() == 2);
+		Assert.isTrue(repository.counts == 2);
+		Collections.reverse(queryCriterias);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 1);
+		Assert.isTrue(repository.counts == 2);
+
+		Page<EntrezGene> page = cachingRepository.find(queryCriterias, new PageRequest(0, 1));
+		Assert.isTrue(page.getTotalElements() == 5);
+		Assert.isTrue(cachingRepository.getQueryMissCount() == 3);
+		Assert.isTrue(cachingRepository.size() == 1);
+
+		cachingRepository.setAdmissionThreshold(3);
+		List<QueryCriteria> other = Collections.singletonList(new QueryCriteria("geneType", "pseudo"));
+		cachingRepository.count(other);
+		cachingRepository.count(other);
+		Assert.isTrue(cachingRepository.size() == 1);
+		cachingRepository.count(other);
+		Assert.isTrue(cachingRepository.size() == 2);
+		cachingRepository.count(other);
+		Assert.isTrue(repository.counts == 5);
+
+	}
+
+	@Test
+	public void entityCacheTest(){
+
+		cachingRepository.setAdmissionThreshold(1);
+		EntrezGene gene = cachingRepository.findOne(1L);
+		Assert.isTrue(cachingRepository.findOne(1L) == gene);
+		Assert.isTrue(cachingRepository.exists(1L));
+		Assert.isTrue(cachingRepository.getEntityHitCount() == 2);
+		Assert.isTrue(cachingRepository.getEntityMissCount() == 1);
+
+		EntrezGene updated = new EntrezGene(1L, "GeneA2", 9606, null, "1", null, "Test Gene A",
+				"protein-coding", null, null, null);
+		cachingRepository.update(updated);
+		Assert.isTrue("GeneA2".equals(cachingRepository.findOne(1L).getPrimaryGeneSymbol()));
+		Assert.isTrue(cachingRepository.getEntityMissCount() == 2);
+
+		cachingRepository.delete(1L);
+		Assert.isTrue(!cachingRepository.exists(1L));
+		Assert.isNull(cachingRepository.findOne(1L));
+
+	}
+
+	@Test
+	public void writeInvalidationTest(){
+
+		cachingRepository.setAdmissionThreshold(1);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 1);
+		Assert.isTrue(cachingRepository.findOne(2L) != null);
+
+		EntrezGene created = new EntrezGene(6L, "GeneF", 9606, null, "1", null, "Test Gene F",
+				"protein-coding", null, null, null);
+		EntrezGene updated = new EntrezGene(2L, "GeneB2", 9606, null, "3", null, "Test Gene B",
+				"protein-coding", null, null, null);
+		cachingRepository.upsert(Arrays.asList(created, updated));
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 6);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 1);
+		Assert.isTrue("GeneB2".equals(cachingRepository.findOne(2L).getPrimaryGeneSymbol()));
+
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 6);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 2);
+		Assert.isTrue(cachingRepository.deleteAll(queryCriterias) == 6);
+		Assert.isTrue(cachingRepository.size() == 0);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 0);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 2);
+		Assert.isNull(cachingRepository.findOne(2L));
+
+	}
+
+	@Test
+	public void generationRaceTest(){
+
+		cachingRepository.setAdmissionThreshold(1);
+		repository.onCount = () -> cachingRepository.insert(new EntrezGene(6L, "GeneF", 9606, null, "1",
+				null, "Test Gene F", "protein-coding", null, null, null));
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 5);
+		repository.onCount = null;
+		Assert.isTrue(cachingRepository.size() == 0);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 6);
+		Assert.isTrue(cachingRepository.count(queryCriterias) == 6);
+		Assert.isTrue(cachingRepository.getQueryHitCount() == 1);
+		Assert.isTrue(repository.counts == 2);
+
+	}
+
+	/**
+	 * Counts the queries reaching the repository, and runs an optional callback while a count is
+	 *   being loaded, simulating a concurrent write.
+	 */
+	public static class CountingRepository extends TestRepository {
+
+		private int counts = 0;
+		private Runnable onCount = null;
+
+		@Override
+		public long count(Iterable<QueryCriteria> queryCriterias) {
+			counts++;
+			long count = super.count(queryCriterias);
+			if (onCount != null) onCount.run();
+			return count;
+		}
+
+	}
+
+	@Configuration
+	public static class EmptyContext {}
+
+}
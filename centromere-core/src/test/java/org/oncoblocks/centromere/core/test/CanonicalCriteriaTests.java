@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.CanonicalCriteria;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {CanonicalCriteriaTests.EmptyContext.class})
+public class CanonicalCriteriaTests {
+
+	@Test
+	public void criteriaOrderTest(){
+
+		List<QueryCriteria> first = new ArrayList<>();
+		first.add(new QueryCriteria("geneType", "protein-coding"));
+		first.add(new QueryCriteria("chromosome", "3"));
+		List<QueryCriteria> second = new ArrayList<>();
+		second.add(new QueryCriteria("chromosome", "3"));
+		second.add(new QueryCriteria("geneType", "protein-coding"));
+		second.add(null);
+
+		CanonicalCriteria a = CanonicalCriteria.of(first);
+		CanonicalCriteria b = CanonicalCriteria.of(second);
+		Assert.isTrue(a.equals(b));
+		Assert.isTrue(a.hashCode() == b.hashCode());
+		Assert.isTrue(a.getFingerprint() == b.getFingerprint());
+		Assert.isTrue("chromosome".equals(a.getCriteria().get(0).getKey()));
+
+		second.add(new QueryCriteria("chromosome", "3"));
+		Assert.isTrue(a.equals(CanonicalCriteria.of(second)));
+		second.add(new QueryCriteria("taxId", 9606));
+		Assert.isTrue(!a.equals(CanonicalCriteria.of(second)));
+		Assert.isTrue(a.getFingerprint() != CanonicalCriteria.of(second).getFingerprint());
+
+	}
+
+	@Test
+	public void inValuesTest(){
+
+		CanonicalCriteria a = CanonicalCriteria.of(Arrays.asList(
+				new QueryCriteria("entrezGeneId", Arrays.asList(3L, 1L, 2L, 1L), Evaluation.IN)));
+		CanonicalCriteria b = CanonicalCriteria.of(Arrays.asList(
+				new QueryCriteria("entrezGeneId", new Long[]{ 1L, 2L, 3L }, Evaluation.IN)));
+		Assert.isTrue(a.equals(b));
+		Assert.isTrue(a.getFingerprint() == b.getFingerprint());
+		Assert.isTrue(Arrays.asList(1L, 2L, 3L).equals(a.getCriteria().get(0).getValue()));
+		
+		QueryCriteria criteria = a.toQueryCriteria().get(0);
+		Assert.isTrue(criteria.getEvaluation() == Evaluation.IN);
+		Assert.isTrue(((List<?>) criteria.getValue()).size() == 3);
+
+		CanonicalCriteria c = CanonicalCriteria.of(Arrays.asList(
+				new QueryCriteria("entrezGeneId", Arrays.asList(1L, 3L), Evaluation.BETWEEN)));
+		CanonicalCriteria d = CanonicalCriteria.of(Arrays.asList(
+				new QueryCriteria("entrezGeneId", Arrays.asList(3L, 1L), Evaluation.BETWEEN)));
+		Assert.isTrue(!c.equals(d));
+		Assert.isTrue(!CanonicalCriteria.of(Arrays.asList(new QueryCriteria("entrezGeneId", 1L)))
+				.equals(CanonicalCriteria.of(Arrays.asList(new QueryCriteria("entrezGeneId", 1)))));
+		Assert.isTrue(CanonicalCriteria.of(null).equals(CanonicalCriteria.of(new ArrayList<QueryCriteria>())));
+
+	}
+
+	@Test
+	public void criteriaGroupTest(){
+
+		CanonicalCriteria a = CanonicalCriteria.of(Arrays.<QueryCriteria>asList(
+				new QueryCriteria("geneType", "pseudo"),
+				QueryCriteriaGroup.or(new QueryCriteria("primaryGeneSymbol", "ABC"), new QueryCriteria("aliases", "ABC"))));
+		CanonicalCriteria b = CanonicalCriteria.of(Arrays.<QueryCriteria>asList(
+				QueryCriteriaGroup.or(new QueryCriteria("aliases", "ABC"), new QueryCriteria("primaryGeneSymbol", "ABC")),
+				new QueryCriteria("geneType", "pseudo")));
+		Assert.isTrue(a.equals(b));
+		Assert.isTrue(a.getFingerprint() == b.getFingerprint());
+
+		CanonicalCriteria c = CanonicalCriteria.of(Arrays.<QueryCriteria>asList(
+				new QueryCriteria("geneType", "pseudo"),
+				QueryCriteriaGroup.and(new QueryCriteria("primaryGeneSymbol", "ABC"), new QueryCriteria("aliases", "ABC"))));
+		Assert.isTrue(!a.equals(c));
+		Assert.isTrue(a.getFingerprint() != c.getFingerprint());
+
+		List<QueryCriteria> criterias = a.toQueryCriteria();
+		Assert.isTrue(criterias.get(0) instanceof QueryCriteriaGroup);
+		QueryCriteriaGroup group = (QueryCriteriaGroup) criterias.get(0);
+		Assert.isTrue(group.getOperator() == QueryCriteriaGroup.Operator.OR);
+		Assert.isTrue("aliases".equals(group.getQueryCriterias().get(0).getKey()));
+		Assert.isTrue(CanonicalCriteria.of(criterias).equals(a));
+
+	}
+
+	@Configuration
+	public static class EmptyContext {}
+
+}
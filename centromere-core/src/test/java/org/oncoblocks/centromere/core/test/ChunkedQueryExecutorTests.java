@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.ChunkedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor.PagedQuery;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ChunkedQueryExecutorTests.EmptyContext.class})
+public class ChunkedQueryExecutorTests {
+	
+	private static final Sort SORT = new Sort(new Sort.Order(Sort.Direction.ASC, "geneType"), 
+			new Sort.Order(Sort.Direction.DESC, "entrezGeneId"));
+	
+	private final List<EntrezGene> genes = new ArrayList<>();
+	private final AtomicInteger queries = new AtomicInteger();
+	private final ChunkedQueryExecutor executor = new ChunkedQueryExecutor();
+
+	public ChunkedQueryExecutorTests() {
+		for (long i = 1; i <= 10; i++){
+			genes.add(new EntrezGene(i, "Gene" + i, 9606, null, null, null, null, 
+					i % 3 == 0 ? "pseudo" : "protein-coding", null, null, null));
+		}
+		executor.setChunkSize(3);
+	}
+
+	/**
+	 * Simulates a database query: filters the genes by the criteria and sorts them.
+	 */
+	private List<EntrezGene> query(Iterable<QueryCriteria> criterias, int offset, int limit){
+		queries.incrementAndGet();
+		List<EntrezGene> results = new ArrayList<>();
+		for (EntrezGene gene: genes){
+			boolean matches = true;
+			for (QueryCriteria criteria: criterias){
+				if (criteria.getEvaluation() == Evaluation.IN){
+					matches = matches && ((Collection<?>) criteria.getValue()).contains(gene.getEntrezGeneId());
+				} else {
+					matches = matches && criteria.getValue().equals(gene.getTaxId());
+				}
+			}
+			if (matches) results.add(gene);
+		}
+		results.sort(Comparator.comparing(EntrezGene::getGeneType)
+				.thenComparing(Comparator.comparing(EntrezGene::getEntrezGeneId).reversed()));
+		return new ArrayList<>(results.subList(Math.min(offset, results.size()), 
+				Math.min(offset + limit, results.size())));
+	}
+	
+	private List<QueryCriteria> getCriterias(){
+		return Arrays.asList(
+				new QueryCriteria("entrezGeneId", Arrays.asList(2L, 9L, 3L, 5L, 6L, 10L, 1L, 12L, 9L), 
+						Evaluation.IN), 
+				new QueryCriteria("taxId", 9606, Evaluation.EQUALS));
+	}
+
+	@Test
+	public void chunkedFindTest(){
+		List<EntrezGene> results = executor.find(getCriterias(), SORT, field -> true, 
+				criterias -> query(criterias, 0, Integer.MAX_VALUE), true);
+		Assert.isTrue(queries.get() == 3);
+		Assert.isTrue(results.size() == 7);
+		List<Long> ids = new ArrayList<>();
+		for (EntrezGene gene: results){
+			ids.add(gene.getEntrezGeneId());
+		}
+		Assert.isTrue(ids.equals(Arrays.asList(10L, 5L, 2L, 1L, 9L, 6L, 3L)));
+		long count = executor.count(getCriterias(), field -> true, 
+				criterias -> (long) query(criterias, 0, Integer.MAX_VALUE).size(), false);
+		Assert.isTrue(count == 7L);
+	}
+
+	@Test
+	public void multiValuedFieldTest(){
+		List<EntrezGene> results = executor.find(getCriterias(), SORT, field -> false, 
+				criterias -> query(criterias, 0, Integer.MAX_VALUE), true);
+		Assert.isTrue(queries.get() == 1);
+		Assert.isTrue(results.size() == 7);
+		Assert.isNull(executor.getOversizedCriteria(getCriterias(), field -> false));
+		Assert.notNull(executor.getOversizedCriteria(getCriterias(), field -> true));
+	}
+
+	@Test
+	public void chunkedPagedQueryTest(){
+		PagedQuery<EntrezGene> pagedQuery = executor.getPagedQuery(getCriterias(), SORT, field -> true, 
+				criterias -> new PagedQuery<EntrezGene>() {
+					@Override 
+					public List<EntrezGene> fetch(int offset, int limit) {
+						return query(criterias, offset, limit);
+					}
+					@Override 
+					public long count() {
+						return query(criterias, 0, Integer.MAX_VALUE).size();
+					}
+				}, true);
+		List<EntrezGene> page = pagedQuery.fetch(2, 3);
+		Assert.isTrue(page.size() == 3);
+		Assert.isTrue(page.get(0).getEntrezGeneId().equals(2L));
+		Assert.isTrue(page.get(1).getEntrezGeneId().equals(1L));
+		Assert.isTrue(page.get(2).getEntrezGeneId().equals(9L));
+		Assert.isTrue(pagedQuery.fetch(6, 3).size() == 1);
+		Assert.isTrue(pagedQuery.count() == 7L);
+		executor.setMaxPagedOffset(5);
+		Assert.isTrue(pagedQuery.fetch(5, 3).size() == 2);
+		try {
+			pagedQuery.fetch(6, 3);
+			Assert.isTrue(false, "Offset beyond the maximum should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+	}
+	
+	@Test
+	public void boundedExecutorTest() throws Exception {
+		ThreadPoolExecutor pool = PagedQueryExecutor.createExecutor(1, 1);
+		executor.setExecutor(pool);
+		final CountDownLatch latch = new CountDownLatch(1);
+		pool.execute(() -> {
+			try {
+				latch.await();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		});
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+		List<EntrezGene> results = executor.find(getCriterias(), SORT, field -> true, 
+				criterias -> {
+					threads.add(Thread.currentThread().getName());
+					latch.countDown();
+					return query(criterias, 0, Integer.MAX_VALUE);
+				}, true);
+		Assert.isTrue(results.size() == 7);
+		Assert.isTrue(pool.getLargestPoolSize() == 1);
+		Assert.isTrue(threads.contains(Thread.currentThread().getName()));
+		pool.shutdown();
+	}
+	
+	@Configuration
+	public static class EmptyContext {}
+	
+}
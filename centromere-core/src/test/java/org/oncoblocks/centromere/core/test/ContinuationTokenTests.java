@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.ContinuationToken;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * @author woemler
+ * @since 0.4.1
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ContinuationTokenTests.EmptyContext.class})
+public class ContinuationTokenTests {
+
+	@Test
+	public void roundTripTest(){
+		List<Object> values = Arrays.asList(null, 1L, 2, 3.5d, 4.5f, new BigDecimal("12345.6789"), true, 
+				new Date(1000L), Instant.ofEpochSecond(1000L, 500), LocalDate.of(2016, 2, 29), 
+				LocalDateTime.of(2016, 2, 29, 12, 30, 15, 100), UUID.randomUUID(), Sort.Direction.DESC, 
+				"GeneA");
+		Sort sort = getSort(values.size());
+		ContinuationToken token = new ContinuationToken(sort, values);
+		ContinuationToken decoded = ContinuationToken.decode(token.encode(), sort);
+		Assert.isTrue(decoded.getValues().equals(values));
+	}
+
+	@Test
+	public void smallIntegerTest(){
+		Sort sort = getSort(2);
+		ContinuationToken token = new ContinuationToken(sort, Arrays.<Object>asList((short) 1, (byte) 2));
+		ContinuationToken decoded = ContinuationToken.decode(token.encode(), sort);
+		Assert.isTrue(decoded.getValues().equals(Arrays.<Object>asList(1, 2)));
+	}
+
+	@Test
+	public void unsupportedTypeTest(){
+		Sort sort = getSort(1);
+		try {
+			new ContinuationToken(sort, Collections.<Object>singletonList(new StringBuilder("GeneA"))).encode();
+			Assert.isTrue(false, "Unsupported value types should be rejected.");
+		} catch (IllegalArgumentException e){
+			Assert.isTrue(e.getMessage().contains("StringBuilder"));
+		}
+	}
+
+	@Test
+	public void valueTooLongTest(){
+		Sort sort = getSort(1);
+		char[] chars = new char[70000];
+		Arrays.fill(chars, 'A');
+		try {
+			new ContinuationToken(sort, Collections.<Object>singletonList(new String(chars))).encode();
+			Assert.isTrue(false, "Values longer than 64KB should be rejected.");
+		} catch (IllegalArgumentException e){
+			Assert.isTrue(e.getMessage().contains("too long"));
+		}
+	}
+
+	@Test
+	public void sortMismatchTest(){
+		String token = new ContinuationToken(getSort(1), Collections.<Object>singletonList("GeneA")).encode();
+		assertRejected(token, new Sort(Sort.Direction.DESC, "field0"));
+		assertRejected(token, new Sort(Sort.Direction.ASC, "field1"));
+	}
+
+	@Test
+	public void tamperedTokenTest(){
+		Sort sort = getSort(1);
+		byte[] bytes = Base64.getUrlDecoder().decode(
+				new ContinuationToken(sort, Collections.<Object>singletonList(5L)).encode());
+		bytes[bytes.length - 9] = 'X';
+		assertRejected(encode(bytes), sort);
+		bytes[bytes.length - 9] = 'L';
+		Assert.isTrue(ContinuationToken.decode(encode(bytes), sort).getValues().get(0).equals(5L));
+		bytes[0] = 2;
+		assertRejected(encode(bytes), sort);
+	}
+
+	@Test
+	public void malformedTokenTest() throws Exception {
+		Sort sort = getSort(1);
+		assertRejected("not a token!", sort);
+		assertRejected("", sort);
+		String token = new ContinuationToken(sort, Collections.<Object>singletonList(5L)).encode();
+		byte[] bytes = Base64.getUrlDecoder().decode(token);
+		assertRejected(encode(Arrays.copyOf(bytes, bytes.length - 1)), sort);
+		assertRejected(encode(Arrays.copyOf(bytes, bytes.length + 1)), sort);
+		assertRejected(encode(getTokenBytes(sort, 'M', "1.2.3")), sort);
+		assertRejected(encode(getTokenBytes(sort, 'E', "java.lang.String", "GeneA")), sort);
+		assertRejected(encode(getTokenBytes(sort, 'E', "org.springframework.data.domain.Sort$Direction", "UP")), sort);
+		assertRejected(encode(getTokenBytes(sort, 'E', "com.example.Missing", "A")), sort);
+		assertRejected(encode(getTokenBytes(sort, 'Z', "yesterday")), sort);
+		assertRejected(encode(getTokenBytes(sort, 'O', "5f1b2c3d4e5f6a7b8c9d0e1f")), sort);
+	}
+
+	private Sort getSort(int size){
+		List<Sort.Order> orders = new ArrayList<>();
+		for (int i = 0; i < size; i++){
+			orders.add(new Sort.Order(Sort.Direction.ASC, "field" + i));
+		}
+		return new Sort(orders);
+	}
+
+	private byte[] getTokenBytes(Sort sort, char tag, String... strings) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(1);
+		out.writeUTF("field0:ASC;");
+		out.writeShort(1);
+		out.writeByte(tag);
+		for (String string: strings){
+			out.writeUTF(string);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private String encode(byte[] bytes){
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	private void assertRejected(String token, Sort sort){
+		try {
+			ContinuationToken.decode(token, sort);
+			Assert.isTrue(false, "Token should have been rejected: " + token);
+		} catch (IllegalArgumentException e){
+			Assert.isTrue(!e.getMessage().startsWith("Token should have been rejected"));
+		}
+	}
+
+	@Configuration
+	public static class EmptyContext {}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.model.Alias;
+import org.oncoblocks.centromere.core.model.Aliases;
+import org.oncoblocks.centromere.core.model.ForeignKey;
+import org.oncoblocks.centromere.core.model.Ignored;
+import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.model.ModelMetadata;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryParameterDescriptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ModelMetadataTests.EmptyContext.class})
+public class ModelMetadataTests {
+
+	@Test
+	public void queryParametersTest(){
+		ModelMetadata metadata = ModelMetadata.forModel(Sample.class);
+		Map<String, QueryParameterDescriptor> params = metadata.getQueryParameters();
+		Assert.isTrue(params.containsKey("geneId"));
+		Assert.isTrue(params.containsKey("signalGreaterThan"));
+		Assert.isTrue(params.get("signalGreaterThan").getFieldName().equals("signal"));
+		Assert.isTrue(params.get("signalGreaterThan").getEvaluation().equals(Evaluation.GREATER_THAN));
+		Assert.isTrue(params.get("signalGreaterThan").getType().equals(Double.class));
+		Assert.isTrue(!params.containsKey("notes"));
+		Assert.isTrue(params.containsKey("gene.symbol"));
+		Assert.isTrue(params.get("gene.symbol").getFieldName().equals("primaryGeneSymbol"));
+		Assert.isTrue(params.containsKey("gene.aliases"));
+		Assert.isTrue(params.get("gene.aliases").getType().equals(String.class));
+		Assert.isTrue(!metadata.getDeclaredQueryParameters().containsKey("gene.symbol"));
+	}
+
+	@Test
+	public void aliasTest(){
+		ModelMetadata metadata = ModelMetadata.forModel(Gene.class);
+		Assert.isTrue(metadata.getFieldName("symbol").equals("primaryGeneSymbol"));
+		Assert.isTrue(metadata.getFieldName("alias").equals("aliases"));
+		Assert.isTrue(metadata.getFieldName("entrezGeneId").equals("entrezGeneId"));
+		Assert.isTrue(metadata.getQueryParameter("alias").getFieldName().equals("aliases"));
+		Assert.isNull(metadata.getQueryParameter("unknown"));
+	}
+
+	@Test
+	public void declaredFieldNameTest(){
+		ModelMetadata metadata = ModelMetadata.forModel(Sample.class);
+		Assert.isTrue(metadata.getDeclaredFieldName("signalGreaterThan").equals("signal"));
+		Assert.isTrue(metadata.getDeclaredFieldName("geneId").equals("geneId"));
+		Assert.isNull(metadata.getDeclaredFieldName("notes"));
+		Assert.isNull(metadata.getDeclaredFieldName("gene.symbol"));
+		Assert.isNull(metadata.getDeclaredFieldName("geneId) from x; --"));
+		Assert.isNull(metadata.getDeclaredFieldName(null));
+	}
+
+	@Test
+	public void registryTest(){
+		Assert.isTrue(ModelMetadata.forModel(Gene.class) == ModelMetadata.forModel(Gene.class));
+		Assert.isTrue(ModelMetadata.forModel(Sample.class).getModel().equals(Sample.class));
+		Assert.isTrue(ModelMetadata.getConversionService() == ModelMetadata.getConversionService());
+	}
+
+	public static class Gene implements Model<Long> {
+		private Long entrezGeneId;
+		@Alias("symbol") private String primaryGeneSymbol;
+		@Aliases({ @Alias("alias"), @Alias(value = "aliasStartsWith", evaluation = Evaluation.STARTS_WITH) })
+		private Set<String> aliases;
+		@Override public Long getId() {
+			return entrezGeneId;
+		}
+	}
+
+	public static class Sample implements Model<String> {
+		private String id;
+		@ForeignKey(model = Gene.class, relationship = ForeignKey.Relationship.MANY_TO_ONE, rel = "gene")
+		private Long geneId;
+		@Aliases({ @Alias(value = "signalGreaterThan", evaluation = Evaluation.GREATER_THAN) })
+		private Double signal;
+		@Ignored private String notes;
+		@Override public String getId() {
+			return id;
+		}
+	}
+	
+	@Configuration
+	public static class EmptyContext {}
+	
+}
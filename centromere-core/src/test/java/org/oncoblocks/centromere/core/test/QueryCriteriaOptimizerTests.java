@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.OptimizedCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaOptimizer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {QueryCriteriaOptimizerTests.EmptyContext.class})
+public class QueryCriteriaOptimizerTests {
+	
+	private final QueryCriteriaOptimizer optimizer = new QueryCriteriaOptimizer();
+
+	@Test
+	public void singleValueInTest(){
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", Arrays.asList("protein-coding"), Evaluation.IN));
+		criterias.add(new QueryCriteria("chromosome", new String[]{ "X" }, Evaluation.NOT_IN));
+		criterias.add(new QueryCriteria("geneType", null, Evaluation.NOT_NULL));
+		criterias.add(new QueryCriteria("chromosome", "X", Evaluation.NOT_EQUALS));
+
+		OptimizedCriteria optimized = optimizer.optimize(criterias);
+		Assert.isTrue(!optimized.isUnsatisfiable());
+		List<QueryCriteria> results = optimized.getQueryCriterias();
+		Assert.isTrue(results.size() == 2);
+		Assert.isTrue(results.get(0).getEvaluation().equals(Evaluation.EQUALS));
+		Assert.isTrue("protein-coding".equals(results.get(0).getValue()));
+		Assert.isTrue(results.get(1).getEvaluation().equals(Evaluation.NOT_EQUALS));
+		Assert.isTrue("X".equals(results.get(1).getValue()));
+
+	}
+
+	@Test
+	public void rangeMergeTest(){
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 1, Evaluation.GREATER_THAN_EQUALS));
+		criterias.add(new QueryCriteria("taxId", 10L, Evaluation.LESS_THAN_EQUALS));
+		criterias.add(new QueryCriteria("taxId", Arrays.asList(5, 20), Evaluation.BETWEEN_INCLUSIVE));
+		criterias.add(new QueryCriteria("taxId", null, Evaluation.NOT_NULL));
+
+		List<QueryCriteria> results = optimizer.optimize(criterias).getQueryCriterias();
+		Assert.isTrue(results.size() == 1);
+		Assert.isTrue(results.get(0).getEvaluation().equals(Evaluation.BETWEEN_INCLUSIVE));
+		List<?> bounds = (List<?>) results.get(0).getValue();
+		Assert.isTrue(((Number) bounds.get(0)).intValue() == 5);
+		Assert.isTrue(((Number) bounds.get(1)).intValue() == 10);
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 1, Evaluation.GREATER_THAN));
+		criterias.add(new QueryCriteria("taxId", 10, Evaluation.LESS_THAN_EQUALS));
+		results = optimizer.optimize(criterias).getQueryCriterias();
+		Assert.isTrue(results.size() == 2);
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", Arrays.asList(1, 5, 9606), Evaluation.IN));
+		criterias.add(new QueryCriteria("taxId", 3, Evaluation.GREATER_THAN));
+		criterias.add(new QueryCriteria("taxId", 9606, Evaluation.NOT_EQUALS));
+		results = optimizer.optimize(criterias).getQueryCriterias();
+		Assert.isTrue(results.size() == 1);
+		Assert.isTrue(results.get(0).getEvaluation().equals(Evaluation.EQUALS));
+		Assert.isTrue(results.get(0).getValue().equals(5));
+
+	}
+
+	@Test
+	public void contradictionTest(){
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 9606));
+		criterias.add(new QueryCriteria("taxId", 10090));
+		OptimizedCriteria optimized = optimizer.optimize(criterias);
+		Assert.isTrue(optimized.isUnsatisfiable());
+		Assert.isTrue(optimized.getQueryCriterias().size() == 2);
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 10, Evaluation.GREATER_THAN));
+		criterias.add(new QueryCriteria("taxId", 10, Evaluation.LESS_THAN_EQUALS));
+		Assert.isTrue(optimizer.optimize(criterias).isUnsatisfiable());
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", new ArrayList<>(), Evaluation.IN));
+		Assert.isTrue(optimizer.optimize(criterias).isUnsatisfiable());
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", null, Evaluation.IS_NULL));
+		criterias.add(new QueryCriteria("taxId", 9606));
+		Assert.isTrue(optimizer.optimize(criterias).isUnsatisfiable());
+
+	}
+
+	@Test
+	public void unmergeableValuesTest(){
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("primaryGeneSymbol", "ABC"));
+		criterias.add(new QueryCriteria("primaryGeneSymbol", "DEF"));
+		OptimizedCriteria optimized = optimizer.optimize(criterias);
+		Assert.isTrue(!optimized.isUnsatisfiable());
+		Assert.isTrue(optimized.getQueryCriterias().size() == 2);
+
+	}
+
+	@Test
+	public void multiValuedFieldTest(){
+
+		QueryCriteriaOptimizer modelOptimizer = QueryCriteriaOptimizer.forModel(EntrezGene.class);
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 9606));
+		criterias.add(new QueryCriteria("taxId", 10090));
+		Assert.isTrue(modelOptimizer.optimize(criterias).isUnsatisfiable());
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("aliases", 1));
+		criterias.add(new QueryCriteria("aliases", 2));
+		criterias.add(new QueryCriteria("attributes.value", 3, Evaluation.GREATER_THAN));
+		criterias.add(new QueryCriteria("attributes.value", 2, Evaluation.LESS_THAN));
+		OptimizedCriteria optimized = modelOptimizer.optimize(criterias);
+		Assert.isTrue(!optimized.isUnsatisfiable());
+		Assert.isTrue(optimized.getQueryCriterias().size() == 4);
+
+	}
+
+	@Test
+	public void criteriaGroupTest(){
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("taxId", 1, Evaluation.GREATER_THAN));
+		criterias.add(QueryCriteriaGroup.and(new QueryCriteria("taxId", 10, Evaluation.LESS_THAN)));
+		criterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("geneType", Arrays.asList("pseudo"), Evaluation.IN),
+				new QueryCriteria("chromosome", new ArrayList<>(), Evaluation.IN)));
+		List<QueryCriteria> results = optimizer.optimize(criterias).getQueryCriterias();
+		Assert.isTrue(results.size() == 2);
+		Assert.isTrue(results.get(0).getEvaluation().equals(Evaluation.BETWEEN));
+		Assert.isTrue(results.get(1).getEvaluation().equals(Evaluation.EQUALS));
+		Assert.isTrue("geneType".equals(results.get(1).getKey()));
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", "pseudo"));
+		criterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("taxId", Arrays.asList(1, 2), Evaluation.IN),
+				new QueryCriteria("chromosome", "X")));
+		criterias.add(QueryCriteriaGroup.not(new QueryCriteria("taxId", new ArrayList<>(), Evaluation.IN)));
+		results = optimizer.optimize(criterias).getQueryCriterias();
+		Assert.isTrue(results.size() == 2);
+		Assert.isTrue(results.get(1) instanceof QueryCriteriaGroup);
+		Assert.isTrue(((QueryCriteriaGroup) results.get(1)).getQueryCriterias().size() == 2);
+
+		criterias = new ArrayList<>();
+		criterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("taxId", new ArrayList<>(), Evaluation.IN),
+				QueryCriteriaGroup.and(new QueryCriteria("taxId", 1), new QueryCriteria("taxId", 2))));
+		Assert.isTrue(optimizer.optimize(criterias).isUnsatisfiable());
+
+	}
+
+	@Configuration
+	public static class EmptyContext {}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.core.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
+import org.oncoblocks.centromere.core.repository.RepositoryOperations;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Method;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {RepositoryOperationsTests.EmptyContext.class})
+public class RepositoryOperationsTests {
+
+	/**
+	 * Spring Data repository proxies invoke interface default methods directly, bypassing the 
+	 *   implementations of the repository base classes, so repository operations must be abstract.
+	 */
+	@Test
+	public void noDefaultMethodsTest(){
+		for (Class<?> type: new Class<?>[]{ RepositoryOperations.class, AggregateOperations.class }){
+			for (Method method: type.getDeclaredMethods()){
+				Assert.isTrue(!method.isDefault(), "Repository operations must not be default methods: " 
+						+ type.getSimpleName() + "#" + method.getName());
+			}
+		}
+	}
+
+	@Configuration
+	public static class EmptyContext {}
+
+}
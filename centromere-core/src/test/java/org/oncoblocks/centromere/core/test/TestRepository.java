@@ -16,6 +16,10 @@
 
 package org.oncoblocks.centromere.core.test;
 
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.CountedPage;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
 import org.springframework.beans.BeanWrapper;
@@ -23,7 +27,9 @@ import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -94,6 +100,49 @@ public class TestRepository implements RepositoryOperations<EntrezGene, Long> {
 		return new PageImpl<>(new ArrayList<>(geneMap.values()), pageable, geneMap.size());
 	}
 
+	@Override
+	public Slice<EntrezGene> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable,
+			CountStrategy countStrategy) {
+		return new CountedPage<>(new ArrayList<>(geneMap.values()), pageable, geneMap.size(), CountStrategy.EXACT);
+	}
+
+	@Override
+	public Iterable<EntrezGene> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection) {
+		return geneMap.values();
+	}
+
+	@Override
+	public Slice<EntrezGene> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable,
+			CountStrategy countStrategy, Projection projection) {
+		return find(queryCriterias, pageable, countStrategy);
+	}
+
+	@Override
+	public CloseableIterator<EntrezGene> stream(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		final Iterator<EntrezGene> iterator = geneMap.values().iterator();
+		return new CloseableIterator<EntrezGene>() {
+			@Override public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			@Override public EntrezGene next() {
+				return iterator.next();
+			}
+			@Override public void close() { }
+		};
+	}
+
+	@Override
+	public CloseableIterator<EntrezGene> stream(Iterable<QueryCriteria> queryCriterias, Sort sort,
+			Projection projection) {
+		return stream(queryCriterias, sort);
+	}
+
+	@Override
+	public KeysetSlice<EntrezGene> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size,
+			String continuationToken) {
+		return new KeysetSlice<>(new ArrayList<>(geneMap.values()), size, sort, false, null);
+	}
+
 	@Override public long count(Iterable<QueryCriteria> queryCriterias) {
 		return geneMap.size();
 	}
@@ -113,6 +162,16 @@ public class TestRepository implements RepositoryOperations<EntrezGene, Long> {
 		return this.distinct(field);
 	}
 
+	@Override public Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias,
+			String prefix, int offset, int limit) {
+		List<Object> values = new ArrayList<>();
+		for (Object value: this.distinct(field)){
+			if (prefix == null || value.toString().startsWith(prefix)) values.add(value);
+		}
+		int end = limit > 0 ? Math.min(values.size(), offset + limit) : values.size();
+		return offset < end ? values.subList(offset, end) : new ArrayList<>();
+	}
+
 	@Override public <S extends EntrezGene> S insert(S entity) {
 		geneMap.put(entity.getId(), entity);
 		return entity;
@@ -137,6 +196,13 @@ public class TestRepository implements RepositoryOperations<EntrezGene, Long> {
 		return entities;
 	}
 
+	@Override public <S extends EntrezGene> Iterable<S> upsert(Iterable<S> entities) {
+		for (EntrezGene gene: entities){
+			geneMap.put(gene.getId(), gene);
+		}
+		return entities;
+	}
+
 	@Override public void delete(Long aLong) {
 		geneMap.remove(aLong);
 	}
@@ -170,4 +236,10 @@ public class TestRepository implements RepositoryOperations<EntrezGene, Long> {
 	public void deleteAll() {
 		geneMap = new HashMap<>();
 	}
+
+	@Override public long deleteAll(Iterable<QueryCriteria> queryCriterias) {
+		long count = geneMap.size();
+		geneMap = new HashMap<>();
+		return count;
+	}
 }
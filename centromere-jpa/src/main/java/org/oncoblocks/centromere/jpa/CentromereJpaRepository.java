@@ -17,34 +17,82 @@
 package org.oncoblocks.centromere.jpa;
 
 import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.ChunkedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.ContinuationToken;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.EmptyCloseableIterator;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.OptimizedCriteria;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaOptimizer;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.CascadeStyle;
+import org.hibernate.engine.spi.CascadingActions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
 import javax.persistence.EntityManager;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * @author woemler
  */
 public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializable> 
 		extends SimpleJpaRepository<T, ID>
-		implements RepositoryOperations<T, ID> {
+		implements RepositoryOperations<T, ID>, AggregateOperations {
 	
 	private final JpaEntityInformation<T, ID> metadata;
 	private final EntityManager entityManager;
 	private final JpaQueryBuilder<T> queryBuilder;
+	private PagedQueryExecutor pagedQueryExecutor = new PagedQueryExecutor();
+	private ChunkedQueryExecutor chunkedQueryExecutor = new ChunkedQueryExecutor();
+	private QueryCriteriaOptimizer queryCriteriaOptimizer;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	
+	public static final int DEFAULT_FETCH_SIZE = 1000;
 
 	public CentromereJpaRepository(JpaEntityInformation<T, ID> entityInformation,
 			EntityManager entityManager) {
@@ -52,28 +100,56 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 		this.metadata = entityInformation;
 		this.entityManager = entityManager;
 		this.queryBuilder = new JpaQueryBuilder<>(entityManager);
+		this.queryCriteriaOptimizer = QueryCriteriaOptimizer.forModel(entityInformation.getJavaType());
+	}
+
+	/**
+	 * Fetches all records with the requested IDs.  Large ID lists are split into multiple
+	 *   {@code IN} queries, and records are returned in the order of the requested IDs.
+	 *
+	 * @param ids record IDs
+	 * @return all matching {@code T} records.
+	 */
+	@Override
+	public List<T> findAll(Iterable<ID> ids) {
+		return chunkedQueryExecutor.findByIds(ids, new ChunkedQueryExecutor.ChunkQuery<ID, T>() {
+			@Override
+			public List<T> fetch(List<ID> chunk) {
+				return CentromereJpaRepository.super.findAll(chunk);
+			}
+		}, false);
 	}
 
 	/**
-	 * Searches for all records that satisfy the requested criteria.
+	 * Searches for all records that satisfy the requested criteria.  Oversized {@code IN} criteria 
+	 *   are split into multiple queries by the {@link ChunkedQueryExecutor}.
 	 *
 	 * @param queryCriterias {@link QueryCriteria}
 	 * @return all matching {@code T} records.
 	 */
 	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias) {
-		return this.findAll(queryBuilder.createSpecification(queryCriterias));
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return chunkedQueryExecutor.find(optimizedCriteria, null, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> this.findAll(queryBuilder.createSpecification(criterias)), 
+				!TransactionSynchronizationManager.isActualTransactionActive());
 	}
 
 	/**
 	 * Searches for all records that satisfy the requested criteria, and returns them in the
-	 * requested order.
+	 * requested order.  Oversized {@code IN} criteria are split into multiple queries by the 
+	 * {@link ChunkedQueryExecutor}, and the results are merged in sort order.
 	 *
 	 * @param queryCriterias {@link QueryCriteria}
 	 * @param sort           {@link Sort}
 	 * @return all matching {@code T} records.
 	 */
 	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort) {
-		return this.findAll(queryBuilder.createSpecification(queryCriterias), sort);
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return chunkedQueryExecutor.find(optimizedCriteria, sort, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> this.findAll(queryBuilder.createSpecification(criterias), sort), 
+				!TransactionSynchronizationManager.isActualTransactionActive());
 	}
 
 	/**
@@ -85,7 +161,282 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 	 * @return {@link Page} containing the desired set of records.
 	 */
 	public Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable) {
-		return this.findAll(queryBuilder.createSpecification(queryCriterias), pageable);
+		CountStrategy countStrategy = getCountStrategy() == CountStrategy.NONE ? CountStrategy.EXACT : null;
+		return (Page<T>) find(queryCriterias, pageable, countStrategy);
+	}
+
+	/**
+	 * Searches for all records that satisfy the requested criteria, and returns them as a paged
+	 *   collection, counted using the requested {@link CountStrategy}.  Exact counts are executed 
+	 *   concurrently with the page query, unless the repository is called within a transaction, so 
+	 *   the method does not start one of its own.  JPA offers no portable count estimate, so 
+	 *   {@link CountStrategy#ESTIMATED} falls back to an exact count.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param pageable {@link Pageable}
+	 * @param countStrategy {@link CountStrategy}, or null for the repository default.
+	 * @return {@link Slice} containing the desired set of records.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy) {
+		return find(queryCriterias, pageable, countStrategy, null);
+	}
+
+	/**
+	 * Searches for all records that satisfy the requested criteria, fetching only the entity 
+	 *   attributes required by the {@link Projection}, using a tuple query.  The returned entities 
+	 *   are new, unmanaged instances with only the selected attributes set.  Collection-valued 
+	 *   attributes cannot be selected in a tuple query, so projections that require one fall back to
+	 *   fetching whole entities.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @param projection {@link Projection}, or null to fetch all attributes.
+	 * @return all matching {@code T} records.
+	 */
+	public Iterable<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection) {
+		List<String> attributes = getProjectedAttributes(projection);
+		if (attributes == null) return sort != null ? find(queryCriterias, sort) : find(queryCriterias);
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return chunkedQueryExecutor.find(optimizedCriteria, sort, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> getProjectionQuery(queryBuilder.createSpecification(criterias), sort, attributes), 
+				!TransactionSynchronizationManager.isActualTransactionActive());
+	}
+
+	/**
+	 * Paged version of {@link #find(Iterable, Sort, Projection)}, counted using the requested 
+	 *   {@link CountStrategy}.  Exact counts are executed concurrently with the page query, unless 
+	 *   the repository is called within a transaction, so the method does not start one of its own.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param pageable {@link Pageable}
+	 * @param countStrategy {@link CountStrategy}, or null for the repository default.
+	 * @param projection {@link Projection}, or null to fetch all attributes.
+	 * @return {@link Slice} containing the desired set of records.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy, Projection projection) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()){
+			return pagedQueryExecutor.execute(PagedQueryExecutor.PagedQuery.<T>empty(), optimizedCriteria, 
+					pageable, countStrategy);
+		}
+		final Sort sort = pageable.getSort();
+		final List<String> attributes = getProjectedAttributes(projection);
+		final boolean concurrent = !TransactionSynchronizationManager.isActualTransactionActive();
+		PagedQueryExecutor.PagedQuery<T> pagedQuery = chunkedQueryExecutor.getPagedQuery(optimizedCriteria, 
+				sort, queryCriteriaOptimizer::isSingleValued, criterias -> {
+					final Specification<T> specification = queryBuilder.createSpecification(criterias);
+					return new PagedQueryExecutor.PagedQuery<T>() {
+						@Override 
+						public List<T> fetch(int offset, int limit) {
+							if (attributes != null){
+								return getProjectionQuery(specification, sort, attributes, offset, limit);
+							}
+							TypedQuery<T> query = getQuery(specification, sort);
+							query.setFirstResult(offset);
+							query.setMaxResults(limit);
+							return query.getResultList();
+						}
+						@Override 
+						public long count() {
+							return CentromereJpaRepository.this.count(specification);
+						}
+						@Override 
+						public boolean isConcurrentCountSupported() {
+							return concurrent;
+						}
+					};
+				}, concurrent);
+		return pagedQueryExecutor.execute(pagedQuery, optimizedCriteria, pageable, countStrategy);
+	}
+
+	/**
+	 * Determines which entity attributes must be selected to satisfy the {@link Projection}, always
+	 *   including the identifier attributes.  Returns null if the projection does not restrict the 
+	 *   selected attributes, or requires a collection-valued attribute.
+	 *
+	 * @param projection {@link Projection}, may be null.
+	 * @return attribute names, or null if whole entities should be fetched.
+	 */
+	protected List<String> getProjectedAttributes(Projection projection){
+		if (projection == null || projection.isEmpty()) return null;
+		EntityType<T> entityType = entityManager.getMetamodel().entity(metadata.getJavaType());
+		for (PluralAttribute<? super T, ?, ?> attribute: entityType.getPluralAttributes()){
+			if (projection.isSelected(attribute.getName())) return null;
+		}
+		List<String> attributes = new ArrayList<>();
+		for (String idAttribute: metadata.getIdAttributeNames()){
+			attributes.add(idAttribute);
+		}
+		for (SingularAttribute<? super T, ?> attribute: entityType.getSingularAttributes()){
+			if (!attributes.contains(attribute.getName()) && projection.isSelected(attribute.getName())){
+				attributes.add(attribute.getName());
+			}
+		}
+		return attributes;
+	}
+
+	private List<T> getProjectionQuery(Specification<T> specification, Sort sort, List<String> attributes){
+		return getProjectionQuery(specification, sort, attributes, null, null);
+	}
+
+	/**
+	 * Executes a tuple query selecting only the requested attributes, and maps each tuple to a new
+	 *   entity instance.
+	 */
+	private List<T> getProjectionQuery(Specification<T> specification, Sort sort, List<String> attributes,
+			Integer offset, Integer limit){
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		Root<T> root = query.from(metadata.getJavaType());
+		List<Selection<?>> selections = new ArrayList<>();
+		for (String attribute: attributes){
+			selections.add(root.get(attribute).alias(attribute));
+		}
+		query.multiselect(selections);
+		if (specification != null){
+			Predicate predicate = specification.toPredicate(root, query, builder);
+			if (predicate != null) query.where(predicate);
+		}
+		if (sort != null){
+			query.orderBy(QueryUtils.toOrders(sort, root, builder));
+		}
+		TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+		if (offset != null) typedQuery.setFirstResult(offset);
+		if (limit != null) typedQuery.setMaxResults(limit);
+		List<T> entities = new ArrayList<>();
+		for (Tuple tuple: typedQuery.getResultList()){
+			T entity = BeanUtils.instantiateClass(metadata.getJavaType());
+			DirectFieldAccessor accessor = new DirectFieldAccessor(entity);
+			for (String attribute: attributes){
+				accessor.setPropertyValue(attribute, tuple.get(attribute));
+			}
+			entities.add(entity);
+		}
+		return entities;
+	}
+
+	/**
+	 * Creates a new entity instance from the values of a row of selected attributes.
+	 */
+	private T getProjectedEntity(List<String> attributes, Object[] row){
+		T entity = BeanUtils.instantiateClass(metadata.getJavaType());
+		DirectFieldAccessor accessor = new DirectFieldAccessor(entity);
+		for (int i = 0; i < attributes.size(); i++){
+			accessor.setPropertyValue(attributes.get(i), row[i]);
+		}
+		return entity;
+	}
+
+	/**
+	 * Returns up to {@code size} records that satisfy the requested criteria and follow the position
+	 *   marked by {@code continuationToken}, using a range condition on the sort keys rather than an
+	 *   offset.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, may be null to order by identifier alone.
+	 * @param size maximum number of records to return.
+	 * @param continuationToken encoded token from the previous slice, or null for the first slice.
+	 * @return {@link KeysetSlice}
+	 */
+	public KeysetSlice<T> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size,
+			String continuationToken) {
+		List<String> idFields = new ArrayList<>();
+		for (String idField: metadata.getIdAttributeNames()){
+			idFields.add(idField);
+		}
+		Sort keysetSort = ContinuationToken.getKeysetSort(sort, idFields);
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()){
+			return new KeysetSlice<>(new ArrayList<T>(), size, keysetSort, false, null);
+		}
+		Specifications<T> specification = Specifications.where(queryBuilder.createSpecification(optimizedCriteria));
+		if (continuationToken != null){
+			ContinuationToken token = ContinuationToken.decode(continuationToken, keysetSort);
+			specification = specification.and(new KeysetSpecification<T>(keysetSort, token.getValues()));
+		}
+		TypedQuery<T> query = getQuery(specification, keysetSort);
+		query.setMaxResults(size + 1);
+		List<T> entities = query.getResultList();
+		boolean hasNext = entities.size() > size;
+		String nextToken = null;
+		if (hasNext){
+			entities = new ArrayList<>(entities.subList(0, size));
+			nextToken = ContinuationToken.fromEntity(entities.get(size - 1), keysetSort).encode();
+		}
+		return new KeysetSlice<>(entities, size, keysetSort, hasNext, nextToken);
+	}
+
+	/**
+	 * Opens a cursor over all records that satisfy the requested criteria, backed by Hibernate 
+	 *   {@link ScrollableResults}.  If called within an active transaction, the cursor is opened in the
+	 *   transaction's entity manager.  Otherwise, a dedicated entity manager is created for the cursor
+	 *   and closed along with it.  The method does not start a transaction of its own, since the
+	 *   cursor must outlive the method call.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @return {@link CloseableIterator} over all matching {@code T} records.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		return stream(queryCriterias, sort, null);
+	}
+
+	/**
+	 * Opens a cursor over all records that satisfy the requested criteria, as with 
+	 *   {@link #stream(Iterable, Sort)}.  Projections that restrict the selected attributes are 
+	 *   scrolled as scalar rows, and each row is mapped to a new, detached entity instance, as in 
+	 *   {@link #find(Iterable, Sort, Projection)}.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param sort {@link Sort}, or null for natural ordering.
+	 * @param projection {@link Projection}, or null to fetch all attributes.
+	 * @return {@link CloseableIterator} over all matching {@code T} records.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort, 
+			Projection projection) {
+		final List<String> attributes = getProjectedAttributes(projection);
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new EmptyCloseableIterator<>();
+		boolean transactional = TransactionSynchronizationManager.isActualTransactionActive();
+		EntityManager em = transactional ? entityManager 
+				: entityManager.getEntityManagerFactory().createEntityManager();
+		try {
+			CriteriaBuilder builder = em.getCriteriaBuilder();
+			CriteriaQuery<Object> query = builder.createQuery();
+			Root<T> root = query.from(metadata.getJavaType());
+			Specification<T> specification = queryBuilder.createSpecification(optimizedCriteria);
+			if (specification != null){
+				query.where(specification.toPredicate(root, query, builder));
+			}
+			if (sort != null){
+				query.orderBy(QueryUtils.toOrders(sort, root, builder));
+			}
+			if (attributes != null){
+				List<Selection<?>> selections = new ArrayList<>();
+				for (String attribute: attributes){
+					selections.add(root.get(attribute));
+				}
+				query.multiselect(selections);
+			} else {
+				query.select(root);
+			}
+			org.hibernate.Query hibernateQuery = em.createQuery(query).unwrap(org.hibernate.Query.class);
+			hibernateQuery.setFetchSize(fetchSize);
+			hibernateQuery.setReadOnly(true);
+			ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+			return new ScrollableResultsIterator<>(results, em.unwrap(Session.class), transactional ? null : em,
+					attributes != null ? row -> getProjectedEntity(attributes, row) : null);
+		} catch (RuntimeException e){
+			if (!transactional) em.close();
+			throw e;
+		}
 	}
 
 	/**
@@ -95,7 +446,11 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 	 * @return a count of {@code T} records.
 	 */
 	public long count(Iterable<QueryCriteria> queryCriterias) {
-		return this.count(queryBuilder.createSpecification(queryCriterias));
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return 0L;
+		return chunkedQueryExecutor.count(optimizedCriteria, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> this.count(queryBuilder.createSpecification(criterias)), 
+				!TransactionSynchronizationManager.isActualTransactionActive());
 	}
 
 	/**
@@ -105,11 +460,7 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 	 * @return Sorted list of distinct values of {@code field}.
 	 */
 	public Iterable<Object> distinct(String field) {
-		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<T> query = builder.createQuery(metadata.getJavaType());
-		Root<T> root = query.from(metadata.getJavaType());
-		query.select(root.get(field)).distinct(true);
-		return (List) entityManager.createQuery(query).getResultList();
+		return this.distinct(field, new ArrayList<QueryCriteria>(), null, 0, 0);
 	}
 
 	/**
@@ -121,12 +472,129 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 	 * @return Sorted list of distinct values of {@code field}.
 	 */
 	public Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias) {
+		return this.distinct(field, queryCriterias, null, 0, 0);
+	}
+
+	/**
+	 * {@link RepositoryOperations#distinct(String, Iterable, String, int, int)}
+	 *
+	 * Nested fields (eg. {@code aliases.name}) are selected through a join on the parent attribute.
+	 */
+	public List<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias, String prefix,
+			int offset, int limit) {
+		Assert.hasText(field, "Field name must not be empty.");
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object> query = builder.createQuery();
+		Root<T> root = query.from(metadata.getJavaType());
+		Path<Object> path = getAttributePath(root, field, new HashMap<String, Join<T, ?>>());
+		List<Predicate> predicates = new ArrayList<>();
+		Specification<T> specification = queryBuilder.createSpecification(optimizedCriteria);
+		if (specification != null){
+			predicates.add(specification.toPredicate(root, query, builder));
+		}
+		if (prefix != null){
+			predicates.add(builder.like(path.as(String.class), 
+					QueryCriteriaSpecification.escapeLike(prefix) + "%", QueryCriteriaSpecification.LIKE_ESCAPE));
+		}
+		query.select(path).distinct(true)
+				.where(predicates.toArray(new Predicate[]{}))
+				.orderBy(builder.asc(path));
+		TypedQuery<Object> typedQuery = entityManager.createQuery(query);
+		if (offset > 0) typedQuery.setFirstResult(offset);
+		if (limit > 0) typedQuery.setMaxResults(limit);
+		return typedQuery.getResultList();
+	}
+
+	/**
+	 * {@link AggregateOperations#aggregate}
+	 *
+	 * Compiles the query to a JPA criteria tuple query with {@code GROUP BY}.  Nested group fields 
+	 *   (eg. {@code aliases.name}) are grouped through a join on the parent attribute, so each record
+	 *   is counted once per joined value.  Minimum and maximum use {@code least} and {@code greatest}, 
+	 *   so that they also apply to non-numeric fields.  A count of a field counts its non-null values.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Map<String, Object>> aggregate(Iterable<QueryCriteria> queryCriterias, 
+			AggregateQuery aggregateQuery) {
+		Assert.notNull(aggregateQuery);
+		List<String> names = aggregateQuery.getOutputNames();
+		Assert.notEmpty(names, "At least one group field or accumulator must be requested.");
+		int sortIndex = aggregateQuery.getSortIndex();
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<T> query = builder.createQuery(metadata.getJavaType());
+		CriteriaQuery<Tuple> query = builder.createTupleQuery();
 		Root<T> root = query.from(metadata.getJavaType());
-		query.where(queryBuilder.createSpecification(queryCriterias).toPredicate(root, query, builder));
-		query.select(root.get(field)).distinct(true);
-		return (List) entityManager.createQuery(query).getResultList();
+		Map<String, Join<T, ?>> joins = new HashMap<>();
+		List<Expression<?>> groups = new ArrayList<>();
+		for (String field: aggregateQuery.getGroupFields()){
+			groups.add(getAttributePath(root, field, joins));
+		}
+		List<Expression<?>> expressions = new ArrayList<>(groups);
+		for (AggregateQuery.Accumulator accumulator: aggregateQuery.getAccumulators()){
+			Expression path = accumulator.getField() != null 
+					? getAttributePath(root, accumulator.getField(), joins) : null;
+			switch (accumulator.getFunction()){
+				case COUNT:
+					expressions.add(builder.count(path != null ? path : root));
+					break;
+				case MIN:
+					expressions.add(builder.least(path));
+					break;
+				case MAX:
+					expressions.add(builder.greatest(path));
+					break;
+				case SUM:
+					expressions.add(builder.sum(path));
+					break;
+				default:
+					expressions.add(builder.avg(path));
+			}
+		}
+		query.multiselect(new ArrayList<Selection<?>>(expressions)).groupBy(groups);
+		Specification<T> specification = queryBuilder.createSpecification(optimizedCriteria);
+		if (specification != null){
+			query.where(specification.toPredicate(root, query, builder));
+		}
+		List<Order> orders = new ArrayList<>();
+		if (sortIndex > -1){
+			Expression<?> expression = expressions.get(sortIndex);
+			orders.add(aggregateQuery.getSortDirection() == Sort.Direction.ASC
+					? builder.asc(expression) : builder.desc(expression));
+		} else {
+			for (Expression<?> group: groups){
+				orders.add(builder.asc(group));
+			}
+		}
+		query.orderBy(orders);
+		TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+		if (aggregateQuery.getLimit() > 0) typedQuery.setMaxResults(aggregateQuery.getLimit());
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (Tuple tuple: typedQuery.getResultList()){
+			Map<String, Object> row = new LinkedHashMap<>();
+			for (int i = 0; i < names.size(); i++){
+				row.put(names.get(i), tuple.get(i));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Resolves a model field to an attribute path, joining the parent attribute of nested fields.
+	 *   Joins are shared between fields with the same parent.
+	 */
+	private Path<Object> getAttributePath(Root<T> root, String field, Map<String, Join<T, ?>> joins){
+		if (!field.contains(".")) return root.get(field);
+		String[] bits = field.split("\\.");
+		Join<T, ?> join = joins.get(bits[0]);
+		if (join == null){
+			join = root.join(bits[0]);
+			joins.put(bits[0], join);
+		}
+		return join.get(bits[1]);
 	}
 
 	/**
@@ -186,5 +654,206 @@ public class CentromereJpaRepository<T extends Model<ID>, ID extends Serializabl
 		}
 		return updated;
 	}
+
+	/**
+	 * {@link RepositoryOperations#upsert}
+	 */
+	@Transactional
+	public <S extends T> Iterable<S> upsert(Iterable<S> entities) {
+		return this.save(entities);
+	}
+
+	/**
+	 * {@link RepositoryOperations#deleteAll(Iterable)}
+	 *
+	 * Executes a single bulk {@link CriteriaDelete}.  Bulk deletes bypass the persistence context and
+	 *   do not cascade, so for entities mapping element collections or associations, the IDs of the 
+	 *   matching records are selected first, and each chunk of IDs is deleted from every collection 
+	 *   table before it is deleted from the entity table.  Deleted entities are detached from the 
+	 *   persistence context.  Mappings that a bulk delete cannot clean up 
+	 *   the way {@link EntityManager#remove(Object)} would, such as composite IDs, non-cascading or 
+	 *   inverse associations, and cascades to entities with collections of their own, fall back to 
+	 *   loading and removing each entity individually.
+	 */
+	@Transactional
+	public long deleteAll(Iterable<QueryCriteria> queryCriterias) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		final Specification<T> specification = queryBuilder.createSpecification(optimizedCriteria);
+		Assert.notNull(specification, "At least one query criteria must be supplied.");
+		if (optimizedCriteria.isUnsatisfiable()) return 0L;
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		EntityType<T> entityType = entityManager.getMetamodel().entity(metadata.getJavaType());
+		if (entityType.getPluralAttributes().isEmpty()){
+			CriteriaDelete<T> delete = builder.createCriteriaDelete(metadata.getJavaType());
+			Root<T> root = delete.from(metadata.getJavaType());
+			delete.where(specification.toPredicate(root, null, builder));
+			return entityManager.createQuery(delete).executeUpdate();
+		}
+		final List<String> collectionDeletes = getCollectionTableDeletes(entityType);
+		if (collectionDeletes == null){
+			List<T> entities = this.findAll(specification);
+			for (T entity: entities){
+				entityManager.remove(entity);
+			}
+			return entities.size();
+		}
+		entityManager.flush();
+		final SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+		final EntityPersister entityPersister 
+				= session.getFactory().getEntityPersister(metadata.getJavaType().getName());
+		final String idAttribute = metadata.getIdAttributeNames().iterator().next();
+		CriteriaQuery<Object> query = builder.createQuery();
+		Root<T> root = query.from(metadata.getJavaType());
+		query.select(root.get(idAttribute)).where(specification.toPredicate(root, query, builder));
+		List<Object> ids = entityManager.createQuery(query).getResultList();
+		long deleted = 0L;
+		for (Integer count: chunkedQueryExecutor.execute(ids, new ChunkedQueryExecutor.ChunkQuery<Object, Integer>() {
+			@Override 
+			public List<Integer> fetch(List<Object> chunk) {
+				for (String sql: collectionDeletes){
+					entityManager.createNativeQuery(sql).setParameter("ids", chunk).executeUpdate();
+				}
+				CriteriaDelete<T> delete = builder.createCriteriaDelete(metadata.getJavaType());
+				Root<T> root = delete.from(metadata.getJavaType());
+				delete.where(root.get(idAttribute).in(chunk));
+				int count = entityManager.createQuery(delete).executeUpdate();
+				for (Object id: chunk){
+					Object entity = session.getPersistenceContext()
+							.getEntity(session.generateEntityKey((Serializable) id, entityPersister));
+					if (entity != null) entityManager.detach(entity);
+				}
+				return Collections.singletonList(count);
+			}
+		}, false)){
+			deleted += count;
+		}
+		return deleted;
+	}
+
+	/**
+	 * Builds a native {@code DELETE} statement for each collection table of the entity, removing the 
+	 *   rows owned by the IDs bound to the {@code ids} parameter: the rows of element collections and 
+	 *   join tables, and the rows of associated entities the association cascades removal to.  
+	 *   Returns null if any collection cannot be cleaned up this way.
+	 */
+	private List<String> getCollectionTableDeletes(EntityType<T> entityType){
+		if (metadata.hasCompositeId()) return null;
+		SessionFactoryImplementor sessionFactory 
+				= (SessionFactoryImplementor) entityManager.unwrap(Session.class).getSessionFactory();
+		AbstractEntityPersister entityPersister 
+				= (AbstractEntityPersister) sessionFactory.getEntityPersister(metadata.getJavaType().getName());
+		List<String> deletes = new ArrayList<>();
+		for (PluralAttribute<? super T, ?, ?> attribute: entityType.getPluralAttributes()){
+			if (!(entityPersister.getPropertyType(attribute.getName()) instanceof CollectionType)) return null;
+			CollectionType type = (CollectionType) entityPersister.getPropertyType(attribute.getName());
+			AbstractCollectionPersister collectionPersister 
+					= (AbstractCollectionPersister) sessionFactory.getCollectionPersister(type.getRole());
+			if (collectionPersister.getKeyColumnNames().length != 1 || type.getLHSPropertyName() != null) {
+				return null;
+			}
+			if (collectionPersister.isOneToMany()){
+				int index = entityPersister.getEntityMetamodel().getPropertyIndex(attribute.getName());
+				if (!entityPersister.getPropertyCascadeStyles()[index].doCascade(CascadingActions.DELETE)) {
+					return null;
+				}
+				AbstractEntityPersister elementPersister 
+						= (AbstractEntityPersister) collectionPersister.getElementPersister();
+				for (Type elementType: elementPersister.getPropertyTypes()){
+					if (elementType.isCollectionType()) return null;
+				}
+				for (CascadeStyle cascadeStyle: elementPersister.getPropertyCascadeStyles()){
+					if (cascadeStyle.doCascade(CascadingActions.DELETE)) return null;
+				}
+			} else if (collectionPersister.isInverse()){
+				return null;
+			}
+			deletes.add("DELETE FROM " + collectionPersister.getTableName() + " WHERE " 
+					+ collectionPersister.getKeyColumnNames()[0] + " IN (:ids)");
+		}
+		return deletes;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Sets the JDBC fetch size hint used by cursors opened with {@link #stream(Iterable, Sort)}.
+	 * 
+	 * @param fetchSize number of rows to fetch per round trip.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
 	
+
+	/**
+	 * Returns the default {@link CountStrategy} used for paged queries.
+	 */
+	public CountStrategy getCountStrategy() {
+		return pagedQueryExecutor.getDefaultCountStrategy();
+	}
+
+	/**
+	 * Sets the default {@link CountStrategy} used for paged queries, when none is requested.
+	 *
+	 * @param countStrategy {@link CountStrategy}
+	 */
+	public void setCountStrategy(CountStrategy countStrategy) {
+		pagedQueryExecutor.setDefaultCountStrategy(countStrategy);
+	}
+
+	public PagedQueryExecutor getPagedQueryExecutor() {
+		return pagedQueryExecutor;
+	}
+
+	public void setPagedQueryExecutor(PagedQueryExecutor pagedQueryExecutor) {
+		Assert.notNull(pagedQueryExecutor);
+		this.pagedQueryExecutor = pagedQueryExecutor;
+	}
+
+	public ChunkedQueryExecutor getChunkedQueryExecutor() {
+		return chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link ChunkedQueryExecutor} used to split large multi-ID lookups into 
+	 *   {@code IN} queries.
+	 *
+	 * @param chunkedQueryExecutor {@link ChunkedQueryExecutor}
+	 */
+	public void setChunkedQueryExecutor(ChunkedQueryExecutor chunkedQueryExecutor) {
+		Assert.notNull(chunkedQueryExecutor);
+		this.chunkedQueryExecutor = chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link Executor} used by this repository's {@link PagedQueryExecutor} and 
+	 *   {@link ChunkedQueryExecutor} to run count and chunk queries concurrently, so that the 
+	 *   repository does not share the default pool with others.  The executor should be bounded, 
+	 *   for example one created with {@link PagedQueryExecutor#createExecutor(int, int)}, and sized 
+	 *   to the connection pool.
+	 *
+	 * @param executor {@link Executor}
+	 */
+	public void setQueryExecutor(Executor executor) {
+		Assert.notNull(executor);
+		pagedQueryExecutor.setExecutor(executor);
+		chunkedQueryExecutor.setExecutor(executor);
+	}
+
+	public QueryCriteriaOptimizer getQueryCriteriaOptimizer() {
+		return queryCriteriaOptimizer;
+	}
+
+	/**
+	 * Sets the {@link QueryCriteriaOptimizer} applied to query criteria before they are converted to 
+	 *   JPA specifications.  By default, joined collection attributes are exempt from merging.
+	 *
+	 * @param queryCriteriaOptimizer {@link QueryCriteriaOptimizer}
+	 */
+	public void setQueryCriteriaOptimizer(QueryCriteriaOptimizer queryCriteriaOptimizer) {
+		Assert.notNull(queryCriteriaOptimizer);
+		this.queryCriteriaOptimizer = queryCriteriaOptimizer;
+	}
 }
@@ -18,6 +18,7 @@ package org.oncoblocks.centromere.jpa;
 
 import org.oncoblocks.centromere.core.model.Model;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.domain.Specifications;
 
@@ -34,18 +35,43 @@ public class JpaQueryBuilder<T extends Model<?>> {
 		this.entityManager = entityManager;
 	}
 
+	/**
+	 * Combines the supplied criteria into a single {@link Specification}, joined with {@code AND}. 
+	 *   {@link QueryCriteriaGroup} instances are converted into nested {@code AND}, {@code OR}, and 
+	 *   {@code NOT} specifications.
+	 *
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @return {@link Specification}, or null if there are no criteria.
+	 */
 	public Specification<T> createSpecification(Iterable<QueryCriteria> queryCriterias){
+		return createSpecification(queryCriterias, QueryCriteriaGroup.Operator.AND, false);
+	}
+
+	private Specifications<T> createSpecification(Iterable<QueryCriteria> queryCriterias, 
+			QueryCriteriaGroup.Operator operator, boolean correlated){
 		Specifications<T> specifications = null;
 		for (QueryCriteria queryCriteria: queryCriterias){
 			if (queryCriteria != null){
-				Specification<T> specification = new QueryCriteriaSpecification<>(queryCriteria);
+				Specification<T> specification;
+				if (queryCriteria instanceof QueryCriteriaGroup){
+					QueryCriteriaGroup group = (QueryCriteriaGroup) queryCriteria;
+					specification = createSpecification(group.getQueryCriterias(), group.getOperator(), 
+							correlated || group.getOperator() != QueryCriteriaGroup.Operator.AND);
+				} else {
+					specification = new QueryCriteriaSpecification<>(queryCriteria, correlated);
+				}
 				if (specifications == null){
 					specifications = Specifications.where(specification);
+				} else if (operator == QueryCriteriaGroup.Operator.OR){
+					specifications = specifications.or(specification);
 				} else {
 					specifications = specifications.and(specification);
 				}
 			}
 		}
+		if (specifications != null && operator == QueryCriteriaGroup.Operator.NOT){
+			specifications = Specifications.not(specifications);
+		}
 		return specifications;
 	}
 	
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.jpa;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.Assert;
+
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Specification} implementation of the range condition used for keyset pagination.  For
+ *   sort keys {@code (a, b, id)}, selects all records where {@code a > v1 OR (a = v1 AND b > v2)
+ *   OR (a = v1 AND b = v2 AND id > v3)}, with the comparison reversed for descending keys.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class KeysetSpecification<T> implements Specification<T> {
+
+	private final List<Sort.Order> orders;
+	private final List<Object> values;
+
+	/**
+	 * @param keysetSort complete keyset {@link Sort}, ending with the record identifier.
+	 * @param values sort key values of the last record of the previous page.
+	 */
+	public KeysetSpecification(Sort keysetSort, List<Object> values) {
+		Assert.notNull(keysetSort);
+		Assert.notNull(values);
+		this.orders = new ArrayList<>();
+		for (Sort.Order order: keysetSort){
+			orders.add(order);
+		}
+		Assert.isTrue(orders.size() == values.size(), "Number of keyset values does not match the sort.");
+		this.values = values;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Predicate toPredicate(Root<T> root, CriteriaQuery<?> criteriaQuery,
+			CriteriaBuilder criteriaBuilder) {
+		List<Predicate> branches = new ArrayList<>();
+		for (int i = 0; i < orders.size(); i++){
+			List<Predicate> terms = new ArrayList<>();
+			for (int j = 0; j < i; j++){
+				terms.add(criteriaBuilder.equal(getPath(root, orders.get(j).getProperty()), values.get(j)));
+			}
+			Sort.Order order = orders.get(i);
+			Expression<Comparable> path = getPath(root, order.getProperty());
+			Comparable value = (Comparable) values.get(i);
+			terms.add(order.isAscending() ? criteriaBuilder.greaterThan(path, value)
+					: criteriaBuilder.lessThan(path, value));
+			branches.add(criteriaBuilder.and(terms.toArray(new Predicate[]{})));
+		}
+		return criteriaBuilder.or(branches.toArray(new Predicate[]{}));
+	}
+
+	private static <X> Path<X> getPath(Root<?> root, String property){
+		Path<?> path = root;
+		for (String part: property.split("\\.")){
+			path = path.get(part);
+		}
+		return (Path<X>) path;
+	}
+
+}
@@ -24,42 +24,70 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.jpa.domain.Specification;
 
 import javax.persistence.criteria.*;
+import java.util.Collection;
 import java.util.List;
 
 /**
+ * Converts a single {@link QueryCriteria} into a JPA predicate.  Keys referencing an attribute of 
+ *   an associated entity, such as {@code aliases.name}, are joined.  When the criteria is a member 
+ *   of an {@code OR} or {@code NOT} group, the association is instead tested with a correlated 
+ *   {@code EXISTS} subquery, so that records without associated entities are not excluded, and 
+ *   records with several matching associated entities are not duplicated.
+ * 
  * @author woemler
  */
 public class QueryCriteriaSpecification<T extends Model<?>> implements Specification<T> {
 	
 	private final QueryCriteria queryCriteria;
+	private final boolean correlated;
 	private static final Logger logger = LoggerFactory.getLogger(QueryCriteriaSpecification.class);
+	static final char LIKE_ESCAPE = '!';
 
 	public QueryCriteriaSpecification(QueryCriteria queryCriteria) {
+		this(queryCriteria, false);
+	}
+
+	/**
+	 * @param queryCriteria {@link QueryCriteria}
+	 * @param correlated if true, associations are tested with an {@code EXISTS} subquery, rather 
+	 *   than joined.
+	 */
+	public QueryCriteriaSpecification(QueryCriteria queryCriteria, boolean correlated) {
 		this.queryCriteria = queryCriteria;
+		this.correlated = correlated;
 	}
 
+	@SuppressWarnings("unchecked")
 	public Predicate toPredicate(Root<T> root, CriteriaQuery<?> criteriaQuery,
 			CriteriaBuilder criteriaBuilder) {
 		String key = queryCriteria.getKey();
-		Object value = queryCriteria.getValue();
-		Evaluation eval = queryCriteria.getEvaluation();
-		Path path = null;
+		logger.debug(String.format("[CENTROMERE] Converting QueryCriteria to JPA specification: %s", queryCriteria.toString()));
 		if (key.contains(".")){
 			String[] bits = key.split("\\.");
-			path = root.join(bits[0]).get(bits[1]);
+			if (correlated && criteriaQuery != null){
+				Subquery subquery = criteriaQuery.subquery(Object.class);
+				Join join = subquery.correlate(root).join(bits[0]);
+				subquery.select(join).where(getPredicate(join.get(bits[1]), criteriaBuilder));
+				return criteriaBuilder.exists(subquery);
+			}
+			return getPredicate(root.join(bits[0]).get(bits[1]), criteriaBuilder);
 		} else {
-			path = root.get(key);
+			return getPredicate(root.get(key), criteriaBuilder);
 		}
-		logger.debug(String.format("[CENTROMERE] Converting QueryCriteria to JPA specification: %s", queryCriteria.toString()));
+	}
+
+	private Predicate getPredicate(Path path, CriteriaBuilder criteriaBuilder){
+		Object value = queryCriteria.getValue();
+		Evaluation eval = queryCriteria.getEvaluation();
 		switch (eval){
 			case EQUALS:
 				return criteriaBuilder.equal(path, value);
 			case NOT_EQUALS:
 				return criteriaBuilder.notEqual(path, value);
 			case IN:
-				return path.in(value);
+				return getInPredicate(path, value);
 			case NOT_IN:
-				return criteriaBuilder.not(path.in(value));
+				return criteriaBuilder.not(getInPredicate(path, value));
 			case IS_NULL:
 				return criteriaBuilder.isNull(path);
 			case NOT_NULL:
@@ -89,15 +117,43 @@ public class QueryCriteriaSpecification<T extends Model<?>> implements Specifica
 						.or(criteriaBuilder.greaterThanOrEqualTo(path, ((List<?>) value).get(1).toString()),
 								criteriaBuilder.lessThanOrEqualTo(path, ((List<?>) value).get(0).toString()));
 			case LIKE:
-				return criteriaBuilder.like(path, "%" + value.toString() + "%");
+				return criteriaBuilder.like(path, "%" + escapeLike(value.toString()) + "%", LIKE_ESCAPE);
 			case NOT_LIKE:
-				return criteriaBuilder.notLike(path, "%" + value.toString() + "%");
+				return criteriaBuilder.notLike(path, "%" + escapeLike(value.toString()) + "%", LIKE_ESCAPE);
 			case STARTS_WITH:
-				return criteriaBuilder.like(path, value.toString() + "%");
+				return criteriaBuilder.like(path, escapeLike(value.toString()) + "%", LIKE_ESCAPE);
 			case ENDS_WITH:
-				return criteriaBuilder.like(path, "%" + value.toString());
+				return criteriaBuilder.like(path, "%" + escapeLike(value.toString()), LIKE_ESCAPE);
 			default:
-				return criteriaBuilder.equal(root.get(queryCriteria.getKey()), queryCriteria.getValue());
+				return criteriaBuilder.equal(path, value);
+		}
+	}
+
+	/**
+	 * Escapes the {@code LIKE} wildcards, {@code %} and {@code _}, and the {@link #LIKE_ESCAPE} 
+	 *   character itself, so that they are matched literally.
+	 */
+	static String escapeLike(String value){
+		StringBuilder builder = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE) builder.append(LIKE_ESCAPE);
+			builder.append(c);
 		}
+		return builder.toString();
 	}
+
+	/**
+	 * Collection and array values are expanded into the {@code IN} list, rather than being bound as 
+	 *   a single value.
+	 */
+	private Predicate getInPredicate(Path path, Object value){
+		if (value instanceof Collection){
+			return path.in((Collection) value);
+		} else if (value instanceof Object[]){
+			return path.in((Object[]) value);
+		}
+		return path.in(value);
+	}
+
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.jpa;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * {@link CloseableIterator} implementation that wraps Hibernate {@link ScrollableResults}.  When the
+ *   iterator owns its {@link EntityManager} (ie. it was opened outside of a transaction), each
+ *   entity is evicted from the persistence context once the caller moves past it, so that memory
+ *   use does not grow with the size of the result set, and the entity manager is closed along with
+ *   the iterator.  Entities returned within a caller's transaction are left attached.  Results of
+ *   scalar queries, such as projections, are converted to records by a row mapping function.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ScrollableResultsIterator<T> implements CloseableIterator<T> {
+
+	private final ScrollableResults results;
+	private final Session session;
+	private final EntityManager ownedEntityManager;
+	private final Function<Object[], T> rowMapper;
+	private T previous = null;
+	private Boolean hasNext = null;
+	private boolean closed = false;
+
+	private static final HibernateJpaDialect jpaDialect = new HibernateJpaDialect();
+
+	/**
+	 * @param results open {@link ScrollableResults}
+	 * @param session {@link Session} the results were opened in.
+	 * @param ownedEntityManager entity manager to close along with the iterator, or null if the
+	 *   results are bound to an externally-managed entity manager.
+	 */
+	public ScrollableResultsIterator(ScrollableResults results, Session session, EntityManager ownedEntityManager) {
+		this(results, session, ownedEntityManager, null);
+	}
+
+	/**
+	 * @param results open {@link ScrollableResults}
+	 * @param session {@link Session} the results were opened in.
+	 * @param ownedEntityManager entity manager to close along with the iterator, or null if the
+	 *   results are bound to an externally-managed entity manager.
+	 * @param rowMapper converts each result row to a record, or null if each row holds an entity.
+	 */
+	public ScrollableResultsIterator(ScrollableResults results, Session session, 
+			EntityManager ownedEntityManager, Function<Object[], T> rowMapper) {
+		Assert.notNull(results);
+		Assert.notNull(session);
+		this.results = results;
+		this.session = session;
+		this.ownedEntityManager = ownedEntityManager;
+		this.rowMapper = rowMapper;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) return false;
+		if (hasNext == null){
+			try {
+				hasNext = results.next();
+			} catch (RuntimeException e){
+				close();
+				throw translate(e);
+			}
+			if (!hasNext) close();
+		}
+		return hasNext;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		hasNext = null;
+		try {
+			if (rowMapper != null){
+				Object[] row = results.get();
+				// multi-select criteria queries return each row wrapped in a single-element array
+				if (row.length == 1 && row[0] instanceof Object[]) row = (Object[]) row[0];
+				return rowMapper.apply(row);
+			}
+			if (ownedEntityManager != null && previous != null) session.evict(previous);
+			previous = (T) results.get(0);
+			return previous;
+		} catch (RuntimeException e){
+			close();
+			throw translate(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		try {
+			results.close();
+		} finally {
+			if (ownedEntityManager != null && ownedEntityManager.isOpen()) ownedEntityManager.close();
+		}
+	}
+
+	private static RuntimeException translate(RuntimeException e){
+		DataAccessException translated = jpaDialect.translateExceptionIfPossible(e);
+		return translated != null ? translated : e;
+	}
+
+}
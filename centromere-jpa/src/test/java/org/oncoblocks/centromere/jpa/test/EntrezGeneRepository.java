@@ -16,6 +16,7 @@
 
 package org.oncoblocks.centromere.jpa.test;
 
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
 import org.springframework.data.jpa.repository.Query;
 
@@ -25,7 +26,7 @@ import java.util.List;
  * @author woemler
  */
 public interface EntrezGeneRepository extends CustomGeneRepository,
-		RepositoryOperations<EntrezGene, Long> {
+		RepositoryOperations<EntrezGene, Long>, AggregateOperations {
 	List<EntrezGene> findByEntrezGeneId(Long entrezGeneId);
 	List<EntrezGene> findByPrimaryGeneSymbol(String primaryGeneSymbol);
 	
@@ -20,13 +20,21 @@ import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.CountedPage;
 import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +45,7 @@ import javax.persistence.criteria.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author woemler
@@ -76,6 +85,19 @@ public class JpaRepositoryTests {
 		
 	}
 
+	@Test
+	public void findAllByIdsTest(){
+
+		List<EntrezGene> found = new ArrayList<>();
+		for (EntrezGene entity: geneRepository.findAll(Arrays.asList(3L, 1L, 99L, 3L))){
+			found.add(entity);
+		}
+		Assert.isTrue(found.size() == 2);
+		Assert.isTrue(found.get(0).getEntrezGeneId().equals(3L));
+		Assert.isTrue(found.get(1).getEntrezGeneId().equals(1L));
+
+	}
+
 	@Test
 	public void findAllTest(){
 		
@@ -236,6 +258,162 @@ public class JpaRepositoryTests {
 
 	}
 
+	@Test
+	public void streamTest(){
+
+		List<QueryCriteria> searchCriterias = new ArrayList<>();
+		searchCriterias.add(new QueryCriteria("geneType", "protein-coding"));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "primaryGeneSymbol"));
+		List<EntrezGene> genes = new ArrayList<>();
+		try (CloseableIterator<EntrezGene> iterator = geneRepository.stream(searchCriterias, sort)){
+			while (iterator.hasNext()){
+				genes.add(iterator.next());
+			}
+			Assert.isTrue(!iterator.hasNext());
+		}
+		Assert.isTrue(genes.size() == 3);
+		EntrezGene gene = genes.get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(4L));
+		Assert.notNull(gene.getAliases());
+		Assert.notEmpty(gene.getAliases());
+
+		genes = new ArrayList<>();
+		try (CloseableIterator<EntrezGene> iterator = geneRepository.stream(searchCriterias, sort, 
+				Projection.include("primaryGeneSymbol"))){
+			while (iterator.hasNext()){
+				genes.add(iterator.next());
+			}
+		}
+		Assert.isTrue(genes.size() == 3);
+		gene = genes.get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(4L));
+		Assert.isTrue("GeneD".equals(gene.getPrimaryGeneSymbol()));
+		Assert.isNull(gene.getGeneType());
+
+	}
+
+	@Test
+	public void findPagedCountStrategyTest(){
+
+		PageRequest pageRequest = new PageRequest(0, 2, new Sort(new Sort.Order(Sort.Direction.ASC, "entrezGeneId")));
+		for (CountStrategy countStrategy: Arrays.asList(CountStrategy.EXACT, CountStrategy.CACHED, 
+				CountStrategy.ESTIMATED, CountStrategy.CACHED)){
+			Slice<EntrezGene> slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, countStrategy);
+			Assert.isTrue(slice instanceof Page);
+			Page<EntrezGene> page = (Page<EntrezGene>) slice;
+			Assert.isTrue(page.getContent().size() == 2);
+			Assert.isTrue(page.getTotalElements() == 5);
+			Assert.isTrue(page.getTotalPages() == 3);
+		}
+		Slice<EntrezGene> slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.ESTIMATED);
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.EXACT);
+
+		slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.NONE);
+		Assert.isTrue(!(slice instanceof Page));
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 2);
+		Assert.isTrue(slice.hasNext());
+		slice = geneRepository.find(new ArrayList<QueryCriteria>(), new PageRequest(2, 2, pageRequest.getSort()), 
+				CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 1);
+		Assert.isTrue(!slice.hasNext());
+
+
+	}
+
+	@Test
+	public void findProjectedTest(){
+
+		List<QueryCriteria> searchCriterias = new ArrayList<>();
+		searchCriterias.add(new QueryCriteria("geneType", "protein-coding"));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "entrezGeneId"));
+		List<EntrezGene> genes = (List<EntrezGene>) geneRepository.find(searchCriterias, sort, 
+				Projection.include("primaryGeneSymbol"));
+		Assert.isTrue(genes.size() == 3);
+		EntrezGene gene = genes.get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(1L));
+		Assert.isTrue("GeneA".equals(gene.getPrimaryGeneSymbol()));
+		Assert.isNull(gene.getGeneType());
+
+		genes = (List<EntrezGene>) geneRepository.find(searchCriterias, sort, Projection.include("aliases"));
+		Assert.isTrue(genes.size() == 3);
+		Assert.notEmpty(genes.get(0).getAliases());
+
+		Slice<EntrezGene> slice = geneRepository.find(searchCriterias, new PageRequest(1, 2, sort), 
+				CountStrategy.EXACT, Projection.exclude("description", "aliases", "attributes"));
+		Assert.isTrue(slice instanceof Page);
+		Assert.isTrue(((Page<EntrezGene>) slice).getTotalElements() == 3);
+		Assert.isTrue(slice.getContent().size() == 1);
+		gene = slice.getContent().get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(4L));
+		Assert.isTrue("protein-coding".equals(gene.getGeneType()));
+		Assert.isNull(gene.getDescription());
+
+	}
+
+	@Test
+	public void findAfterTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "geneType"));
+		List<EntrezGene> results = new ArrayList<>();
+		String token = null;
+		int pages = 0;
+		do {
+			KeysetSlice<EntrezGene> slice = geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, token);
+			Assert.notNull(slice);
+			Assert.isTrue(slice.getContent().size() <= 2);
+			results.addAll(slice.getContent());
+			token = slice.getContinuationToken();
+			Assert.isTrue(slice.hasNext() == (token != null));
+			pages++;
+		} while (token != null);
+		Assert.isTrue(pages == 3);
+		Assert.isTrue(results.size() == 5);
+		List<Long> ids = new ArrayList<>();
+		for (EntrezGene result: results){
+			ids.add(result.getEntrezGeneId());
+		}
+		Assert.isTrue(ids.equals(Arrays.asList(3L, 5L, 1L, 2L, 4L)));
+
+	}
+
+	@Test
+	public void findAfterInvalidTokenTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "geneType"));
+		KeysetSlice<EntrezGene> slice = geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, null);
+		Assert.notNull(slice.getContinuationToken());
+		try {
+			geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort.and(new Sort("primaryGeneSymbol")), 2,
+					slice.getContinuationToken());
+			Assert.isTrue(false, "Token created with a different sort should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		try {
+			geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, "not-a-valid-token!");
+			Assert.isTrue(false, "Malformed token should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+
+	}
+
+	@Test
+	@Transactional
+	public void transactionalStreamTest(){
+
+		int count = 0;
+		try (CloseableIterator<EntrezGene> iterator = geneRepository.stream(new ArrayList<QueryCriteria>(), null)){
+			while (iterator.hasNext()){
+				Assert.notNull(iterator.next());
+				count++;
+			}
+		}
+		Assert.isTrue(count == 5);
+
+	}
+
 	@Test
 	@Transactional
 	public void insertTest(){
@@ -308,6 +486,39 @@ public class JpaRepositoryTests {
 		Assert.isNull(deleted);
 
 	}
+
+	@Test
+	@Transactional
+	public void deleteByCriteriaTest(){
+
+		long count = geneRepository.count();
+		for (long i = 100; i < 103; i++){
+			EntrezGene gene = new EntrezGene();
+			gene.setEntrezGeneId(i);
+			gene.setPrimaryGeneSymbol("TEST" + i);
+			gene.setTaxId(9606);
+			gene.setChromosome("1");
+			gene.setChromosomeLocation("1");
+			gene.setDescription("Test gene");
+			gene.setGeneType("test-gene");
+			gene.setAliases(Arrays.asList(new GeneAlias(i, "ALIAS" + i)));
+			gene.setAttributes(Arrays.asList(new GeneAttribute(i, "isKinase", "N")));
+			geneRepository.insert(gene);
+		}
+		Assert.isTrue(geneRepository.count() == count + 3);
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", "test-gene"));
+		long deleted = geneRepository.deleteAll(criterias);
+		Assert.isTrue(deleted == 3);
+		Assert.isTrue(geneRepository.count() == count);
+		Assert.isNull(geneRepository.findOne(101L));
+		Assert.isTrue(((Number) entityManager.createNativeQuery(
+				"SELECT COUNT(*) FROM gene_aliases WHERE entrez_gene_id >= 100").getSingleResult()).intValue() == 0);
+		Assert.isTrue(((Number) entityManager.createNativeQuery(
+				"SELECT COUNT(*) FROM gene_attributes WHERE entrez_gene_id >= 100").getSingleResult()).intValue() == 0);
+
+	}
 	
 	@Test
 	public void distinctTest(){
@@ -333,8 +544,95 @@ public class JpaRepositoryTests {
 		Assert.isTrue("GeneD".equals(symbol));
 		
 	}
+
+	@Test
+	public void distinctPagedTest(){
+
+		List<Object> geneSymbols = (List<Object>) geneRepository.distinct("primaryGeneSymbol", 
+				new ArrayList<QueryCriteria>(), "Gene", 1, 2);
+		Assert.isTrue(geneSymbols.size() == 2);
+		Assert.isTrue("GeneB".equals(geneSymbols.get(0)));
+		Assert.isTrue("GeneC".equals(geneSymbols.get(1)));
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", "pseudo"));
+		geneSymbols = (List<Object>) geneRepository.distinct("primaryGeneSymbol", criterias, "GeneE", 0, 10);
+		Assert.isTrue(geneSymbols.size() == 1);
+		Assert.isTrue("GeneE".equals(geneSymbols.get(0)));
+
+		geneSymbols = (List<Object>) geneRepository.distinct("aliases.name", new ArrayList<QueryCriteria>(), 
+				"DE", 0, 0);
+		Assert.isTrue(geneSymbols.size() == 1);
+		Assert.isTrue("DEF".equals(geneSymbols.get(0)));
+
+		geneSymbols = (List<Object>) geneRepository.distinct("primaryGeneSymbol", new ArrayList<QueryCriteria>(), 
+				"Gene_", 0, 0);
+		Assert.isTrue(geneSymbols.isEmpty());
+		geneSymbols = (List<Object>) geneRepository.distinct("primaryGeneSymbol", new ArrayList<QueryCriteria>(), 
+				"%", 0, 0);
+		Assert.isTrue(geneSymbols.isEmpty());
+
+	}
 	
 	
+	@Test
+	public void aggregateTest(){
+
+		List<Map<String, Object>> rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().max("primaryGeneSymbol").avg("taxId"));
+		Assert.isTrue(rows.size() == 2);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 3);
+		Assert.isTrue("GeneD".equals(rows.get(0).get("max_primaryGeneSymbol")));
+		Assert.isTrue(((Number) rows.get(0).get("avg_taxId")).intValue() == 9606);
+		Assert.isTrue("pseudo".equals(rows.get(1).get("geneType")));
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("chromosome", "3"));
+		rows = geneRepository.aggregate(criterias, AggregateQuery.groupBy().count().min("primaryGeneSymbol"));
+		Assert.isTrue(rows.size() == 1);
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 2);
+		Assert.isTrue("GeneB".equals(rows.get(0).get("min_primaryGeneSymbol")));
+
+		rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().top(1, "count"));
+		Assert.isTrue(rows.size() == 1);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+
+		rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("attributes.name").count());
+		Assert.notEmpty(rows);
+
+	}
+
+	@Test
+	@Transactional
+	public void aggregateCountFieldTest(){
+
+		EntrezGene gene = new EntrezGene();
+		gene.setEntrezGeneId(100L);
+		gene.setPrimaryGeneSymbol("TEST");
+		gene.setTaxId(9606);
+		gene.setChromosome("1");
+		gene.setChromosomeLocation("1");
+		gene.setDescription("Test gene");
+		gene.setGeneType("protein-coding");
+		geneRepository.insert(gene);
+
+		List<Map<String, Object>> rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().count("chromosomeLocation"));
+		Assert.isTrue(rows.size() == 2);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 4);
+		Assert.isTrue(((Number) rows.get(0).get("count_chromosomeLocation")).intValue() == 1);
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+		Assert.isTrue(((Number) rows.get(1).get("count_chromosomeLocation")).intValue() == 0);
+
+		geneRepository.delete(100L);
+
+	}
+
 	/* EntrezGene repository-specific tests */
 
 	@Test
@@ -407,6 +705,48 @@ public class JpaRepositoryTests {
 		Assert.isTrue("GeneB".equals(genes.get(1).getPrimaryGeneSymbol()));
 	}
 
+	@Test
+	public void findOptimizedCriteriaTest() throws Exception {
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("entrezGeneId", Arrays.asList(2L, 4L, 5L), Evaluation.IN));
+		criterias.add(new QueryCriteria("entrezGeneId", 4L, Evaluation.LESS_THAN_EQUALS));
+		criterias.add(new QueryCriteria("entrezGeneId", 1L, Evaluation.GREATER_THAN_EQUALS));
+		List<EntrezGene> genes = (List<EntrezGene>) geneRepository.find(criterias);
+		Assert.isTrue(genes.size() == 2);
+		
+		criterias.add(new QueryCriteria("entrezGeneId", 3L, Evaluation.EQUALS));
+		genes = (List<EntrezGene>) geneRepository.find(criterias);
+		Assert.isTrue(genes.isEmpty());
+		Assert.isTrue(geneRepository.count(criterias) == 0L);
+		Assert.isTrue(!geneRepository.distinct("geneType", criterias).iterator().hasNext());
+	}
+
+	@Test
+	public void findByCriteriaGroupTest() throws Exception {
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("primaryGeneSymbol", "GeneA"), 
+				new QueryCriteria("aliases.name", "DEF"),
+				QueryCriteriaGroup.and(new QueryCriteria("chromosome", "X"), 
+						new QueryCriteria("geneType", "pseudo"))));
+		List<EntrezGene> genes = (List<EntrezGene>) geneRepository.find(criterias, 
+				new Sort(new Sort.Order(Sort.Direction.ASC, "entrezGeneId")));
+		Assert.isTrue(genes.size() == 3);
+		Assert.isTrue(genes.get(0).getEntrezGeneId().equals(1L));
+		Assert.isTrue(genes.get(1).getEntrezGeneId().equals(2L));
+		Assert.isTrue(genes.get(2).getEntrezGeneId().equals(5L));
+		Assert.isTrue(geneRepository.count(criterias) == 3L);
+
+		criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", "protein-coding"));
+		criterias.add(QueryCriteriaGroup.not(new QueryCriteria("aliases.name", "DEF")));
+		genes = (List<EntrezGene>) geneRepository.find(criterias);
+		Assert.isTrue(genes.size() == 2);
+		for (EntrezGene gene: genes){
+			Assert.isTrue(!gene.getEntrezGeneId().equals(2L));
+		}
+	}
+
 	@Test
 	public void findByGreaterThanTest() throws Exception {
 		List<QueryCriteria> criterias = new ArrayList<>();
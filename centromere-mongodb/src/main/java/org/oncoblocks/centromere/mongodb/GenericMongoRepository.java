@@ -21,23 +21,41 @@ import com.google.common.reflect.TypeToken;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
+import com.mongodb.WriteConcern;
 import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.ChunkedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.ContinuationToken;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.EmptyCloseableIterator;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.OptimizedCriteria;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaOptimizer;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.util.Assert;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Generic MongoDB implementation of {@link RepositoryOperations}.  Includes all of the methods 
@@ -47,10 +65,18 @@ import java.util.List;
  * @author woemler
  */
 public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable> 
-		implements RepositoryOperations<T, ID>  {
+		implements RepositoryOperations<T, ID>, AggregateOperations {
 	
 	private final MongoOperations mongoOperations;
 	private final Class<T> model;
+	private PagedQueryExecutor pagedQueryExecutor = new PagedQueryExecutor();
+	private ChunkedQueryExecutor chunkedQueryExecutor = new ChunkedQueryExecutor();
+	private QueryCriteriaOptimizer queryCriteriaOptimizer;
+	private int cursorBatchSize = DEFAULT_CURSOR_BATCH_SIZE;
+	private int bulkBatchSize = MongoBulkUtils.DEFAULT_BATCH_SIZE;
+	private WriteConcern writeConcern = null;
+	
+	public static final int DEFAULT_CURSOR_BATCH_SIZE = 1000;
 	private static final Logger logger = LoggerFactory.getLogger(GenericMongoRepository.class);
 
 	/**
@@ -63,6 +89,7 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 		Assert.notNull(model);
 		this.mongoOperations = mongoOperations;
 		this.model = model;
+		this.queryCriteriaOptimizer = QueryCriteriaOptimizer.forModel(model);
 	}
 
 	public GenericMongoRepository(MongoOperations mongoOperations) {
@@ -70,6 +97,7 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 		this.mongoOperations = mongoOperations;
 		TypeToken<T> typeToken = new TypeToken<T>(getClass()){};
 		model = (Class<T>) typeToken.getRawType();
+		this.queryCriteriaOptimizer = QueryCriteriaOptimizer.forModel(model);
 	}
 
 	/**
@@ -104,11 +132,12 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#findAll(Iterable)}
 	 */
 	public List<T> findAll(Iterable<ID> iterable) {
-		List<T> found = new ArrayList<>();
-		for (ID id: iterable){
-			found.add(this.findOne(id));
-		}
-		return found;
+		return chunkedQueryExecutor.findByIds(iterable, new ChunkedQueryExecutor.ChunkQuery<ID, T>() {
+			@Override 
+			public List<T> fetch(List<ID> ids) {
+				return mongoOperations.find(new Query(Criteria.where("_id").in(ids)), model);
+			}
+		}, true);
 	}
 
 	/**
@@ -124,58 +153,163 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	 * {@link RepositoryOperations#findAll}
 	 */
 	public List<T> find(Iterable<QueryCriteria> queryCriterias) {
-		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(queryCriterias);
-		Query query = new Query();
-		if (criteria != null){
-			query.addCriteria(criteria);
-		}
-		return mongoOperations.find(query, model);
+		return find(queryCriterias, (Sort) null, (Projection) null);
 	}
 
 	/**
 	 * {@link RepositoryOperations#findAll}
 	 */
 	public List<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort) {
-		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(queryCriterias);
+		return find(queryCriterias, sort, (Projection) null);
+	}
+
+	/**
+	 * {@link RepositoryOperations#findAll}
+	 */
+	public Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable) {
+		CountStrategy countStrategy = getCountStrategy() == CountStrategy.NONE ? CountStrategy.EXACT : null;
+		return (Page<T>) find(queryCriterias, pageable, countStrategy);
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy)}
+	 */
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy) {
+		return find(queryCriterias, pageable, countStrategy, null);
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Sort, Projection)}
+	 * 
+	 * Oversized {@code IN} criteria are split into concurrent queries by the 
+	 *   {@link ChunkedQueryExecutor}, and the results are merged in sort order.
+	 */
+	public List<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return chunkedQueryExecutor.find(optimizedCriteria, sort, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> {
+					Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(criterias);
+					Query query = new Query();
+					if (criteria != null){
+						query.addCriteria(criteria);
+					}
+					if (sort != null) query.with(sort);
+					return mongoOperations.find(MongoQueryUtils.applyProjection(query, projection), model);
+				}, true);
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy, Projection)}
+	 */
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy, Projection projection) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()){
+			return pagedQueryExecutor.execute(PagedQueryExecutor.PagedQuery.<T>empty(), optimizedCriteria, 
+					pageable, countStrategy);
+		}
+		PagedQueryExecutor.PagedQuery<T> pagedQuery = chunkedQueryExecutor.getPagedQuery(optimizedCriteria, 
+				pageable.getSort(), queryCriteriaOptimizer::isSingleValued, 
+				criterias -> MongoQueryUtils.getPagedQuery(mongoOperations, 
+						MongoQueryUtils.getQueryFromQueryCriteria(criterias), pageable.getSort(), projection, model), 
+				true);
+		return pagedQueryExecutor.execute(pagedQuery, optimizedCriteria, pageable, countStrategy);
+	}
+
+	/**
+	 * {@link RepositoryOperations#findAfter}
+	 */
+	public KeysetSlice<T> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size, 
+			String continuationToken) {
+		Sort keysetSort = ContinuationToken.getKeysetSort(sort, Collections.singletonList(getIdField()));
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()){
+			return new KeysetSlice<>(new ArrayList<T>(), size, keysetSort, false, null);
+		}
+		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(optimizedCriteria);
+		if (continuationToken != null){
+			ContinuationToken token = ContinuationToken.decode(continuationToken, keysetSort);
+			Criteria keysetCriteria = MongoQueryUtils.getKeysetCriteria(keysetSort, token.getValues());
+			criteria = criteria != null ? new Criteria().andOperator(criteria, keysetCriteria) : keysetCriteria;
+		}
 		Query query = new Query();
 		if (criteria != null){
 			query.addCriteria(criteria);
 		}
-		return mongoOperations.find(query.with(sort), model);
+		query.with(keysetSort).limit(size + 1);
+		List<T> entities = mongoOperations.find(query, model);
+		boolean hasNext = entities.size() > size;
+		String nextToken = null;
+		if (hasNext){
+			entities = new ArrayList<>(entities.subList(0, size));
+			nextToken = ContinuationToken.fromEntity(entities.get(size - 1), keysetSort).encode();
+		}
+		return new KeysetSlice<>(entities, size, keysetSort, hasNext, nextToken);
 	}
 
 	/**
-	 * {@link RepositoryOperations#findAll}
+	 * {@link RepositoryOperations#stream(Iterable, Sort)}
 	 */
-	public Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable) {
-		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(queryCriterias);
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		return stream(queryCriterias, sort, null);
+	}
+
+	/**
+	 * {@link RepositoryOperations#stream(Iterable, Sort, Projection)}
+	 */
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort, 
+			Projection projection) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new EmptyCloseableIterator<>();
+		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(optimizedCriteria);
 		Query query = new Query();
 		if (criteria != null){
 			query.addCriteria(criteria);
 		}
-		List<T> entities = mongoOperations.find(query.with(pageable), model);
-		long count = count(queryCriterias);
-		return new PageImpl<T>(entities, pageable, count);
+		if (sort != null){
+			query.with(sort);
+		}
+		return MongoCursorIterator.open(mongoOperations, MongoQueryUtils.applyProjection(query, projection), 
+				model, cursorBatchSize);
 	}
 
 	/**
 	 * {@link RepositoryOperations#distinct(String)}
 	 */
 	public List<Object> distinct(String field){
-		return mongoOperations.getCollection(mongoOperations.getCollectionName(model)).distinct(field);
+		return this.distinct(field, new ArrayList<QueryCriteria>(), null, 0, 0);
 	}
 
 	/**
 	 * {@link RepositoryOperations#distinct(String, Iterable)}
 	 */
 	public List<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias){
-		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(queryCriterias);
-		Query query = new Query();
-		if (criteria != null){
-			query.addCriteria(criteria);
-		}
-		return mongoOperations.getCollection(mongoOperations.getCollectionName(model))
-				.distinct(field, query.getQueryObject());
+		return this.distinct(field, queryCriterias, null, 0, 0);
+	}
+
+	/**
+	 * {@link RepositoryOperations#distinct(String, Iterable, String, int, int)}
+	 */
+	public List<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias, String prefix,
+			int offset, int limit){
+		Assert.hasText(field, "Field name must not be empty.");
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return MongoQueryUtils.distinct(mongoOperations, model, field, 
+				MongoQueryUtils.getQueryFromQueryCriteria(optimizedCriteria), prefix, offset, limit);
+	}
+
+	/**
+	 * {@link AggregateOperations#aggregate}
+	 */
+	public List<Map<String, Object>> aggregate(Iterable<QueryCriteria> queryCriterias, 
+			AggregateQuery aggregateQuery){
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new ArrayList<>();
+		return MongoQueryUtils.aggregate(mongoOperations, model, 
+				MongoQueryUtils.getQueryFromQueryCriteria(optimizedCriteria), aggregateQuery);
 	}
 
 	/**
@@ -210,33 +344,51 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	 * {@link RepositoryOperations#update}
 	 */
 	public <S extends T> List<S> update(Iterable<S> entities) {
-		List<S> updated = new ArrayList<>();
-		for (S entity: entities){
-			entity = this.update(entity);
-			if (entity != null) updated.add(entity);
-		}
-		return updated;
+		return MongoBulkUtils.update(mongoOperations, model, iterableToList(entities), 
+				bulkBatchSize, writeConcern);
+	}
+
+	/**
+	 * {@link RepositoryOperations#upsert}
+	 */
+	public <S extends T> List<S> upsert(Iterable<S> entities) {
+		return MongoBulkUtils.upsert(mongoOperations, model, iterableToList(entities), 
+				bulkBatchSize, writeConcern);
 	}
 
 	/**
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#save(Object)}	 */
 	public <S extends T> S save(S s) {
-		if (this.exists(s.getId())){
-			return this.update(s);
-		} else {
-			return this.insert(s);
-		}
+		mongoOperations.save(s);
+		return s;
 	}
 
 	/**
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#save(Iterable)}
 	 */
 	public <S extends T> List<S> save(Iterable<S> iterable) {
-		List<S> saved = new ArrayList<>();
-		for (S s: iterable){
-			saved.add(this.save(s));
+		return saveAll(iterableToList(iterable));
+	}
+
+	/**
+	 * Inserts entities without identifiers in a single batch, and upserts the remainder with bulk 
+	 *   writes, rather than checking whether each entity exists first.
+	 */
+	private <S extends T> List<S> saveAll(List<S> entities){
+		List<S> newEntities = new ArrayList<>();
+		List<S> existingEntities = new ArrayList<>();
+		for (S entity: entities){
+			if (entity.getId() == null){
+				newEntities.add(entity);
+			} else {
+				existingEntities.add(entity);
+			}
 		}
-		return saved;
+		if (!newEntities.isEmpty()) mongoOperations.insertAll(newEntities);
+		if (!existingEntities.isEmpty()){
+			MongoBulkUtils.upsert(mongoOperations, model, existingEntities, bulkBatchSize, writeConcern);
+		}
+		return entities;
 	}
 
 	/**
@@ -250,19 +402,24 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	 * {@link RepositoryOperations#count}
 	 */
 	public long count(Iterable<QueryCriteria> queryCriterias) {
-		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(queryCriterias);
-		Query query = new Query();
-		if (criteria != null){
-			query.addCriteria(criteria);
-		}
-		return mongoOperations.count(query, model);
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return 0L;
+		return chunkedQueryExecutor.count(optimizedCriteria, queryCriteriaOptimizer::isSingleValued, 
+				criterias -> {
+					Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(criterias);
+					Query query = new Query();
+					if (criteria != null){
+						query.addCriteria(criteria);
+					}
+					return mongoOperations.count(query, model);
+				}, true);
 	}
 
 	/**
 	 * {@link RepositoryOperations#delete}
 	 */
 	public void delete(ID id) {
-		mongoOperations.findAndRemove(Query.query(Criteria.where("_id").is(id)), model);
+		mongoOperations.remove(Query.query(Criteria.where("_id").is(id)), model);
 	}
 
 	/**
@@ -283,9 +440,28 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#delete(Iterable)}
 	 */
 	public void delete(Iterable<? extends T> iterable) {
+		List<ID> ids = new ArrayList<>();
 		for (T t: iterable){
-			this.delete(t.getId());
+			ids.add(t.getId());
 		}
+		chunkedQueryExecutor.execute(ids, new ChunkedQueryExecutor.ChunkQuery<ID, Integer>() {
+			@Override 
+			public List<Integer> fetch(List<ID> chunk) {
+				return Collections.singletonList(mongoOperations.remove(
+						new Query(Criteria.where("_id").in(chunk)), model).getN());
+			}
+		}, false);
+	}
+
+	/**
+	 * {@link RepositoryOperations#deleteAll(Iterable)}
+	 */
+	public long deleteAll(Iterable<QueryCriteria> queryCriterias) {
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		Criteria criteria = MongoQueryUtils.getQueryFromQueryCriteria(optimizedCriteria);
+		Assert.notNull(criteria, "At least one query criteria must be supplied.");
+		if (optimizedCriteria.isUnsatisfiable()) return 0L;
+		return mongoOperations.remove(new Query(criteria), model).getN();
 	}
 
 	/**
@@ -332,6 +508,18 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 		this.createIndex(field, Sort.Direction.ASC, false, false);
 	}
 
+	/**
+	 * Returns the name of the model's identifier field, as mapped by the {@link MongoOperations} 
+	 *   mapping context.
+	 * 
+	 * @return identifier field name.
+	 */
+	protected String getIdField(){
+		MongoPersistentEntity<?> entity = mongoOperations.getConverter().getMappingContext()
+				.getPersistentEntity(model);
+		return entity != null && entity.hasIdProperty() ? entity.getIdProperty().getName() : "id";
+	}
+
 	/**
 	 * Converts a generic {@link Iterable} to a {@link List}.
 	 * 
@@ -354,4 +542,117 @@ public class GenericMongoRepository<T extends Model<ID>, ID extends Serializable
 	public Class<T> getModel() {
 		return model;
 	}
+
+	public int getCursorBatchSize() {
+		return cursorBatchSize;
+	}
+
+	/**
+	 * Sets the number of documents fetched per round trip by cursors opened with 
+	 *   {@link #stream(Iterable, Sort)}.
+	 * 
+	 * @param cursorBatchSize number of documents per batch.
+	 */
+	public void setCursorBatchSize(int cursorBatchSize) {
+		Assert.isTrue(cursorBatchSize > 0, "Cursor batch size must be greater than zero.");
+		this.cursorBatchSize = cursorBatchSize;
+	}
+
+	public int getBulkBatchSize() {
+		return bulkBatchSize;
+	}
+
+	/**
+	 * Sets the maximum number of documents written per bulk operation by {@link #update(Iterable)}, 
+	 *   {@link #upsert(Iterable)} and {@link #save(Iterable)}.
+	 *
+	 * @param bulkBatchSize number of documents per bulk write.
+	 */
+	public void setBulkBatchSize(int bulkBatchSize) {
+		Assert.isTrue(bulkBatchSize > 0, "Bulk batch size must be greater than zero.");
+		this.bulkBatchSize = bulkBatchSize;
+	}
+
+	public WriteConcern getWriteConcern() {
+		return writeConcern;
+	}
+
+	/**
+	 * Sets the {@link WriteConcern} used for bulk writes.  If null, the collection default is used.
+	 *
+	 * @param writeConcern {@link WriteConcern}
+	 */
+	public void setWriteConcern(WriteConcern writeConcern) {
+		this.writeConcern = writeConcern;
+	}
+
+	/**
+	 * Returns the default {@link CountStrategy} used for paged queries.
+	 */
+	public CountStrategy getCountStrategy() {
+		return pagedQueryExecutor.getDefaultCountStrategy();
+	}
+
+	/**
+	 * Sets the default {@link CountStrategy} used for paged queries, when none is requested.
+	 *
+	 * @param countStrategy {@link CountStrategy}
+	 */
+	public void setCountStrategy(CountStrategy countStrategy) {
+		pagedQueryExecutor.setDefaultCountStrategy(countStrategy);
+	}
+
+	public PagedQueryExecutor getPagedQueryExecutor() {
+		return pagedQueryExecutor;
+	}
+
+	public void setPagedQueryExecutor(PagedQueryExecutor pagedQueryExecutor) {
+		Assert.notNull(pagedQueryExecutor);
+		this.pagedQueryExecutor = pagedQueryExecutor;
+	}
+
+	public ChunkedQueryExecutor getChunkedQueryExecutor() {
+		return chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link ChunkedQueryExecutor} used to split large multi-ID lookups into concurrent 
+	 *   {@code IN} queries.
+	 *
+	 * @param chunkedQueryExecutor {@link ChunkedQueryExecutor}
+	 */
+	public void setChunkedQueryExecutor(ChunkedQueryExecutor chunkedQueryExecutor) {
+		Assert.notNull(chunkedQueryExecutor);
+		this.chunkedQueryExecutor = chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link Executor} used by this repository's {@link PagedQueryExecutor} and 
+	 *   {@link ChunkedQueryExecutor} to run count and chunk queries concurrently, so that the 
+	 *   repository does not share the default pool with others.  The executor should be bounded, 
+	 *   for example one created with {@link PagedQueryExecutor#createExecutor(int, int)}, and sized 
+	 *   to the connection pool.
+	 *
+	 * @param executor {@link Executor}
+	 */
+	public void setQueryExecutor(Executor executor) {
+		Assert.notNull(executor);
+		pagedQueryExecutor.setExecutor(executor);
+		chunkedQueryExecutor.setExecutor(executor);
+	}
+
+	public QueryCriteriaOptimizer getQueryCriteriaOptimizer() {
+		return queryCriteriaOptimizer;
+	}
+
+	/**
+	 * Sets the {@link QueryCriteriaOptimizer} applied to query criteria before they are converted to 
+	 *   MongoDB queries.  By default, array and embedded collection fields are exempt from merging.
+	 *
+	 * @param queryCriteriaOptimizer {@link QueryCriteriaOptimizer}
+	 */
+	public void setQueryCriteriaOptimizer(QueryCriteriaOptimizer queryCriteriaOptimizer) {
+		Assert.notNull(queryCriteriaOptimizer);
+		this.queryCriteriaOptimizer = queryCriteriaOptimizer;
+	}
 }
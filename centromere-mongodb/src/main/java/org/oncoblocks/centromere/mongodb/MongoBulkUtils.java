@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteConcern;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helper class for writing large numbers of documents with unordered bulk write operations, 
+ *   rather than with one or more round trips per document.  Entities are converted with the 
+ *   {@link MongoOperations} converter, so documents are written exactly as 
+ *   {@link MongoOperations#save(Object)} would write them, but no mapping events are published.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class MongoBulkUtils {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+
+	/**
+	 * Replaces every document with a matching identifier, and skips entities that do not exist in 
+	 *   the collection.  Each batch needs one query to find the existing identifiers, and one bulk
+	 *   write.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param model entity class
+	 * @param entities entities to update
+	 * @param batchSize maximum number of documents per bulk write
+	 * @param writeConcern {@link WriteConcern}, or null for the collection default.
+	 * @return the entities that were updated, in their original order.
+	 */
+	public static <S> List<S> update(MongoOperations mongoOperations, Class<?> model, List<S> entities,
+			int batchSize, WriteConcern writeConcern){
+		DBCollection collection = getCollection(mongoOperations, model);
+		List<S> updated = new ArrayList<>();
+		for (int start = 0; start < entities.size(); start += batchSize){
+			List<S> batch = entities.subList(start, Math.min(start + batchSize, entities.size()));
+			List<DBObject> documents = new ArrayList<>();
+			List<Object> ids = new ArrayList<>();
+			for (S entity: batch){
+				DBObject document = toDBObject(mongoOperations, entity);
+				documents.add(document);
+				if (document.get("_id") != null) ids.add(document.get("_id"));
+			}
+			Set<Object> existing = getExistingIds(collection, ids);
+			BulkWriteOperation operation = collection.initializeUnorderedBulkOperation();
+			boolean hasRequests = false;
+			for (int i = 0; i < batch.size(); i++){
+				Object id = documents.get(i).get("_id");
+				if (id != null && existing.contains(id)){
+					operation.find(new BasicDBObject("_id", id)).replaceOne(documents.get(i));
+					updated.add(batch.get(i));
+					hasRequests = true;
+				}
+			}
+			if (hasRequests) execute(operation, writeConcern);
+		}
+		return updated;
+	}
+
+	/**
+	 * Inserts or replaces every document by its identifier, with one bulk write per batch.  All
+	 *   entities must have identifiers.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param model entity class
+	 * @param entities entities to upsert
+	 * @param batchSize maximum number of documents per bulk write
+	 * @param writeConcern {@link WriteConcern}, or null for the collection default.
+	 * @return the upserted entities.
+	 */
+	public static <S> List<S> upsert(MongoOperations mongoOperations, Class<?> model, List<S> entities, 
+			int batchSize, WriteConcern writeConcern){
+		DBCollection collection = getCollection(mongoOperations, model);
+		for (int start = 0; start < entities.size(); start += batchSize){
+			List<S> batch = entities.subList(start, Math.min(start + batchSize, entities.size()));
+			BulkWriteOperation operation = collection.initializeUnorderedBulkOperation();
+			for (S entity: batch){
+				DBObject document = toDBObject(mongoOperations, entity);
+				Assert.notNull(document.get("_id"), "Upserted entities must have an identifier.");
+				operation.find(new BasicDBObject("_id", document.get("_id"))).upsert().replaceOne(document);
+			}
+			execute(operation, writeConcern);
+		}
+		return entities;
+	}
+
+	private static Set<Object> getExistingIds(DBCollection collection, List<Object> ids){
+		Set<Object> existing = new HashSet<>();
+		if (ids.isEmpty()) return existing;
+		DBCursor cursor = collection.find(new BasicDBObject("_id", new BasicDBObject("$in", ids)),
+				new BasicDBObject("_id", 1));
+		try {
+			while (cursor.hasNext()){
+				existing.add(cursor.next().get("_id"));
+			}
+		} finally {
+			cursor.close();
+		}
+		return existing;
+	}
+
+	private static DBObject toDBObject(MongoOperations mongoOperations, Object entity){
+		DBObject document = new BasicDBObject();
+		mongoOperations.getConverter().write(entity, document);
+		return document;
+	}
+
+	private static DBCollection getCollection(MongoOperations mongoOperations, Class<?> model){
+		return mongoOperations.getCollection(mongoOperations.getCollectionName(model));
+	}
+
+	private static void execute(BulkWriteOperation operation, WriteConcern writeConcern){
+		try {
+			if (writeConcern != null){
+				operation.execute(writeConcern);
+			} else {
+				operation.execute();
+			}
+		} catch (RuntimeException e){
+			DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(e);
+			throw translated != null ? translated : e;
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.mongodb;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.util.Assert;
+
+import java.util.NoSuchElementException;
+
+/**
+ * {@link CloseableIterator} implementation that wraps a MongoDB {@link DBCursor}, converting
+ *   documents into model objects as they are read.  Documents are pulled from the server in batches
+ *   of a configurable size, so only a single batch is held in memory at any time.  The cursor is
+ *   closed automatically once it is exhausted, but should always be closed explicitly by the caller.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class MongoCursorIterator<T> implements CloseableIterator<T> {
+
+	private final DBCursor cursor;
+	private final MongoConverter converter;
+	private final Class<T> model;
+	private boolean closed = false;
+
+	private static final PersistenceExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+
+	public MongoCursorIterator(DBCursor cursor, MongoConverter converter, Class<T> model) {
+		Assert.notNull(cursor);
+		Assert.notNull(converter);
+		Assert.notNull(model);
+		this.cursor = cursor;
+		this.converter = converter;
+		this.model = model;
+	}
+
+	/**
+	 * Opens a new cursor against the collection mapped to the {@code model} class, using the supplied
+	 *   {@link Query} for filtering, sorting, field selection, and skip/limit options.  Field names
+	 *   are mapped to their document representations the same way they are in
+	 *   {@link MongoOperations#find(Query, Class)}.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param query {@link Query}
+	 * @param model model class
+	 * @param batchSize number of documents to fetch from the server per round trip.
+	 * @return {@link MongoCursorIterator}
+	 */
+	public static <T> MongoCursorIterator<T> open(MongoOperations mongoOperations, Query query,
+			Class<T> model, int batchSize){
+		MongoConverter converter = mongoOperations.getConverter();
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(model);
+		QueryMapper queryMapper = new QueryMapper(converter);
+		DBObject mappedQuery = queryMapper.getMappedObject(query.getQueryObject(), entity);
+		DBObject mappedFields = query.getFieldsObject() != null ?
+				queryMapper.getMappedFields(query.getFieldsObject(), entity) : null;
+		try {
+			DBCollection collection = mongoOperations.getCollection(mongoOperations.getCollectionName(model));
+			DBCursor cursor = collection.find(mappedQuery, mappedFields).batchSize(batchSize);
+			if (query.getSortObject() != null){
+				cursor.sort(queryMapper.getMappedSort(query.getSortObject(), entity));
+			}
+			if (query.getSkip() > 0) cursor.skip(query.getSkip());
+			if (query.getLimit() > 0) cursor.limit(query.getLimit());
+			return new MongoCursorIterator<>(cursor, converter, model);
+		} catch (RuntimeException e){
+			throw translate(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) return false;
+		try {
+			boolean hasNext = cursor.hasNext();
+			if (!hasNext) close();
+			return hasNext;
+		} catch (RuntimeException e){
+			close();
+			throw translate(e);
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		try {
+			return converter.read(model, cursor.next());
+		} catch (RuntimeException e){
+			close();
+			throw translate(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		cursor.close();
+	}
+
+	private static RuntimeException translate(RuntimeException e){
+		DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(e);
+		return translated != null ? translated : e;
+	}
+
+}
@@ -16,13 +16,35 @@
 
 package org.oncoblocks.centromere.mongodb;
 
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor.PagedQuery;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Field;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Helper class for translation of {@link QueryCriteria} to Spring Data {@link Criteria} query objects.
@@ -35,7 +57,8 @@ public class MongoQueryUtils {
 	/**
 	 * Converts a collection of {@link QueryCriteria}
 	 *  objects into Spring Data MongoDB {@link Criteria}
-	 *  objects, used to build a {@link Query}.
+	 *  objects, used to build a {@link Query}.  {@link QueryCriteriaGroup} instances are converted
+	 *  to {@code $and}, {@code $or}, and {@code $nor} expressions.
 	 *
 	 * @param queryCriterias list of query parameters to be converted.
 	 * @return {@link Criteria} representation of the dataimport.
@@ -43,79 +66,395 @@ public class MongoQueryUtils {
 	public static Criteria getQueryFromQueryCriteria(Iterable<QueryCriteria> queryCriterias){
 		List<Criteria> criteriaList = new ArrayList<>();
 		for (QueryCriteria queryCriteria: queryCriterias){
-			Criteria criteria = null;
 			if (queryCriteria != null) {
-				switch (queryCriteria.getEvaluation()) {
-					case EQUALS:
-						criteria = new Criteria(queryCriteria.getKey()).is(queryCriteria.getValue());
-						break;
-					case NOT_EQUALS:
-						criteria = new Criteria(queryCriteria.getKey()).not().is(queryCriteria.getValue());
-						break;
-					case IN:
-						criteria = new Criteria(queryCriteria.getKey()).in((Collection) queryCriteria.getValue());
-						break;
-					case NOT_IN:
-						criteria = new Criteria(queryCriteria.getKey()).nin((Collection) queryCriteria.getValue());
-						break;
-					case IS_NULL:
-						criteria = new Criteria(queryCriteria.getKey()).is(null);
-						break;
-					case NOT_NULL:
-						criteria = new Criteria(queryCriteria.getKey()).not().is(null);
-						break;
-					case GREATER_THAN:
-						criteria = new Criteria(queryCriteria.getKey()).gt(queryCriteria.getValue());
-						break;
-					case GREATER_THAN_EQUALS:
-						criteria = new Criteria(queryCriteria.getKey()).gte(queryCriteria.getValue());
-						break;
-					case LESS_THAN:
-						criteria = new Criteria(queryCriteria.getKey()).lt(queryCriteria.getValue());
-						break;
-					case LESS_THAN_EQUALS:
-						criteria = new Criteria(queryCriteria.getKey()).lte(queryCriteria.getValue());
-						break;
-					case BETWEEN:
-						criteria = new Criteria().andOperator(
-								Criteria.where(queryCriteria.getKey()).gt(((List) queryCriteria.getValue()).get(0)),
-								Criteria.where(queryCriteria.getKey()).lt(((List) queryCriteria.getValue()).get(1)));
-						break;
-					case OUTSIDE:
-						criteria = new Criteria().orOperator(
-								Criteria.where(queryCriteria.getKey()).lt(((List) queryCriteria.getValue()).get(0)),
-								Criteria.where(queryCriteria.getKey()).gt(((List) queryCriteria.getValue()).get(1)));
-						break;
-					case BETWEEN_INCLUSIVE:
-						criteria = new Criteria().andOperator(
-								Criteria.where(queryCriteria.getKey()).gte(((List) queryCriteria.getValue()).get(0)),
-								Criteria.where(queryCriteria.getKey()).lte(((List) queryCriteria.getValue()).get(1)));
-						break;
-					case OUTSIDE_INCLUSIVE:
-						criteria = new Criteria().orOperator(
-								Criteria.where(queryCriteria.getKey()).lte(((List) queryCriteria.getValue()).get(0)),
-								Criteria.where(queryCriteria.getKey()).gte(((List) queryCriteria.getValue()).get(1)));
-						break;
-					case LIKE:
-						criteria = new Criteria(queryCriteria.getKey()).regex((String) queryCriteria.getValue());
-						break;
-					case NOT_LIKE:
-						// TODO
-						break;
-					case STARTS_WITH:
-						criteria = new Criteria(queryCriteria.getKey()).regex("^" + queryCriteria.getValue());
-						break;
-					case ENDS_WITH:
-						criteria = new Criteria(queryCriteria.getKey()).regex(queryCriteria.getValue() + "$");
-						break;
-					default:
-						criteria = new Criteria(queryCriteria.getKey()).is(queryCriteria.getValue());
-				}
-				criteriaList.add(criteria);
+				criteriaList.add(getCriteria(queryCriteria));
 			}
 		}
 		return criteriaList.size() > 0 ?
 				new Criteria().andOperator(criteriaList.toArray(new Criteria[]{})) : null;
 	}
+
+	/**
+	 * Converts a single {@link QueryCriteria}, or a {@link QueryCriteriaGroup} and its members, into 
+	 *   a {@link Criteria} object.
+	 */
+	private static Criteria getCriteria(QueryCriteria queryCriteria){
+		if (queryCriteria instanceof QueryCriteriaGroup){
+			QueryCriteriaGroup group = (QueryCriteriaGroup) queryCriteria;
+			List<Criteria> members = new ArrayList<>();
+			for (QueryCriteria member: group.getQueryCriterias()){
+				members.add(getCriteria(member));
+			}
+			Criteria[] array = members.toArray(new Criteria[]{});
+			switch (group.getOperator()){
+				case OR:
+					return new Criteria().orOperator(array);
+				case NOT:
+					return new Criteria().norOperator(
+							array.length == 1 ? array[0] : new Criteria().andOperator(array));
+				default:
+					return new Criteria().andOperator(array);
+			}
+		}
+		Criteria criteria = null;
+		switch (queryCriteria.getEvaluation()) {
+			case EQUALS:
+				criteria = new Criteria(queryCriteria.getKey()).is(queryCriteria.getValue());
+				break;
+			case NOT_EQUALS:
+				criteria = new Criteria(queryCriteria.getKey()).not().is(queryCriteria.getValue());
+				break;
+			case IN:
+				criteria = new Criteria(queryCriteria.getKey()).in((Collection) queryCriteria.getValue());
+				break;
+			case NOT_IN:
+				criteria = new Criteria(queryCriteria.getKey()).nin((Collection) queryCriteria.getValue());
+				break;
+			case IS_NULL:
+				criteria = new Criteria(queryCriteria.getKey()).is(null);
+				break;
+			case NOT_NULL:
+				criteria = new Criteria(queryCriteria.getKey()).not().is(null);
+				break;
+			case GREATER_THAN:
+				criteria = new Criteria(queryCriteria.getKey()).gt(queryCriteria.getValue());
+				break;
+			case GREATER_THAN_EQUALS:
+				criteria = new Criteria(queryCriteria.getKey()).gte(queryCriteria.getValue());
+				break;
+			case LESS_THAN:
+				criteria = new Criteria(queryCriteria.getKey()).lt(queryCriteria.getValue());
+				break;
+			case LESS_THAN_EQUALS:
+				criteria = new Criteria(queryCriteria.getKey()).lte(queryCriteria.getValue());
+				break;
+			case BETWEEN:
+				criteria = Criteria.where(queryCriteria.getKey())
+						.gt(((List) queryCriteria.getValue()).get(0))
+						.lt(((List) queryCriteria.getValue()).get(1));
+				break;
+			case OUTSIDE:
+				criteria = new Criteria().orOperator(
+						Criteria.where(queryCriteria.getKey()).lt(((List) queryCriteria.getValue()).get(0)),
+						Criteria.where(queryCriteria.getKey()).gt(((List) queryCriteria.getValue()).get(1)));
+				break;
+			case BETWEEN_INCLUSIVE:
+				criteria = Criteria.where(queryCriteria.getKey())
+						.gte(((List) queryCriteria.getValue()).get(0))
+						.lte(((List) queryCriteria.getValue()).get(1));
+				break;
+			case OUTSIDE_INCLUSIVE:
+				criteria = new Criteria().orOperator(
+						Criteria.where(queryCriteria.getKey()).lte(((List) queryCriteria.getValue()).get(0)),
+						Criteria.where(queryCriteria.getKey()).gte(((List) queryCriteria.getValue()).get(1)));
+				break;
+			case LIKE:
+				criteria = new Criteria(queryCriteria.getKey()).regex((String) queryCriteria.getValue());
+				break;
+			case NOT_LIKE:
+				// TODO
+				break;
+			case STARTS_WITH:
+				criteria = new Criteria(queryCriteria.getKey()).regex("^" + queryCriteria.getValue());
+				break;
+			case ENDS_WITH:
+				criteria = new Criteria(queryCriteria.getKey()).regex(queryCriteria.getValue() + "$");
+				break;
+			default:
+				criteria = new Criteria(queryCriteria.getKey()).is(queryCriteria.getValue());
+		}
+		return criteria;
+	}
+
+	/**
+	 * Creates the range {@link Criteria} used for keyset pagination, selecting all documents that 
+	 *   follow the position described by the sort key {@code values}.  For sort keys {@code (a, b, id)},
+	 *   this is equivalent to {@code a > v1 OR (a = v1 AND b > v2) OR (a = v1 AND b = v2 AND id > v3)},
+	 *   with the comparison reversed for descending keys.
+	 *
+	 * @param keysetSort complete keyset {@link Sort}, ending with the document identifier.
+	 * @param values sort key values of the last document of the previous page.
+	 * @return {@link Criteria}
+	 */
+	public static Criteria getKeysetCriteria(Sort keysetSort, List<Object> values){
+		List<Sort.Order> orders = new ArrayList<>();
+		for (Sort.Order order: keysetSort){
+			orders.add(order);
+		}
+		List<Criteria> branches = new ArrayList<>();
+		for (int i = 0; i < orders.size(); i++){
+			List<Criteria> terms = new ArrayList<>();
+			for (int j = 0; j < i; j++){
+				terms.add(Criteria.where(orders.get(j).getProperty()).is(values.get(j)));
+			}
+			Sort.Order order = orders.get(i);
+			terms.add(order.isAscending() ? Criteria.where(order.getProperty()).gt(values.get(i))
+					: Criteria.where(order.getProperty()).lt(values.get(i)));
+			branches.add(terms.size() == 1 ? terms.get(0) 
+					: new Criteria().andOperator(terms.toArray(new Criteria[]{})));
+		}
+		return branches.size() == 1 ? branches.get(0) 
+				: new Criteria().orOperator(branches.toArray(new Criteria[]{}));
+	}
 	
+
+	/**
+	 * Creates a {@link PagedQuery} for the supplied criteria, for execution by a 
+	 *   {@link PagedQueryExecutor}.  Count estimates are only available for unfiltered queries, for
+	 *   which the collection's document count is read from its metadata.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param criteria query {@link Criteria}, may be null.
+	 * @param sort requested {@link Sort}, may be null.
+	 * @param projection {@link Projection} applied to fetched documents, may be null.
+	 * @param model entity class.
+	 * @return {@link PagedQuery}
+	 */
+	public static <T> PagedQuery<T> getPagedQuery(final MongoOperations mongoOperations, 
+			final Criteria criteria, final Sort sort, final Projection projection, final Class<T> model){
+		return new PagedQuery<T>() {
+			@Override 
+			public List<T> fetch(int offset, int limit) {
+				Query query = criteria != null ? new Query(criteria) : new Query();
+				if (sort != null) query.with(sort);
+				applyProjection(query, projection);
+				return mongoOperations.find(query.skip(offset).limit(limit), model);
+			}
+			@Override 
+			public long count() {
+				return mongoOperations.count(criteria != null ? new Query(criteria) : new Query(), model);
+			}
+			@Override 
+			public Long estimateCount() {
+				if (criteria != null) return null;
+				return mongoOperations.getCollection(mongoOperations.getCollectionName(model)).getCount();
+			}
+		};
+	}
+
+	/**
+	 * Adds a field projection to the {@link Query}, so that only the requested document keys are 
+	 *   returned by the server.  MongoDB does not allow inclusions and exclusions to be mixed, so 
+	 *   when fields are included, exclusions are ignored.  The {@code _id} key is always returned.
+	 *
+	 * @param query {@link Query} to modify.
+	 * @param projection {@link Projection}, may be null.
+	 * @return the modified query.
+	 */
+	public static Query applyProjection(Query query, Projection projection){
+		if (projection == null || projection.isEmpty()) return query;
+		Field fields = query.fields();
+		if (projection.isInclusive()){
+			for (String field: projection.getInclude()){
+				fields.include(field);
+			}
+		} else {
+			for (String field: projection.getExclude()){
+				if (!"_id".equals(field)) fields.exclude(field);
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Fetches a page of the distinct values of a field, sorted in ascending order, using an 
+	 *   aggregation pipeline rather than the {@code distinct} command.  The command returns all values
+	 *   in a single document, limited to 16MB, and cannot be paged.  The pipeline filters documents
+	 *   first, so that indexes may be used for the query criteria and prefix, unwinds any arrays along
+	 *   the field path, groups on the field value, and returns the page through a cursor.  Grouping
+	 *   is allowed to spill to disk for high-cardinality fields.  The prefix is matched with an 
+	 *   anchored, escaped regular expression, which MongoDB can evaluate as an index range scan.  Null and missing values are not 
+	 *   returned, as with the {@code distinct} command.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param model entity class, used to map the field path to document keys.
+	 * @param field model field name, which may be a dot-separated path.
+	 * @param criteria query {@link Criteria}, may be null.
+	 * @param prefix value prefix to filter by, may be null.
+	 * @param offset number of values to skip.
+	 * @param limit maximum number of values to return, or a value less than one for no limit.
+	 * @return distinct values of the field.
+	 */
+	public static List<Object> distinct(MongoOperations mongoOperations, Class<?> model, String field,
+			Criteria criteria, String prefix, int offset, int limit){
+		List<DBObject> pipeline = new ArrayList<>();
+		List<DBObject> unwinds = new ArrayList<>();
+		String key = getDocumentKey(mongoOperations, model, field, unwinds);
+		DBObject prefixMatch = prefix != null 
+				? new BasicDBObject(key, Pattern.compile("^" + prefix.replaceAll("\\W", "\\\\$0"))) : null;
+		DBObject match = criteria != null ? getMatchObject(mongoOperations, model, criteria) : new BasicDBObject();
+		if (prefixMatch != null){
+			match = new BasicDBObject("$and", Arrays.asList(match, prefixMatch));
+		}
+		if (!match.keySet().isEmpty()) pipeline.add(new BasicDBObject("$match", match));
+		pipeline.add(new BasicDBObject("$project", new BasicDBObject(key, 1)));
+		pipeline.addAll(unwinds);
+		if (prefixMatch != null && !unwinds.isEmpty()){
+			pipeline.add(new BasicDBObject("$match", prefixMatch));
+		}
+		pipeline.add(new BasicDBObject("$group", new BasicDBObject("_id", "$" + key)));
+		pipeline.add(new BasicDBObject("$match", new BasicDBObject("_id", new BasicDBObject("$ne", null))));
+		pipeline.add(new BasicDBObject("$sort", new BasicDBObject("_id", 1)));
+		if (offset > 0) pipeline.add(new BasicDBObject("$skip", offset));
+		if (limit > 0) pipeline.add(new BasicDBObject("$limit", limit));
+		List<Object> values = new ArrayList<>();
+		for (DBObject document: aggregate(mongoOperations, model, pipeline)){
+			values.add(document.get("_id"));
+		}
+		return values;
+	}
+
+	/**
+	 * Compiles an {@link AggregateQuery} to an aggregation pipeline: a {@code $match} on the criteria,
+	 *   an {@code $unwind} of any arrays along the group field paths, a {@code $group} computing the
+	 *   accumulators, and a {@code $sort} and {@code $limit} selecting the requested groups.  Groups 
+	 *   and accumulators are keyed by position within the pipeline, since field names and aliases may
+	 *   contain characters that are not valid in document keys.  A count of a field sums one for each
+	 *   document whose value is greater than null, in BSON order, so that null and missing values are
+	 *   not counted.  Grouping may spill to disk.
+	 *
+	 * @param mongoOperations {@link MongoOperations}
+	 * @param model entity class, used to map field paths to document keys.
+	 * @param criteria query {@link Criteria}, may be null.
+	 * @param aggregateQuery {@link AggregateQuery}
+	 * @return one row per group, keyed by {@link AggregateQuery#getOutputNames()}.
+	 */
+	public static List<Map<String, Object>> aggregate(MongoOperations mongoOperations, Class<?> model,
+			Criteria criteria, AggregateQuery aggregateQuery){
+		Assert.notNull(aggregateQuery);
+		List<String> names = aggregateQuery.getOutputNames();
+		Assert.notEmpty(names, "At least one group field or accumulator must be requested.");
+		int sortIndex = aggregateQuery.getSortIndex();
+		List<String> groupFields = aggregateQuery.getGroupFields();
+		List<AggregateQuery.Accumulator> accumulators = aggregateQuery.getAccumulators();
+		List<DBObject> pipeline = new ArrayList<>();
+		if (criteria != null){
+			pipeline.add(new BasicDBObject("$match", getMatchObject(mongoOperations, model, criteria)));
+		}
+		List<DBObject> unwinds = new ArrayList<>();
+		BasicDBObject id = new BasicDBObject();
+		for (int i = 0; i < groupFields.size(); i++){
+			List<DBObject> fieldUnwinds = new ArrayList<>();
+			id.append("g" + i, "$" + getDocumentKey(mongoOperations, model, groupFields.get(i), fieldUnwinds));
+			for (DBObject unwind: fieldUnwinds){
+				if (!unwinds.contains(unwind)) unwinds.add(unwind);
+			}
+		}
+		pipeline.addAll(unwinds);
+		BasicDBObject group = new BasicDBObject("_id", groupFields.isEmpty() ? null : id);
+		for (int i = 0; i < accumulators.size(); i++){
+			AggregateQuery.Accumulator accumulator = accumulators.get(i);
+			Object operand = accumulator.getField() != null 
+					? "$" + getDocumentKey(mongoOperations, model, accumulator.getField(), new ArrayList<DBObject>())
+					: 1;
+			String operator;
+			switch (accumulator.getFunction()){
+				case COUNT:
+					operator = "$sum";
+					if (accumulator.getField() != null){
+						operand = new BasicDBObject("$cond", Arrays.asList(
+								new BasicDBObject("$gt", Arrays.asList(operand, null)), 1, 0));
+					}
+					break;
+				case MIN:
+					operator = "$min";
+					break;
+				case MAX:
+					operator = "$max";
+					break;
+				case SUM:
+					operator = "$sum";
+					break;
+				default:
+					operator = "$avg";
+			}
+			group.append("a" + i, new BasicDBObject(operator, operand));
+		}
+		pipeline.add(new BasicDBObject("$group", group));
+		BasicDBObject sort = new BasicDBObject();
+		if (sortIndex > -1){
+			sort.append(sortIndex < groupFields.size() ? "_id.g" + sortIndex : "a" + (sortIndex - groupFields.size()),
+					aggregateQuery.getSortDirection() == Sort.Direction.ASC ? 1 : -1);
+		} else {
+			for (int i = 0; i < groupFields.size(); i++){
+				sort.append("_id.g" + i, 1);
+			}
+		}
+		if (!sort.isEmpty()) pipeline.add(new BasicDBObject("$sort", sort));
+		if (aggregateQuery.getLimit() > 0) pipeline.add(new BasicDBObject("$limit", aggregateQuery.getLimit()));
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (DBObject document: aggregate(mongoOperations, model, pipeline)){
+			Map<String, Object> row = new LinkedHashMap<>();
+			DBObject groupId = document.get("_id") instanceof DBObject ? (DBObject) document.get("_id") : null;
+			for (int i = 0; i < groupFields.size(); i++){
+				row.put(names.get(i), groupId != null ? groupId.get("g" + i) : null);
+			}
+			for (int i = 0; i < accumulators.size(); i++){
+				row.put(names.get(groupFields.size() + i), document.get("a" + i));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Executes an aggregation pipeline on the model's collection, reading the results through a 
+	 *   cursor and allowing stages to spill to disk.
+	 */
+	private static List<DBObject> aggregate(MongoOperations mongoOperations, Class<?> model, 
+			List<DBObject> pipeline){
+		AggregationOptions options = AggregationOptions.builder()
+				.allowDiskUse(true)
+				.outputMode(AggregationOptions.OutputMode.CURSOR)
+				.build();
+		List<DBObject> documents = new ArrayList<>();
+		Cursor cursor = mongoOperations.getCollection(mongoOperations.getCollectionName(model))
+				.aggregate(pipeline, options);
+		try {
+			while (cursor.hasNext()){
+				documents.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+		return documents;
+	}
+
+	/**
+	 * Maps {@link Criteria} to a {@code $match} document, converting field names and values with the 
+	 *   mapping metadata of the model, as {@link MongoOperations} does for regular queries.
+	 */
+	private static DBObject getMatchObject(MongoOperations mongoOperations, Class<?> model, Criteria criteria){
+		MongoConverter converter = mongoOperations.getConverter();
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(model);
+		return new QueryMapper(converter).getMappedObject(new Query(criteria).getQueryObject(), entity);
+	}
+
+	/**
+	 * Maps a model field path to its document key, using the mapping metadata of the model, and adds
+	 *   an {@code $unwind} stage for each array along the path.  Unmapped path segments are used as-is.
+	 */
+	private static String getDocumentKey(MongoOperations mongoOperations, Class<?> model, String field,
+			List<DBObject> unwinds){
+		MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext 
+				= mongoOperations.getConverter().getMappingContext();
+		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(model);
+		StringBuilder path = new StringBuilder();
+		for (String name: field.split("\\.")){
+			if (path.length() > 0) path.append(".");
+			MongoPersistentProperty property = entity != null ? entity.getPersistentProperty(name) : null;
+			if (property == null){
+				path.append(name);
+				entity = null;
+				continue;
+			}
+			path.append(property.getFieldName());
+			if (property.isCollectionLike()){
+				unwinds.add(new BasicDBObject("$unwind", "$" + path.toString()));
+			}
+			entity = property.isEntity() ? mappingContext.getPersistentEntity(property.getActualType()) : null;
+		}
+		return path.toString();
+	}
+
 }
@@ -16,6 +16,7 @@
 
 package org.oncoblocks.centromere.mongodb.test;
 
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
 
 import java.util.List;
@@ -24,7 +25,7 @@ import java.util.List;
  * @author woemler
  */
 public interface CentromereEntrezGeneRepository extends CustomGeneRepository,
-		RepositoryOperations<EntrezGene, Long> {
+		RepositoryOperations<EntrezGene, Long>, AggregateOperations {
 	List<EntrezGene> findByEntrezGeneId(Long entrezGeneId);
 	List<EntrezGene> findByPrimaryGeneSymbol(String primaryGeneSymbol);
 	List<EntrezGene> findByAliases(String alias);
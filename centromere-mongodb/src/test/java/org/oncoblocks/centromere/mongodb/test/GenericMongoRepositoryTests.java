@@ -16,23 +16,36 @@
 
 package org.oncoblocks.centromere.mongodb.test;
 
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.ContinuationToken;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.CountedPage;
 import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.Projection;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.mongodb.MongoBulkUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author woemler
@@ -70,6 +83,19 @@ public class GenericMongoRepositoryTests {
 		
 	}
 
+	@Test
+	public void findAllByIdsTest(){
+
+		List<EntrezGene> found = new ArrayList<>();
+		for (EntrezGene entity: geneRepository.findAll(Arrays.asList(3L, 1L, 99L, 3L))){
+			found.add(entity);
+		}
+		Assert.isTrue(found.size() == 2);
+		Assert.isTrue(found.get(0).getEntrezGeneId().equals(3L));
+		Assert.isTrue(found.get(1).getEntrezGeneId().equals(1L));
+
+	}
+
 	@Test
 	public void findAllTest(){
 		
@@ -115,6 +141,26 @@ public class GenericMongoRepositoryTests {
 
 	}
 
+	@Test
+	public void findByCriteriaGroupTest(){
+
+		List<QueryCriteria> searchCriterias = new ArrayList<>();
+		searchCriterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("primaryGeneSymbol", "DEF"),
+				new QueryCriteria("aliases", "DEF")));
+		List<EntrezGene> genes = geneRepository.find(searchCriterias);
+		Assert.isTrue(genes.size() == 1);
+		Assert.isTrue(genes.get(0).getEntrezGeneId().equals(2L));
+
+		searchCriterias = new ArrayList<>();
+		searchCriterias.add(new QueryCriteria("geneType", "protein-coding"));
+		searchCriterias.add(QueryCriteriaGroup.not(new QueryCriteria("aliases", "DEF")));
+		genes = geneRepository.find(searchCriterias);
+		Assert.isTrue(genes.size() == 2);
+		Assert.isTrue(geneRepository.count(searchCriterias) == 2L);
+
+	}
+
 	@Test
 	public void findByNestedArrayCriteriaTest(){
 
@@ -170,6 +216,154 @@ public class GenericMongoRepositoryTests {
 
 	}
 
+	@Test
+	public void streamTest(){
+
+		geneRepository.setCursorBatchSize(2);
+		List<QueryCriteria> searchCriterias = new ArrayList<>();
+		searchCriterias.add(new QueryCriteria("geneType", "protein-coding"));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "primaryGeneSymbol"));
+		List<EntrezGene> genes = new ArrayList<>();
+		try (CloseableIterator<EntrezGene> iterator = geneRepository.stream(searchCriterias, sort)){
+			while (iterator.hasNext()){
+				genes.add(iterator.next());
+			}
+			Assert.isTrue(!iterator.hasNext());
+		}
+		Assert.isTrue(genes.size() == 3);
+
+		EntrezGene gene = genes.get(0);
+		Assert.notNull(gene);
+		Assert.isTrue(gene.getEntrezGeneId().equals(4L));
+
+	}
+
+	@Test
+	public void findPagedCountStrategyTest(){
+
+		PageRequest pageRequest = new PageRequest(0, 2, new Sort(new Sort.Order(Sort.Direction.ASC, "entrezGeneId")));
+		for (CountStrategy countStrategy: Arrays.asList(CountStrategy.EXACT, CountStrategy.CACHED, 
+				CountStrategy.ESTIMATED, CountStrategy.CACHED)){
+			Slice<EntrezGene> slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, countStrategy);
+			Assert.isTrue(slice instanceof Page);
+			Page<EntrezGene> page = (Page<EntrezGene>) slice;
+			Assert.isTrue(page.getContent().size() == 2);
+			Assert.isTrue(page.getTotalElements() == 5);
+			Assert.isTrue(page.getTotalPages() == 3);
+		}
+		Slice<EntrezGene> slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.ESTIMATED);
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.ESTIMATED);
+
+		slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.NONE);
+		Assert.isTrue(!(slice instanceof Page));
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 2);
+		Assert.isTrue(slice.hasNext());
+		slice = geneRepository.find(new ArrayList<QueryCriteria>(), new PageRequest(2, 2, pageRequest.getSort()), 
+				CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 1);
+		Assert.isTrue(!slice.hasNext());
+
+		geneRepository.setCountStrategy(CountStrategy.NONE);
+		try {
+			slice = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest, null);
+			Assert.isTrue(!(slice instanceof Page));
+			Page<EntrezGene> page = geneRepository.find(new ArrayList<QueryCriteria>(), pageRequest);
+			Assert.isTrue(page.getTotalElements() == 5);
+		} finally {
+			geneRepository.setCountStrategy(CountStrategy.EXACT);
+		}
+
+	}
+
+	@Test
+	public void findProjectedTest(){
+
+		List<QueryCriteria> searchCriterias = new ArrayList<>();
+		searchCriterias.add(new QueryCriteria("geneType", "protein-coding"));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "entrezGeneId"));
+		List<EntrezGene> genes = (List<EntrezGene>) geneRepository.find(searchCriterias, sort, 
+				Projection.include("primaryGeneSymbol"));
+		Assert.isTrue(genes.size() == 3);
+		EntrezGene gene = genes.get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(1L));
+		Assert.isTrue("GeneA".equals(gene.getPrimaryGeneSymbol()));
+		Assert.isNull(gene.getGeneType());
+
+		genes = (List<EntrezGene>) geneRepository.find(searchCriterias, sort, Projection.include("aliases"));
+		Assert.isTrue(genes.size() == 3);
+		Assert.notEmpty(genes.get(0).getAliases());
+
+		Slice<EntrezGene> slice = geneRepository.find(searchCriterias, new PageRequest(1, 2, sort), 
+				CountStrategy.EXACT, Projection.exclude("description", "aliases", "attributes"));
+		Assert.isTrue(slice instanceof Page);
+		Assert.isTrue(((Page<EntrezGene>) slice).getTotalElements() == 3);
+		Assert.isTrue(slice.getContent().size() == 1);
+		gene = slice.getContent().get(0);
+		Assert.isTrue(gene.getEntrezGeneId().equals(4L));
+		Assert.isTrue("protein-coding".equals(gene.getGeneType()));
+		Assert.isNull(gene.getDescription());
+
+	}
+
+	@Test
+	public void findAfterTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "geneType"));
+		List<EntrezGene> results = new ArrayList<>();
+		String token = null;
+		int pages = 0;
+		do {
+			KeysetSlice<EntrezGene> slice = geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, token);
+			Assert.notNull(slice);
+			Assert.isTrue(slice.getContent().size() <= 2);
+			results.addAll(slice.getContent());
+			token = slice.getContinuationToken();
+			Assert.isTrue(slice.hasNext() == (token != null));
+			pages++;
+		} while (token != null);
+		Assert.isTrue(pages == 3);
+		Assert.isTrue(results.size() == 5);
+		List<Long> ids = new ArrayList<>();
+		for (EntrezGene result: results){
+			ids.add(result.getEntrezGeneId());
+		}
+		Assert.isTrue(ids.equals(Arrays.asList(3L, 5L, 1L, 2L, 4L)));
+
+	}
+
+	@Test
+	public void findAfterInvalidTokenTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "geneType"));
+		KeysetSlice<EntrezGene> slice = geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, null);
+		Assert.notNull(slice.getContinuationToken());
+		try {
+			geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort.and(new Sort("primaryGeneSymbol")), 2,
+					slice.getContinuationToken());
+			Assert.isTrue(false, "Token created with a different sort should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		try {
+			geneRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, "not-a-valid-token!");
+			Assert.isTrue(false, "Malformed token should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+
+	}
+
+	@Test
+	public void continuationTokenObjectIdTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "id"));
+		ObjectId objectId = new ObjectId();
+		String token = new ContinuationToken(sort, Collections.<Object>singletonList(objectId)).encode();
+		Assert.isTrue(ContinuationToken.decode(token, sort).getValues().get(0).equals(objectId));
+
+	}
+
 	@Test
 	public void findPagedTest(){
 
@@ -248,6 +442,40 @@ public class GenericMongoRepositoryTests {
 
 	}
 
+	@Test
+	public void bulkUpdateTest(){
+
+		List<EntrezGene> genes = new ArrayList<>();
+		genes.add(new EntrezGene(100L, "TEST", 9606, null, "1", "1", "Test gene", "protein-coding", null, null, null));
+		genes.add(new EntrezGene(101L, "TEST2", 9606, null, "2", "1", "Test gene 2", "protein-coding", null, null, null));
+		geneRepository.setBulkBatchSize(1);
+		geneRepository.upsert(genes);
+		Assert.isTrue(geneRepository.count() == 7);
+
+		EntrezGene gene = geneRepository.findOne(100L);
+		gene.setGeneType("pseudogene");
+		List<EntrezGene> updates = new ArrayList<>();
+		updates.add(gene);
+		updates.add(new EntrezGene(102L, "TEST3", 9606, null, "3", "1", "Test gene 3", "protein-coding", null, null, null));
+		List<EntrezGene> updated = new ArrayList<>();
+		for (EntrezGene entrezGene: geneRepository.update(updates)){
+			updated.add(entrezGene);
+		}
+		Assert.isTrue(updated.size() == 1);
+		Assert.isNull(geneRepository.findOne(102L));
+		Assert.isTrue("pseudogene".equals(geneRepository.findOne(100L).getGeneType()));
+
+		genes.get(1).setPrimaryGeneSymbol("TEST_TEST");
+		geneRepository.save(genes.subList(1, 2));
+		Assert.isTrue("TEST_TEST".equals(geneRepository.findOne(101L).getPrimaryGeneSymbol()));
+		geneRepository.setBulkBatchSize(MongoBulkUtils.DEFAULT_BATCH_SIZE);
+
+		geneRepository.delete(100L);
+		geneRepository.delete(101L);
+		Assert.isTrue(geneRepository.count() == 5);
+
+	}
+
 	@Test
 	public void deleteTest(){
 
@@ -264,6 +492,24 @@ public class GenericMongoRepositoryTests {
 		Assert.isNull(deleted);
 
 	}
+
+	@Test
+	public void deleteByCriteriaTest(){
+
+		List<EntrezGene> genes = new ArrayList<>();
+		for (long i = 100; i < 103; i++){
+			genes.add(new EntrezGene(i, "TEST" + i, 9606, null, "1", "1", "Test gene", "test-gene", null, null, null));
+		}
+		geneRepository.insert(genes);
+		Assert.isTrue(geneRepository.count() == 8);
+
+		List<QueryCriteria> criterias = new ArrayList<>();
+		criterias.add(new QueryCriteria("geneType", "test-gene"));
+		long deleted = geneRepository.deleteAll(criterias);
+		Assert.isTrue(deleted == 3);
+		Assert.isTrue(geneRepository.count() == 5);
+
+	}
 	
 	@Test
 	public void distinctTest(){
@@ -290,8 +536,70 @@ public class GenericMongoRepositoryTests {
 		Assert.isTrue("GeneD".equals(symbol));
 		
 	}
+
+	@Test
+	public void distinctPagedTest(){
+
+		List<Object> geneSymbols = geneRepository.distinct("primaryGeneSymbol", 
+				new ArrayList<QueryCriteria>(), "Gene", 1, 2);
+		Assert.isTrue(geneSymbols.size() == 2);
+		Assert.isTrue("GeneB".equals(geneSymbols.get(0)));
+		Assert.isTrue("GeneC".equals(geneSymbols.get(1)));
+
+		List<Object> aliases = geneRepository.distinct("aliases", new ArrayList<QueryCriteria>(), 
+				null, 3, 0);
+		Assert.isTrue(aliases.size() == 2);
+		Assert.isTrue("JKL".equals(aliases.get(0)));
+
+		aliases = geneRepository.distinct("aliases", new ArrayList<QueryCriteria>(), "D", 0, 10);
+		Assert.isTrue(aliases.size() == 1);
+		Assert.isTrue("DEF".equals(aliases.get(0)));
+
+	}
 	
 	
+	@Test
+	public void aggregateTest(){
+
+		List<Map<String, Object>> rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().max("primaryGeneSymbol").avg("taxId"));
+		Assert.isTrue(rows.size() == 2);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 3);
+		Assert.isTrue("GeneD".equals(rows.get(0).get("max_primaryGeneSymbol")));
+		Assert.isTrue(((Number) rows.get(0).get("avg_taxId")).intValue() == 9606);
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+
+		rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().top(1, "count"));
+		Assert.isTrue(rows.size() == 1);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+
+		rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), AggregateQuery.groupBy("aliases").count());
+		Assert.isTrue(rows.size() == 5);
+		Assert.isTrue("ABC".equals(rows.get(0).get("aliases")));
+
+	}
+
+	@Test
+	public void aggregateCountFieldTest(){
+
+		geneRepository.insert(new EntrezGene(100L, "TEST", 9606, null, "1", "1", "Test gene", "protein-coding", 
+				null, null, null));
+
+		List<Map<String, Object>> rows = geneRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("geneType").count().count("chromosomeLocation"));
+		Assert.isTrue(rows.size() == 2);
+		Assert.isTrue("protein-coding".equals(rows.get(0).get("geneType")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 4);
+		Assert.isTrue(((Number) rows.get(0).get("count_chromosomeLocation")).intValue() == 1);
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+		Assert.isTrue(((Number) rows.get(1).get("count_chromosomeLocation")).intValue() == 0);
+
+		geneRepository.delete(100L);
+
+	}
+
 	/* EntrezGene repository-specific tests */
 
 	@Test
@@ -378,7 +686,7 @@ public class GenericMongoRepositoryTests {
 	public void findByTypeAndBetweenTest() throws Exception {
 
 		List<QueryCriteria> criterias = new ArrayList<>();
-		criterias.add(new QueryCriteria("geneType", "pseudo"));
+		criterias.add(new QueryCriteria("geneType", "test-gene"));
 		criterias.add(new QueryCriteria("entrezGeneId", new ArrayList<Long>(Arrays.asList(new Long[]{2L, 5L})),
 				Evaluation.BETWEEN));
 		List<EntrezGene> genes = geneRepository.find(criterias);
@@ -19,29 +19,64 @@ package org.oncoblocks.centromere.sql;
 import com.nurkiewicz.jdbcrepository.MissingRowUnmapper;
 import com.nurkiewicz.jdbcrepository.RowUnmapper;
 import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.ChunkedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.ContinuationToken;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.EmptyCloseableIterator;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.OptimizedCriteria;
+import org.oncoblocks.centromere.core.repository.PagedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaOptimizer;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
 import org.oncoblocks.centromere.sql.sqlbuilder.ComplexTableDescription;
 import org.oncoblocks.centromere.sql.sqlbuilder.Condition;
+import org.oncoblocks.centromere.sql.sqlbuilder.Conditions;
 import org.oncoblocks.centromere.sql.sqlbuilder.SqlBuilder;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.oncoblocks.centromere.sql.sqlbuilder.SqlBuilder.*;
 
@@ -54,12 +89,30 @@ import static org.oncoblocks.centromere.sql.sqlbuilder.SqlBuilder.*;
  * @author woemler
  */
 public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>  
-		implements RepositoryOperations<T, ID> {
+		implements RepositoryOperations<T, ID>, AggregateOperations {
 
 	private JdbcTemplate jdbcTemplate;
 	private ComplexTableDescription tableDescription;
 	private RowMapper<T> rowMapper;
 	private RowUnmapper<T> rowUnmapper;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int commitInterval = 0;
+	private PagedQueryExecutor pagedQueryExecutor = new PagedQueryExecutor();
+	private ChunkedQueryExecutor chunkedQueryExecutor = new ChunkedQueryExecutor();
+	private QueryCriteriaOptimizer queryCriteriaOptimizer = new QueryCriteriaOptimizer();
+	private volatile String databaseProductName = null;
+	
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int MAX_INSERT_PARAMETERS = 2000; // below the SQL Server/Sybase limit of 2100
+	private static final String TEMPORARY_INTEGER_TABLE = "centromere_in_integers";
+	private static final String TEMPORARY_STRING_TABLE = "centromere_in_strings";
+	private static final int MAX_TEMPORARY_STRING_LENGTH = 1000;
+	private static final Map<Connection, Set<String>> TEMPORARY_TABLES_IN_USE = new IdentityHashMap<>();
+	private static final Pattern EXPLAIN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+	private static final Pattern COLUMN_ALIAS_PATTERN = Pattern.compile("(?is).+\\s+as\\s+(\\w+)\\s*");
+	private static final Pattern COLUMN_NAME_PATTERN = Pattern.compile("[A-Za-z_]\\w*(\\.[A-Za-z_]\\w*)?");
 
 	/**
 	 * Creates a new repository instance using a {@link DataSource} to generate a new 
@@ -174,11 +227,24 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#findAll(Iterable)}
 	 */
 	public List<T> findAll(Iterable<ID> iterable) {
-		List<T> found = new ArrayList<>();
-		for (ID id: iterable){
-			found.add(this.findOne(id));
+		final List<String> idColumns = tableDescription.getIdColumns();
+		if (idColumns.size() != 1){
+			List<T> found = new ArrayList<>();
+			for (ID id: iterable){
+				T entity = this.findOne(id);
+				if (entity != null) found.add(entity);
+			}
+			return found;
 		}
-		return found;
+		return chunkedQueryExecutor.findByIds(iterable, new ChunkedQueryExecutor.ChunkQuery<ID, T>() {
+			@Override 
+			public List<T> fetch(List<ID> ids) {
+				SqlBuilder sqlBuilder = getSqlBuilder();
+				sqlBuilder.where(in(idColumns.get(0), ids));
+				return jdbcTemplate.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+						rowMapper);
+			}
+		}, !TransactionSynchronizationManager.isActualTransactionActive());
 	}
 
 	/**
@@ -196,78 +262,414 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 	 * {@link RepositoryOperations#findAll}
 	 */
 	public List<T> find(Iterable<QueryCriteria> queryCriterias) {
-		SqlBuilder sqlBuilder = getSqlBuilder();
-		List<Condition> conditionList = new ArrayList<>();
-		for (QueryCriteria criteria: queryCriterias){
-			if (criteria != null) conditionList.add(getConditionFromQueryCriteria(criteria));
-		}
-		sqlBuilder.where(and(conditionList.toArray(new Condition[] {})));
-		return jdbcTemplate.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(),
-				rowMapper);
+		return find(queryCriterias, (Sort) null, (Projection) null);
 	}
 
 	/**
 	 * {@link RepositoryOperations#findAll}
 	 */
 	public List<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort) {
-		SqlBuilder sqlBuilder = getSqlBuilder();
-		List<Condition> conditionList = new ArrayList<>();
-		for (QueryCriteria criteria: queryCriterias){
-			if (criteria != null) conditionList.add(getConditionFromQueryCriteria(criteria));
-		}
-		sqlBuilder
-				.where(and(conditionList.toArray(new Condition[]{})))
-				.orderBy(sort);
-		return jdbcTemplate.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), rowMapper);
+		return find(queryCriterias, sort, (Projection) null);
 	}
 
 	/**
 	 * {@link RepositoryOperations#findAll}
 	 */
 	public Page<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable) {
-		SqlBuilder sqlBuilder = getSqlBuilder();
-		List<Condition> conditionList = new ArrayList<>();
-		for (QueryCriteria criteria: queryCriterias){
-			if (criteria != null) conditionList.add(getConditionFromQueryCriteria(criteria));
+		CountStrategy countStrategy = getCountStrategy() == CountStrategy.NONE ? CountStrategy.EXACT : null;
+		return (Page<T>) find(queryCriterias, pageable, countStrategy);
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy)}
+	 */
+	public Slice<T> find(Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy) {
+		return find(queryCriterias, pageable, countStrategy, null);
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Sort, Projection)}
+	 */
+	public List<T> find(Iterable<QueryCriteria> queryCriterias, Sort sort, Projection projection) {
+		final List<String> columns = getProjectedColumns(projection);
+		return queryWithConditions(queryCriterias, new ArrayList<T>(), (template, conditionList) -> {
+			SqlBuilder sqlBuilder = getSqlBuilder();
+			if (columns != null) sqlBuilder.select(columns);
+			sqlBuilder.where(and(conditionList.toArray(new Condition[]{})));
+			if (sort != null) sqlBuilder.orderBy(sort);
+			return template.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+					columns != null ? new ProjectionRowMapper<>(rowMapper) : rowMapper);
+		});
+	}
+
+	/**
+	 * {@link RepositoryOperations#find(Iterable, Pageable, CountStrategy, Projection)}
+	 */
+	public Slice<T> find(final Iterable<QueryCriteria> queryCriterias, Pageable pageable, 
+			CountStrategy countStrategy, Projection projection) {
+		if (queryCriteriaOptimizer.optimize(queryCriterias).isUnsatisfiable()){
+			return pagedQueryExecutor.execute(PagedQueryExecutor.PagedQuery.<T>empty(), queryCriterias, 
+					pageable, countStrategy);
+		}
+		final Sort sort = pageable.getSort();
+		final List<String> columns = getProjectedColumns(projection);
+		return pagedQueryExecutor.execute(new PagedQueryExecutor.PagedQuery<T>() {
+			@Override 
+			public List<T> fetch(int offset, int limit) {
+				return queryWithConditions(queryCriterias, new ArrayList<T>(), (template, conditions) -> {
+					SqlBuilder sqlBuilder = getSqlBuilder();
+					if (columns != null) sqlBuilder.select(columns);
+					sqlBuilder.where(and(conditions.toArray(new Condition[] {})));
+					if (sort != null) sqlBuilder.orderBy(sort);
+					sqlBuilder.limit(offset, limit);
+					return template.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+							columns != null ? new ProjectionRowMapper<>(rowMapper) : rowMapper);
+				});
+			}
+			@Override 
+			public long count() {
+				return GenericJdbcRepository.this.count(queryCriterias);
+			}
+			@Override 
+			public Long estimateCount() {
+				return queryWithConditions(queryCriterias, null, (template, conditions) -> {
+					SqlBuilder sqlBuilder = getSqlBuilder();
+					sqlBuilder.where(and(conditions.toArray(new Condition[] {})));
+					return GenericJdbcRepository.this.estimateCount(template, sqlBuilder.toSql(), 
+							sqlBuilder.getQueryParameterValues().toArray());
+				});
+			}
+			@Override 
+			public boolean isConcurrentCountSupported() {
+				return !TransactionSynchronizationManager.isActualTransactionActive();
+			}
+		}, queryCriterias, pageable, countStrategy);
+	}
+
+	/**
+	 * Returns the select expressions needed to satisfy the {@link Projection}, using the table 
+	 *   description's field-to-column mapping, always including the identifier columns.  Returns null 
+	 *   if the full select clause should be used: when the projection is empty, no field mapping is 
+	 *   defined, or an included field has no mapped column.
+	 * 
+	 * @param projection {@link Projection}, may be null.
+	 * @return select expressions, or null.
+	 */
+	protected List<String> getProjectedColumns(Projection projection){
+		Map<String, String> fieldColumns = tableDescription.getFieldColumns();
+		if (projection == null || projection.isEmpty() || fieldColumns == null || fieldColumns.isEmpty()){
+			return null;
+		}
+		if (projection.isInclusive()){
+			for (String field: projection.getInclude()){
+				String topLevel = field.contains(".") ? field.substring(0, field.indexOf(".")) : field;
+				if (!fieldColumns.containsKey(topLevel)) return null;
+			}
+		}
+		Set<String> columns = new LinkedHashSet<>(tableDescription.getIdColumns());
+		for (Map.Entry<String, String> entry: fieldColumns.entrySet()){
+			if (projection.isSelected(entry.getKey())) columns.add(entry.getValue());
 		}
+		return new ArrayList<>(columns);
+	}
+
+	/**
+	 * {@link RepositoryOperations#findAfter}
+	 */
+	public KeysetSlice<T> findAfter(Iterable<QueryCriteria> queryCriterias, Sort sort, int size,
+			String continuationToken) {
+		Sort keysetSort = ContinuationToken.getKeysetSort(sort, tableDescription.getIdColumns());
+		KeysetRowMapper<T> keysetRowMapper = new KeysetRowMapper<>(rowMapper, keysetSort);
+		List<T> objects = queryWithConditions(queryCriterias, null, (template, conditionList) -> {
+			Conditions conditions = and(conditionList.toArray(new Condition[] {}));
+			if (continuationToken != null){
+				ContinuationToken token = ContinuationToken.decode(continuationToken, keysetSort);
+				Conditions keysetConditions = getKeysetConditions(keysetSort, token.getValues());
+				conditions = conditionList.isEmpty() ? keysetConditions : and(conditions, keysetConditions);
+			}
+			SqlBuilder sqlBuilder = getSqlBuilder();
+			sqlBuilder.where(conditions).orderBy(keysetSort).limit(size + 1);
+			return template.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+					keysetRowMapper);
+		});
+		if (objects == null) return new KeysetSlice<>(new ArrayList<T>(), size, keysetSort, false, null);
+		boolean hasNext = objects.size() > size;
+		String nextToken = null;
+		if (hasNext){
+			objects = new ArrayList<>(objects.subList(0, size));
+			nextToken = new ContinuationToken(keysetSort, keysetRowMapper.getKeys(size - 1)).encode();
+		}
+		return new KeysetSlice<>(objects, size, keysetSort, hasNext, nextToken);
+	}
+
+	/**
+	 * {@link RepositoryOperations#stream(Iterable, Sort)}
+	 */
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort) {
+		return stream(queryCriterias, sort, null);
+	}
+
+	/**
+	 * {@link RepositoryOperations#stream(Iterable, Sort, Projection)}
+	 * 
+	 * An oversized {@code IN} criteria is loaded into a session temporary table, as in 
+	 *   {@link #queryWithConditions(Iterable, Object, BiFunction)}.  The table lives on the 
+	 *   connection the cursor is read from, so that connection is held until the iterator is closed, 
+	 *   at which point the table is emptied and the connection released.  The table stays reserved 
+	 *   while the stream is open, so other queries on the same connection use tables of their own.
+	 */
+	public CloseableIterator<T> stream(Iterable<QueryCriteria> queryCriterias, Sort sort, 
+			Projection projection) {
+		final List<String> columns = getProjectedColumns(projection);
+		final RowMapper<T> mapper = columns != null ? new ProjectionRowMapper<>(rowMapper) : rowMapper;
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return new EmptyCloseableIterator<>();
+		QueryCriteria oversized = chunkedQueryExecutor.getOversizedCriteria(optimizedCriteria, 
+				field -> true);
+		final String baseTableName = oversized != null ? getTemporaryTableName(oversized.getValue()) : null;
+		if (baseTableName == null){
+			SqlBuilder sqlBuilder = getStreamSqlBuilder(columns, 
+					getConditions(optimizedCriteria, null, null), sort);
+			return ResultSetIterator.open(jdbcTemplate, sqlBuilder.toSql(), 
+					sqlBuilder.getQueryParameterValues().toArray(), mapper, fetchSize);
+		}
+		final DataSource dataSource = jdbcTemplate.getDataSource();
+		final Connection connection = DataSourceUtils.getConnection(dataSource);
+		final String tableName = acquireTemporaryTable(connection, baseTableName);
+		final JdbcTemplate template = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+		template.setExceptionTranslator(jdbcTemplate.getExceptionTranslator());
+		final ResultSetIterator<T> iterator;
+		try {
+			loadTemporaryTable(template, tableName, oversized.getValue());
+			SqlBuilder sqlBuilder = getStreamSqlBuilder(columns, 
+					getConditions(optimizedCriteria, oversized, tableName), sort);
+			iterator = ResultSetIterator.open(template, sqlBuilder.toSql(), 
+					sqlBuilder.getQueryParameterValues().toArray(), mapper, fetchSize);
+		} catch (RuntimeException e){
+			releaseTemporaryTable(template, tableName, connection, dataSource);
+			throw e;
+		}
+		return new CloseableIterator<T>() {
+			private boolean closed = false;
+			@Override 
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			@Override 
+			public T next() {
+				return iterator.next();
+			}
+			@Override 
+			public void close() {
+				if (closed) return;
+				closed = true;
+				try {
+					iterator.close();
+				} finally {
+					releaseTemporaryTable(template, tableName, connection, dataSource);
+				}
+			}
+		};
+	}
+
+	private SqlBuilder getStreamSqlBuilder(List<String> columns, List<Condition> conditionList, Sort sort){
+		SqlBuilder sqlBuilder = getSqlBuilder();
+		if (columns != null) sqlBuilder.select(columns);
 		sqlBuilder.where(and(conditionList.toArray(new Condition[] {})));
-		if (pageable.getSort() != null) sqlBuilder.orderBy(pageable.getSort());
-		sqlBuilder.limit(pageable);
-		List<T> objects = jdbcTemplate.query(sqlBuilder.toSql(),
-				sqlBuilder.getQueryParameterValues().toArray(), rowMapper);
-		Long rowCount = count(queryCriterias);
-		return new PageImpl<>(objects, pageable, rowCount);
+		if (sort != null) sqlBuilder.orderBy(sort);
+		return sqlBuilder;
 	}
 
 	/**
 	 * {@link RepositoryOperations#count}
 	 */
 	public long count(Iterable<QueryCriteria> queryCriterias) {
-		SqlBuilder sqlBuilder = getSqlBuilder();
-		List<Condition> conditionList = new ArrayList<>();
-		for (QueryCriteria criteria: queryCriterias){
-			if (criteria != null) conditionList.add(getConditionFromQueryCriteria(criteria));
-		}
-		sqlBuilder.where(and(conditionList.toArray(new Condition[] {})));
-		String selectWhere = sqlBuilder.toSql();
-		SqlBuilder sqlBuilder2 = new SqlBuilder()
-				.select("count(*)")
-				.from("(" + selectWhere + ") a");
-		return jdbcTemplate.queryForObject(sqlBuilder2.toSql(), sqlBuilder.getQueryParameterValues().toArray(), Long.class);
+		return queryWithConditions(queryCriterias, 0L, (template, conditionList) -> {
+			SqlBuilder sqlBuilder = getSqlBuilder();
+			sqlBuilder.where(and(conditionList.toArray(new Condition[] {})));
+			String selectWhere = sqlBuilder.toSql();
+			SqlBuilder sqlBuilder2 = new SqlBuilder()
+					.select("count(*)")
+					.from("(" + selectWhere + ") a");
+			return template.queryForObject(sqlBuilder2.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+					Long.class);
+		});
 	}
 
 	/**
-	 * TODO
+	 * {@link RepositoryOperations#distinct(String)}
 	 */
 	public Iterable<Object> distinct(String field) {
-		return null;
+		return this.distinct(field, new ArrayList<QueryCriteria>(), null, 0, 0);
 	}
 
 	/**
-	 * TODO
+	 * {@link RepositoryOperations#distinct(String, Iterable)}
 	 */
 	public Iterable<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias) {
-		return null;
+		return this.distinct(field, queryCriterias, null, 0, 0);
+	}
+
+	/**
+	 * {@link RepositoryOperations#distinct(String, Iterable, String, int, int)}
+	 * 
+	 * Plain columns are selected with {@code SELECT DISTINCT} directly against the table description's
+	 *   {@code FROM} clause.  Aggregated, aliased columns (eg. {@code GROUP_CONCAT(...) as aliases}) 
+	 *   cannot be de-duplicated without the full grouped query, so their distinct values are selected 
+	 *   from it as a derived table instead.
+	 */
+	public List<Object> distinct(String field, Iterable<QueryCriteria> queryCriterias, String prefix, 
+			int offset, int limit) {
+		Assert.hasText(field, "Field name must not be empty.");
+		String mappedColumn = getMappedColumn(field);
+		return queryWithConditions(queryCriterias, new ArrayList<Object>(), (template, conditionList) -> {
+			String column = mappedColumn;
+			SqlBuilder sqlBuilder;
+			List<Object> parameters = new ArrayList<>();
+			Matcher matcher = COLUMN_ALIAS_PATTERN.matcher(column);
+			if (matcher.matches()){
+				SqlBuilder inner = getSqlBuilder();
+				inner.where(and(conditionList.toArray(new Condition[] {})));
+				parameters.addAll(inner.getQueryParameterValues());
+				column = "a." + matcher.group(1);
+				sqlBuilder = new SqlBuilder()
+						.selectDistinct(column)
+						.from("(" + inner.toSql() + ") a");
+				if (prefix != null) sqlBuilder.where(startsWith(column, prefix));
+				parameters.addAll(sqlBuilder.getQueryParameterValues());
+			} else {
+				if (prefix != null) conditionList.add(startsWith(column, prefix));
+				sqlBuilder = getSqlBuilder()
+						.selectDistinct(column)
+						.where(and(conditionList.toArray(new Condition[] {})));
+				parameters.addAll(sqlBuilder.getQueryParameterValues());
+			}
+			sqlBuilder.orderBy(column);
+			if (limit > 0){
+				sqlBuilder.limit(offset, limit);
+			} else if (offset > 0){
+				sqlBuilder.limit(offset, Integer.MAX_VALUE);
+			}
+			return template.queryForList(sqlBuilder.toSql(), parameters.toArray(), Object.class);
+		});
+	}
+
+	/**
+	 * Returns the column expression mapped to the model field by the table description.  The field
+	 *   name is written into the SQL, so when the table description defines a field mapping, only 
+	 *   mapped fields are accepted; otherwise, the field name itself is used as the column, and must 
+	 *   be a plain, optionally table-qualified, column identifier.
+	 * 
+	 * @param field model field name
+	 * @return column expression
+	 * @throws IllegalArgumentException if the field is not mapped or is not a valid identifier.
+	 */
+	protected String getMappedColumn(String field){
+		Map<String, String> fieldColumns = tableDescription.getFieldColumns();
+		if (fieldColumns != null && !fieldColumns.isEmpty()){
+			Assert.isTrue(fieldColumns.containsKey(field), "Unknown field: " + field);
+			return fieldColumns.get(field);
+		}
+		Assert.isTrue(field != null && COLUMN_NAME_PATTERN.matcher(field).matches(), 
+				"Invalid field name: " + field);
+		return field;
+	}
+
+	/**
+	 * {@link AggregateOperations#aggregate}
+	 * 
+	 * Compiles the query to a {@code GROUP BY} statement.  Tables whose description defines a 
+	 *   {@code GROUP BY} clause join one-to-many tables, so a record may span several rows of the 
+	 *   {@code FROM} clause.  These, and aggregations of aliased columns, are computed over the full
+	 *   grouped query as a derived table, so that each record is counted once.
+	 */
+	public List<Map<String, Object>> aggregate(Iterable<QueryCriteria> queryCriterias, 
+			AggregateQuery aggregateQuery) {
+		Assert.notNull(aggregateQuery);
+		final List<String> names = aggregateQuery.getOutputNames();
+		Assert.notEmpty(names, "At least one group field or accumulator must be requested.");
+		int sortIndex = aggregateQuery.getSortIndex();
+		List<String> groupColumns = new ArrayList<>();
+		for (String field: aggregateQuery.getGroupFields()){
+			groupColumns.add(getMappedColumn(field));
+		}
+		List<String> accumulatorColumns = new ArrayList<>();
+		for (AggregateQuery.Accumulator accumulator: aggregateQuery.getAccumulators()){
+			accumulatorColumns.add(accumulator.getField() != null ? getMappedColumn(accumulator.getField()) : null);
+		}
+		boolean derived = StringUtils.hasText(tableDescription.getGroupByClause());
+		for (String column: groupColumns){
+			if (COLUMN_ALIAS_PATTERN.matcher(column).matches()) derived = true;
+		}
+		for (String column: accumulatorColumns){
+			if (column != null && COLUMN_ALIAS_PATTERN.matcher(column).matches()) derived = true;
+		}
+		final boolean derivedQuery = derived;
+		final List<String> selectedGroupColumns = derived ? getDerivedColumns(groupColumns) : groupColumns;
+		final List<String> selectedAccumulatorColumns = derived 
+				? getDerivedColumns(accumulatorColumns) : accumulatorColumns;
+		return queryWithConditions(queryCriterias, new ArrayList<Map<String, Object>>(), 
+				(template, conditionList) -> {
+			SqlBuilder sqlBuilder;
+			if (derivedQuery){
+				SqlBuilder inner = getSqlBuilder();
+				inner.where(and(conditionList.toArray(new Condition[] {})));
+				sqlBuilder = new SqlBuilder().from("(" + inner.toSql() + ") a");
+				sqlBuilder.getQueryParameterValues().addAll(inner.getQueryParameterValues());
+			} else {
+				sqlBuilder = getSqlBuilder();
+				sqlBuilder.where(and(conditionList.toArray(new Condition[] {})));
+			}
+			List<String> selections = new ArrayList<>(selectedGroupColumns);
+			for (int i = 0; i < selectedAccumulatorColumns.size(); i++){
+				String column = selectedAccumulatorColumns.get(i);
+				selections.add(aggregateQuery.getAccumulators().get(i).getFunction().name() 
+						+ "(" + (column != null ? column : "*") + ")");
+			}
+			sqlBuilder.select(selections);
+			sqlBuilder.groupBy(selectedGroupColumns.toArray(new String[]{}));
+			if (sortIndex > -1){
+				sqlBuilder.setOrderByClause((sortIndex + 1) + " " + aggregateQuery.getSortDirection().toString());
+			} else if (!selectedGroupColumns.isEmpty()){
+				List<String> orders = new ArrayList<>();
+				for (int i = 1; i <= selectedGroupColumns.size(); i++){
+					orders.add(i + " ASC");
+				}
+				sqlBuilder.setOrderByClause(StringUtils.collectionToDelimitedString(orders, ", "));
+			}
+			if (aggregateQuery.getLimit() > 0){
+				sqlBuilder.limit(aggregateQuery.getLimit());
+			}
+			return template.query(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray(), 
+					new RowMapper<Map<String, Object>>() {
+						@Override 
+						public Map<String, Object> mapRow(ResultSet resultSet, int i) throws SQLException {
+							Map<String, Object> row = new LinkedHashMap<>();
+							for (int c = 0; c < names.size(); c++){
+								row.put(names.get(c), resultSet.getObject(c + 1));
+							}
+							return row;
+						}
+					});
+		});
+	}
+
+	/**
+	 * Converts column expressions of the table description into references to the same columns of
+	 *   the full select query, used as a derived table named {@code a}.
+	 */
+	private List<String> getDerivedColumns(List<String> columns){
+		List<String> derived = new ArrayList<>();
+		for (String column: columns){
+			if (column == null){
+				derived.add(null);
+				continue;
+			}
+			Matcher matcher = COLUMN_ALIAS_PATTERN.matcher(column);
+			derived.add("a." + (matcher.matches() ? matcher.group(1) : column.substring(column.lastIndexOf(".") + 1)));
+		}
+		return derived;
 	}
 
 	/**
@@ -306,15 +708,192 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 
 	/**
 	 * {@link RepositoryOperations#insert}
+	 * 
+	 * Entities are written in batches of up to {@link #getBatchSize()} rows, rather than with one 
+	 *   statement each.  Entities without identifiers have their generated keys assigned from the 
+	 *   batch results, rather than being read back from the database.  Consecutive entities that map
+	 *   the same columns share a batch, so insertion order is preserved.
 	 */
 	public <S extends T> List<S> insert(Iterable<S> entities) {
-		List<S> insertedList = new ArrayList<>();
+		Assert.notNull(entities);
+		final List<S> insertedList = new ArrayList<>();
 		for (S entity: entities){
-			insertedList.add(insert(entity));
+			insertedList.add(entity);
 		}
+		if (insertedList.isEmpty()) return insertedList;
+		final boolean multiRowKeys = isMultiRowGeneratedKeysSupported();
+		jdbcTemplate.execute(new ConnectionCallback<Object>() {
+			@Override 
+			public Object doInConnection(Connection connection) throws SQLException, DataAccessException {
+				boolean manageCommits = commitInterval > 0 && connection.getAutoCommit()
+						&& !TransactionSynchronizationManager.isActualTransactionActive();
+				if (manageCommits) connection.setAutoCommit(false);
+				try {
+					List<Map<String,Object>> rows = new ArrayList<>();
+					int start = 0;
+					int uncommitted = 0;
+					for (int i = 0; i < insertedList.size(); i++){
+						S entity = insertedList.get(i);
+						Map<String,Object> row = rowUnmapper.mapColumns(entity);
+						if (!rows.isEmpty() && !isSameBatch(insertedList.get(start), rows, entity, row, multiRowKeys)){
+							uncommitted += insertBatch(connection, insertedList, start, rows, multiRowKeys);
+							rows = new ArrayList<>();
+							start = i;
+							if (manageCommits && uncommitted >= commitInterval){
+								connection.commit();
+								uncommitted = 0;
+							}
+						}
+						rows.add(row);
+					}
+					insertBatch(connection, insertedList, start, rows, multiRowKeys);
+					if (manageCommits) connection.commit();
+				} catch (SQLException | RuntimeException e){
+					if (manageCommits) connection.rollback();
+					throw e;
+				} finally {
+					if (manageCommits) connection.setAutoCommit(true);
+				}
+				return null;
+			}
+		});
 		return insertedList;
 	}
 
+	/**
+	 * Tests whether an entity can be appended to the current insert batch: it must have the same 
+	 *   identifier state and column mappings as the first entity in the batch, and the batch must not
+	 *   be full.
+	 */
+	private boolean isSameBatch(T first, List<Map<String,Object>> rows, T entity, Map<String,Object> row,
+			boolean multiRowKeys){
+		boolean generated = first.getId() == null;
+		if (generated != (entity.getId() == null)) return false;
+		Set<String> columns = rows.get(0).keySet();
+		if (!columns.equals(row.keySet())) return false;
+		int limit = batchSize;
+		if (generated && multiRowKeys){
+			limit = Math.min(batchSize, Math.max(1, MAX_INSERT_PARAMETERS / Math.max(1, columns.size())));
+		}
+		return rows.size() < limit;
+	}
+
+	/**
+	 * Inserts a batch of rows that share the same columns.  Rows with identifiers are written with a 
+	 *   single JDBC batch.  Rows without identifiers are written with one multi-row statement, when 
+	 *   the database returns a generated key for every row, or otherwise individually with a single
+	 *   reused statement.  Generated keys are assigned to the entities in insertion order.
+	 *
+	 * @return the number of rows inserted.
+	 */
+	private <S extends T> int insertBatch(Connection connection, List<S> entities, int start,
+			List<Map<String,Object>> rows, boolean multiRowKeys) throws SQLException {
+		List<String> columns = new ArrayList<>(rows.get(0).keySet());
+		Map<String,Object> first = new LinkedHashMap<>();
+		for (String column: columns){
+			first.put(column, rows.get(0).get(column));
+		}
+		String sql = getSqlBuilder().insert(first).toSql();
+		PreparedStatement statement = null;
+		try {
+			if (entities.get(start).getId() != null){
+				statement = connection.prepareStatement(sql);
+				for (Map<String,Object> row: rows){
+					setInsertValues(statement, columns, row, 0);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			} else if (multiRowKeys){
+				statement = connection.prepareStatement(getSqlBuilder().insert(rows).toSql(), 
+						Statement.RETURN_GENERATED_KEYS);
+				for (int i = 0; i < rows.size(); i++){
+					setInsertValues(statement, columns, rows.get(i), i * columns.size());
+				}
+				statement.executeUpdate();
+				List<Object> keys = getGeneratedKeys(statement);
+				if (keys.size() != rows.size()){
+					throw new DataRetrievalFailureException(String.format("Expected %d generated keys, " 
+							+ "but the database returned %d.", rows.size(), keys.size()));
+				}
+				for (int i = 0; i < keys.size(); i++){
+					setGeneratedKey(entities, start + i, keys.get(i));
+				}
+			} else {
+				statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+				for (int i = 0; i < rows.size(); i++){
+					setInsertValues(statement, columns, rows.get(i), 0);
+					statement.executeUpdate();
+					List<Object> keys = getGeneratedKeys(statement);
+					if (keys.isEmpty()){
+						throw new DataRetrievalFailureException("The database did not return a generated key.");
+					}
+					setGeneratedKey(entities, start + i, keys.get(0));
+				}
+			}
+		} finally {
+			JdbcUtils.closeStatement(statement);
+		}
+		return rows.size();
+	}
+
+	private void setInsertValues(PreparedStatement statement, List<String> columns, 
+			Map<String,Object> row, int offset) throws SQLException {
+		for (int i = 0; i < columns.size(); i++){
+			statement.setObject(offset + i + 1, row.get(columns.get(i)));
+		}
+	}
+
+	/**
+	 * Reads the generated identifier of each inserted row.  Drivers that return whole rows (eg. 
+	 *   PostgreSQL) are read by the identifier column label, others by the first column.
+	 */
+	private List<Object> getGeneratedKeys(PreparedStatement statement) throws SQLException {
+		List<Object> keys = new ArrayList<>();
+		ResultSet resultSet = statement.getGeneratedKeys();
+		try {
+			int index = 1;
+			ResultSetMetaData metaData = resultSet.getMetaData();
+			String idColumn = tableDescription.getIdColumns().get(0);
+			idColumn = idColumn.substring(idColumn.lastIndexOf(".") + 1);
+			for (int i = 1; i <= metaData.getColumnCount(); i++){
+				if (idColumn.equalsIgnoreCase(metaData.getColumnLabel(i))){
+					index = i;
+					break;
+				}
+			}
+			while (resultSet.next()){
+				keys.add(resultSet.getObject(index));
+			}
+		} finally {
+			JdbcUtils.closeResultSet(resultSet);
+		}
+		return keys;
+	}
+
+	/**
+	 * Assigns a generated key to the entity's {@code id} property.  Entities without a writable 
+	 *   {@code id} property are instead replaced by a re-read of the inserted row.
+	 */
+	@SuppressWarnings("unchecked")
+	private <S extends T> void setGeneratedKey(List<S> entities, int index, Object key){
+		S entity = entities.get(index);
+		BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(entity);
+		if (wrapper.isWritableProperty("id")){
+			wrapper.setPropertyValue("id", key);
+		} else {
+			entities.set(index, (S) findOne((ID) key));
+		}
+	}
+
+	/**
+	 * Whether a multi-row {@code INSERT} reports a generated key for every row, rather than only the 
+	 *   last one.  True for MySQL, MariaDB and PostgreSQL.
+	 */
+	protected boolean isMultiRowGeneratedKeysSupported(){
+		String product = getDatabaseProductName();
+		return product.contains("mysql") || product.contains("mariadb") || product.contains("postgresql");
+	}
+
 	/**
 	 * {@link RepositoryOperations#update}
 	 */
@@ -344,6 +923,13 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 		return updatedList;
 	}
 
+	/**
+	 * {@link RepositoryOperations#upsert}
+	 */
+	public <S extends T> List<S> upsert(Iterable<S> entities) {
+		return this.save(entities);
+	}
+
 	/**
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#save(Iterable)}
 	 */
@@ -370,9 +956,24 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 	 * {@link org.springframework.data.repository.PagingAndSortingRepository#delete(Iterable)}
 	 */
 	public void delete(Iterable<? extends T> iterable) {
+		final List<String> idColumns = tableDescription.getIdColumns();
+		List<ID> ids = new ArrayList<>();
 		for (T t: iterable){
-			this.delete(t.getId());
+			if (idColumns.size() == 1){
+				ids.add(t.getId());
+			} else {
+				this.delete(t.getId());
+			}
 		}
+		chunkedQueryExecutor.execute(ids, new ChunkedQueryExecutor.ChunkQuery<ID, Integer>() {
+			@Override 
+			public List<Integer> fetch(List<ID> chunk) {
+				SqlBuilder sqlBuilder = getSqlBuilder();
+				sqlBuilder.delete().where(in(idColumns.get(0), chunk));
+				return Collections.singletonList(jdbcTemplate.update(sqlBuilder.toSql(), 
+						sqlBuilder.getQueryParameterValues().toArray()));
+			}
+		}, false);
 	}
 
 	/**
@@ -405,6 +1006,21 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 		jdbcTemplate.execute("DELETE FROM " + tableDescription.getTableName());
 	}
 
+	/**
+	 * {@link RepositoryOperations#deleteAll(Iterable)}
+	 * 
+	 * Issues a single {@code DELETE ... WHERE} statement against the base table.  Criteria must 
+	 *   refer to columns of that table, rather than of joined tables.
+	 */
+	public long deleteAll(Iterable<QueryCriteria> queryCriterias) {
+		return queryWithConditions(queryCriterias, 0L, (template, conditionList) -> {
+			Assert.notEmpty(conditionList, "At least one query criteria must be supplied.");
+			SqlBuilder sqlBuilder = getSqlBuilder();
+			sqlBuilder.delete().where(and(conditionList.toArray(new Condition[] {})));
+			return (long) template.update(sqlBuilder.toSql(), sqlBuilder.getQueryParameterValues().toArray());
+		});
+	}
+
 	/**
 	 * Truncates the target table, dropping all records.
 	 */
@@ -425,31 +1041,348 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 			return Collections.<Object>singletonList(id);
 	}
 
+	/**
+	 * Optimizes the {@link QueryCriteria} with the repository's {@link QueryCriteriaOptimizer} and 
+	 *   converts them into {@link Condition} objects.  Returns null if the criteria can never be 
+	 *   satisfied, in which case the caller should return an empty result without querying the 
+	 *   database.
+	 * 
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @return list of {@link Condition}, or null.
+	 */
+	protected List<Condition> getConditions(Iterable<QueryCriteria> queryCriterias){
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return null;
+		List<Condition> conditionList = new ArrayList<>();
+		for (QueryCriteria criteria: optimizedCriteria){
+			conditionList.add(getConditionFromQueryCriteria(criteria));
+		}
+		return conditionList;
+	}
+
+	/**
+	 * Optimizes the {@link QueryCriteria}, converts them into {@link Condition} objects, and runs the 
+	 *   query with them, returning the supplied empty result if the criteria can never be satisfied.  
+	 *   If the criteria include an {@code IN} criteria with more values than the 
+	 *   {@link ChunkedQueryExecutor} chunk size, the values are loaded into a session temporary table 
+	 *   and the criteria is replaced with a {@code column in (select ...)} condition against it, 
+	 *   avoiding statement parameter limits.  The temporary table lives on a single connection, so 
+	 *   in this case the query is run with a {@link JdbcTemplate} bound to that connection, and the 
+	 *   table is emptied again afterwards.  Otherwise the repository's own template is used.  Every 
+	 *   query gets a table of its own: tables still in use on the connection, such as one read by 
+	 *   an open stream, are never reused.
+	 * 
+	 * @param queryCriterias {@link QueryCriteria}
+	 * @param empty result returned for unsatisfiable criteria.
+	 * @param query runs the query with the supplied template and conditions.
+	 * @return query result.
+	 */
+	protected <R> R queryWithConditions(Iterable<QueryCriteria> queryCriterias, R empty, 
+			BiFunction<JdbcTemplate, List<Condition>, R> query){
+		OptimizedCriteria optimizedCriteria = queryCriteriaOptimizer.optimize(queryCriterias);
+		if (optimizedCriteria.isUnsatisfiable()) return empty;
+		final QueryCriteria oversized = chunkedQueryExecutor.getOversizedCriteria(optimizedCriteria, 
+				field -> true);
+		final String baseTableName = oversized != null ? getTemporaryTableName(oversized.getValue()) : null;
+		if (baseTableName == null){
+			return query.apply(jdbcTemplate, getConditions(optimizedCriteria, null, null));
+		}
+		return jdbcTemplate.execute(new ConnectionCallback<R>() {
+			@Override 
+			public R doInConnection(Connection connection) throws SQLException, DataAccessException {
+				JdbcTemplate template = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+				template.setFetchSize(jdbcTemplate.getFetchSize());
+				String tableName = acquireTemporaryTable(connection, baseTableName);
+				try {
+					loadTemporaryTable(template, tableName, oversized.getValue());
+					return query.apply(template, getConditions(optimizedCriteria, oversized, tableName));
+				} finally {
+					try {
+						template.update("DELETE FROM " + tableName);
+					} finally {
+						releaseTemporaryTableName(connection, tableName);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Converts optimized {@link QueryCriteria} into {@link Condition} objects, replacing the 
+	 *   {@code oversized} criteria, if any, with a {@code column in (select ...)} condition against 
+	 *   the named temporary table.
+	 */
+	private List<Condition> getConditions(OptimizedCriteria optimizedCriteria, QueryCriteria oversized, 
+			String tableName){
+		List<Condition> conditionList = new ArrayList<>();
+		for (QueryCriteria criteria: optimizedCriteria){
+			conditionList.add(oversized != null && criteria == oversized 
+					? inSelect(criteria.getKey(), "select in_value from " + tableName) 
+					: getConditionFromQueryCriteria(criteria));
+		}
+		return conditionList;
+	}
+
+	/**
+	 * Creates the named temporary table, if needed, on the template's connection, and inserts the 
+	 *   distinct {@code IN} values into it in batches.
+	 */
+	private void loadTemporaryTable(JdbcTemplate template, String tableName, Object values){
+		template.execute(getTemporaryTableDefinition(tableName, 
+				tableName.startsWith(TEMPORARY_STRING_TABLE) ? "varchar(" + MAX_TEMPORARY_STRING_LENGTH + ")" 
+						: "bigint"));
+		List<Object[]> rows = new ArrayList<>();
+		for (Object value: new LinkedHashSet<>(toList(values))){
+			rows.add(new Object[]{ value });
+		}
+		for (int i = 0; i < rows.size(); i += batchSize){
+			template.batchUpdate("INSERT INTO " + tableName + " (in_value) VALUES (?)", 
+					rows.subList(i, Math.min(i + batchSize, rows.size())));
+		}
+	}
+
+	/**
+	 * Reserves a temporary table of the named kind on the connection.  The first table not already 
+	 *   in use on the connection is returned, numbering further tables with a suffix, so that 
+	 *   concurrent uses of one connection, such as a query run while a stream is open, never share a 
+	 *   table.  Released tables are emptied rather than dropped, since dropping a table commits the 
+	 *   open transaction on some databases, and are reused by later queries.
+	 */
+	private static String acquireTemporaryTable(Connection connection, String baseTableName){
+		connection = getTargetConnection(connection);
+		synchronized (TEMPORARY_TABLES_IN_USE){
+			Set<String> inUse = TEMPORARY_TABLES_IN_USE.get(connection);
+			if (inUse == null){
+				inUse = new HashSet<>();
+				TEMPORARY_TABLES_IN_USE.put(connection, inUse);
+			}
+			String tableName = baseTableName;
+			for (int i = 2; inUse.contains(tableName); i++){
+				tableName = baseTableName + "_" + i;
+			}
+			inUse.add(tableName);
+			return tableName;
+		}
+	}
+
+	private static void releaseTemporaryTableName(Connection connection, String tableName){
+		connection = getTargetConnection(connection);
+		synchronized (TEMPORARY_TABLES_IN_USE){
+			Set<String> inUse = TEMPORARY_TABLES_IN_USE.get(connection);
+			if (inUse == null) return;
+			inUse.remove(tableName);
+			if (inUse.isEmpty()) TEMPORARY_TABLES_IN_USE.remove(connection);
+		}
+	}
+
+	/**
+	 * Unwraps the close-suppressing proxies handed to {@link ConnectionCallback}s, so that all uses 
+	 *   of a connection are tracked together.
+	 */
+	private static Connection getTargetConnection(Connection connection){
+		while (connection instanceof ConnectionProxy){
+			connection = ((ConnectionProxy) connection).getTargetConnection();
+		}
+		return connection;
+	}
+
+	/**
+	 * Empties the temporary table used by a streamed query, releases its reservation, and releases 
+	 *   its connection.
+	 */
+	private void releaseTemporaryTable(JdbcTemplate template, String tableName, Connection connection, 
+			DataSource dataSource){
+		try {
+			template.update("DELETE FROM " + tableName);
+		} finally {
+			releaseTemporaryTableName(connection, tableName);
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	/**
+	 * Returns the name of the temporary table that can hold the supplied {@code IN} values, or null 
+	 *   if they cannot be loaded into one, in which case they are bound as ordinary statement 
+	 *   parameters.  Integer values and strings of up to {@value #MAX_TEMPORARY_STRING_LENGTH} 
+	 *   characters are supported, on H2, MySQL/MariaDB and PostgreSQL.
+	 */
+	protected String getTemporaryTableName(Object values){
+		String product = getDatabaseProductName();
+		if (!product.contains("h2") && !product.contains("mysql") && !product.contains("mariadb") 
+				&& !product.contains("postgresql")){
+			return null;
+		}
+		boolean integers = true;
+		boolean strings = true;
+		for (Object value: toList(values)){
+			integers = integers && (value instanceof Long || value instanceof Integer 
+					|| value instanceof Short || value instanceof Byte);
+			strings = strings && value instanceof String 
+					&& ((String) value).length() <= MAX_TEMPORARY_STRING_LENGTH;
+		}
+		return integers ? TEMPORARY_INTEGER_TABLE : strings ? TEMPORARY_STRING_TABLE : null;
+	}
+
+	/**
+	 * Returns the {@code CREATE} statement for a session temporary table with a single 
+	 *   {@code in_value} column, if it does not already exist.  H2 tables are created as 
+	 *   {@code TRANSACTIONAL}, so that the statement does not commit an open transaction.
+	 */
+	protected String getTemporaryTableDefinition(String tableName, String columnType){
+		if (getDatabaseProductName().contains("h2")){
+			return String.format("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS %s (in_value %s) TRANSACTIONAL", 
+					tableName, columnType);
+		}
+		return String.format("CREATE TEMPORARY TABLE IF NOT EXISTS %s (in_value %s)", tableName, columnType);
+	}
+
+	private static List<Object> toList(Object value){
+		if (value instanceof Object[]) return Arrays.asList((Object[]) value);
+		return new ArrayList<Object>((Collection<?>) value);
+	}
+
 	/**
 	 * Creates a {@link Condition} instance from
 	 *   a {@link QueryCriteria} search parameter for use
-	 *   in SQL query generation.
+	 *   in SQL query generation.  {@link QueryCriteriaGroup} instances 
+	 *   are converted into nested, parenthesized conditions.
 	 * 
 	 * @param criteria {@link QueryCriteria}
 	 * @return {@link Condition}
 	 */
 	protected Condition getConditionFromQueryCriteria(QueryCriteria criteria){
+		if (criteria instanceof QueryCriteriaGroup){
+			QueryCriteriaGroup group = (QueryCriteriaGroup) criteria;
+			List<Condition> members = new ArrayList<>();
+			for (QueryCriteria member: group.getQueryCriterias()){
+				members.add(getConditionFromQueryCriteria(member));
+			}
+			Condition[] conditions = members.toArray(new Condition[]{});
+			switch (group.getOperator()){
+				case OR:
+					return new Condition(or(conditions));
+				case NOT:
+					return new Condition(not(conditions));
+				default:
+					return new Condition(and(conditions));
+			}
+		}
 		switch (criteria.getEvaluation()){
 			case EQUALS:
 				return equal(criteria.getKey(), criteria.getValue());
 			case NOT_EQUALS:
 				return notEqual(criteria.getKey(), criteria.getValue());
 			case IN :
-				return in(criteria.getKey(), (Object[]) criteria.getValue());
+				return new Condition(criteria.getKey(), criteria.getValue(), Evaluation.IN);
 			case NOT_IN:
-				return notIn(criteria.getKey(), (Object[]) criteria.getValue());
+				return new Condition(criteria.getKey(), criteria.getValue(), Evaluation.NOT_IN);
 			case IS_NULL:
 				return isNull(criteria.getKey());
 			case NOT_NULL:
 				return notNull(criteria.getKey());
+			case GREATER_THAN:
+				return greaterThan(criteria.getKey(), criteria.getValue());
+			case GREATER_THAN_EQUALS:
+				return greaterThanOrEqual(criteria.getKey(), criteria.getValue());
+			case LESS_THAN:
+				return lessThan(criteria.getKey(), criteria.getValue());
+			case LESS_THAN_EQUALS:
+				return lessThanOrEqual(criteria.getKey(), criteria.getValue());
 			default:
-				return equal(criteria.getKey(), criteria.getValue());
+				return new Condition(criteria.getKey(), criteria.getValue(), criteria.getEvaluation());
+		}
+	}
+
+	/**
+	 * Creates the range {@link Conditions} used for keyset pagination.  For sort keys {@code (a, b, id)},
+	 *   selects all rows where {@code a > ? OR (a = ? AND b > ?) OR (a = ? AND b = ? AND id > ?)}, 
+	 *   with the comparison reversed for descending keys.
+	 * 
+	 * @param keysetSort complete keyset {@link Sort}, ending with the identifier columns.
+	 * @param values sort key values of the last row of the previous page.
+	 * @return {@link Conditions}
+	 */
+	protected Conditions getKeysetConditions(Sort keysetSort, List<Object> values){
+		List<Sort.Order> orders = new ArrayList<>();
+		for (Sort.Order order: keysetSort){
+			orders.add(order);
+		}
+		List<Conditions> branches = new ArrayList<>();
+		for (int i = 0; i < orders.size(); i++){
+			List<Condition> terms = new ArrayList<>();
+			for (int j = 0; j < i; j++){
+				terms.add(equal(orders.get(j).getProperty(), values.get(j)));
+			}
+			Sort.Order order = orders.get(i);
+			terms.add(order.isAscending() ? greaterThan(order.getProperty(), values.get(i))
+					: lessThan(order.getProperty(), values.get(i)));
+			branches.add(and(terms.toArray(new Condition[]{})));
 		}
+		return or(branches.toArray(new Conditions[]{}));
+	}
+
+	/**
+	 * Returns the query planner's estimate of the number of rows returned by the supplied query, or 
+	 *   null if no estimate is available.  Estimates are read from the output of {@code EXPLAIN} for 
+	 *   MySQL/MariaDB (the product of the {@code rows} column over all tables in the plan) and 
+	 *   PostgreSQL (the {@code rows} value of the top plan node).  Other databases return null.
+	 * 
+	 * @param sql SQL query string
+	 * @param parameters query parameter values
+	 * @return estimated row count, or null.
+	 */
+	protected Long estimateCount(String sql, Object[] parameters){
+		return estimateCount(jdbcTemplate, sql, parameters);
+	}
+
+	/**
+	 * Estimates the row count of a query with {@code EXPLAIN}, run with the supplied template, such 
+	 *   as one bound to the connection holding a temporary table the query refers to.
+	 *   See {@link #estimateCount(String, Object[])}.
+	 */
+	protected Long estimateCount(JdbcTemplate jdbcTemplate, String sql, Object[] parameters){
+		String product = getDatabaseProductName();
+		try {
+			if (product.contains("mysql") || product.contains("mariadb")){
+				List<Long> rows = jdbcTemplate.query("EXPLAIN " + sql, parameters, new RowMapper<Long>() {
+					@Override 
+					public Long mapRow(ResultSet resultSet, int i) throws SQLException {
+						return resultSet.getLong("rows");
+					}
+				});
+				if (rows.isEmpty()) return null;
+				long estimate = 1L;
+				for (Long count: rows){
+					estimate = estimate * Math.max(count, 1L);
+				}
+				return estimate;
+			} else if (product.contains("postgresql")){
+				List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, parameters, String.class);
+				if (plan.isEmpty()) return null;
+				Matcher matcher = EXPLAIN_ROWS_PATTERN.matcher(plan.get(0));
+				return matcher.find() ? Long.parseLong(matcher.group(1)) : null;
+			}
+		} catch (DataAccessException e){
+			return null;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the lower-case name of the database product, or an empty string if it cannot be 
+	 *   determined.
+	 */
+	private String getDatabaseProductName(){
+		if (databaseProductName == null){
+			try {
+				String name = (String) JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), 
+						"getDatabaseProductName");
+				databaseProductName = name != null ? name.toLowerCase() : "";
+			} catch (MetaDataAccessException e){
+				databaseProductName = "";
+			}
+		}
+		return databaseProductName;
 	}
 
 	public JdbcTemplate getJdbcTemplate() {
@@ -467,4 +1400,153 @@ public class GenericJdbcRepository<T extends Model<ID>, ID extends Serializable>
 	public RowUnmapper<T> getRowUnmapper() {
 		return rowUnmapper;
 	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Sets the JDBC fetch size hint used by result sets opened with {@link #stream(Iterable, Sort)}.
+	 * 
+	 * @param fetchSize number of rows to fetch per round trip.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Returns the default {@link CountStrategy} used for paged queries.
+	 */
+	public CountStrategy getCountStrategy() {
+		return pagedQueryExecutor.getDefaultCountStrategy();
+	}
+
+	/**
+	 * Sets the default {@link CountStrategy} used for paged queries, when none is requested.
+	 *
+	 * @param countStrategy {@link CountStrategy}
+	 */
+	public void setCountStrategy(CountStrategy countStrategy) {
+		pagedQueryExecutor.setDefaultCountStrategy(countStrategy);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of rows written per batch by {@link #insert(Iterable)}.
+	 *
+	 * @param batchSize number of rows per batch.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than zero.");
+		this.batchSize = batchSize;
+	}
+
+	public int getCommitInterval() {
+		return commitInterval;
+	}
+
+	/**
+	 * Sets the number of rows after which {@link #insert(Iterable)} commits, when it is not called 
+	 *   within a transaction.  Commits happen on batch boundaries, once at least this many rows are 
+	 *   uncommitted.  Zero, the default, leaves the connection in auto-commit mode.
+	 *
+	 * @param commitInterval number of rows per commit, or zero.
+	 */
+	public void setCommitInterval(int commitInterval) {
+		Assert.isTrue(commitInterval >= 0, "Commit interval must not be negative.");
+		this.commitInterval = commitInterval;
+	}
+
+	public PagedQueryExecutor getPagedQueryExecutor() {
+		return pagedQueryExecutor;
+	}
+
+	public void setPagedQueryExecutor(PagedQueryExecutor pagedQueryExecutor) {
+		Assert.notNull(pagedQueryExecutor);
+		this.pagedQueryExecutor = pagedQueryExecutor;
+	}
+
+	public ChunkedQueryExecutor getChunkedQueryExecutor() {
+		return chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link ChunkedQueryExecutor} used to split large multi-ID lookups into concurrent 
+	 *   {@code IN} queries.
+	 *
+	 * @param chunkedQueryExecutor {@link ChunkedQueryExecutor}
+	 */
+	public void setChunkedQueryExecutor(ChunkedQueryExecutor chunkedQueryExecutor) {
+		Assert.notNull(chunkedQueryExecutor);
+		this.chunkedQueryExecutor = chunkedQueryExecutor;
+	}
+
+	/**
+	 * Sets the {@link Executor} used by this repository's {@link PagedQueryExecutor} and 
+	 *   {@link ChunkedQueryExecutor} to run count and chunk queries concurrently, so that the 
+	 *   repository does not share the default pool with others.  The executor should be bounded, 
+	 *   for example one created with {@link PagedQueryExecutor#createExecutor(int, int)}, and sized 
+	 *   to the connection pool.
+	 *
+	 * @param executor {@link Executor}
+	 */
+	public void setQueryExecutor(Executor executor) {
+		Assert.notNull(executor);
+		pagedQueryExecutor.setExecutor(executor);
+		chunkedQueryExecutor.setExecutor(executor);
+	}
+
+	public QueryCriteriaOptimizer getQueryCriteriaOptimizer() {
+		return queryCriteriaOptimizer;
+	}
+
+	/**
+	 * Sets the {@link QueryCriteriaOptimizer} applied to query criteria before they are converted to 
+	 *   SQL conditions.
+	 *
+	 * @param queryCriteriaOptimizer {@link QueryCriteriaOptimizer}
+	 */
+	public void setQueryCriteriaOptimizer(QueryCriteriaOptimizer queryCriteriaOptimizer) {
+		Assert.notNull(queryCriteriaOptimizer);
+		this.queryCriteriaOptimizer = queryCriteriaOptimizer;
+	}
+
+	/**
+	 * Wraps a {@link RowMapper} and records the sort key column values of each mapped row, so that
+	 *   a {@link ContinuationToken} can be created without reading the values back from the model 
+	 *   object.  Columns are looked up by their unqualified names.
+	 */
+	private static class KeysetRowMapper<T> implements RowMapper<T> {
+
+		private final RowMapper<T> rowMapper;
+		private final List<String> columnLabels = new ArrayList<>();
+		private final List<List<Object>> keys = new ArrayList<>();
+
+		public KeysetRowMapper(RowMapper<T> rowMapper, Sort keysetSort) {
+			this.rowMapper = rowMapper;
+			for (Sort.Order order: keysetSort){
+				String column = order.getProperty();
+				columnLabels.add(column.substring(column.lastIndexOf(".") + 1));
+			}
+		}
+
+		@Override 
+		public T mapRow(ResultSet resultSet, int i) throws SQLException {
+			T entity = rowMapper.mapRow(resultSet, i);
+			List<Object> values = new ArrayList<>();
+			for (String label: columnLabels){
+				values.add(resultSet.getObject(label));
+			}
+			keys.add(values);
+			return entity;
+		}
+
+		public List<Object> getKeys(int row) {
+			return keys.get(row);
+		}
+	}
+	
 }
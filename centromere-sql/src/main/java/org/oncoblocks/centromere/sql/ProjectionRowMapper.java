@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.sql;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link RowMapper} decorator used for queries that select only a subset of the mapped columns.  
+ *   The wrapped mapper is handed a view of the {@link ResultSet} in which columns that were not 
+ *   selected read as SQL {@code NULL}, rather than throwing an exception, so that the same mapper 
+ *   can be used for full-width and projected queries, as long as it handles null values.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ProjectionRowMapper<T> implements RowMapper<T> {
+
+	private final RowMapper<T> rowMapper;
+	private ResultSet source = null;
+	private ResultSet view = null;
+
+	public ProjectionRowMapper(RowMapper<T> rowMapper) {
+		Assert.notNull(rowMapper);
+		this.rowMapper = rowMapper;
+	}
+
+	@Override 
+	public T mapRow(ResultSet resultSet, int i) throws SQLException {
+		if (resultSet != source){
+			source = resultSet;
+			view = createView(resultSet);
+		}
+		return rowMapper.mapRow(view, i);
+	}
+
+	private static ResultSet createView(ResultSet resultSet) throws SQLException {
+		ResultSetMetaData metaData = resultSet.getMetaData();
+		Set<String> labels = new HashSet<>();
+		for (int i = 1; i <= metaData.getColumnCount(); i++){
+			labels.add(metaData.getColumnLabel(i).toLowerCase());
+		}
+		return (ResultSet) Proxy.newProxyInstance(ProjectionRowMapper.class.getClassLoader(), 
+				new Class<?>[]{ ResultSet.class }, new MissingColumnHandler(resultSet, labels));
+	}
+
+	/**
+	 * Returns null, or the primitive default, from label-based getters for unselected columns, and 
+	 *   delegates all other calls to the underlying {@link ResultSet}.
+	 */
+	private static class MissingColumnHandler implements InvocationHandler {
+
+		private final ResultSet resultSet;
+		private final Set<String> labels;
+		private boolean missing = false;
+
+		public MissingColumnHandler(ResultSet resultSet, Set<String> labels) {
+			this.resultSet = resultSet;
+			this.labels = labels;
+		}
+
+		@Override 
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("wasNull".equals(name) && missing) return true;
+			if (name.startsWith("get") && args != null && args.length > 0 && args[0] instanceof String 
+					&& !labels.contains(((String) args[0]).toLowerCase())){
+				missing = true;
+				return getDefaultValue(method.getReturnType());
+			}
+			if (name.startsWith("get")) missing = false;
+			try {
+				return method.invoke(resultSet, args);
+			} catch (InvocationTargetException e){
+				throw e.getTargetException();
+			}
+		}
+
+		private static Object getDefaultValue(Class<?> type){
+			if (!type.isPrimitive()) return null;
+			if (type.equals(boolean.class)) return false;
+			if (type.equals(long.class)) return 0L;
+			if (type.equals(double.class)) return 0.0d;
+			if (type.equals(float.class)) return 0.0f;
+			if (type.equals(short.class)) return (short) 0;
+			if (type.equals(byte.class)) return (byte) 0;
+			return 0;
+		}
+	}
+
+}
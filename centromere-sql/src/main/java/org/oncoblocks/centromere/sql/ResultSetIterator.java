@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.sql;
+
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link CloseableIterator} implementation that wraps an open JDBC {@link ResultSet}, mapping each
+ *   row with a {@link RowMapper} as it is read.  The statement is executed as forward-only and
+ *   read-only, with a driver fetch size hint, so that rows can be pulled from the database
+ *   incrementally.  The connection is obtained through {@link DataSourceUtils}, so an iterator
+ *   opened inside of a Spring-managed transaction will participate in it.  All JDBC resources are
+ *   released when the iterator is exhausted or closed.
+ *
+ * Note that some drivers ignore the fetch size hint: MySQL Connector/J, for example, only streams
+ *   results when {@code useCursorFetch=true} is set on the connection, or when the fetch size is
+ *   {@link Integer#MIN_VALUE}.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ResultSetIterator<T> implements CloseableIterator<T> {
+
+	private final DataSource dataSource;
+	private final Connection connection;
+	private final PreparedStatement statement;
+	private final ResultSet resultSet;
+	private final RowMapper<T> rowMapper;
+	private final SQLExceptionTranslator exceptionTranslator;
+	private final String sql;
+	private int rowNum = 0;
+	private Boolean hasNext = null;
+	private boolean closed = false;
+
+	private ResultSetIterator(DataSource dataSource, Connection connection, PreparedStatement statement,
+			ResultSet resultSet, RowMapper<T> rowMapper, SQLExceptionTranslator exceptionTranslator, String sql) {
+		this.dataSource = dataSource;
+		this.connection = connection;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.rowMapper = rowMapper;
+		this.exceptionTranslator = exceptionTranslator;
+		this.sql = sql;
+	}
+
+	/**
+	 * Executes the supplied query and returns an iterator over the open result set.
+	 *
+	 * @param jdbcTemplate {@link JdbcTemplate} supplying the data source and exception translator.
+	 * @param sql SQL query string
+	 * @param parameters query parameter values
+	 * @param rowMapper {@link RowMapper}
+	 * @param fetchSize number of rows the driver should fetch per round trip.
+	 * @return {@link ResultSetIterator}
+	 */
+	public static <T> ResultSetIterator<T> open(JdbcTemplate jdbcTemplate, String sql, Object[] parameters,
+			RowMapper<T> rowMapper, int fetchSize){
+		Assert.notNull(jdbcTemplate);
+		Assert.notNull(sql);
+		Assert.notNull(rowMapper);
+		DataSource dataSource = jdbcTemplate.getDataSource();
+		SQLExceptionTranslator exceptionTranslator = jdbcTemplate.getExceptionTranslator();
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		PreparedStatement statement = null;
+		try {
+			statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(fetchSize);
+			new ArgumentPreparedStatementSetter(parameters).setValues(statement);
+			ResultSet resultSet = statement.executeQuery();
+			return new ResultSetIterator<>(dataSource, connection, statement, resultSet, rowMapper,
+					exceptionTranslator, sql);
+		} catch (SQLException e){
+			JdbcUtils.closeStatement(statement);
+			DataSourceUtils.releaseConnection(connection, dataSource);
+			throw exceptionTranslator.translate("ResultSetIterator", sql, e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) return false;
+		if (hasNext == null){
+			try {
+				hasNext = resultSet.next();
+			} catch (SQLException e){
+				close();
+				throw exceptionTranslator.translate("ResultSetIterator", sql, e);
+			}
+			if (!hasNext) close();
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		hasNext = null;
+		try {
+			return rowMapper.mapRow(resultSet, rowNum++);
+		} catch (SQLException e){
+			close();
+			throw exceptionTranslator.translate("ResultSetIterator", sql, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		JdbcUtils.closeResultSet(resultSet);
+		JdbcUtils.closeStatement(statement);
+		DataSourceUtils.releaseConnection(connection, dataSource);
+	}
+
+}
@@ -19,7 +19,9 @@ package org.oncoblocks.centromere.sql.sqlbuilder;
 import org.springframework.util.Assert;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Based on {@link com.nurkiewicz.jdbcrepository.TableDescription}, with some modifications and additions.
@@ -33,6 +35,7 @@ public class ComplexTableDescription {
 	private String selectClause;
 	private String fromClause;
 	private String groupByClause;
+	private Map<String, String> fieldColumns = new LinkedHashMap<>();
 
 	public ComplexTableDescription(String tableName, List<String> idColumns,
 			String selectClause, String fromClause, String groupByClause) {
@@ -108,4 +111,21 @@ public class ComplexTableDescription {
 	public void setGroupByClause(String groupByClause) {
 		this.groupByClause = groupByClause;
 	}
+
+	public Map<String, String> getFieldColumns() {
+		return fieldColumns;
+	}
+
+	/**
+	 * Maps each model field name to the select clause expression that populates it, for example 
+	 *   {@code "name" -> "subjects.name"}.  When set, queries that request a subset of fields select 
+	 *   only the mapped expressions for those fields, rather than the full select clause.  The map 
+	 *   must cover every field of the model that the row mapper reads.
+	 * 
+	 * @param fieldColumns map of field names to select expressions.
+	 */
+	public void setFieldColumns(Map<String, String> fieldColumns) {
+		Assert.notNull(fieldColumns);
+		this.fieldColumns = fieldColumns;
+	}
 }
@@ -18,14 +18,25 @@ package org.oncoblocks.centromere.sql.sqlbuilder;
 
 import org.oncoblocks.centromere.core.repository.Evaluation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
- * Maps a {@link org.oncoblocks.centromere.core.repository.QueryCriteria} to SQL operations.
+ * Maps a {@link org.oncoblocks.centromere.core.repository.QueryCriteria} to SQL operations.  
+ *   {@code IN} and {@code NOT IN} conditions accept an array or {@link Collection} of values, and 
+ *   bind one parameter per value.  Range conditions, such as {@code BETWEEN}, accept exactly two 
+ *   values: the lower and upper bounds.
  * 
  * @author woemler 
  */
 public class Condition {
+	private static final char LIKE_ESCAPE = '!';
 	private final String clause;
 	private final Object value;
+	private final List<Object> values;
 
 	public Condition(String column, Object value, Evaluation evalutation){
 		StringBuilder builder = new StringBuilder(" " + column);
@@ -43,16 +54,155 @@ public class Condition {
 				builder.append(" is not null ");
 				break;
 			case IN:
-				builder.append(" in (?) ");
+				builder.append(getInClause(" in ", value));
 				break;
 			case NOT_IN:
-				builder.append(" not in (?) ");
+				builder.append(getInClause(" not in ", value));
+				break;
+			case GREATER_THAN:
+				builder.append(" > ? ");
+				break;
+			case GREATER_THAN_EQUALS:
+				builder.append(" >= ? ");
+				break;
+			case LESS_THAN:
+				builder.append(" < ? ");
+				break;
+			case LESS_THAN_EQUALS:
+				builder.append(" <= ? ");
+				break;
+			case LIKE:
+			case STARTS_WITH:
+			case ENDS_WITH:
+				builder.append(" like ? escape '" + LIKE_ESCAPE + "' ");
+				break;
+			case NOT_LIKE:
+				builder.append(" not like ? escape '" + LIKE_ESCAPE + "' ");
+				break;
+			case BETWEEN:
+				builder = new StringBuilder(String.format(" (%s > ? AND %s < ?) ", column, column));
+				break;
+			case BETWEEN_INCLUSIVE:
+				builder.append(" between ? and ? ");
+				break;
+			case OUTSIDE:
+				builder = new StringBuilder(String.format(" (%s < ? OR %s > ?) ", column, column));
+				break;
+			case OUTSIDE_INCLUSIVE:
+				builder = new StringBuilder(String.format(" (%s <= ? OR %s >= ?) ", column, column));
+				break;
+			case IS_TRUE:
+				builder.append(" = true ");
+				break;
+			case IS_FALSE:
+				builder.append(" = false ");
 				break;
 			default:
 				builder.append(" = ? ");
 		}
-		this.clause = builder.toString();
 		this.value = value;
+		if (evalutation == Evaluation.IN || evalutation == Evaluation.NOT_IN){
+			this.values = toList(value);
+			if (values.isEmpty()){
+				builder = new StringBuilder(evalutation == Evaluation.IN ? " 1 = 0 " : " 1 = 1 ");
+			}
+		} else if (isRange(evalutation)){
+			this.values = toList(value);
+			if (values.size() != 2){
+				throw new IllegalArgumentException(String.format("Range evaluation %s requires exactly two " 
+						+ "values: %s", evalutation, value));
+			}
+		} else if (evalutation == Evaluation.IS_TRUE || evalutation == Evaluation.IS_FALSE){
+			this.values = Collections.emptyList();
+		} else if (value != null){
+			this.values = Collections.singletonList(getPatternValue(value, evalutation));
+		} else {
+			this.values = Collections.emptyList();
+		}
+		this.clause = builder.toString();
+	}
+
+	/**
+	 * Converts the value of a {@code LIKE}-style evaluation into a pattern, following the same 
+	 *   contains/starts-with/ends-with semantics as the other repository implementations.  Wildcard
+	 *   characters in the value are escaped, so that they are matched literally.  Other values are 
+	 *   returned unchanged.
+	 */
+	private static Object getPatternValue(Object value, Evaluation evaluation){
+		switch (evaluation){
+			case LIKE:
+			case NOT_LIKE:
+				return "%" + escapeLike(value.toString()) + "%";
+			case STARTS_WITH:
+				return escapeLike(value.toString()) + "%";
+			case ENDS_WITH:
+				return "%" + escapeLike(value.toString());
+			default:
+				return value;
+		}
+	}
+
+	/**
+	 * Escapes the {@code LIKE} wildcards, {@code %} and {@code _}, and the escape character itself.
+	 */
+	private static String escapeLike(String value){
+		StringBuilder builder = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE) builder.append(LIKE_ESCAPE);
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Wraps a group of {@link Conditions}, so that it may be combined with other conditions.
+	 *
+	 * @param conditions {@link Conditions}
+	 */
+	public Condition(Conditions conditions){
+		this.clause = " ( " + conditions.getSql() + " ) ";
+		this.value = null;
+		this.values = conditions.getValues();
+	}
+
+	/**
+	 * Creates a condition from a pre-built SQL clause and its parameter values.
+	 *
+	 * @param clause SQL clause
+	 * @param values values bound to the parameters of the clause, in order.
+	 */
+	Condition(String clause, List<Object> values){
+		this.clause = clause;
+		this.value = null;
+		this.values = values;
+	}
+
+	private static boolean isRange(Evaluation evaluation){
+		return evaluation == Evaluation.BETWEEN || evaluation == Evaluation.BETWEEN_INCLUSIVE 
+				|| evaluation == Evaluation.OUTSIDE || evaluation == Evaluation.OUTSIDE_INCLUSIVE;
+	}
+
+	private static String getInClause(String operator, Object value){
+		StringBuilder builder = new StringBuilder(operator).append("(");
+		int size = toList(value).size();
+		for (int i = 0; i < size; i++){
+			if (i > 0) builder.append(",");
+			builder.append("?");
+		}
+		return builder.append(") ").toString();
+	}
+
+	private static List<Object> toList(Object value){
+		if (value == null){
+			return Collections.emptyList();
+		} else if (value instanceof Object[]){
+			return Arrays.asList((Object[]) value);
+		} else if (value instanceof Collection){
+			return new ArrayList<Object>((Collection<?>) value);
+		} else {
+			return Collections.singletonList(value);
+		}
 	}
 
 	public String getClause() {
@@ -63,4 +213,11 @@ public class Condition {
 		return value;
 	}
 
+	/**
+	 * Returns the values bound to the parameters of this condition, in order.
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
 }
@@ -20,13 +20,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Wraps a series of conditions and joins them with AND/OR operators
+ * Wraps a series of conditions and joins them with AND/OR operators.  The NOT operation joins the 
+ *   conditions with AND and negates the result.
  * 
  * @author woemler 
  */
 public class Conditions {
 	
-	public enum Operation { AND, OR }
+	public enum Operation { AND, OR, NOT }
 	
 	private final Operation operation;
 	private final String sql;
@@ -49,12 +50,11 @@ public class Conditions {
 			}
 			flag = true;
 			builder.append(condition.getClause());
-			if (condition.getValue() != null){
-				values.add(condition.getValue());
-			}
+			values.addAll(condition.getValues());
 		}
 		
-		this.sql = builder.toString();
+		this.sql = operation.equals(Operation.NOT) 
+				? " NOT ( " + builder.toString() + " ) " : builder.toString();
 		
 	}
 	
@@ -79,7 +79,8 @@ public class Conditions {
 			this.values.addAll(c.getValues());
 		}
 		
-		this.sql = builder.toString();
+		this.sql = operation.equals(Operation.NOT) 
+				? " NOT ( " + builder.toString() + " ) " : builder.toString();
 		
 	}
 	
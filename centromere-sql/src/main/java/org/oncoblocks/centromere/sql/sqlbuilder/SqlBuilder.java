@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import javax.swing.*;
 import java.util.*;
@@ -81,7 +83,7 @@ public class SqlBuilder {
 	
 	private List<String> idColumns;
 	private LinkedHashMap<String, SortOrder> sorts;
-	private List<Object> queryParameterValues;
+	private List<Object> queryParameterValues = new ArrayList<>();
 
 	private final static Logger logger = LoggerFactory.getLogger(SqlBuilder.class);
 	
@@ -92,7 +94,6 @@ public class SqlBuilder {
 		this.fromClause = tableDescription.getFromClause();
 		this.groupByClause = tableDescription.getGroupByClause();
 		this.idColumns = tableDescription.getIdColumns();
-		this.queryParameterValues = new ArrayList<>();
 		
 		this.sorts = new LinkedHashMap<>();
 		
@@ -120,6 +121,33 @@ public class SqlBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets the select clause to an explicit list of column expressions.
+	 * 
+	 * @param columns column names or expressions, optionally aliased.
+	 * @return this
+	 */
+	public SqlBuilder select(Collection<String> columns){
+		Assert.notEmpty(columns);
+		this.selectClause = StringUtils.collectionToDelimitedString(columns, ", ");
+		return this;
+	}
+
+	/**
+	 * Sets the select clause to {@code SELECT DISTINCT column}.  Any {@code GROUP BY} clause from the
+	 *   table description is dropped, since it only serves the aggregated columns of the full select 
+	 *   clause and would otherwise defeat the de-duplication.
+	 * 
+	 * @param column column name or expression.
+	 * @return this
+	 */
+	public SqlBuilder selectDistinct(String column){
+		Assert.hasText(column);
+		this.selectClause = "DISTINCT " + column;
+		this.groupByClause = "";
+		return this;
+	}
+
 	//// INSERT
 
 	public SqlBuilder insert(Map<String,Object> parameters){
@@ -138,11 +166,53 @@ public class SqlBuilder {
 		}
 		columnString.append(") ");
 		valueString.append(") ");
-		insertClause = tableName + columnString.toString() + valueString.toString(); 
+		insertClause = tableName + columnString.toString() + valueString.toString();
 		mode = Mode.INSERT;
 		return this;
 	}
-	
+
+	/**
+	 * Creates a multi-row {@code INSERT INTO table (a,b) VALUES (?,?),(?,?)} statement.  Every row
+	 *   must map the same set of columns, and column order is taken from the first row.
+	 *
+	 * @param rows column-value mappings for each row.
+	 * @return {@link SqlBuilder}
+	 */
+	public SqlBuilder insert(List<Map<String,Object>> rows){
+		Assert.notEmpty(rows, "At least one row must be supplied.");
+		List<String> columns = new ArrayList<>(rows.get(0).keySet());
+		StringBuilder columnString = new StringBuilder(" (");
+		StringBuilder rowString = new StringBuilder("(");
+		for (int i = 0; i < columns.size(); i++){
+			if (i > 0){
+				columnString.append(",");
+				rowString.append(",");
+			}
+			columnString.append(columns.get(i));
+			rowString.append("?");
+		}
+		columnString.append(") ");
+		rowString.append(")");
+		StringBuilder valueString = new StringBuilder(" VALUES ");
+		boolean flag = false;
+		for (Map<String,Object> row: rows){
+			Assert.isTrue(row.size() == columns.size() && row.keySet().containsAll(columns),
+					"All rows of a multi-row insert must map the same columns.");
+			if (flag){
+				valueString.append(",");
+			}
+			flag = true;
+			valueString.append(rowString);
+			for (String column: columns){
+				queryParameterValues.add(row.get(column));
+			}
+		}
+		valueString.append(" ");
+		insertClause = tableName + columnString.toString() + valueString.toString();
+		mode = Mode.INSERT;
+		return this;
+	}
+
 	public String getInsertClause(){
 		return "INSERT INTO " + insertClause;
 	}
@@ -210,7 +280,7 @@ public class SqlBuilder {
 	
 	public SqlBuilder where(Condition condition){
 		whereClause = condition.getClause();
-		queryParameterValues.add(condition.getValue());
+		queryParameterValues.addAll(condition.getValues());
 		return this;
 	}
 	
@@ -230,6 +300,14 @@ public class SqlBuilder {
 		return new Conditions(Conditions.Operation.OR, conditions);
 	}
 	
+	public static Conditions not(Condition... conditions){
+		return new Conditions(Conditions.Operation.NOT, conditions);
+	}
+
+	public static Conditions not(Conditions... conditions){
+		return new Conditions(Conditions.Operation.NOT, conditions);
+	}
+
 	public static Condition equal(String column, Object value){
 		return new Condition(column, value, Evaluation.EQUALS);
 	}
@@ -242,10 +320,58 @@ public class SqlBuilder {
 		return new Condition(column, value, Evaluation.IN);
 	}
 
+	public static Condition in(String column, Collection<?> value){
+		return new Condition(column, value, Evaluation.IN);
+	}
+
+	/**
+	 * Creates a {@code column in (select ...)} condition, for matching against the rows of a 
+	 *   subquery, such as a temporary table of values.
+	 */
+	public static Condition inSelect(String column, String select){
+		return new Condition(" " + column + " in (" + select + ") ", Collections.emptyList());
+	}
+
 	public static Condition notIn(String column, Object[] value){
 		return new Condition(column, value, Evaluation.NOT_IN);
 	}
 
+	public static Condition notIn(String column, Collection<?> value){
+		return new Condition(column, value, Evaluation.NOT_IN);
+	}
+
+	public static Condition greaterThan(String column, Object value){
+		return new Condition(column, value, Evaluation.GREATER_THAN);
+	}
+
+	public static Condition greaterThanOrEqual(String column, Object value){
+		return new Condition(column, value, Evaluation.GREATER_THAN_EQUALS);
+	}
+
+	public static Condition lessThan(String column, Object value){
+		return new Condition(column, value, Evaluation.LESS_THAN);
+	}
+
+	public static Condition lessThanOrEqual(String column, Object value){
+		return new Condition(column, value, Evaluation.LESS_THAN_EQUALS);
+	}
+
+	public static Condition like(String column, Object value){
+		return new Condition(column, value, Evaluation.LIKE);
+	}
+
+	public static Condition notLike(String column, Object value){
+		return new Condition(column, value, Evaluation.NOT_LIKE);
+	}
+
+	public static Condition startsWith(String column, Object value){
+		return new Condition(column, value, Evaluation.STARTS_WITH);
+	}
+
+	public static Condition endsWith(String column, Object value){
+		return new Condition(column, value, Evaluation.ENDS_WITH);
+	}
+
 	public static Condition isNull(String column){
 		return new Condition(column, null, Evaluation.IS_NULL);
 	}
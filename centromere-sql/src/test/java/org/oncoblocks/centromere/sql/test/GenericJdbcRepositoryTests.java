@@ -20,18 +20,33 @@ import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.ChunkedQueryExecutor;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.CountedPage;
 import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.sql.GenericJdbcRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
+import javax.sql.DataSource;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author woemler
@@ -43,6 +58,7 @@ import java.util.List;
 public class GenericJdbcRepositoryTests {
 	
 	@Autowired private SubjectRepository subjectRepository;
+	@Autowired private DataSource dataSource;
 	
 	private static boolean isConfigured = false;
 	
@@ -64,6 +80,29 @@ public class GenericJdbcRepositoryTests {
 		Assert.isTrue(subject.getName().equals("PersonA"));
 	}
 
+	@Test
+	public void findAllByIdsTest(){
+
+		List<Subject> found = new ArrayList<>();
+		for (Subject entity: subjectRepository.findAll(Arrays.asList(3L, 1L, 99L, 3L))){
+			found.add(entity);
+		}
+		Assert.isTrue(found.size() == 2);
+		Assert.isTrue(found.get(0).getId().equals(3L));
+		Assert.isTrue(found.get(1).getId().equals(1L));
+
+		subjectRepository.getChunkedQueryExecutor().setChunkSize(2);
+		try {
+			found = subjectRepository.findAll(Arrays.asList(5L, 1L, 3L, 2L, 4L));
+			Assert.isTrue(found.size() == 5);
+			Assert.isTrue(found.get(0).getId().equals(5L));
+			Assert.isTrue(found.get(4).getId().equals(4L));
+		} finally {
+			subjectRepository.getChunkedQueryExecutor().setChunkSize(ChunkedQueryExecutor.DEFAULT_CHUNK_SIZE);
+		}
+
+	}
+
 	@Test
 	public void findAllTest(){
 		List<Subject> subjects = subjectRepository.findAll();
@@ -108,6 +147,120 @@ public class GenericJdbcRepositoryTests {
 		Assert.isTrue(count.equals(5L));
 	}
 
+	@Test
+	public void optimizedCriteriaTest(){
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", Arrays.asList(1L, 2L, 3L), Evaluation.IN));
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", 1L, Evaluation.GREATER_THAN));
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", 3L, Evaluation.NOT_EQUALS));
+		List<Subject> subjects = subjectRepository.find(queryCriterias);
+		Assert.isTrue(subjects.size() == 1);
+		Assert.isTrue(subjects.get(0).getId().equals(2L));
+
+		List<QueryCriteria> rangeCriterias = new ArrayList<>();
+		rangeCriterias.add(new QueryCriteria("subjects.subject_id", 1L, Evaluation.GREATER_THAN));
+		rangeCriterias.add(new QueryCriteria("subjects.subject_id", 4L, Evaluation.LESS_THAN));
+		rangeCriterias.add(new QueryCriteria("subjects.subject_id", 0L, Evaluation.GREATER_THAN_EQUALS));
+		Assert.isTrue(subjectRepository.count(rangeCriterias) == 2L);
+
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", 4L, Evaluation.EQUALS));
+		Assert.isTrue(subjectRepository.find(queryCriterias).isEmpty());
+		Assert.isTrue(subjectRepository.count(queryCriterias) == 0L);
+		Page<Subject> page = subjectRepository.find(queryCriterias, new PageRequest(0, 2));
+		Assert.isTrue(page.getContent().isEmpty());
+		Assert.isTrue(page.getTotalElements() == 0L);
+		Assert.isTrue(subjectRepository.deleteAll(queryCriterias) == 0L);
+		Assert.isTrue(subjectRepository.count() == 5L);
+	}
+
+	@Test
+	public void criteriaGroupTest(){
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.species", "Homo sapiens", Evaluation.EQUALS));
+		queryCriterias.add(QueryCriteriaGroup.or(
+				new QueryCriteria("subjects.name", "PersonA", Evaluation.EQUALS), 
+				new QueryCriteria("subjects.gender", "F", Evaluation.EQUALS)));
+		queryCriterias.add(QueryCriteriaGroup.not(new QueryCriteria("subjects.subject_id", 4L, Evaluation.EQUALS)));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "subjects.subject_id"));
+		List<Subject> subjects = subjectRepository.find(queryCriterias, sort);
+		Assert.isTrue(subjects.size() == 2);
+		Assert.isTrue(subjects.get(0).getId().equals(1L));
+		Assert.isTrue(subjects.get(1).getId().equals(2L));
+		Assert.isTrue(subjectRepository.count(queryCriterias) == 2L);
+	}
+
+	@Test
+	public void largeInCriteriaTest(){
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", Arrays.asList(4L, 1L, 3L, 10L, 11L, 4L), 
+				Evaluation.IN));
+		queryCriterias.add(new QueryCriteria("subjects.name", Arrays.asList("PersonA", "PersonC", "MCF7"), 
+				Evaluation.IN));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "subjects.subject_id"));
+		subjectRepository.getChunkedQueryExecutor().setChunkSize(2);
+		try {
+			List<Subject> subjects = subjectRepository.find(queryCriterias, sort);
+			Assert.isTrue(subjects.size() == 3);
+			Assert.isTrue(subjects.get(0).getId().equals(4L));
+			Assert.isTrue(subjects.get(2).getId().equals(1L));
+			Assert.isTrue(subjectRepository.count(queryCriterias) == 3L);
+			Page<Subject> page = subjectRepository.find(queryCriterias, new PageRequest(1, 2, sort));
+			Assert.isTrue(page.getTotalElements() == 3L);
+			Assert.isTrue(page.getContent().size() == 1);
+			Assert.isTrue(page.getContent().get(0).getId().equals(1L));
+			List<Object> names = subjectRepository.distinct("name", queryCriterias, null, 0, 0);
+			Assert.isTrue(names.equals(Arrays.<Object>asList("MCF7", "PersonA", "PersonC")));
+			List<Map<String, Object>> rows = subjectRepository.aggregate(queryCriterias, 
+					AggregateQuery.groupBy("gender").count());
+			Assert.isTrue(rows.size() == 2);
+			Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+			subjects = new ArrayList<>();
+			try (CloseableIterator<Subject> iterator = subjectRepository.stream(queryCriterias, sort,
+					Projection.include("name"))){
+				while (iterator.hasNext()){
+					subjects.add(iterator.next());
+				}
+			}
+			Assert.isTrue(subjects.size() == 3);
+			Assert.isTrue(subjects.get(0).getId().equals(4L));
+			Assert.isTrue(subjects.get(2).getName().equals("PersonA"));
+			Assert.isTrue(subjectRepository.count(queryCriterias) == 3L);
+		} finally {
+			subjectRepository.getChunkedQueryExecutor().setChunkSize(ChunkedQueryExecutor.DEFAULT_CHUNK_SIZE);
+		}
+	}
+
+	@Test
+	public void largeInCriteriaStreamTest(){
+		final List<QueryCriteria> streamCriterias = new ArrayList<>();
+		streamCriterias.add(new QueryCriteria("subjects.subject_id", Arrays.asList(1L, 2L, 3L, 4L, 5L), 
+				Evaluation.IN));
+		final List<QueryCriteria> countCriterias = new ArrayList<>();
+		countCriterias.add(new QueryCriteria("subjects.subject_id", Arrays.asList(4L, 5L, 10L), 
+				Evaluation.IN));
+		final Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "subjects.subject_id"));
+		subjectRepository.getChunkedQueryExecutor().setChunkSize(2);
+		try {
+			List<Subject> subjects = new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+					.execute(status -> {
+						List<Subject> streamed = new ArrayList<>();
+						try (CloseableIterator<Subject> iterator = subjectRepository.stream(streamCriterias, sort)){
+							streamed.add(iterator.next());
+							Assert.isTrue(subjectRepository.count(countCriterias) == 2L);
+							while (iterator.hasNext()){
+								streamed.add(iterator.next());
+							}
+						}
+						Assert.isTrue(subjectRepository.count(countCriterias) == 2L);
+						return streamed;
+					});
+			Assert.isTrue(subjects.size() == 5);
+			Assert.isTrue(subjects.get(4).getId().equals(5L));
+		} finally {
+			subjectRepository.getChunkedQueryExecutor().setChunkSize(ChunkedQueryExecutor.DEFAULT_CHUNK_SIZE);
+		}
+	}
+
 	@Test
 	public void queryCriteriaTest(){
 		List<QueryCriteria> queryCriterias = new ArrayList<>();
@@ -178,6 +331,256 @@ public class GenericJdbcRepositoryTests {
 
 	}
 
+	@Test
+	public void streamTest(){
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.species", "Homo sapiens", Evaluation.EQUALS));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "subjects.subject_id"));
+		List<Subject> subjects = new ArrayList<>();
+		try (CloseableIterator<Subject> iterator = subjectRepository.stream(queryCriterias, sort)){
+			while (iterator.hasNext()){
+				subjects.add(iterator.next());
+			}
+			Assert.isTrue(!iterator.hasNext());
+		}
+		Assert.isTrue(subjects.size() == 5);
+		Subject subject = subjects.get(0);
+		Assert.notNull(subject);
+		Assert.isTrue(subject.getId().equals(5L));
+		Assert.isTrue(subject.getName().equals("A375"));
+
+		subjects = new ArrayList<>();
+		try (CloseableIterator<Subject> iterator = subjectRepository.stream(queryCriterias, sort, 
+				Projection.include("name"))){
+			while (iterator.hasNext()){
+				subjects.add(iterator.next());
+			}
+		}
+		Assert.isTrue(subjects.size() == 5);
+		subject = subjects.get(0);
+		Assert.isTrue(subject.getId().equals(5L));
+		Assert.isTrue(subject.getName().equals("A375"));
+		Assert.isNull(subject.getSpecies());
+	}
+
+	@Test
+	public void findPagedCountStrategyTest(){
+
+		PageRequest pageRequest = new PageRequest(0, 2, new Sort(new Sort.Order(Sort.Direction.ASC, "subjects.subject_id")));
+		for (CountStrategy countStrategy: Arrays.asList(CountStrategy.EXACT, CountStrategy.CACHED, 
+				CountStrategy.ESTIMATED, CountStrategy.CACHED)){
+			Slice<Subject> slice = subjectRepository.find(new ArrayList<QueryCriteria>(), pageRequest, countStrategy);
+			Assert.isTrue(slice instanceof Page);
+			Page<Subject> page = (Page<Subject>) slice;
+			Assert.isTrue(page.getContent().size() == 2);
+			Assert.isTrue(page.getTotalElements() == 5);
+			Assert.isTrue(page.getTotalPages() == 3);
+		}
+		Slice<Subject> slice = subjectRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.ESTIMATED);
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.EXACT);
+
+		slice = subjectRepository.find(new ArrayList<QueryCriteria>(), pageRequest, CountStrategy.NONE);
+		Assert.isTrue(!(slice instanceof Page));
+		Assert.isTrue(CountedPage.getCountStrategy(slice) == CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 2);
+		Assert.isTrue(slice.hasNext());
+		slice = subjectRepository.find(new ArrayList<QueryCriteria>(), new PageRequest(2, 2, pageRequest.getSort()), 
+				CountStrategy.NONE);
+		Assert.isTrue(slice.getContent().size() == 1);
+		Assert.isTrue(!slice.hasNext());
+
+		subjectRepository.setCountStrategy(CountStrategy.NONE);
+		try {
+			slice = subjectRepository.find(new ArrayList<QueryCriteria>(), pageRequest, null);
+			Assert.isTrue(!(slice instanceof Page));
+			Page<Subject> page = subjectRepository.find(new ArrayList<QueryCriteria>(), pageRequest);
+			Assert.isTrue(page.getTotalElements() == 5);
+		} finally {
+			subjectRepository.setCountStrategy(CountStrategy.EXACT);
+		}
+
+	}
+
+	@Test
+	public void findProjectedTest(){
+
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.species", "Homo sapiens", Evaluation.EQUALS));
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.ASC, "subjects.subject_id"));
+		List<Subject> subjects = subjectRepository.find(queryCriterias, sort, Projection.include("name"));
+		Assert.isTrue(subjects.size() == 5);
+		Subject subject = subjects.get(0);
+		Assert.isTrue(subject.getId().equals(1L));
+		Assert.isTrue(subject.getName().equals("PersonA"));
+		Assert.isNull(subject.getSpecies());
+		Assert.isNull(subject.getAliases());
+
+		subjects = subjectRepository.find(queryCriterias, sort, Projection.exclude("aliases", "attributes"));
+		Assert.isTrue(subjects.size() == 5);
+		subject = subjects.get(0);
+		Assert.isTrue(subject.getName().equals("PersonA"));
+		Assert.isTrue(subject.getSpecies().equals("Homo sapiens"));
+		Assert.isNull(subject.getAliases());
+		Assert.isNull(subject.getAttributes());
+
+		subjects = subjectRepository.find(queryCriterias, sort, Projection.include("name", "unknownField"));
+		Assert.notNull(subjects.get(0).getSpecies());
+
+		Slice<Subject> slice = subjectRepository.find(queryCriterias, new PageRequest(1, 2, sort), 
+				CountStrategy.EXACT, Projection.include("gender"));
+		Assert.isTrue(slice instanceof Page);
+		Assert.isTrue(((Page<Subject>) slice).getTotalElements() == 5);
+		Assert.isTrue(slice.getContent().size() == 2);
+		subject = slice.getContent().get(0);
+		Assert.isTrue(subject.getId().equals(3L));
+		Assert.isTrue(subject.getGender().equals("M"));
+		Assert.isNull(subject.getName());
+
+	}
+
+	@Test
+	public void findAfterTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "subjects.gender"));
+		List<Subject> results = new ArrayList<>();
+		String token = null;
+		int pages = 0;
+		do {
+			KeysetSlice<Subject> slice = subjectRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, token);
+			Assert.notNull(slice);
+			Assert.isTrue(slice.getContent().size() <= 2);
+			results.addAll(slice.getContent());
+			token = slice.getContinuationToken();
+			Assert.isTrue(slice.hasNext() == (token != null));
+			pages++;
+		} while (token != null);
+		Assert.isTrue(pages == 3);
+		Assert.isTrue(results.size() == 5);
+		List<Long> ids = new ArrayList<>();
+		for (Subject result: results){
+			ids.add(result.getId());
+		}
+		Assert.isTrue(ids.equals(Arrays.asList(5L, 1L, 3L, 2L, 4L)));
+
+	}
+
+	@Test
+	public void findAfterInvalidTokenTest(){
+
+		Sort sort = new Sort(new Sort.Order(Sort.Direction.DESC, "subjects.gender"));
+		KeysetSlice<Subject> slice = subjectRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, null);
+		Assert.notNull(slice.getContinuationToken());
+		try {
+			subjectRepository.findAfter(new ArrayList<QueryCriteria>(), sort.and(new Sort("subjects.name")), 2,
+					slice.getContinuationToken());
+			Assert.isTrue(false, "Token created with a different sort should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		try {
+			subjectRepository.findAfter(new ArrayList<QueryCriteria>(), sort, 2, "not-a-valid-token!");
+			Assert.isTrue(false, "Malformed token should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+
+	}
+
+	@Test
+	public void distinctTest(){
+
+		List<Object> genders = (List<Object>) subjectRepository.distinct("gender");
+		Assert.notNull(genders);
+		Assert.isTrue(genders.size() == 3);
+		Assert.isTrue("F".equals(genders.get(0)));
+		Assert.isTrue("U".equals(genders.get(2)));
+
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.gender", "F", Evaluation.EQUALS));
+		List<Object> names = (List<Object>) subjectRepository.distinct("name", queryCriterias);
+		Assert.isTrue(names.size() == 2);
+		Assert.isTrue("MCF7".equals(names.get(0)));
+		Assert.isTrue("PersonB".equals(names.get(1)));
+
+		try {
+			subjectRepository.distinct("name from subjects; drop table subjects; --");
+			Assert.isTrue(false, "Unmapped field should be rejected.");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+
+	}
+
+	@Test
+	public void distinctPagedTest(){
+
+		List<Object> names = subjectRepository.distinct("name", new ArrayList<QueryCriteria>(), "Person", 1, 1);
+		Assert.isTrue(names.size() == 1);
+		Assert.isTrue("PersonB".equals(names.get(0)));
+
+		names = subjectRepository.distinct("name", new ArrayList<QueryCriteria>(), "Person", 2, 0);
+		Assert.isTrue(names.size() == 1);
+		Assert.isTrue("PersonC".equals(names.get(0)));
+
+		names = subjectRepository.distinct("name", new ArrayList<QueryCriteria>(), "Nobody", 0, 10);
+		Assert.isTrue(names.isEmpty());
+
+		names = subjectRepository.distinct("name", new ArrayList<QueryCriteria>(), "Person_", 0, 0);
+		Assert.isTrue(names.isEmpty());
+		names = subjectRepository.distinct("name", new ArrayList<QueryCriteria>(), "%", 0, 0);
+		Assert.isTrue(names.isEmpty());
+
+		List<Object> aliases = subjectRepository.distinct("aliases", new ArrayList<QueryCriteria>(), null, 0, 2);
+		Assert.notNull(aliases);
+		Assert.isTrue(aliases.size() <= 2);
+
+	}
+
+	@Test
+	public void aggregateTest(){
+
+		List<Map<String, Object>> rows = subjectRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("gender").count().max("name"));
+		Assert.isTrue(rows.size() == 3);
+		Assert.isTrue("F".equals(rows.get(0).get("gender")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 2);
+		Assert.isTrue("PersonB".equals(rows.get(0).get("max_name")));
+		Assert.isTrue("U".equals(rows.get(2).get("gender")));
+		Assert.isTrue(((Number) rows.get(2).get("count")).intValue() == 1);
+
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.species", "Homo sapiens", Evaluation.EQUALS));
+		rows = subjectRepository.aggregate(queryCriterias, AggregateQuery.groupBy().count().min("name"));
+		Assert.isTrue(rows.size() == 1);
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 5);
+		Assert.isTrue("A375".equals(rows.get(0).get("min_name")));
+
+		rows = subjectRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("gender").count().top(2, "count"));
+		Assert.isTrue(rows.size() == 2);
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+
+	}
+
+	@Test
+	public void aggregateCountFieldTest(){
+
+		subjectRepository.insert(new Subject(6L, "PersonD", "Homo sapiens", "F", "patient", "Test notes", null, null));
+
+		List<Map<String, Object>> rows = subjectRepository.aggregate(new ArrayList<QueryCriteria>(), 
+				AggregateQuery.groupBy("gender").count().count("notes"));
+		Assert.isTrue(rows.size() == 3);
+		Assert.isTrue("F".equals(rows.get(0).get("gender")));
+		Assert.isTrue(((Number) rows.get(0).get("count")).intValue() == 3);
+		Assert.isTrue(((Number) rows.get(0).get("count_notes")).intValue() == 1);
+		Assert.isTrue("M".equals(rows.get(1).get("gender")));
+		Assert.isTrue(((Number) rows.get(1).get("count")).intValue() == 2);
+		Assert.isTrue(((Number) rows.get(1).get("count_notes")).intValue() == 0);
+
+		subjectRepository.delete(6L);
+
+	}
+
 	@Test
 	public void insertTest(){
 
@@ -194,6 +597,35 @@ public class GenericJdbcRepositoryTests {
 
 	}
 
+	@Test
+	public void batchInsertTest(){
+
+		List<Subject> subjects = new ArrayList<>();
+		for (long i = 6; i < 11; i++){
+			subjects.add(new Subject(i, "Person" + i, "Homo sapiens", i % 2 == 0 ? "F" : "M", "patient",
+					null, null, null));
+		}
+		subjectRepository.setBatchSize(2);
+		subjectRepository.setCommitInterval(3);
+		try {
+			List<Subject> inserted = subjectRepository.insert(subjects);
+			Assert.isTrue(inserted.size() == 5);
+			Assert.isTrue(inserted.get(4).getId().equals(10L));
+			Assert.isTrue(subjectRepository.count() == 10);
+			Subject subject = subjectRepository.findOne(8L);
+			Assert.notNull(subject);
+			Assert.isTrue(subject.getName().equals("Person8"));
+		} finally {
+			subjectRepository.setBatchSize(GenericJdbcRepository.DEFAULT_BATCH_SIZE);
+			subjectRepository.setCommitInterval(0);
+			for (long i = 6; i < 11; i++){
+				subjectRepository.delete(i);
+			}
+		}
+		Assert.isTrue(subjectRepository.count() == 5);
+
+	}
+
 	@Test
 	public void updateTest(){
 
@@ -226,7 +658,66 @@ public class GenericJdbcRepositoryTests {
 		Assert.isNull(subject);
 
 	}
-	
-	
-	
+
+	@Test
+	public void deleteMultipleTest(){
+
+		List<Subject> subjects = new ArrayList<>();
+		for (long i = 6; i < 9; i++){
+			subjects.add(subjectRepository.insert(
+					new Subject(i, "Person" + i, "Homo sapiens", "F", "patient", null, null, null)));
+		}
+		Assert.isTrue(subjectRepository.count() == 8);
+		subjectRepository.getChunkedQueryExecutor().setChunkSize(2);
+		try {
+			subjectRepository.delete(subjects);
+		} finally {
+			subjectRepository.getChunkedQueryExecutor().setChunkSize(ChunkedQueryExecutor.DEFAULT_CHUNK_SIZE);
+		}
+		Assert.isTrue(subjectRepository.count() == 5);
+
+	}
+
+	@Test
+	public void deleteByCriteriaTest(){
+
+		for (long i = 6; i < 9; i++){
+			subjectRepository.insert(
+					new Subject(i, "Person" + i, "Pan troglodytes", "M", "patient", null, null, null));
+		}
+		Assert.isTrue(subjectRepository.count() == 8);
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.species", "Pan troglodytes", Evaluation.EQUALS));
+		long deleted = subjectRepository.deleteAll(queryCriterias);
+		Assert.isTrue(deleted == 3);
+		Assert.isTrue(subjectRepository.count() == 5);
+
+	}
+
+	@Test
+	public void deleteByLargeInCriteriaTest(){
+
+		for (long i = 6; i < 9; i++){
+			subjectRepository.insert(
+					new Subject(i, "Person" + i, "Pan troglodytes", "M", "patient", null, null, null));
+		}
+		Assert.isTrue(subjectRepository.count() == 8);
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		queryCriterias.add(new QueryCriteria("subjects.subject_id", Arrays.asList(6L, 7L, 8L, 20L), 
+				Evaluation.IN));
+		subjectRepository.getChunkedQueryExecutor().setChunkSize(2);
+		try {
+			Assert.isTrue(subjectRepository.deleteAll(queryCriterias) == 3);
+		} finally {
+			subjectRepository.getChunkedQueryExecutor().setChunkSize(ChunkedQueryExecutor.DEFAULT_CHUNK_SIZE);
+		}
+		Assert.isTrue(subjectRepository.count() == 5);
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void deleteWithoutCriteriaTest(){
+		subjectRepository.deleteAll(new ArrayList<QueryCriteria>());
+	}
+
 }
@@ -18,7 +18,9 @@ package org.oncoblocks.centromere.sql.test;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.Evaluation;
 import org.oncoblocks.centromere.sql.sqlbuilder.ComplexTableDescription;
+import org.oncoblocks.centromere.sql.sqlbuilder.Condition;
 import org.oncoblocks.centromere.sql.sqlbuilder.SqlBuilder;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.PageRequest;
@@ -27,6 +29,8 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -119,6 +123,23 @@ public class SqlBuilderTests {
 
 	}
 
+	@Test
+	public void nestedNotQueryTest(){
+
+		SqlBuilder sqlBuilder = new SqlBuilder(tableDescription);
+		sqlBuilder.where(and(equal("species", "human"), new Condition(or(equal("name", "Joe"), 
+				new Condition(not(equal("gender", "M"), isNull("notes")))))));
+
+		String sql = sqlBuilder.toSql();
+		System.out.println(sql);
+		Assert.isTrue(sql.contains(" NOT ( "));
+		Assert.isTrue(sql.contains(" OR "));
+		List<Object> values = sqlBuilder.getQueryParameterValues();
+		Assert.isTrue(values.size() == 3);
+		Assert.isTrue("M".equals(values.get(2)));
+
+	}
+
 	@Test
 	public void simpleEvaluationTest(){
 
@@ -132,9 +153,67 @@ public class SqlBuilderTests {
 		List<Object> values = sqlBuilder.getQueryParameterValues();
 		Assert.notNull(values);
 		Assert.notEmpty(values);
-		Assert.isTrue(values.size() == 4);
+		Assert.isTrue(values.size() == 8);
 		String name = (String) values.get(1);
 		Assert.isTrue("cat".equals(name));
+		Assert.isTrue(sql.contains(" in (?,?,?) "));
+		Assert.isTrue("Frank".equals(values.get(4)));
+
+	}
+
+	@Test
+	public void distinctTest(){
+
+		SqlBuilder sqlBuilder = new SqlBuilder(tableDescription);
+		sqlBuilder.selectDistinct("subjects.name")
+				.where(and(equal("subjects.gender", "F"), startsWith("subjects.name", "Per")))
+				.orderBy("subjects.name")
+				.limit(10, 5);
+
+		String sql = sqlBuilder.toSql();
+		System.out.println(sql);
+		Assert.isTrue(sql.startsWith("SELECT DISTINCT subjects.name FROM"));
+		Assert.isTrue(sql.contains(" subjects.name like ? escape '!' "));
+		Assert.isTrue(!sql.contains("GROUP BY"));
+		Assert.isTrue(sql.endsWith(" LIMIT 10,5"));
+
+		List<Object> values = sqlBuilder.getQueryParameterValues();
+		Assert.isTrue(values.size() == 2);
+		Assert.isTrue("Per%".equals(values.get(1)));
+
+	}
+
+	@Test
+	public void likeEvaluationTest(){
+
+		SqlBuilder sqlBuilder = new SqlBuilder(tableDescription);
+		sqlBuilder.where(and(like("name", "ers"), notLike("name", "X"), endsWith("species", "sapiens"), 
+				startsWith("notes", "5%_!")));
+
+		String sql = sqlBuilder.toSql();
+		Assert.isTrue(sql.contains(" name like ? escape '!' "));
+		Assert.isTrue(sql.contains(" name not like ? escape '!' "));
+		List<Object> values = sqlBuilder.getQueryParameterValues();
+		Assert.isTrue("%ers%".equals(values.get(0)));
+		Assert.isTrue("%X%".equals(values.get(1)));
+		Assert.isTrue("%sapiens".equals(values.get(2)));
+		Assert.isTrue("5!%!_!!%".equals(values.get(3)));
+
+	}
+
+	@Test
+	public void rangeEvaluationTest(){
+
+		SqlBuilder sqlBuilder = new SqlBuilder(tableDescription);
+		sqlBuilder.where(and(new Condition("subject_id", Arrays.asList(1, 5), Evaluation.BETWEEN), 
+				new Condition("subject_id", new Integer[]{ 2, 4 }, Evaluation.BETWEEN_INCLUSIVE)));
+
+		String sql = sqlBuilder.toSql();
+		Assert.isTrue(sql.contains(" (subject_id > ? AND subject_id < ?) "));
+		Assert.isTrue(sql.contains(" subject_id between ? and ? "));
+		List<Object> values = sqlBuilder.getQueryParameterValues();
+		Assert.isTrue(values.size() == 4);
+		Assert.isTrue(values.get(3).equals(4));
 
 	}
 
@@ -221,6 +300,30 @@ public class SqlBuilderTests {
 
 	}
 
+	@Test
+	public void multiRowInsertTest(){
+
+		List<Map<String,Object>> rows = new ArrayList<>();
+		for (long i = 20; i < 23; i++){
+			Map<String,Object> parameters = new LinkedHashMap<String,Object>();
+			parameters.put("subject_id", i);
+			parameters.put("name", "Subject" + i);
+			parameters.put("species", "human");
+			rows.add(parameters);
+		}
+		SqlBuilder sqlBuilder = new SqlBuilder(tableDescription);
+		sqlBuilder.insert(rows);
+		String sql = sqlBuilder.toSql();
+		Assert.notNull(sql);
+		System.out.println(sql);
+		Assert.isTrue(sql.contains("VALUES (?,?,?),(?,?,?),(?,?,?)"));
+		List<Object> values = sqlBuilder.getQueryParameterValues();
+		Assert.isTrue(values.size() == 9);
+		Assert.isTrue(((Long) values.get(3)).equals(21L));
+		Assert.isTrue(((String) values.get(7)).equals("Subject22"));
+
+	}
+
 	@Test
 	public void updateTest(){
 		Map<String,Object> parameters = new LinkedHashMap<String,Object>();
@@ -24,7 +24,9 @@ import org.springframework.data.annotation.Id;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author woemler
@@ -120,7 +122,7 @@ public class Subject implements Model<Long> {
 	}
 
 	public static ComplexTableDescription getSubjectTableDescription(){
-		return new ComplexTableDescription(
+		ComplexTableDescription tableDescription = new ComplexTableDescription(
 				"subjects",
 				Arrays.asList(new String[]{ "subjects.subject_id" }),
 				"subjects.*, GROUP_CONCAT(CONCAT(subject_aliases.source, ':', subject_aliases.name) SEPARATOR '::') as aliases, " 
@@ -129,6 +131,16 @@ public class Subject implements Model<Long> {
 						+ " LEFT JOIN subject_attributes on subjects.subject_id = subject_attributes.subject_id ",
 				"subjects.subject_id"
 		);
+		Map<String, String> fieldColumns = new LinkedHashMap<>();
+		fieldColumns.put("id", "subjects.subject_id");
+		fieldColumns.put("name", "subjects.name");
+		fieldColumns.put("species", "subjects.species");
+		fieldColumns.put("gender", "subjects.gender");
+		fieldColumns.put("notes", "subjects.notes");
+		fieldColumns.put("aliases", "GROUP_CONCAT(CONCAT(subject_aliases.source, ':', subject_aliases.name) SEPARATOR '::') as aliases");
+		fieldColumns.put("attributes", "GROUP_CONCAT(CONCAT(subject_attributes.name, ':', subject_attributes.value) SEPARATOR '::') as attributes");
+		tableDescription.setFieldColumns(fieldColumns);
+		return tableDescription;
 	}
 	
 	public static List<Subject> createDummyData(){
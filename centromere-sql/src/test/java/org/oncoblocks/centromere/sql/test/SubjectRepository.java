@@ -54,19 +54,25 @@ public class SubjectRepository extends GenericJdbcRepository<Subject, Long> {
 			subject.setGender(resultSet.getString("gender"));
 			subject.setNotes(resultSet.getString("notes"));
 
-			List<SourcedAlias> aliases = new ArrayList<>();
-			for (String alias: resultSet.getString("aliases").split("::")){
-				String[] bits = alias.split(":");
-				if (bits.length == 2) aliases.add(new SourcedAlias(bits[0], bits[1]));
+			String aliasString = resultSet.getString("aliases");
+			if (aliasString != null){
+				List<SourcedAlias> aliases = new ArrayList<>();
+				for (String alias: aliasString.split("::")){
+					String[] bits = alias.split(":");
+					if (bits.length == 2) aliases.add(new SourcedAlias(bits[0], bits[1]));
+				}
+				subject.setAliases(aliases);
 			}
-			subject.setAliases(aliases);
 			
-			List<Attribute> attributes = new ArrayList<>();
-			for (String attribute: resultSet.getString("attributes").split("::")){
-				String[] bits = attribute.split(":");
-				if (bits.length == 2) attributes.add(new Attribute(bits[0], bits[1]));
+			String attributeString = resultSet.getString("attributes");
+			if (attributeString != null){
+				List<Attribute> attributes = new ArrayList<>();
+				for (String attribute: attributeString.split("::")){
+					String[] bits = attribute.split(":");
+					if (bits.length == 2) attributes.add(new Attribute(bits[0], bits[1]));
+				}
+				subject.setAttributes(attributes);
 			}
-			subject.setAttributes(attributes);
 			
 			return subject;
 			
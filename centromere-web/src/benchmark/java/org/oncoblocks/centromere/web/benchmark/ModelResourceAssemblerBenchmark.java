@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.benchmark;
+
+import org.oncoblocks.centromere.core.model.ForeignKey;
+import org.oncoblocks.centromere.web.controller.FilterableResource;
+import org.oncoblocks.centromere.web.controller.ModelResourceAssembler;
+import org.oncoblocks.centromere.web.test.controller.CopyNumberController;
+import org.oncoblocks.centromere.web.test.controller.EntrezGeneCrudController;
+import org.oncoblocks.centromere.web.test.models.CopyNumber;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.hateoas.EntityLinks;
+import org.springframework.hateoas.core.ControllerEntityLinks;
+import org.springframework.hateoas.mvc.ControllerLinkBuilderFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures HAL resource assembly throughput for a page of {@link CopyNumber} records, comparing 
+ *   the per-entity link resolution that {@link ModelResourceAssembler} used to perform against the 
+ *   current precompiled link templates.  Run with the {@code benchmark} profile:
+ *   
+ *   {@code mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test 
+ *     -Dexec.mainClass=org.oncoblocks.centromere.web.benchmark.ModelResourceAssemblerBenchmark}
+ * 
+ * @author woemler
+ * @since 0.4.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ModelResourceAssemblerBenchmark {
+	
+	@Param({"1000"})
+	private int pageSize;
+	
+	private EntityLinks entityLinks;
+	private ModelResourceAssembler<CopyNumber> assembler;
+	private List<CopyNumber> entities;
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		entityLinks = new ControllerEntityLinks(
+				Arrays.asList(CopyNumberController.class, EntrezGeneCrudController.class),
+				new ControllerLinkBuilderFactory());
+		assembler = new ModelResourceAssembler<>(CopyNumberController.class, CopyNumber.class, entityLinks);
+		entities = new ArrayList<>();
+		for (int i = 0; i < pageSize; i++){
+			entities.add(new CopyNumber(String.valueOf(i), String.valueOf(i % 500), "Gene" + i, i * 0.01, "N"));
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void teardown(){
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	/**
+	 * Baseline: builds each self and foreign key link through {@link EntityLinks} and rescans the 
+	 *   model's fields for {@link ForeignKey} annotations for every entity, as the assembler did 
+	 *   before link templates were precompiled.
+	 */
+	@Benchmark
+	public List<FilterableResource> perEntityLinks() throws IllegalAccessException {
+		List<FilterableResource> resources = new ArrayList<>();
+		for (CopyNumber copyNumber: entities){
+			FilterableResource<CopyNumber> resource = new FilterableResource<>(copyNumber);
+			resource.add(entityLinks.linkToSingleResource(CopyNumber.class, copyNumber.getId()).withSelfRel());
+			for (Field field: CopyNumber.class.getDeclaredFields()){
+				ForeignKey fk = field.getAnnotation(ForeignKey.class);
+				if (fk == null) continue;
+				field.setAccessible(true);
+				String rel = fk.rel().equals("") ? field.getName() : fk.rel();
+				resource.add(entityLinks.linkToSingleResource(fk.model(), field.get(copyNumber)).withRel(rel));
+			}
+			resources.add(resource);
+		}
+		return resources;
+	}
+
+	@Benchmark
+	public List<FilterableResource> precompiledLinks(){
+		return assembler.toResources(entities);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ModelResourceAssemblerBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+	
+}
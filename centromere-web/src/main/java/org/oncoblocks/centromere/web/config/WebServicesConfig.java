@@ -40,15 +40,24 @@ import org.springframework.http.converter.xml.MarshallingHttpMessageConverter;
 import org.springframework.oxm.xstream.XStreamMarshaller;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Default web configuration file for Centromere web services.  Adds the following functionality: 
  *   - Field-filtering via {@link org.oncoblocks.centromere.web.util.FilteringJackson2HttpMessageConverter}.
+ *   - Newline-delimited JSON responses via {@link org.oncoblocks.centromere.web.util.FilteringNdjsonHttpMessageConverter}.
+ *   - Apache Arrow IPC stream responses via {@link org.oncoblocks.centromere.web.util.FilteringArrowHttpMessageConverter}.
+ *   - Smile, CBOR, and MessagePack responses via {@link org.oncoblocks.centromere.web.util.FilteringBinaryJackson2HttpMessageConverter},
+ *       when the corresponding Jackson data format module is on the classpath.  Formats without 
+ *       their module are removed from content negotiation by {@link org.oncoblocks.centromere.web.util.UnavailableMediaTypeInterceptor}.
+ *   - Streaming, field-filtered XML responses via {@link org.oncoblocks.centromere.web.util.FilteringXmlHttpMessageConverter},
+ *       in the same document shape as XStream, which still reads XML request bodies.
  *   - Default media type handling
  *   - CORS filter support
  *   - GZIP compression of request responses using the 'Accept-Encoding: gzip,deflate' header.
@@ -76,6 +85,18 @@ public class WebServicesConfig extends WebMvcConfigurerAdapter {
 		jsonConverter.setSupportedMediaTypes(ApiMediaTypes.getJsonMediaTypes());
 		converters.add(jsonConverter);
 		
+		converters.add(new FilteringNdjsonHttpMessageConverter());
+		converters.add(new FilteringArrowHttpMessageConverter());
+		
+		for (FilteringBinaryJackson2HttpMessageConverter.BinaryFormat format
+				: FilteringBinaryJackson2HttpMessageConverter.BinaryFormat.values()){
+			if (format.isAvailable()){
+				converters.add(format.createConverter());
+			}
+		}
+		
+		converters.add(new FilteringXmlHttpMessageConverter());
+		
 		MarshallingHttpMessageConverter xmlConverter = new MarshallingHttpMessageConverter();
 		xmlConverter.setSupportedMediaTypes(ApiMediaTypes.getXmlMediaTypes());
 		XStreamMarshaller xStreamMarshaller = new XStreamMarshaller();
@@ -88,6 +109,22 @@ public class WebServicesConfig extends WebMvcConfigurerAdapter {
 		filteringTextMessageConverter.setDelimiter("\t");
 		converters.add(filteringTextMessageConverter);
 		
+		converters.add(new FilteringTextMessageConverter(ApiMediaTypes.TEXT_CSV_UTF8, ","));
+		
+	}
+
+	@Override 
+	public void addInterceptors(InterceptorRegistry registry) {
+		List<MediaType> unavailableMediaTypes = new ArrayList<>();
+		for (FilteringBinaryJackson2HttpMessageConverter.BinaryFormat format
+				: FilteringBinaryJackson2HttpMessageConverter.BinaryFormat.values()){
+			if (!format.isAvailable()){
+				unavailableMediaTypes.add(format.getMediaType());
+			}
+		}
+		if (!unavailableMediaTypes.isEmpty()){
+			registry.addInterceptor(new UnavailableMediaTypeInterceptor(unavailableMediaTypes));
+		}
 	}
 
 	@Override
@@ -123,7 +160,8 @@ public class WebServicesConfig extends WebMvcConfigurerAdapter {
 						httpProtocol.setCompression("on");
 						httpProtocol.setCompressionMinSize(256);
 						String mimeTypes = httpProtocol.getCompressableMimeTypes();
-						String mimeTypesWithJson = mimeTypes + "," + MediaType.APPLICATION_JSON_VALUE;
+						String mimeTypesWithJson = mimeTypes + "," + MediaType.APPLICATION_JSON_VALUE 
+								+ "," + ApiMediaTypes.APPLICATION_NDJSON_VALUE;
 						httpProtocol.setCompressableMimeTypes(mimeTypesWithJson);
 					}
 				}
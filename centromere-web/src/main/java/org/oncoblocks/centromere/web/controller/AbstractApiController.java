@@ -18,8 +18,17 @@ package org.oncoblocks.centromere.web.controller;
 
 import com.google.common.reflect.TypeToken;
 import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.model.ModelMetadata;
+import org.oncoblocks.centromere.core.repository.AggregateFunction;
+import org.oncoblocks.centromere.core.repository.AggregateOperations;
+import org.oncoblocks.centromere.core.repository.AggregateQuery;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.CountedPage;
+import org.oncoblocks.centromere.core.repository.KeysetSlice;
+import org.oncoblocks.centromere.core.repository.Projection;
 import org.oncoblocks.centromere.core.repository.QueryCriteria;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
+import org.oncoblocks.centromere.web.exceptions.InvalidParameterException;
 import org.oncoblocks.centromere.web.exceptions.ResourceNotFoundException;
 import org.oncoblocks.centromere.web.util.ApiMediaTypes;
 import org.slf4j.Logger;
@@ -28,7 +37,9 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityLinks;
@@ -37,19 +48,26 @@ import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resources;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 
@@ -66,7 +84,10 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 	private final RepositoryOperations<T, ID> repository;
 	private final ResourceAssemblerSupport<T, FilterableResource> assembler;
 	private final Class<T> model;
+	private final ModelMetadata modelMetadata;
 	private ApplicationContext applicationContext;
+	private boolean streaming = true;
+	public static final String COUNT_STRATEGY_HEADER = "X-Count-Strategy";
 	private static final Logger logger = org.slf4j.LoggerFactory.getLogger(AbstractApiController.class);
 
 	public AbstractApiController(
@@ -76,6 +97,7 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		this.repository = repository;
 		this.model = model;
 		this.assembler = assembler;
+		this.modelMetadata = ModelMetadata.forModel(model);
 	}
 
 	public AbstractApiController(RepositoryOperations<T, ID> repository, EntityLinks entityLinks) {
@@ -83,6 +105,7 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		TypeToken<T> typeToken = new TypeToken<T>(getClass()) {};
 		this.model = (Class<T>) typeToken.getRawType();
 		this.assembler = new ModelResourceAssembler<>(getClass(), model, entityLinks);
+		this.modelMetadata = ModelMetadata.forModel(model);
 	}
 
 	/**
@@ -95,7 +118,8 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 	@RequestMapping(value = "/{id}", method = RequestMethod.GET,
 			produces = { ApiMediaTypes.APPLICATION_HAL_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE, 
 					ApiMediaTypes.APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_XML_VALUE, 
-					MediaType.TEXT_PLAIN_VALUE })
+					MediaType.TEXT_PLAIN_VALUE, ApiMediaTypes.APPLICATION_SMILE_VALUE, 
+					ApiMediaTypes.APPLICATION_CBOR_VALUE, ApiMediaTypes.APPLICATION_MSGPACK_VALUE })
 	public HttpEntity<?> findById(
 			@PathVariable ID id,
 			HttpServletRequest request
@@ -114,12 +138,57 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		return new ResponseEntity<>(envelope, HttpStatus.OK);
 	}
 
+	/**
+	 * {@code GET /{id},{id},...}
+	 * Fetches multiple records by their primary IDs, given as a comma-separated list, with a single
+	 *   repository query.  Records are returned in the order requested, and IDs with no matching 
+	 *   record are skipped.  Returns a {@code Not Found} exception if no records match.
+	 *
+	 * @param ids primary IDs of the target records.
+	 * @return list of {@code T} instances
+	 */
+	@RequestMapping(value = "/{ids:[^/]*,[^/]*}", method = RequestMethod.GET,
+			produces = { ApiMediaTypes.APPLICATION_HAL_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE, 
+					ApiMediaTypes.APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_XML_VALUE, 
+					MediaType.TEXT_PLAIN_VALUE, ApiMediaTypes.TEXT_CSV_UTF8_VALUE, 
+					ApiMediaTypes.APPLICATION_NDJSON_VALUE, 
+					ApiMediaTypes.APPLICATION_SMILE_VALUE, ApiMediaTypes.APPLICATION_CBOR_VALUE, 
+					ApiMediaTypes.APPLICATION_MSGPACK_VALUE, ApiMediaTypes.APPLICATION_ARROW_STREAM_VALUE })
+	public HttpEntity<?> findByIds(
+			@PathVariable List<ID> ids,
+			HttpServletRequest request
+	) {
+		Set<String> fields = RequestUtils.getFilteredFieldsFromRequest(request);
+		Set<String> exclude = RequestUtils.getExcludedFieldsFromRequest(request);
+		List<T> entities = new ArrayList<>();
+		for (T entity: repository.findAll(ids)){
+			entities.add(entity);
+		}
+		if (entities.isEmpty()) throw new ResourceNotFoundException();
+		ResponseEnvelope envelope = null;
+		if (ApiMediaTypes.isHalMediaType(request.getHeader("Accept"))){
+			List<FilterableResource> resourceList = assembler.toResources(entities);
+			Resources<FilterableResource> resources = new Resources<>(resourceList);
+			resources.add(new Link(linkTo(this.getClass()).slash(StringUtils.collectionToCommaDelimitedString(ids))
+					.toString(), "self"));
+			envelope = new ResponseEnvelope(resources, fields, exclude);
+		} else {
+			envelope = new ResponseEnvelope(entities, fields, exclude);
+		}
+		return new ResponseEntity<>(envelope, HttpStatus.OK);
+	}
+
 	/**
 	 * {@code GET /distinct}
 	 * Fetches the distinct values of the model attribute, {@code field}, which fulfill the given 
-	 *   query parameters.
+	 *   query parameters.  Values are sorted, and may be filtered by {@code prefix} and paged with 
+	 *   {@code offset} and {@code limit}, all of which are applied by the database.
 	 * 
-	 * @param field Name of the model attribute to retrieve unique values of.
+	 * @param field Name of the model attribute to retrieve unique values of.  Must be a query 
+	 *   parameter declared by the model, or the request is rejected.
+	 * @param prefix Optional value prefix to filter by.
+	 * @param offset Number of values to skip.
+	 * @param limit Maximum number of values to return, or zero for all values.
 	 * @param request {@link HttpServletRequest}
 	 * @return
 	 */
@@ -129,10 +198,25 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 					MediaType.TEXT_PLAIN_VALUE })
 	public HttpEntity<?> findDistinct(
 			@RequestParam String field, 
+			@RequestParam(required = false) String prefix,
+			@RequestParam(defaultValue = "0") int offset,
+			@RequestParam(defaultValue = "0") int limit,
 			HttpServletRequest request)
 	{
+		if (offset < 0 || limit < 0){
+			throw new InvalidParameterException("The offset and limit parameters must not be negative.");
+		}
+		String fieldName = modelMetadata.getDeclaredFieldName(field);
+		if (fieldName == null){
+			throw new InvalidParameterException("Invalid field parameter: " + field);
+		}
 		List<QueryCriteria> queryCriterias = RequestUtils.getQueryCriteriaFromRequest(model, request);
-		List<Object> distinct = (List<Object>) repository.distinct(field, queryCriterias);
+		List<Object> distinct;
+		try {
+			distinct = (List<Object>) repository.distinct(fieldName, queryCriterias, prefix, offset, limit);
+		} catch (IllegalArgumentException e){
+			throw new InvalidParameterException("Invalid field parameter: " + e.getMessage());
+		}
 		ResponseEnvelope envelope = null;
 		if (ApiMediaTypes.isHalMediaType(request.getHeader("Accept"))){
 			Link selfLink = new Link(linkTo(this.getClass()).slash("distinct").toString() + 
@@ -146,10 +230,151 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		return new ResponseEntity<>(envelope, HttpStatus.OK);
 	}
 
+	/**
+	 * {@code GET /aggregate}
+	 * Groups the records which fulfill the given query parameters by the model attributes in 
+	 *   {@code groupBy} and computes the requested {@code metrics} for each group.  Metrics take the 
+	 *   form {@code count} or {@code function:field}, where the function is one of {@code count}, 
+	 *   {@code min}, {@code max}, {@code sum}, or {@code avg}, and are named {@code count} or 
+	 *   {@code function_field}.  A {@code count:field} metric counts the records with a non-null 
+	 *   value of the field.  Groups may be sorted by a group field or metric 
+	 *   name with {@code orderBy} (prefixed with {@code -} for descending order) and truncated with 
+	 *   {@code limit}, which together return the top groups.  Aggregation is performed by the 
+	 *   database, so only repositories implementing {@link AggregateOperations} are supported.
+	 * 
+	 * @param groupBy Comma-separated model attributes to group by.
+	 * @param metrics Comma-separated metrics to compute for each group.
+	 * @param orderBy Optional group field or metric name to sort groups by.
+	 * @param limit Maximum number of groups to return, or zero for all groups.
+	 * @param request {@link HttpServletRequest}
+	 * @return
+	 */
+	@RequestMapping(value = "/aggregate", method = RequestMethod.GET,
+			produces = { ApiMediaTypes.APPLICATION_HAL_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE,
+					ApiMediaTypes.APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_XML_VALUE,
+					MediaType.TEXT_PLAIN_VALUE })
+	public HttpEntity<?> aggregate(
+			@RequestParam(required = false) String[] groupBy,
+			@RequestParam(defaultValue = "count") String[] metrics,
+			@RequestParam(required = false) String orderBy,
+			@RequestParam(defaultValue = "0") int limit,
+			HttpServletRequest request)
+	{
+		if (!(repository instanceof AggregateOperations)){
+			throw new InvalidParameterException("Aggregation is not supported for this resource.");
+		}
+		if (limit < 0){
+			throw new InvalidParameterException("The limit parameter must not be negative.");
+		}
+		AggregateQuery aggregateQuery;
+		try {
+			aggregateQuery = getAggregateQuery(groupBy, metrics, orderBy, limit);
+		} catch (IllegalArgumentException e){
+			throw new InvalidParameterException("Invalid aggregation parameters: " + e.getMessage());
+		}
+		List<QueryCriteria> queryCriterias = RequestUtils.getQueryCriteriaFromRequest(model, request);
+		List<Map<String,Object>> groups;
+		try {
+			groups = ((AggregateOperations) repository).aggregate(queryCriterias, aggregateQuery);
+		} catch (IllegalArgumentException e){
+			throw new InvalidParameterException("Invalid aggregation parameters: " + e.getMessage());
+		}
+		ResponseEnvelope envelope = null;
+		if (ApiMediaTypes.isHalMediaType(request.getHeader("Accept"))){
+			Link selfLink = new Link(linkTo(this.getClass()).slash("aggregate").toString() +
+					(request.getQueryString() != null ? "?" + request.getQueryString() : ""), "self");
+			Resources resources = new Resources(groups);
+			resources.add(selfLink);
+			envelope = new ResponseEnvelope(resources);
+		} else {
+			envelope = new ResponseEnvelope(groups);
+		}
+		return new ResponseEntity<>(envelope, HttpStatus.OK);
+	}
+
+	/**
+	 * Builds an {@link AggregateQuery} from the {@code /aggregate} request parameters.  Group and 
+	 *   metric fields must be query parameters declared by the model, and are remapped from their 
+	 *   model attribute aliases, where defined.  The sort field must name a group field or metric.
+	 * 
+	 * @param groupBy group field names
+	 * @param metrics metric definitions
+	 * @param orderBy sort field, optionally prefixed with {@code -}
+	 * @param limit maximum number of groups
+	 * @return
+	 */
+	private AggregateQuery getAggregateQuery(String[] groupBy, String[] metrics, String orderBy, int limit){
+		List<String> groupFields = new ArrayList<>();
+		if (groupBy != null){
+			for (String field: groupBy){
+				if (StringUtils.hasText(field)) groupFields.add(getAggregateField(field.trim()));
+			}
+		}
+		AggregateQuery aggregateQuery = new AggregateQuery(groupFields);
+		for (String metric: metrics){
+			if (!StringUtils.hasText(metric)) continue;
+			String[] bits = metric.trim().split(":");
+			AggregateFunction function;
+			try {
+				function = AggregateFunction.valueOf(bits[0].toUpperCase());
+			} catch (IllegalArgumentException e){
+				throw new IllegalArgumentException("Unknown aggregate function: " + bits[0]);
+			}
+			if (function == AggregateFunction.COUNT && bits.length == 1){
+				aggregateQuery.count();
+			} else if (bits.length == 2 && StringUtils.hasText(bits[1])){
+				String field = getAggregateField(bits[1].trim());
+				aggregateQuery.accumulate(function, field, 
+						AggregateQuery.getDefaultAlias(function, bits[1].trim()));
+			} else {
+				throw new IllegalArgumentException("Malformed metric: " + metric);
+			}
+		}
+		if (StringUtils.hasText(orderBy)){
+			orderBy = orderBy.trim();
+			Sort.Direction direction = orderBy.startsWith("-") ? Sort.Direction.DESC : Sort.Direction.ASC;
+			String name = orderBy.startsWith("-") ? orderBy.substring(1) : orderBy;
+			if (!aggregateQuery.getOutputNames().contains(name)){
+				name = modelMetadata.getFieldName(name);
+			}
+			if (!aggregateQuery.getOutputNames().contains(name)){
+				throw new InvalidParameterException("Invalid orderBy parameter: " + orderBy);
+			}
+			aggregateQuery.orderBy(name, direction);
+		}
+		if (limit > 0) aggregateQuery.limit(limit);
+		return aggregateQuery;
+	}
+
+	/**
+	 * Resolves a group or metric field of an {@code /aggregate} request to its repository field 
+	 *   name, rejecting fields which are not query parameters declared by the model.
+	 * 
+	 * @param param requested field name
+	 * @return field name
+	 */
+	private String getAggregateField(String param){
+		String fieldName = modelMetadata.getDeclaredFieldName(param);
+		if (fieldName == null){
+			throw new InvalidParameterException("Invalid aggregation field: " + param);
+		}
+		return fieldName;
+	}
+
 	/**
 	 * Queries the repository using inputted query string paramters, defined within a annotated 
 	 *   {@link Model} classes.  Supports hypermedia, pagination, sorting, field 
-	 *   filtering, and field exclusion.
+	 *   filtering, and field exclusion.  Including the {@code cursor} parameter switches to keyset 
+	 *   pagination: an empty value requests the first slice, and each response carries the 
+	 *   continuation token to pass as {@code cursor} to fetch the next one.  Paged requests may
+	 *   select a {@link CountStrategy} with the {@code countStrategy} parameter; the strategy used is
+	 *   reported in the {@code X-Count-Strategy} response header.  The {@code fields} and 
+	 *   {@code exclude} parameters are passed to the repository as a {@link Projection}, so that 
+	 *   unrequested fields are not fetched from the database.  Unpaged results are streamed from a 
+	 *   repository cursor, opened with the same projection only when the response body is written, unless 
+	 *   streaming is disabled.  
+	 *   Requesting {@code application/x-ndjson} returns one record per line, and 
+	 *   {@code application/vnd.apache.arrow.stream} returns an Arrow IPC stream of record batches.
 	 * 
 	 * @param pagedResourcesAssembler {@link PagedResourcesAssembler}
 	 * @param request {@link HttpServletRequest}
@@ -158,38 +383,133 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 	@RequestMapping(value = "", method = RequestMethod.GET,
 			produces = { MediaType.APPLICATION_JSON_VALUE, ApiMediaTypes.APPLICATION_HAL_JSON_VALUE,
 					ApiMediaTypes.APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_XML_VALUE,
-					MediaType.TEXT_PLAIN_VALUE})
+					MediaType.TEXT_PLAIN_VALUE, ApiMediaTypes.TEXT_CSV_UTF8_VALUE, 
+					ApiMediaTypes.APPLICATION_NDJSON_VALUE, 
+					ApiMediaTypes.APPLICATION_SMILE_VALUE, ApiMediaTypes.APPLICATION_CBOR_VALUE, 
+					ApiMediaTypes.APPLICATION_MSGPACK_VALUE, ApiMediaTypes.APPLICATION_ARROW_STREAM_VALUE })
 	public HttpEntity<?> find(
 			@PageableDefault(size = 1000) Pageable pageable,
 			PagedResourcesAssembler<T> pagedResourcesAssembler, 
 			HttpServletRequest request)
 	{
-		ResponseEnvelope envelope;
 		Set<String> fields = RequestUtils.getFilteredFieldsFromRequest(request);
 		Set<String> exclude = RequestUtils.getExcludedFieldsFromRequest(request);
 		pageable = RequestUtils.remapPageable(pageable, model);
 		Map<String,String[]> parameterMap = request.getParameterMap();
 		List<QueryCriteria> criterias = RequestUtils.getQueryCriteriaFromRequest(model, request);
-		String mediaType = request.getHeader("Accept");
 		Link selfLink = new Link(linkTo(this.getClass()).slash("").toString() +
 				(request.getQueryString() != null ? "?" + request.getQueryString() : ""), "self");
-		if (parameterMap.containsKey("page") || parameterMap.containsKey("size")){
-			Page<T> page = repository.find(criterias, pageable);
+		String token = request.getParameter("cursor");
+		return getFindResponse(criterias, pageable, fields, exclude, 
+				parameterMap.containsKey("cursor"), token != null && !"".equals(token.trim()) ? token.trim() : null,
+				parameterMap.containsKey("page") || parameterMap.containsKey("size"), 
+				getCountStrategyFromRequest(request.getParameter("countStrategy")), 
+				pagedResourcesAssembler, request.getHeader("Accept"), selfLink);
+	}
+
+	/**
+	 * {@code POST /search}
+	 * Queries the repository using a JSON request body, rather than query string parameters, so 
+	 *   that large queries, such as those with long lists of IDs, are not limited by URL length.  
+	 *   The body may contain criteria, including nested {@code and}, {@code or}, and {@code not} 
+	 *   groups, as well as sort, field filtering, pagination, and cursor properties, which have the 
+	 *   same effect as in {@code GET} requests.  See {@link SearchRequest} for the body format.
+	 *
+	 * @param pagedResourcesAssembler {@link PagedResourcesAssembler}
+	 * @param request {@link HttpServletRequest}
+	 * @return
+	 * @throws IOException if the request body cannot be read.
+	 */
+	@RequestMapping(value = "/search", method = RequestMethod.POST,
+			consumes = { MediaType.APPLICATION_JSON_VALUE },
+			produces = { MediaType.APPLICATION_JSON_VALUE, ApiMediaTypes.APPLICATION_HAL_JSON_VALUE,
+					ApiMediaTypes.APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_XML_VALUE,
+					MediaType.TEXT_PLAIN_VALUE, ApiMediaTypes.TEXT_CSV_UTF8_VALUE, 
+					ApiMediaTypes.APPLICATION_NDJSON_VALUE, 
+					ApiMediaTypes.APPLICATION_SMILE_VALUE, ApiMediaTypes.APPLICATION_CBOR_VALUE, 
+					ApiMediaTypes.APPLICATION_MSGPACK_VALUE, ApiMediaTypes.APPLICATION_ARROW_STREAM_VALUE })
+	public HttpEntity<?> search(
+			PagedResourcesAssembler<T> pagedResourcesAssembler,
+			HttpServletRequest request) throws IOException
+	{
+		SearchRequest searchRequest = SearchRequest.parse(request.getInputStream(), model);
+		Link selfLink = new Link(linkTo(this.getClass()).slash("search").toString(), "self");
+		return getFindResponse(searchRequest.getQueryCriterias(), searchRequest.getPageable(), 
+				searchRequest.getFields(), searchRequest.getExclude(), searchRequest.isKeyset(), 
+				searchRequest.getCursor(), searchRequest.isPaged(), searchRequest.getCountStrategy(), 
+				pagedResourcesAssembler, request.getHeader("Accept"), selfLink);
+	}
+
+	/**
+	 * Executes a query and assembles the response for {@code GET} and {@code POST /search} requests, 
+	 *   using keyset pagination, offset pagination, or neither.
+	 */
+	private HttpEntity<?> getFindResponse(List<QueryCriteria> criterias, Pageable pageable, 
+			Set<String> fields, Set<String> exclude, boolean keyset, String token, boolean paged, 
+			CountStrategy requestedCountStrategy, PagedResourcesAssembler<T> pagedResourcesAssembler, 
+			String mediaType, Link selfLink)
+	{
+		ResponseEnvelope envelope;
+		Projection projection = new Projection(fields, exclude);
+		if (keyset){
+			KeysetSlice<T> slice;
+			try {
+				slice = repository.findAfter(criterias, pageable.getSort(), pageable.getPageSize(), token);
+			} catch (IllegalArgumentException e){
+				throw new InvalidParameterException("Invalid cursor parameter: " + e.getMessage());
+			}
 			if (ApiMediaTypes.isHalMediaType(mediaType)){
-				PagedResources<FilterableResource> pagedResources
-						= pagedResourcesAssembler.toResource(page, assembler, selfLink);
-				envelope = new ResponseEnvelope(pagedResources, fields, exclude);
+				List<FilterableResource> resourceList = assembler.toResources(slice.getContent());
+				Resources<FilterableResource> resources = new Resources<>(resourceList);
+				resources.add(selfLink);
+				if (slice.getContinuationToken() != null){
+					resources.add(new Link(UriComponentsBuilder.fromUriString(selfLink.getHref())
+							.replaceQueryParam("cursor", slice.getContinuationToken()).build().toUriString(),
+							Link.REL_NEXT));
+				}
+				envelope = new ResponseEnvelope(resources, fields, exclude);
 			} else {
-				envelope = new ResponseEnvelope(page, fields, exclude);
+				envelope = new ResponseEnvelope(slice, fields, exclude);
 			}
-		} else {
-			Sort sort = pageable.getSort();
-			List<T> entities = null;
-			if (sort != null){
-				entities = (List<T>) repository.find(criterias, sort);
+		} else if (paged){
+			Slice<T> slice;
+			try {
+				slice = repository.find(criterias, pageable, requestedCountStrategy, projection);
+			} catch (IllegalArgumentException e){
+				throw new InvalidParameterException("Invalid page parameters: " + e.getMessage());
+			}
+			CountStrategy countStrategy = CountedPage.getCountStrategy(slice);
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(COUNT_STRATEGY_HEADER, countStrategy.toString());
+			if (ApiMediaTypes.isHalMediaType(mediaType)){
+				if (slice instanceof Page){
+					PagedResources<FilterableResource> pagedResources
+							= pagedResourcesAssembler.toResource((Page<T>) slice, assembler, selfLink);
+					envelope = new ResponseEnvelope(pagedResources, fields, exclude);
+				} else {
+					List<FilterableResource> resourceList = assembler.toResources(slice.getContent());
+					Resources<FilterableResource> resources = new Resources<>(resourceList);
+					resources.add(selfLink);
+					if (slice.hasNext()){
+						resources.add(new Link(UriComponentsBuilder.fromUriString(selfLink.getHref())
+								.replaceQueryParam("page", slice.getNumber() + 1).build().toUriString(),
+								Link.REL_NEXT));
+					}
+					envelope = new ResponseEnvelope(resources, fields, exclude);
+				}
 			} else {
-				entities = (List<T>) repository.find(criterias);
+				envelope = new ResponseEnvelope(slice, fields, exclude);
 			}
+			return new ResponseEntity<>(envelope, headers, HttpStatus.OK);
+		} else if (streaming){
+			Supplier<CloseableIterator<T>> cursor 
+					= () -> repository.stream(criterias, pageable.getSort(), projection);
+			ResponseStream stream = ApiMediaTypes.isHalMediaType(mediaType)
+					? new ResponseStream(cursor, assembler::toResource, Collections.singletonList(selfLink))
+					: new ResponseStream(cursor, model);
+			envelope = new ResponseEnvelope(stream, fields, exclude);
+		} else {
+			List<T> entities = (List<T>) repository.find(criterias, pageable.getSort(), projection);
 			if (ApiMediaTypes.isHalMediaType(mediaType)){
 				List<FilterableResource> resourceList = assembler.toResources(entities);
 				Resources<FilterableResource> resources = new Resources<>(resourceList);
@@ -202,6 +522,22 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		return new ResponseEntity<>(envelope, HttpStatus.OK);
 	}
 
+	/**
+	 * Parses the {@code countStrategy} request parameter, returning null when it is absent, so that
+	 *   the repository's default {@link CountStrategy} is used.
+	 *
+	 * @param param parameter value.
+	 * @return {@link CountStrategy}
+	 */
+	protected CountStrategy getCountStrategyFromRequest(String param){
+		if (param == null || "".equals(param.trim())) return null;
+		try {
+			return CountStrategy.valueOf(param.trim().toUpperCase());
+		} catch (IllegalArgumentException e){
+			throw new InvalidParameterException("Invalid countStrategy parameter: " + param);
+		}
+	}
+
 	/**
 	 * {@code HEAD /**}
 	 * Performs a test on the resource endpoints availability.
@@ -237,6 +573,22 @@ public abstract class AbstractApiController<T extends Model<ID>, ID extends Seri
 		return model;
 	}
 
+	public ModelMetadata getModelMetadata() {
+		return modelMetadata;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets whether unpaged query results are streamed from a repository cursor to the response, 
+	 *   rather than fetched in full before being written.  Enabled by default.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
 	@Autowired 
 	public void setApplicationContext(
 			ApplicationContext applicationContext) {
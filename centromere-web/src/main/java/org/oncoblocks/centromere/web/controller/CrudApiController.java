@@ -17,7 +17,9 @@
 package org.oncoblocks.centromere.web.controller;
 
 import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
 import org.oncoblocks.centromere.core.repository.RepositoryOperations;
+import org.oncoblocks.centromere.web.exceptions.InvalidParameterException;
 import org.oncoblocks.centromere.web.exceptions.RequestFailureException;
 import org.oncoblocks.centromere.web.exceptions.ResourceNotFoundException;
 import org.oncoblocks.centromere.web.util.ApiMediaTypes;
@@ -34,6 +36,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Extension of {@link org.oncoblocks.centromere.web.controller.AbstractApiController} that allows for 
@@ -114,4 +117,21 @@ public class CrudApiController<T extends Model<ID>, ID extends Serializable>
 		return new ResponseEntity<>(HttpStatus.OK);
 	}
 
+	/**
+	 * {@code DELETE /?{params}}
+	 * Deletes all entities matching the submitted query parameters in a single bulk operation.  At 
+	 *   least one query parameter is required, so that a bare request cannot clear the collection.
+	 *
+	 * @return {@link HttpStatus} indicating success or failure.
+	 */
+	@RequestMapping(value = "", method = RequestMethod.DELETE)
+	public HttpEntity<?> deleteAll(HttpServletRequest request) {
+		List<QueryCriteria> queryCriterias = RequestUtils.getQueryCriteriaFromRequest(getModel(), request);
+		if (queryCriterias.isEmpty()){
+			throw new InvalidParameterException("At least one query parameter is required for bulk deletes.");
+		}
+		getRepository().deleteAll(queryCriterias);
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
 }
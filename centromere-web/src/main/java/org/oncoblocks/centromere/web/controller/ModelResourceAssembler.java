@@ -23,6 +23,10 @@ import org.springframework.hateoas.EntityLinks;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
 import java.lang.reflect.Field;
 import java.util.*;
 
@@ -31,6 +35,11 @@ import java.util.*;
  *   links, based upon the {@link Model} class's `getId()` method signature, and by inferring 
  *   related models by fields annotated with {@link ForeignKey}.
  * 
+ * The {@link ForeignKey} fields of the model are resolved once, when the assembler is created.  
+ *   Base URIs of the linked resources depend upon the current request, so they are resolved once 
+ *   per request, or per call outside of a request, after which each entity's links are created by 
+ *   appending its identifiers to the base URIs.
+ * 
  * @author woemler
  */
 public class ModelResourceAssembler<T extends Model<?>> 
@@ -39,12 +48,16 @@ public class ModelResourceAssembler<T extends Model<?>>
 	private final EntityLinks entityLinks;
 	private final Class<?> modelController;
 	private final Class<T> model;
+	private final List<ForeignKeyLink> foreignKeyLinks;
+	private final String baseHrefsAttribute = ModelResourceAssembler.class.getName() + ".baseHrefs@" 
+			+ Integer.toHexString(System.identityHashCode(this));
 	
 	public ModelResourceAssembler(Class<?> controllerClass, Class<T> model,  EntityLinks entityLinks) {
 		super(controllerClass, FilterableResource.class);
 		this.modelController = controllerClass;
 		this.model = model;
 		this.entityLinks = entityLinks;
+		this.foreignKeyLinks = getForeignKeyLinks(model);
 	}
 
 	public ModelResourceAssembler(Class<?> controllerClass, EntityLinks entityLinks) {
@@ -53,6 +66,7 @@ public class ModelResourceAssembler<T extends Model<?>>
 		this.entityLinks = entityLinks;
 		TypeToken<T> typeToken = new TypeToken<T>(getClass()) {};
 		this.model = (Class<T>) typeToken.getRawType();
+		this.foreignKeyLinks = getForeignKeyLinks(model);
 	}
 
 	/**
@@ -62,23 +76,75 @@ public class ModelResourceAssembler<T extends Model<?>>
 	 * @return
 	 */
 	public FilterableResource toResource(T t) {
+		return toResource(t, getBaseHrefs());
+	}
+
+	/**
+	 * Converts {@link Model} objects into {@link FilterableResource} objects, resolving the base 
+	 *   URIs of their links only once.
+	 *
+	 * @param entities
+	 * @return
+	 */
+	@Override 
+	public List<FilterableResource> toResources(Iterable<? extends T> entities) {
+		String[] baseHrefs = getBaseHrefs();
+		List<FilterableResource> resources = new ArrayList<>();
+		for (T t: entities){
+			resources.add(toResource(t, baseHrefs));
+		}
+		return resources;
+	}
+
+	private FilterableResource toResource(T t, String[] baseHrefs){
 		FilterableResource<T> resource = new FilterableResource<>(t);
-		resource.add(entityLinks.linkToSingleResource(model, t.getId()).withSelfRel());
+		resource.add(new Link(getSingleResourceHref(baseHrefs[0], t.getId()), Link.REL_SELF));
 		List<Link> links = addLinks(new ArrayList<>());
-		links.addAll(this.addForeignKeyLinks(t));
+		for (int i = 0; i < foreignKeyLinks.size(); i++){
+			links.add(foreignKeyLinks.get(i).toLink(t, baseHrefs[i + 1]));
+		}
 		resource.add(links);
 		return resource;
 	}
 
 	/**
-	 * Inspects the target {@link Model} class for {@link ForeignKey} annotations, and creates links
-	 *   based upon the inferred relationship and field names.
+	 * Resolves the collection URIs of the model and of each {@link ForeignKey} model, and caches 
+	 *   them as an attribute of the current request, if there is one.
+	 */
+	private String[] getBaseHrefs(){
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		String[] hrefs = attributes != null 
+				? (String[]) attributes.getAttribute(baseHrefsAttribute, RequestAttributes.SCOPE_REQUEST) : null;
+		if (hrefs == null){
+			hrefs = new String[foreignKeyLinks.size() + 1];
+			hrefs[0] = entityLinks.linkToCollectionResource(model).getHref();
+			for (int i = 0; i < foreignKeyLinks.size(); i++){
+				hrefs[i + 1] = entityLinks.linkToCollectionResource(foreignKeyLinks.get(i).model).getHref();
+			}
+			if (attributes != null) attributes.setAttribute(baseHrefsAttribute, hrefs, RequestAttributes.SCOPE_REQUEST);
+		}
+		return hrefs;
+	}
+
+	/**
+	 * Appends an identifier to a collection URI, as {@link EntityLinks#linkToSingleResource} does.
+	 */
+	private static String getSingleResourceHref(String baseHref, Object id){
+		if (id == null) return baseHref;
+		String path = id.toString();
+		if (path.isEmpty()) return baseHref;
+		return path.startsWith("/") ? baseHref + path : baseHref + "/" + path;
+	}
+
+	/**
+	 * Inspects the target {@link Model} class for {@link ForeignKey} annotations, and resolves the 
+	 *   links to create, based upon the inferred relationship and field names.
 	 * 
-	 * @param t
+	 * @param model
 	 * @return
 	 */
-	private List<Link> addForeignKeyLinks(T t){
-		List<Link> links = new ArrayList<>();
+	private static List<ForeignKeyLink> getForeignKeyLinks(Class<?> model){
+		List<ForeignKeyLink> links = new ArrayList<>();
 		for (Field field: model.getDeclaredFields()){
 			ForeignKey fk = field.getAnnotation(ForeignKey.class);
 			if (fk == null) continue;
@@ -86,33 +152,20 @@ public class ModelResourceAssembler<T extends Model<?>>
 					+ "class %s does not contain any class reference!", model.getName()));
 			Class<?> fkCLass = fk.model();
 			String relName = fk.rel().equals("") ? field.getName() : fk.rel();
-			String fieldName = fk.field().equals("") ? field.getName() : fk.field();
 			if (!Model.class.isAssignableFrom(fkCLass)) continue;
-			Link link = null;
-			try {
-				field.setAccessible(true);
-				if (fk.relationship().equals(ForeignKey.Relationship.MANY_TO_ONE)
-						&& (!field.getType().isArray() && !Collection.class
-						.isAssignableFrom(field.getType()))) {
-					link = entityLinks.linkToSingleResource(fkCLass, field.get(t)).withRel(relName);
-				} else if (fk.relationship().equals(ForeignKey.Relationship.ONE_TO_MANY)
-						&& (field.getType().isArray() || Collection.class.isAssignableFrom(field.getType()))) {
-					Map<String,Object> map = new HashMap<>();
-					map.put(fieldName, field.get(t));
-					link = entityLinks.linkToCollectionResource(fkCLass).expand(map).withRel(relName);   
-				} else if (fk.relationship().equals(ForeignKey.Relationship.MANY_TO_MANY)
-						&& (field.getType().isArray() || Collection.class.isAssignableFrom(field.getType()))){
-					Map<String,Object> map = new HashMap<>();
-					map.put(fieldName, field.get(t));
-					link = entityLinks.linkToCollectionResource(fkCLass).expand(map).withRel(relName);  
-				} else {
-					throw new RuntimeException(String.format("Unable to determine correct link format for " 
-							+ "field %s of class %s", field.getName(), model.getName()));
-				}
-			} catch (IllegalAccessException e){
-				e.printStackTrace();
+			boolean multiValued = field.getType().isArray() || Collection.class.isAssignableFrom(field.getType());
+			boolean single;
+			if (fk.relationship().equals(ForeignKey.Relationship.MANY_TO_ONE) && !multiValued) {
+				single = true;
+			} else if ((fk.relationship().equals(ForeignKey.Relationship.ONE_TO_MANY) 
+					|| fk.relationship().equals(ForeignKey.Relationship.MANY_TO_MANY)) && multiValued) {
+				single = false;
+			} else {
+				throw new RuntimeException(String.format("Unable to determine correct link format for " 
+						+ "field %s of class %s", field.getName(), model.getName()));
 			}
-			if (link != null) links.add(link);
+			ReflectionUtils.makeAccessible(field);
+			links.add(new ForeignKeyLink(field, fkCLass, relName, single));
 		}
 		return links;
 	}
@@ -132,4 +185,29 @@ public class ModelResourceAssembler<T extends Model<?>>
 	public Class<T> getModel() {
 		return model;
 	}
+
+	/**
+	 * Resolved {@link ForeignKey} field.  Single-valued references link to the referenced record, 
+	 *   and collections of references link to the referenced model's collection resource.
+	 */
+	private static class ForeignKeyLink {
+		
+		private final Field field;
+		private final Class<?> model;
+		private final String rel;
+		private final boolean single;
+
+		public ForeignKeyLink(Field field, Class<?> model, String rel, boolean single) {
+			this.field = field;
+			this.model = model;
+			this.rel = rel;
+			this.single = single;
+		}
+		
+		public Link toLink(Object entity, String baseHref){
+			if (!single) return new Link(baseHref, rel);
+			return new Link(getSingleResourceHref(baseHref, ReflectionUtils.getField(field, entity)), rel);
+		}
+		
+	}
 }
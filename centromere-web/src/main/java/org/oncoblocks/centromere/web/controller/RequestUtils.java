@@ -25,14 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
 import javax.servlet.http.HttpServletRequest;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
 import java.util.*;
 
 /**
@@ -43,7 +40,9 @@ import java.util.*;
 public class RequestUtils {
 
 	private static final Logger logger = LoggerFactory.getLogger(RequestUtils.class);
-	private static final List<String> excludedParameters = Arrays.asList("fields", "exclude", "page", "size", "sort", "field");
+	private static final List<String> excludedParameters = Arrays.asList("fields", "exclude", "page", 
+			"size", "sort", "field", "cursor", "countStrategy", "prefix", 
+			"offset", "limit", "groupBy", "metrics", "orderBy");
 
 	/**
 	 * Extracts request parameters and matches them to available database query parameters, as defined
@@ -58,7 +57,7 @@ public class RequestUtils {
 		logger.info(String.format("Generating QueryCriteria for request parameters: model=%s params=%s",
 				model.getName(), request.getQueryString()));
 		List<QueryCriteria> criteriaList = new ArrayList<>();
-		Map<String, QueryParameterDescriptor> paramMap = getAvailableQueryParameters(model);
+		Map<String, QueryParameterDescriptor> paramMap = ModelMetadata.forModel(model).getQueryParameters();
 		for (Map.Entry entry: request.getParameterMap().entrySet()){
 			String paramName = (String) entry.getKey();
 			String[] paramValue = ((String[]) entry.getValue())[0].split(",");
@@ -82,50 +81,16 @@ public class RequestUtils {
 
 	/**
 	 * Inspects a {@link Model} class and returns all of the available and acceptable query parameter
-	 *   definitions, as a map of parameter names and {@link QueryParameterDescriptor} objects.
+	 *   definitions, as a map of parameter names and {@link QueryParameterDescriptor} objects.  The 
+	 *   definitions are read from the cached {@link ModelMetadata} of the model.
 	 * 
 	 * @param model
 	 * @return
 	 */
 	public static Map<String,QueryParameterDescriptor> getAvailableQueryParameters(
 			Class<? extends Model<?>> model, boolean recursive){
-		Map<String,QueryParameterDescriptor> paramMap = new HashMap<>();
-		for (Field field: model.getDeclaredFields()){
-			String fieldName = field.getName();
-			Class<?> type = field.getType();
-			if (Collection.class.isAssignableFrom(field.getType())){
-				ParameterizedType parameterizedType = (ParameterizedType) field.getGenericType();
-				type = (Class<?>) parameterizedType.getActualTypeArguments()[0];
-			} 
-			if (field.isAnnotationPresent(Ignored.class)) {
-				continue;
-			} else {
-				paramMap.put(fieldName, new QueryParameterDescriptor(fieldName, fieldName, type, Evaluation.EQUALS));
-			}
-			if (field.isAnnotationPresent(ForeignKey.class)){
-				if (!recursive) continue;
-				ForeignKey foreignKey = field.getAnnotation(ForeignKey.class);
-				String relField = !"".equals(foreignKey.rel()) ? foreignKey.rel() : fieldName;
-				Map<String,QueryParameterDescriptor> foreignModelMap = getAvailableQueryParameters(foreignKey.model(), false);
-				for(QueryParameterDescriptor descriptor: foreignModelMap.values()){
-					String newParamName = relField + "." + descriptor.getParamName();
-					descriptor.setParamName(newParamName);
-					paramMap.put(newParamName, descriptor);
-				}
-			}
-			if (field.isAnnotationPresent(Aliases.class)){
-				Aliases aliases = field.getAnnotation(Aliases.class);
-				for (Alias alias: aliases.value()){
-					paramMap.put(alias.value(), new QueryParameterDescriptor(alias.value(), 
-							alias.fieldName().equals("") ? fieldName : alias.fieldName(), type, alias.evaluation()));
-				}
-			} else if (field.isAnnotationPresent(Alias.class)){
-				Alias alias = field.getAnnotation(Alias.class);
-				paramMap.put(alias.value(), new QueryParameterDescriptor(alias.value(), 
-						alias.fieldName().equals("") ? fieldName : alias.fieldName(), type, alias.evaluation()));
-			}
-		}
-		return paramMap;
+		ModelMetadata metadata = ModelMetadata.forModel(model);
+		return new HashMap<>(recursive ? metadata.getQueryParameters() : metadata.getDeclaredQueryParameters());
 	}
 
 	public static Map<String,QueryParameterDescriptor> getAvailableQueryParameters(Class<? extends Model<?>> model) {
@@ -218,8 +183,7 @@ public class RequestUtils {
 	 * {@link RequestUtils#convertParameter(Object, Class, ConversionService)}
 	 */
 	public static Object convertParameter(Object param, Class<?> type){
-		ConversionService conversionService = new DefaultConversionService();
-		return convertParameter(param, type, conversionService);
+		return convertParameter(param, type, ModelMetadata.getConversionService());
 	}
 
 	/**
@@ -284,9 +248,10 @@ public class RequestUtils {
 		logger.debug("Attempting to remap Pageable parameter names.");
 		Sort sort = null;
 		if (pageable.getSort() != null){
+			ModelMetadata metadata = ModelMetadata.forModel(model);
 			List<Sort.Order> orders = new ArrayList<>();
 			for (Sort.Order order: pageable.getSort()){
-				orders.add(new Sort.Order(order.getDirection(), remapParameterName(order.getProperty(), model)));
+				orders.add(new Sort.Order(order.getDirection(), metadata.getFieldName(order.getProperty())));
 			}
 			sort = new Sort(orders);
 		}
@@ -301,21 +266,7 @@ public class RequestUtils {
 	 * @return
 	 */
 	public static String remapParameterName(String param, Class<? extends Model<?>> model){
-		logger.debug(String.format("Attempting to remap query string parameter: %s", param));
-		for (Field field: model.getDeclaredFields()){
-			String fieldName = field.getName();
-			if (field.isAnnotationPresent(Aliases.class)){
-				Aliases aliases = field.getAnnotation(Aliases.class);
-				for (Alias alias: aliases.value()){
-					if (alias.value().equals(param)) return fieldName;
-				}
-			} else if (field.isAnnotationPresent(Alias.class)){
-				Alias alias = field.getAnnotation(Alias.class);
-				if (alias.value().equals(param)) return fieldName;
-			}
-		}
-		logger.debug(String.format("Parameter remapped to: %s", param));
-		return param;
+		return ModelMetadata.forModel(model).getFieldName(param);
 	}
 	
 }
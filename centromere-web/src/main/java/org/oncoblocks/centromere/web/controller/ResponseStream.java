@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.controller;
+
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.hateoas.Link;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single-use, lazily-evaluated response body for unpaged queries.  Records are pulled from an open 
+ *   repository cursor as the message converter writes them, and optionally converted, eg. into 
+ *   {@link FilterableResource} instances, one at a time, so that the response can be sent before 
+ *   the query completes, without holding the full result set in memory.  Converters that support 
+ *   this type must close it once the response body has been written.  When created with a cursor
+ *   {@link Supplier}, the cursor is only opened once the records are first iterated, so that no
+ *   database resources are held if the response body is never written, eg. when no converter
+ *   matches the requested media type.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ResponseStream implements Iterable<Object>, Closeable {
+	
+	private final Supplier<? extends CloseableIterator<?>> cursorSupplier;
+	private CloseableIterator<?> cursor;
+	private final Function<Object, ?> converter;
+	private final List<Link> links;
+	private final Class<?> recordType;
+	private boolean consumed = false;
+
+	/**
+	 * @param cursor open cursor over the query results.
+	 * @param converter function applied to each record before it is written.
+	 * @param links collection-level links, or null if the response is not a hypermedia resource.
+	 */
+	public <T> ResponseStream(CloseableIterator<T> cursor, Function<? super T, ?> converter, List<Link> links) {
+		this(cursor, converter, links, null);
+	}
+
+	/**
+	 * Creates a stream of unconverted records of a known type, so that converters can describe 
+	 *   the records, eg. in a schema, even when the stream is empty.
+	 * 
+	 * @param cursor open cursor over the query results.
+	 * @param recordType type of the records.
+	 */
+	public <T> ResponseStream(CloseableIterator<T> cursor, Class<T> recordType) {
+		this(cursor, Function.identity(), null, recordType);
+	}
+
+	public ResponseStream(CloseableIterator<?> cursor) {
+		this(cursor, Function.identity(), null, null);
+	}
+
+	/**
+	 * @param cursorSupplier opens the cursor over the query results, on first iteration.
+	 * @param converter function applied to each record before it is written.
+	 * @param links collection-level links, or null if the response is not a hypermedia resource.
+	 */
+	public <T> ResponseStream(Supplier<CloseableIterator<T>> cursorSupplier, Function<? super T, ?> converter, 
+			List<Link> links) {
+		this(cursorSupplier, null, converter, links, null);
+	}
+
+	/**
+	 * @param cursorSupplier opens the cursor over the query results, on first iteration.
+	 * @param recordType type of the records.
+	 */
+	public <T> ResponseStream(Supplier<CloseableIterator<T>> cursorSupplier, Class<T> recordType) {
+		this(cursorSupplier, null, Function.identity(), null, recordType);
+	}
+
+	private <T> ResponseStream(CloseableIterator<T> cursor, Function<? super T, ?> converter, List<Link> links, 
+			Class<?> recordType) {
+		this(null, cursor, converter, links, recordType);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> ResponseStream(Supplier<CloseableIterator<T>> cursorSupplier, CloseableIterator<T> cursor, 
+			Function<? super T, ?> converter, List<Link> links, Class<?> recordType) {
+		Assert.isTrue(cursorSupplier != null || cursor != null);
+		Assert.notNull(converter);
+		this.cursorSupplier = cursorSupplier;
+		this.cursor = cursor;
+		this.converter = (Function<Object, ?>) converter;
+		this.links = links;
+		this.recordType = recordType;
+	}
+
+	/**
+	 * Returns an iterator over the converted records.  The underlying cursor can only be traversed 
+	 *   once.
+	 */
+	@Override 
+	public Iterator<Object> iterator() {
+		Assert.state(!consumed, "Response stream has already been consumed.");
+		consumed = true;
+		if (cursor == null){
+			cursor = cursorSupplier.get();
+			Assert.state(cursor != null, "Cursor supplier returned null.");
+		}
+		final CloseableIterator<?> records = cursor;
+		return new Iterator<Object>() {
+			@Override 
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+			@Override 
+			public Object next() {
+				return converter.apply(records.next());
+			}
+		};
+	}
+
+	/**
+	 * Releases the underlying cursor, if it has been opened.
+	 */
+	@Override 
+	public void close() {
+		if (cursor != null) cursor.close();
+	}
+
+	/**
+	 * Whether the records should be wrapped in a hypermedia collection resource, with {@link #getLinks()}.
+	 */
+	public boolean isHypermedia() {
+		return links != null;
+	}
+
+	public List<Link> getLinks() {
+		return links;
+	}
+
+	/**
+	 * Returns the type of the records written, if known, or null.
+	 */
+	public Class<?> getRecordType() {
+		return recordType;
+	}
+	
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.web.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.oncoblocks.centromere.core.model.Model;
+import org.oncoblocks.centromere.core.model.ModelMetadata;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.core.repository.QueryParameterDescriptor;
+import org.oncoblocks.centromere.web.exceptions.InvalidParameterException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Query submitted as the JSON body of a {@code POST /search} request, as an alternative to query 
+ *   string parameters, whose length is limited.  The body is read token-by-token with a Jackson 
+ *   {@link JsonParser}, directly into {@link QueryCriteria}, so that large value lists are never 
+ *   held as an intermediate JSON tree.  All properties are optional:
+ * 
+ * <pre>
+ * {
+ *   "criteria": [
+ *     { "geneId": ["33", "45"] },
+ *     { "or": [ { "gene": "GeneA" }, { "signalGreaterThan": 3.0 } ] },
+ *     { "not": { "flag": "N" } },
+ *     { "signal": { "evaluation": "BETWEEN", "value": [1.0, 3.5] } }
+ *   ],
+ *   "sort": ["gene,desc"],
+ *   "fields": ["id", "gene"],
+ *   "exclude": ["links"],
+ *   "page": 0,
+ *   "size": 100,
+ *   "countStrategy": "EXACT",
+ *   "cursor": null
+ * }
+ * </pre>
+ * 
+ * Criteria are objects keyed by the same parameter names accepted in query strings, and are 
+ *   evaluated the same way, with arrays of values matching any value.  Keys of the same object, 
+ *   and the members of the {@code criteria} array, are combined with {@code AND}.  The 
+ *   {@code and}, {@code or}, and {@code not} keys create nested {@link QueryCriteriaGroup} 
+ *   instances from an object or array of criteria objects.  A value may instead be an object with 
+ *   an explicit {@link Evaluation} name and {@code value}, and a null value matches missing fields.  
+ *   Including {@code page} or {@code size} requests a paged response, and including 
+ *   {@code cursor} requests keyset pagination, as with the query string parameters of the same 
+ *   names.
+ * 
+ * @author woemler
+ * @since 0.4.1
+ */
+public class SearchRequest {
+
+	private final List<QueryCriteria> queryCriterias = new ArrayList<>();
+	private final List<Sort.Order> orders = new ArrayList<>();
+	private Set<String> fields = null;
+	private Set<String> exclude = null;
+	private Integer page = null;
+	private Integer size = null;
+	private boolean keyset = false;
+	private String cursor = null;
+	private CountStrategy countStrategy = null;
+
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private SearchRequest() { }
+
+	/**
+	 * Parses a JSON search request body.  Criteria parameter names and values are mapped to model 
+	 *   fields using the same annotations as query string parameters.
+	 *
+	 * @param inputStream request body.
+	 * @param model {@link Model} class being queried.
+	 * @return {@link SearchRequest}
+	 * @throws IOException if the body cannot be read.
+	 */
+	public static SearchRequest parse(InputStream inputStream, Class<? extends Model<?>> model) 
+			throws IOException {
+		SearchRequest request = new SearchRequest();
+		Map<String, QueryParameterDescriptor> paramMap = ModelMetadata.forModel(model).getQueryParameters();
+		try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT){
+				throw new InvalidParameterException("Search request body must be a JSON object.");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME){
+				String name = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				switch (name){
+					case "criteria":
+						if (token == JsonToken.START_ARRAY){
+							while (parser.nextToken() != JsonToken.END_ARRAY){
+								request.queryCriterias.addAll(parseCriteria(parser, paramMap));
+							}
+						} else {
+							request.queryCriterias.addAll(parseCriteria(parser, paramMap));
+						}
+						break;
+					case "sort":
+						for (String sort: parseStrings(parser)){
+							request.orders.add(parseOrder(sort, model));
+						}
+						break;
+					case "fields":
+						request.fields = new HashSet<>(parseStrings(parser));
+						break;
+					case "exclude":
+						request.exclude = new HashSet<>(parseStrings(parser));
+						break;
+					case "page":
+						request.page = parseInt(parser, name);
+						break;
+					case "size":
+						request.size = parseInt(parser, name);
+						break;
+					case "cursor":
+						request.keyset = true;
+						request.cursor = token == JsonToken.VALUE_NULL || "".equals(parser.getText().trim()) 
+								? null : parser.getText().trim();
+						break;
+					case "countStrategy":
+						try {
+							request.countStrategy = token == JsonToken.VALUE_NULL ? null 
+									: CountStrategy.valueOf(parser.getText().trim().toUpperCase());
+						} catch (IllegalArgumentException e){
+							throw new InvalidParameterException("Invalid countStrategy: " + parser.getText());
+						}
+						break;
+					default:
+						throw new InvalidParameterException("Invalid search request property: " + name);
+				}
+			}
+		} catch (JsonProcessingException e){
+			throw new InvalidParameterException("Malformed search request body: " + e.getOriginalMessage());
+		}
+		return request;
+	}
+
+	/**
+	 * Parses a criteria object, returning one {@link QueryCriteria} per key.
+	 */
+	private static List<QueryCriteria> parseCriteria(JsonParser parser, 
+			Map<String, QueryParameterDescriptor> paramMap) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT){
+			throw new InvalidParameterException("Search criteria must be JSON objects.");
+		}
+		List<QueryCriteria> queryCriterias = new ArrayList<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME){
+			String name = parser.getCurrentName();
+			parser.nextToken();
+			if ("and".equals(name) || "or".equals(name) || "not".equals(name)){
+				queryCriterias.add(parseGroup(parser, QueryCriteriaGroup.Operator.valueOf(name.toUpperCase()), 
+						paramMap));
+				continue;
+			}
+			QueryParameterDescriptor descriptor = paramMap.get(name);
+			if (descriptor == null){
+				throw new InvalidParameterException("Invalid search criteria parameter: " + name);
+			}
+			Evaluation evaluation = descriptor.getEvaluation();
+			List<Object> values;
+			if (parser.getCurrentToken() == JsonToken.START_OBJECT){
+				values = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME){
+					String key = parser.getCurrentName();
+					parser.nextToken();
+					if ("evaluation".equals(key)){
+						try {
+							evaluation = Evaluation.valueOf(parser.getText().trim().toUpperCase());
+						} catch (IllegalArgumentException e){
+							throw new InvalidParameterException("Invalid evaluation: " + parser.getText());
+						}
+					} else if ("value".equals(key)){
+						values = parseValues(parser);
+					} else {
+						throw new InvalidParameterException("Invalid search criteria property: " + key);
+					}
+				}
+				if (values == null) values = new ArrayList<>();
+			} else {
+				values = parseValues(parser);
+			}
+			queryCriterias.add(createCriteria(descriptor, values, evaluation, 
+					parser.getCurrentToken() == JsonToken.END_ARRAY));
+		}
+		return queryCriterias;
+	}
+
+	/**
+	 * Parses the object or array of criteria objects that make up a {@link QueryCriteriaGroup}.  
+	 *   Objects with several keys become nested {@code AND} groups.
+	 */
+	private static QueryCriteriaGroup parseGroup(JsonParser parser, QueryCriteriaGroup.Operator operator, 
+			Map<String, QueryParameterDescriptor> paramMap) throws IOException {
+		List<QueryCriteria> members = new ArrayList<>();
+		if (parser.getCurrentToken() == JsonToken.START_ARRAY){
+			while (parser.nextToken() != JsonToken.END_ARRAY){
+				List<QueryCriteria> criterias = parseCriteria(parser, paramMap);
+				if (criterias.size() == 1){
+					members.add(criterias.get(0));
+				} else if (!criterias.isEmpty()){
+					members.add(new QueryCriteriaGroup(QueryCriteriaGroup.Operator.AND, criterias));
+				}
+			}
+		} else {
+			members.addAll(parseCriteria(parser, paramMap));
+		}
+		if (members.isEmpty()){
+			throw new InvalidParameterException("Empty search criteria group: " + operator.toString().toLowerCase());
+		}
+		return new QueryCriteriaGroup(operator, members);
+	}
+
+	/**
+	 * Creates a {@link QueryCriteria} in the same way as for query string parameters.  Arrays of 
+	 *   values select {@code IN} evaluation even if they hold a single value.
+	 */
+	private static QueryCriteria createCriteria(QueryParameterDescriptor descriptor, List<Object> values, 
+			Evaluation evaluation, boolean array){
+		String field = descriptor.getFieldName();
+		if (values.size() == 1 && values.get(0) == null){
+			return new QueryCriteria(field, true, evaluation == Evaluation.NOT_EQUALS 
+					? Evaluation.NOT_NULL : Evaluation.IS_NULL);
+		}
+		if (evaluation == Evaluation.EQUALS && array) evaluation = Evaluation.IN;
+		if (evaluation == Evaluation.IN && values.isEmpty()){
+			return new QueryCriteria(field, values, Evaluation.IN);
+		}
+		int required;
+		switch (evaluation){
+			case IS_NULL: case NOT_NULL: case IS_TRUE: case IS_FALSE:
+				required = 0;
+				break;
+			case BETWEEN: case BETWEEN_INCLUSIVE: case OUTSIDE: case OUTSIDE_INCLUSIVE:
+				required = 2;
+				break;
+			default:
+				required = 1;
+		}
+		if (values.size() < required || values.contains(null)){
+			throw new InvalidParameterException(String.format("Invalid value for search criteria %s: %s", 
+					descriptor.getParamName(), values));
+		}
+		QueryCriteria criteria = RequestUtils.createCriteriaFromRequestParameter(field, values.toArray(), 
+				descriptor.getType(), evaluation);
+		if (criteria == null){
+			throw new InvalidParameterException("Unsupported search criteria evaluation: " + evaluation);
+		}
+		return criteria;
+	}
+
+	/**
+	 * Reads a scalar value or array of scalar values.
+	 */
+	private static List<Object> parseValues(JsonParser parser) throws IOException {
+		List<Object> values = new ArrayList<>();
+		if (parser.getCurrentToken() == JsonToken.START_ARRAY){
+			while (parser.nextToken() != JsonToken.END_ARRAY){
+				values.add(parseScalar(parser));
+			}
+		} else {
+			values.add(parseScalar(parser));
+		}
+		return values;
+	}
+
+	private static Object parseScalar(JsonParser parser) throws IOException {
+		switch (parser.getCurrentToken()){
+			case VALUE_STRING:
+				return parser.getText();
+			case VALUE_NUMBER_INT:
+				return parser.getNumberValue();
+			case VALUE_NUMBER_FLOAT:
+				return parser.getDoubleValue();
+			case VALUE_TRUE:
+				return true;
+			case VALUE_FALSE:
+				return false;
+			case VALUE_NULL:
+				return null;
+			default:
+				throw new InvalidParameterException("Search criteria values must be strings, numbers, or " 
+						+ "booleans: " + parser.getCurrentLocation());
+		}
+	}
+
+	private static List<String> parseStrings(JsonParser parser) throws IOException {
+		List<String> strings = new ArrayList<>();
+		for (Object value: parseValues(parser)){
+			if (value != null && !"".equals(value.toString().trim())) strings.add(value.toString().trim());
+		}
+		return strings;
+	}
+
+	private static Integer parseInt(JsonParser parser, String name) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.VALUE_NUMBER_INT || parser.getIntValue() < 0){
+			throw new InvalidParameterException(String.format("Invalid %s: %s", name, parser.getText()));
+		}
+		return parser.getIntValue();
+	}
+
+	/**
+	 * Parses a sort order in the same {@code property[,asc|desc]} format as the {@code sort} query 
+	 *   string parameter.
+	 */
+	private static Sort.Order parseOrder(String sort, Class<? extends Model<?>> model){
+		String[] bits = sort.split(",");
+		Sort.Direction direction = Sort.Direction.ASC;
+		if (bits.length > 1){
+			try {
+				direction = Sort.Direction.fromString(bits[1].trim());
+			} catch (IllegalArgumentException e){
+				throw new InvalidParameterException("Invalid sort: " + sort);
+			}
+		}
+		return new Sort.Order(direction, RequestUtils.remapParameterName(bits[0].trim(), model));
+	}
+
+	/**
+	 * Returns the requested page, size, and sort order, with a default page size of 
+	 *   {@value #DEFAULT_PAGE_SIZE}.
+	 */
+	public Pageable getPageable(){
+		return new PageRequest(page != null ? page : 0, size != null && size > 0 ? size : DEFAULT_PAGE_SIZE, 
+				orders.isEmpty() ? null : new Sort(orders));
+	}
+
+	/**
+	 * Returns true if a page or size was requested.
+	 */
+	public boolean isPaged(){
+		return page != null || size != null;
+	}
+
+	/**
+	 * Returns true if a cursor was included, even if null, requesting keyset pagination.
+	 */
+	public boolean isKeyset(){
+		return keyset;
+	}
+
+	public List<QueryCriteria> getQueryCriterias() {
+		return queryCriterias;
+	}
+
+	public Set<String> getFields() {
+		return fields;
+	}
+
+	public Set<String> getExclude() {
+		return exclude;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public CountStrategy getCountStrategy() {
+		return countStrategy;
+	}
+}
@@ -41,13 +41,31 @@ public interface WebServicesController<T extends Model<ID>, ID extends Serializa
 	HttpEntity<?> findById(ID id, HttpServletRequest request);
 
 	/**
-	 * {@code  GET  /distinct } - Fetches a list of distinct field values.
+	 * {@code  GET  /distinct } - Fetches a sorted list of distinct field values, optionally filtered
+	 *   by prefix and paged.
 	 * 
 	 * @param field
+	 * @param prefix
+	 * @param offset
+	 * @param limit
 	 * @param request
 	 * @return
 	 */
-	HttpEntity<?> findDistinct(String field, HttpServletRequest request);
+	HttpEntity<?> findDistinct(String field, String prefix, int offset, int limit, HttpServletRequest request);
+
+	/**
+	 * {@code  GET  /aggregate } - Fetches grouped summary metrics, such as counts and averages, for
+	 *   the records matching the query parameters.
+	 * 
+	 * @param groupBy
+	 * @param metrics
+	 * @param orderBy
+	 * @param limit
+	 * @param request
+	 * @return
+	 */
+	HttpEntity<?> aggregate(String[] groupBy, String[] metrics, String orderBy, int limit, 
+			HttpServletRequest request);
 
 	/**
 	 * {@code  GET  / } - Fetches one or more records, with optional filtering, paging, or 
@@ -37,15 +37,28 @@ public class ApiMediaTypes {
 	public static final MediaType APPLICATION_HAL_XML = new MediaType("application", "hal+xml");
 	public static final String TEXT_PLAIN_UTF8_VALUE = "text/plain; charset=utf-8";
 	public static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", Charset.forName("utf-8"));
+	public static final String TEXT_CSV_UTF8_VALUE = "text/csv; charset=utf-8";
+	public static final MediaType TEXT_CSV_UTF8 = new MediaType("text", "csv", Charset.forName("utf-8"));
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+	public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+	public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+	public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+	public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+	public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+	public static final String APPLICATION_MSGPACK_VALUE = "application/x-msgpack";
+	public static final MediaType APPLICATION_MSGPACK = new MediaType("application", "x-msgpack");
+	public static final String APPLICATION_ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+	public static final MediaType APPLICATION_ARROW_STREAM = new MediaType("application", "vnd.apache.arrow.stream");
 	
 	public static final String[] ACCEPTED_MEDIA_TYPE_VALUES = { 
 			APPLICATION_HAL_JSON_VALUE, APPLICATION_HAL_XML_VALUE, MediaType.APPLICATION_JSON_VALUE,
-			MediaType.APPLICATION_XML_VALUE, TEXT_PLAIN_UTF8_VALUE
+			MediaType.APPLICATION_XML_VALUE, TEXT_PLAIN_UTF8_VALUE, TEXT_CSV_UTF8_VALUE, 
+			APPLICATION_NDJSON_VALUE
 	};
 	
 	public static final MediaType[] ACCEPTED_MEDIA_TYPES = {
 			APPLICATION_HAL_JSON, APPLICATION_HAL_XML, MediaType.APPLICATION_JSON, 
-			MediaType.APPLICATION_XML, TEXT_PLAIN_UTF8
+			MediaType.APPLICATION_XML, TEXT_PLAIN_UTF8, TEXT_CSV_UTF8, APPLICATION_NDJSON
 	};
 	
 	public static boolean isHalMediaType(String mediaType){
@@ -78,4 +91,8 @@ public class ApiMediaTypes {
 		return Arrays.asList(MediaType.APPLICATION_XML, APPLICATION_HAL_XML);
 	}
 	
+	public static List<MediaType> getBinaryMediaTypes(){
+		return Arrays.asList(APPLICATION_SMILE, APPLICATION_CBOR, APPLICATION_MSGPACK);
+	}
+	
 }
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes tabular data in the Apache Arrow IPC streaming format 
+ *   (https://arrow.apache.org/docs/format/Columnar.html#ipc-streaming-format): a schema message, 
+ *   followed by any number of record batch messages, and an end-of-stream marker.  Each record 
+ *   batch holds its rows as contiguous, little-endian column buffers, which Arrow clients, such as 
+ *   pyarrow and the R arrow package, can read without per-row parsing.  Only the flat column types 
+ *   in {@link ColumnType} are supported, all columns are nullable, and buffers are not compressed.  
+ *   Message metadata is encoded with a minimal FlatBuffers writer, so that the Arrow Java libraries 
+ *   are not required.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class ArrowStreamWriter {
+	
+	private static final int CONTINUATION_MARKER = 0xFFFFFFFF;
+	private static final short METADATA_VERSION_V5 = 4;
+	private static final byte HEADER_SCHEMA = 1;
+	private static final byte HEADER_RECORD_BATCH = 3;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	private final OutputStream out;
+	private final List<Column> columns;
+	private boolean schemaWritten = false;
+
+	public ArrowStreamWriter(OutputStream out, List<Column> columns) {
+		Assert.notNull(out);
+		Assert.notNull(columns);
+		this.out = out;
+		this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+	}
+
+	/**
+	 * Writes the schema message, which must precede all record batches.
+	 */
+	public void writeSchema() throws IOException {
+		Assert.state(!schemaWritten, "Schema has already been written.");
+		List<FlatBufferWriter.Table> fields = new ArrayList<>();
+		for (Column column: columns){
+			fields.add(new FlatBufferWriter.Table()
+					.add(0, column.getName())
+					.add(1, true)
+					.add(2, column.getType().typeId)
+					.add(3, column.getType().getTypeTable())
+					.add(5, new FlatBufferWriter.TableVector(Collections.emptyList())));
+		}
+		FlatBufferWriter.Table schema = new FlatBufferWriter.Table()
+				.add(0, (short) 0) // little endian
+				.add(1, new FlatBufferWriter.TableVector(fields));
+		writeMessage(HEADER_SCHEMA, schema, new byte[0]);
+		schemaWritten = true;
+	}
+
+	/**
+	 * Writes a record batch containing the given rows, whose values must be in column order.  Null 
+	 *   values are supported for all column types.
+	 * 
+	 * @param rows row values, in column order.
+	 */
+	public void writeBatch(List<Object[]> rows) throws IOException {
+		Assert.state(schemaWritten, "Schema must be written before record batches.");
+		int length = rows.size();
+		long[] nodes = new long[columns.size() * 2];
+		List<Long> buffers = new ArrayList<>();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (int c = 0; c < columns.size(); c++){
+			ColumnType type = columns.get(c).getType();
+			byte[] validity = new byte[(length + 7) / 8];
+			int nullCount = 0;
+			for (int r = 0; r < length; r++){
+				if (rows.get(r)[c] == null){
+					nullCount++;
+				} else {
+					validity[r / 8] |= 1 << (r % 8);
+				}
+			}
+			nodes[c * 2] = length;
+			nodes[c * 2 + 1] = nullCount;
+			appendBuffer(body, buffers, nullCount > 0 ? validity : new byte[0]);
+			for (byte[] buffer: type.getBuffers(rows, c)){
+				appendBuffer(body, buffers, buffer);
+			}
+		}
+		long[] bufferArray = new long[buffers.size()];
+		for (int i = 0; i < bufferArray.length; i++) bufferArray[i] = buffers.get(i);
+		FlatBufferWriter.Table recordBatch = new FlatBufferWriter.Table()
+				.add(0, (long) length)
+				.add(1, new FlatBufferWriter.StructVector(nodes, 2))
+				.add(2, new FlatBufferWriter.StructVector(bufferArray, 2));
+		writeMessage(HEADER_RECORD_BATCH, recordBatch, body.toByteArray());
+	}
+
+	/**
+	 * Writes the end-of-stream marker and flushes the output.
+	 */
+	public void writeEndOfStream() throws IOException {
+		if (!schemaWritten) writeSchema();
+		writeInt(out, CONTINUATION_MARKER);
+		writeInt(out, 0);
+		out.flush();
+	}
+
+	public List<Column> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Appends a buffer to the message body, padded to a multiple of 8 bytes, and records its offset 
+	 *   and unpadded length.
+	 */
+	private static void appendBuffer(ByteArrayOutputStream body, List<Long> buffers, byte[] buffer){
+		buffers.add((long) body.size());
+		buffers.add((long) buffer.length);
+		body.write(buffer, 0, buffer.length);
+		body.write(new byte[padding(buffer.length)], 0, padding(buffer.length));
+	}
+
+	/**
+	 * Writes an encapsulated message: continuation marker, metadata length, {@code Message} 
+	 *   flatbuffer padded to an 8-byte boundary, and the message body.
+	 */
+	private void writeMessage(byte headerType, FlatBufferWriter.Table header, byte[] body) throws IOException {
+		FlatBufferWriter.Table message = new FlatBufferWriter.Table()
+				.add(0, METADATA_VERSION_V5)
+				.add(1, headerType)
+				.add(2, header)
+				.add(3, (long) body.length);
+		byte[] metadata = new FlatBufferWriter().finish(message);
+		int metadataLength = metadata.length + padding(metadata.length);
+		writeInt(out, CONTINUATION_MARKER);
+		writeInt(out, metadataLength);
+		out.write(metadata);
+		out.write(new byte[metadataLength - metadata.length]);
+		out.write(body);
+	}
+	
+	private static int padding(int length){
+		return (8 - length % 8) % 8;
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	/**
+	 * Named, nullable column of a single {@link ColumnType}.
+	 */
+	public static class Column {
+		
+		private final String name;
+		private final ColumnType type;
+
+		public Column(String name, ColumnType type) {
+			Assert.notNull(name);
+			Assert.notNull(type);
+			this.name = name;
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public ColumnType getType() {
+			return type;
+		}
+	}
+
+	/**
+	 * Supported Arrow column types, and their buffer layouts.
+	 */
+	public enum ColumnType {
+		
+		INT32((byte) 2) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table().add(0, 32).add(1, true);
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				LittleEndianBuffer values = new LittleEndianBuffer(rows.size() * 4);
+				for (Object[] row: rows) values.putInt(row[column] == null ? 0 : ((Number) row[column]).intValue());
+				return Collections.singletonList(values.array());
+			}
+		},
+		INT64((byte) 2) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table().add(0, 64).add(1, true);
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				LittleEndianBuffer values = new LittleEndianBuffer(rows.size() * 8);
+				for (Object[] row: rows) values.putLong(row[column] == null ? 0L : ((Number) row[column]).longValue());
+				return Collections.singletonList(values.array());
+			}
+		},
+		FLOAT32((byte) 3) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table().add(0, (short) 1);
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				LittleEndianBuffer values = new LittleEndianBuffer(rows.size() * 4);
+				for (Object[] row: rows) {
+					values.putInt(Float.floatToRawIntBits(row[column] == null ? 0f : ((Number) row[column]).floatValue()));
+				}
+				return Collections.singletonList(values.array());
+			}
+		},
+		FLOAT64((byte) 3) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table().add(0, (short) 2);
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				LittleEndianBuffer values = new LittleEndianBuffer(rows.size() * 8);
+				for (Object[] row: rows) {
+					values.putLong(Double.doubleToRawLongBits(row[column] == null ? 0d : ((Number) row[column]).doubleValue()));
+				}
+				return Collections.singletonList(values.array());
+			}
+		},
+		BOOL((byte) 6) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table();
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				byte[] values = new byte[(rows.size() + 7) / 8];
+				for (int r = 0; r < rows.size(); r++){
+					if (Boolean.TRUE.equals(rows.get(r)[column])) values[r / 8] |= 1 << (r % 8);
+				}
+				return Collections.singletonList(values);
+			}
+		},
+		UTF8((byte) 5) {
+			@Override FlatBufferWriter.Table getTypeTable() {
+				return new FlatBufferWriter.Table();
+			}
+			@Override List<byte[]> getBuffers(List<Object[]> rows, int column) {
+				LittleEndianBuffer offsets = new LittleEndianBuffer((rows.size() + 1) * 4);
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				offsets.putInt(0);
+				for (Object[] row: rows){
+					if (row[column] != null){
+						byte[] bytes = row[column].toString().getBytes(CHARSET);
+						data.write(bytes, 0, bytes.length);
+					}
+					offsets.putInt(data.size());
+				}
+				return Arrays.asList(offsets.array(), data.toByteArray());
+			}
+		};
+		
+		private final byte typeId;
+
+		ColumnType(byte typeId) {
+			this.typeId = typeId;
+		}
+
+		/**
+		 * Returns the {@code Type} union table describing the column type.
+		 */
+		abstract FlatBufferWriter.Table getTypeTable();
+
+		/**
+		 * Encodes the values of one column of a record batch into its buffers, following the 
+		 *   validity bitmap.
+		 */
+		abstract List<byte[]> getBuffers(List<Object[]> rows, int column);
+
+		/**
+		 * Returns the column type used to represent values of the given Java type.  Types without a 
+		 *   numeric or boolean representation are written as strings.
+		 */
+		public static ColumnType forClass(Class<?> type){
+			if (Integer.class.equals(type) || Integer.TYPE.equals(type) || Short.class.equals(type) 
+					|| Short.TYPE.equals(type) || Byte.class.equals(type) || Byte.TYPE.equals(type)){
+				return INT32;
+			} else if (Long.class.equals(type) || Long.TYPE.equals(type)){
+				return INT64;
+			} else if (Float.class.equals(type) || Float.TYPE.equals(type)){
+				return FLOAT32;
+			} else if (Double.class.equals(type) || Double.TYPE.equals(type)){
+				return FLOAT64;
+			} else if (Boolean.class.equals(type) || Boolean.TYPE.equals(type)){
+				return BOOL;
+			} else {
+				return UTF8;
+			}
+		}
+	}
+
+	/**
+	 * Fixed-size, little-endian byte buffer.
+	 */
+	private static class LittleEndianBuffer {
+		
+		private final byte[] bytes;
+		private int position = 0;
+
+		LittleEndianBuffer(int size) {
+			this.bytes = new byte[size];
+		}
+		
+		void putInt(int value){
+			for (int i = 0; i < 4; i++) bytes[position++] = (byte) (value >>> (8 * i));
+		}
+		
+		void putLong(long value){
+			for (int i = 0; i < 8; i++) bytes[position++] = (byte) (value >>> (8 * i));
+		}
+		
+		byte[] array(){
+			return bytes;
+		}
+	}
+
+	/**
+	 * Minimal FlatBuffers encoder, sufficient for Arrow message metadata.  Objects are laid out 
+	 *   front-to-back: each table's vtable immediately precedes it, and the strings, vectors, and 
+	 *   tables it references follow it, so that all offsets to referenced objects point forward, as 
+	 *   the format requires.  All values are aligned to their size.
+	 */
+	static class FlatBufferWriter {
+		
+		private byte[] bytes = new byte[256];
+		private int position = 0;
+
+		/**
+		 * Encodes the root table and returns the finished buffer.
+		 */
+		byte[] finish(Table root){
+			int rootReference = reserve(4, 4);
+			writeTable(root, rootReference);
+			return Arrays.copyOf(bytes, position);
+		}
+		
+		private void writeTable(Table table, int reference){
+			// Lay out the inline fields after the 4-byte vtable offset, largest first.
+			List<Map.Entry<Integer, Object>> fields = new ArrayList<>(table.fields.entrySet());
+			fields.sort((a, b) -> Integer.compare(inlineSize(b.getValue()), inlineSize(a.getValue())));
+			int[] fieldOffsets = new int[table.getSlotCount()];
+			int size = 4;
+			int alignment = 4;
+			for (Map.Entry<Integer, Object> field: fields){
+				int fieldSize = inlineSize(field.getValue());
+				size = align(size, fieldSize);
+				fieldOffsets[field.getKey()] = size;
+				size += fieldSize;
+				alignment = Math.max(alignment, fieldSize);
+			}
+			// vtable
+			int vtable = reserve(4 + 2 * fieldOffsets.length, 2);
+			putShort(vtable, (short) (4 + 2 * fieldOffsets.length));
+			putShort(vtable + 2, (short) size);
+			for (int i = 0; i < fieldOffsets.length; i++){
+				putShort(vtable + 4 + 2 * i, (short) fieldOffsets[i]);
+			}
+			// table
+			int start = reserve(size, alignment);
+			putInt(start, start - vtable);
+			putInt(reference, start - reference);
+			Map<Integer, Object> references = new LinkedHashMap<>();
+			for (Map.Entry<Integer, Object> field: fields){
+				int offset = start + fieldOffsets[field.getKey()];
+				Object value = field.getValue();
+				if (value instanceof Boolean){
+					bytes[offset] = (byte) ((Boolean) value ? 1 : 0);
+				} else if (value instanceof Byte){
+					bytes[offset] = (Byte) value;
+				} else if (value instanceof Short){
+					putShort(offset, (Short) value);
+				} else if (value instanceof Integer){
+					putInt(offset, (Integer) value);
+				} else if (value instanceof Long){
+					putLong(offset, (Long) value);
+				} else {
+					references.put(offset, value);
+				}
+			}
+			// referenced objects
+			for (Map.Entry<Integer, Object> entry: references.entrySet()){
+				writeObject(entry.getValue(), entry.getKey());
+			}
+		}
+		
+		private void writeObject(Object value, int reference){
+			if (value instanceof Table){
+				writeTable((Table) value, reference);
+			} else if (value instanceof String){
+				byte[] string = ((String) value).getBytes(CHARSET);
+				int start = reserve(4 + string.length + 1, 4);
+				putInt(start, string.length);
+				System.arraycopy(string, 0, bytes, start + 4, string.length);
+				putInt(reference, start - reference);
+			} else if (value instanceof TableVector){
+				List<Table> tables = ((TableVector) value).tables;
+				int start = reserve(4 + 4 * tables.size(), 4);
+				putInt(start, tables.size());
+				putInt(reference, start - reference);
+				for (int i = 0; i < tables.size(); i++){
+					writeTable(tables.get(i), start + 4 + 4 * i);
+				}
+			} else if (value instanceof StructVector){
+				StructVector vector = (StructVector) value;
+				// The length prefix is placed so that the 8-byte aligned struct values follow it.
+				while ((position + 4) % 8 != 0) position++;
+				int start = reserve(4 + 8 * vector.values.length, 4);
+				putInt(start, vector.values.length / vector.longsPerStruct);
+				for (int i = 0; i < vector.values.length; i++){
+					putLong(start + 4 + 8 * i, vector.values[i]);
+				}
+				putInt(reference, start - reference);
+			} else {
+				throw new IllegalArgumentException("Unsupported flatbuffer value: " + value);
+			}
+		}
+		
+		private static int inlineSize(Object value){
+			if (value instanceof Boolean || value instanceof Byte) return 1;
+			if (value instanceof Short) return 2;
+			if (value instanceof Long) return 8;
+			return 4; // int or offset
+		}
+		
+		private static int align(int offset, int alignment){
+			return (offset + alignment - 1) / alignment * alignment;
+		}
+
+		/**
+		 * Reserves {@code size} zeroed bytes at the next position aligned to {@code alignment}.
+		 */
+		private int reserve(int size, int alignment){
+			int start = align(position, alignment);
+			position = start + size;
+			if (position > bytes.length){
+				bytes = Arrays.copyOf(bytes, Math.max(position, bytes.length * 2));
+			}
+			return start;
+		}
+		
+		private void putShort(int offset, short value){
+			bytes[offset] = (byte) value;
+			bytes[offset + 1] = (byte) (value >>> 8);
+		}
+
+		private void putInt(int offset, int value){
+			for (int i = 0; i < 4; i++) bytes[offset + i] = (byte) (value >>> (8 * i));
+		}
+
+		private void putLong(int offset, long value){
+			for (int i = 0; i < 8; i++) bytes[offset + i] = (byte) (value >>> (8 * i));
+		}
+
+		/**
+		 * Table with fields identified by their schema slot index.  Values may be booleans, bytes, 
+		 *   shorts, ints, longs, strings, tables, or vectors.
+		 */
+		static class Table {
+			
+			private final Map<Integer, Object> fields = new LinkedHashMap<>();
+			
+			Table add(int slot, Object value){
+				fields.put(slot, value);
+				return this;
+			}
+			
+			int getSlotCount(){
+				int count = 0;
+				for (Integer slot: fields.keySet()) count = Math.max(count, slot + 1);
+				return count;
+			}
+		}
+
+		/**
+		 * Vector of tables.
+		 */
+		static class TableVector {
+			
+			private final List<Table> tables;
+
+			TableVector(List<Table> tables) {
+				this.tables = tables;
+			}
+		}
+
+		/**
+		 * Vector of structs made up of 8-byte fields.
+		 */
+		static class StructVector {
+			
+			private final long[] values;
+			private final int longsPerStruct;
+
+			StructVector(long[] values, int longsPerStruct) {
+				this.values = values;
+				this.longsPerStruct = longsPerStruct;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves and caches the fields written for a record class by the reflective message converters, 
+ *   given the field inclusion and exclusion sets of a {@link org.oncoblocks.centromere.web.controller.ResponseEnvelope}.
+ *   A plan contains the class's non-static, non-synthetic declared fields, in declaration order, 
+ *   with access checks already suppressed, so that each record can be written without repeating 
+ *   the reflection lookups.  If included fields are specified, excluded fields are ignored.
+ * 
+ * @author woemler
+ * @since 0.4.1
+ */
+class FieldPlanCache {
+
+	private static final long MAX_CACHED_PLANS = 1000;
+
+	private final Cache<PlanKey, List<Field>> plans = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_PLANS)
+			.build();
+
+	/**
+	 * Returns the fields of the target class that should be written, given the field filter.
+	 * 
+	 * @param type record class.
+	 * @param includedFields fields to include, or null or empty for all fields.
+	 * @param excludedFields fields to exclude, or null or empty for none.
+	 * @return immutable list of accessible fields.
+	 */
+	public List<Field> getFields(Class<?> type, Set<String> includedFields, Set<String> excludedFields){
+		PlanKey key = new PlanKey(type,
+				includedFields != null && !includedFields.isEmpty() ? ImmutableSet.copyOf(includedFields) : null,
+				excludedFields != null && !excludedFields.isEmpty() ? ImmutableSet.copyOf(excludedFields) : null);
+		try {
+			return plans.get(key, () -> {
+				List<Field> fields = new ArrayList<>();
+				for (Field field: type.getDeclaredFields()){
+					if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+					if (key.include != null){
+						if (!key.include.contains(field.getName())) continue;
+					} else if (key.exclude != null && key.exclude.contains(field.getName())){
+						continue;
+					}
+					field.setAccessible(true);
+					fields.add(field);
+				}
+				return ImmutableList.copyOf(fields);
+			});
+		} catch (ExecutionException e){
+			throw new HttpMessageNotWritableException("Could not resolve fields for " + type.getName(), e.getCause());
+		}
+	}
+
+	/**
+	 * Reads the value of a planned field from the target record.
+	 */
+	public static Object getValue(Field field, Object record){
+		try {
+			return field.get(record);
+		} catch (IllegalAccessException e){
+			throw new HttpMessageNotWritableException("Could not read field " + field.getName(), e);
+		}
+	}
+
+	/**
+	 * Identifies a cached plan by record class and normalized field filter.
+	 */
+	private static final class PlanKey {
+
+		private final Class<?> type;
+		private final Set<String> include;
+		private final Set<String> exclude;
+
+		public PlanKey(Class<?> type, Set<String> include, Set<String> exclude) {
+			this.type = type;
+			this.include = include;
+			this.exclude = exclude;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof PlanKey)) return false;
+			PlanKey that = (PlanKey) o;
+			return type.equals(that.type)
+					&& (include != null ? include.equals(that.include) : that.include == null)
+					&& (exclude != null ? exclude.equals(that.exclude) : that.exclude == null);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = type.hashCode();
+			result = 31 * result + (include != null ? include.hashCode() : 0);
+			result = 31 * result + (exclude != null ? exclude.hashCode() : 0);
+			return result;
+		}
+	}
+
+}
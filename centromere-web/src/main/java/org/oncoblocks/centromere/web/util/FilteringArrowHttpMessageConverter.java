@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes collection responses as an Apache Arrow IPC stream, with one column per model attribute, 
+ *   so that columnar clients, such as pandas and R, can load results without parsing individual 
+ *   records.  Columns are the entity's serializable properties, as determined by the configured 
+ *   {@link ObjectMapper}, filtered using {@link ResponseEnvelope} field inclusions and exclusions.  
+ *   Integer, floating-point, and boolean properties are written as Arrow numeric and boolean 
+ *   columns; collections, maps, and arrays are written as JSON strings, and all other values as 
+ *   strings.  Records are written in batches of {@code batchSize} as they are read from a 
+ *   {@link ResponseStream}, so memory use is bounded by the batch size.  Page metadata and 
+ *   hypermedia links are not included in the output.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class FilteringArrowHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+	
+	private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	private int batchSize = 10000;
+
+	public FilteringArrowHttpMessageConverter() {
+		super(ApiMediaTypes.APPLICATION_ARROW_STREAM);
+	}
+
+	@Override 
+	protected boolean supports(Class<?> aClass) {
+		return ResponseEnvelope.class.equals(aClass)
+				|| ResponseStream.class.equals(aClass)
+				|| Collection.class.isAssignableFrom(aClass)
+				|| Slice.class.isAssignableFrom(aClass);
+	}
+
+	@Override 
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override 
+	protected Object readInternal(Class<?> aClass, HttpInputMessage httpInputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		throw new HttpMessageNotReadableException("Reading Arrow IPC streams is not supported.");
+	}
+
+	@Override 
+	protected void writeInternal(Object o, HttpOutputMessage httpOutputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		
+		Set<String> fieldSet = null;
+		Set<String> exclude = null;
+		Object entity = o;
+		if (o instanceof ResponseEnvelope){
+			fieldSet = ((ResponseEnvelope) o).getFieldSet();
+			exclude = ((ResponseEnvelope) o).getExclude();
+			entity = ((ResponseEnvelope) o).getEntity();
+		}
+		
+		Iterable<?> records;
+		if (entity == null){
+			records = Collections.emptyList();
+		} else if (entity instanceof ResponseStream || entity instanceof Collection){
+			records = (Iterable<?>) entity;
+		} else if (entity instanceof Slice){
+			records = ((Slice<?>) entity).getContent();
+		} else {
+			records = Collections.singletonList(entity);
+		}
+		
+		try {
+			Iterator<?> iterator = records.iterator();
+			Object first = iterator.hasNext() ? iterator.next() : null;
+			Class<?> type = first != null ? first.getClass() 
+					: entity instanceof ResponseStream ? ((ResponseStream) entity).getRecordType() : null;
+			List<AnnotatedMember> accessors = new ArrayList<>();
+			List<ArrowStreamWriter.Column> columns = new ArrayList<>();
+			if (type != null){
+				getColumns(type, fieldSet, exclude, columns, accessors);
+			}
+			ArrowStreamWriter writer = new ArrowStreamWriter(httpOutputMessage.getBody(), columns);
+			writer.writeSchema();
+			List<Object[]> batch = new ArrayList<>();
+			if (first != null){
+				batch.add(getRow(first, columns, accessors));
+			}
+			while (iterator.hasNext()){
+				Object record = iterator.next();
+				if (record == null) continue;
+				if (batch.size() >= batchSize){
+					writer.writeBatch(batch);
+					httpOutputMessage.getBody().flush();
+					batch = new ArrayList<>();
+				}
+				batch.add(getRow(record, columns, accessors));
+			}
+			if (!batch.isEmpty()){
+				writer.writeBatch(batch);
+			}
+			writer.writeEndOfStream();
+		} finally {
+			if (entity instanceof ResponseStream){
+				((ResponseStream) entity).close();
+			}
+		}
+		
+	}
+
+	/**
+	 * Resolves the serializable properties of the record type, and the Arrow column used to 
+	 *   represent each, in serialization order.
+	 */
+	private void getColumns(Class<?> type, Set<String> fieldSet, Set<String> exclude, 
+			List<ArrowStreamWriter.Column> columns, List<AnnotatedMember> accessors){
+		List<BeanPropertyDefinition> properties = objectMapper.getSerializationConfig()
+				.introspect(objectMapper.constructType(type)).findProperties();
+		for (BeanPropertyDefinition property: properties){
+			if (!property.couldSerialize() || property.getAccessor() == null) continue;
+			String name = property.getName();
+			if (fieldSet != null && !fieldSet.isEmpty()){
+				if (!fieldSet.contains(name)) continue;
+			} else if (exclude != null && exclude.contains(name)){
+				continue;
+			}
+			AnnotatedMember accessor = property.getAccessor();
+			accessor.fixAccess();
+			accessors.add(accessor);
+			columns.add(new ArrowStreamWriter.Column(name, ArrowStreamWriter.ColumnType.forClass(accessor.getRawType())));
+		}
+	}
+
+	/**
+	 * Extracts a record's column values, converting non-numeric, non-boolean values to strings.
+	 */
+	private Object[] getRow(Object record, List<ArrowStreamWriter.Column> columns, List<AnnotatedMember> accessors) 
+			throws JsonProcessingException {
+		Object[] row = new Object[columns.size()];
+		for (int i = 0; i < row.length; i++){
+			Object value = accessors.get(i).getValue(record);
+			if (value != null && columns.get(i).getType() == ArrowStreamWriter.ColumnType.UTF8){
+				if (value instanceof Collection || value instanceof Map || value.getClass().isArray()){
+					value = objectMapper.writeValueAsString(value);
+				} else {
+					value = value.toString();
+				}
+			}
+			row[i] = value;
+		}
+		return row;
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	/**
+	 * Sets the {@link ObjectMapper} used to resolve record properties and to encode nested values.
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		Assert.notNull(objectMapper);
+		this.objectMapper = objectMapper;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of records written in each Arrow record batch.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than zero.");
+		this.batchSize = batchSize;
+	}
+	
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import org.springframework.beans.BeanUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.util.Arrays;
+
+/**
+ * {@link FilteringJackson2HttpMessageConverter} for binary Jackson data formats, such as Smile, CBOR, 
+ *   and MessagePack, which encode numeric values and repeated field names more compactly, and more 
+ *   cheaply, than JSON text.  The {@link ObjectMapper} is configured with the same defaults as the 
+ *   JSON converter, but is backed by the format's {@link JsonFactory}, so responses support the same 
+ *   {@link org.oncoblocks.centromere.web.controller.ResponseEnvelope} field filtering.  Supported 
+ *   formats are listed in {@link BinaryFormat}, and are only available when their Jackson data 
+ *   format module is on the classpath.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class FilteringBinaryJackson2HttpMessageConverter extends FilteringJackson2HttpMessageConverter {
+
+	public FilteringBinaryJackson2HttpMessageConverter(JsonFactory jsonFactory, MediaType... supportedMediaTypes) {
+		super();
+		Assert.notNull(jsonFactory);
+		Assert.notEmpty(supportedMediaTypes);
+		ObjectMapper objectMapper = new ObjectMapper(jsonFactory);
+		Jackson2ObjectMapperBuilder.json().configure(objectMapper);
+		setObjectMapper(objectMapper);
+		setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+	}
+
+	/**
+	 * Binary formats have no textual layout, so pretty printing is always disabled.
+	 */
+	@Override 
+	protected ObjectWriter createObjectWriter(Class<?> type, FilterProvider filters) {
+		return super.createObjectWriter(type, filters).without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	/**
+	 * Binary Jackson data formats, identified by their {@link JsonFactory} implementation.
+	 */
+	public enum BinaryFormat {
+		
+		SMILE("com.fasterxml.jackson.dataformat.smile.SmileFactory", ApiMediaTypes.APPLICATION_SMILE),
+		CBOR("com.fasterxml.jackson.dataformat.cbor.CBORFactory", ApiMediaTypes.APPLICATION_CBOR),
+		MESSAGE_PACK("org.msgpack.jackson.dataformat.MessagePackFactory", ApiMediaTypes.APPLICATION_MSGPACK);
+		
+		private final String factoryClassName;
+		private final MediaType mediaType;
+
+		BinaryFormat(String factoryClassName, MediaType mediaType) {
+			this.factoryClassName = factoryClassName;
+			this.mediaType = mediaType;
+		}
+
+		/**
+		 * Whether the format's Jackson data format module is on the classpath.
+		 */
+		public boolean isAvailable(){
+			return ClassUtils.isPresent(factoryClassName, BinaryFormat.class.getClassLoader());
+		}
+
+		/**
+		 * Creates a converter for the format.
+		 * 
+		 * @return {@link FilteringBinaryJackson2HttpMessageConverter}
+		 * @throws IllegalStateException if the format's data format module is not on the classpath.
+		 */
+		public FilteringBinaryJackson2HttpMessageConverter createConverter(){
+			Assert.state(isAvailable(), String.format("%s support requires %s on the classpath.", 
+					name(), factoryClassName));
+			Class<?> factoryClass = ClassUtils.resolveClassName(factoryClassName, BinaryFormat.class.getClassLoader());
+			JsonFactory jsonFactory = (JsonFactory) BeanUtils.instantiate(factoryClass);
+			return new FilteringBinaryJackson2HttpMessageConverter(jsonFactory, mediaType);
+		}
+
+		public String getFactoryClassName() {
+			return factoryClassName;
+		}
+
+		public MediaType getMediaType() {
+			return mediaType;
+		}
+	}
+	
+}
@@ -19,10 +19,16 @@ package org.oncoblocks.centromere.web.util;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.converter.HttpMessageNotWritableException;
@@ -30,18 +36,29 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Uses {@link org.oncoblocks.centromere.web.controller.ResponseEnvelope} to identify filterable entities and 
- *   filters or includes fields based upon request parameters.
+ *   filters or includes fields based upon request parameters.  Field filters are applied through 
+ *   {@link ObjectWriter} instances that are cached per entity type and normalized field set, so the 
+ *   shared {@link ObjectMapper} is never modified while handling requests, and each writer's root 
+ *   serializer is resolved only once.
  * 
  * @author woemler 
  */
 
 public class FilteringJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
 
+	private static final String FILTER_ID = "fieldFilter";
+	private static final long MAX_CACHED_WRITERS = 1000;
+
 	private boolean prefixJson = false;
+	private final Cache<WriterKey, ObjectWriter> writerCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_WRITERS)
+			.build();
 
 	@Override
 	public void setPrefixJson(boolean prefixJson) {
@@ -49,6 +66,22 @@ public class FilteringJackson2HttpMessageConverter extends MappingJackson2HttpMe
 		super.setPrefixJson(prefixJson);
 	}
 
+	/**
+	 * Cached writers capture the mapper's configuration when they are created, so they are discarded 
+	 *   whenever the mapper or its configuration changes.
+	 */
+	@Override
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		super.setObjectMapper(objectMapper);
+		invalidateWriterCache();
+	}
+
+	@Override
+	public void setPrettyPrint(boolean prettyPrint) {
+		super.setPrettyPrint(prettyPrint);
+		invalidateWriterCache();
+	}
+
 	@Override
 	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
 			throws IOException, HttpMessageNotWritableException {
@@ -62,41 +95,25 @@ public class FilteringJackson2HttpMessageConverter extends MappingJackson2HttpMe
 				jsonGenerator.writeRaw(")]}', ");
 			}
 
-			if (object instanceof ResponseEnvelope) {
-				
+			Object entity = object;
+			Set<String> fieldSet = null;
+			Set<String> exclude = null;
+			if (object instanceof ResponseEnvelope){
 				ResponseEnvelope envelope = (ResponseEnvelope) object;
-				Object entity = envelope.getEntity();
-				Set<String> fieldSet = envelope.getFieldSet();
-				Set<String> exclude = envelope.getExclude();
-				FilterProvider filters = null;
-				
-				if (fieldSet != null && !fieldSet.isEmpty()) {
-					if (entity instanceof ResourceSupport){
-						fieldSet.add("content"); // Don't filter out the wrapped content.
-					}
-					filters = new SimpleFilterProvider()
-							.addFilter("fieldFilter", SimpleBeanPropertyFilter.filterOutAllExcept(fieldSet))
-								.setFailOnUnknownId(false);
-				} else if (exclude != null && !exclude.isEmpty()) {
-					filters = new SimpleFilterProvider()
-							.addFilter("fieldFilter", SimpleBeanPropertyFilter.serializeAllExcept(exclude))
-								.setFailOnUnknownId(false);
-				} else {
-					filters = new SimpleFilterProvider()
-							.addFilter("fieldFilter", SimpleBeanPropertyFilter.serializeAllExcept())
-								.setFailOnUnknownId(false);
-				}
-				
-				objectMapper.setFilterProvider(filters);
-				objectMapper.writeValue(jsonGenerator, entity);
-
-			} else if (object == null){
+				entity = envelope.getEntity();
+				fieldSet = envelope.getFieldSet();
+				exclude = envelope.getExclude();
+			}
+			
+			if (entity == null){
 				jsonGenerator.writeNull();
+			} else if (entity instanceof ResponseStream){
+				writeStream(jsonGenerator, (ResponseStream) entity, fieldSet, exclude);
 			} else {
-				FilterProvider filters = new SimpleFilterProvider().setFailOnUnknownId(false);
-				objectMapper.setFilterProvider(filters);
-				objectMapper.writeValue(jsonGenerator, object);
+				getObjectWriter(entity, fieldSet, exclude).writeValue(jsonGenerator, entity);
 			}
+			
+			jsonGenerator.flush();
 
 		} catch (JsonProcessingException e){
 			e.printStackTrace();
@@ -104,4 +121,164 @@ public class FilteringJackson2HttpMessageConverter extends MappingJackson2HttpMe
 		}
 
 	}
+
+	/**
+	 * Writes the records of a {@link ResponseStream} one at a time as they are read from the 
+	 *   underlying cursor, as a JSON array, or as the {@code content} of a collection resource if 
+	 *   the stream carries hypermedia links.  The response is flushed once the first record has been 
+	 *   written, and the stream is always closed.
+	 */
+	private void writeStream(JsonGenerator jsonGenerator, ResponseStream stream, Set<String> fieldSet, 
+			Set<String> exclude) throws IOException {
+		try {
+			if (stream.isHypermedia()){
+				jsonGenerator.writeStartObject();
+				jsonGenerator.writeFieldName("links");
+				getObjectWriter(new WriterKey(stream.getLinks().getClass(), null, null))
+						.writeValue(jsonGenerator, stream.getLinks());
+				jsonGenerator.writeFieldName("content");
+			}
+			jsonGenerator.writeStartArray();
+			Class<?> type = null;
+			ObjectWriter writer = null;
+			boolean first = true;
+			for (Object record: stream){
+				if (record == null){
+					jsonGenerator.writeNull();
+				} else {
+					if (!record.getClass().equals(type)){
+						type = record.getClass();
+						writer = getObjectWriter(record, fieldSet, exclude);
+					}
+					writer.writeValue(jsonGenerator, record);
+				}
+				if (first){
+					jsonGenerator.flush();
+					first = false;
+				}
+			}
+			jsonGenerator.writeEndArray();
+			if (stream.isHypermedia()){
+				jsonGenerator.writeEndObject();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Normalizes the requested field inclusions and exclusions into a cache key.  Field inclusion takes 
+	 *   precedence over exclusion, and the wrapped content of {@link ResourceSupport} entities is 
+	 *   always included.
+	 */
+	private WriterKey getWriterKey(Object entity, Set<String> fieldSet, Set<String> exclude){
+		if (fieldSet != null && !fieldSet.isEmpty()) {
+			Set<String> fields = new HashSet<>(fieldSet);
+			if (entity instanceof ResourceSupport){
+				fields.add("content"); // Don't filter out the wrapped content.
+			}
+			return new WriterKey(entity.getClass(), ImmutableSet.copyOf(fields), null);
+		} else if (exclude != null && !exclude.isEmpty()) {
+			return new WriterKey(entity.getClass(), null, ImmutableSet.copyOf(exclude));
+		} else {
+			return new WriterKey(entity.getClass(), null, null);
+		}
+	}
+
+	/**
+	 * Returns a cached {@link ObjectWriter} for the entity's type, filtered by the requested field 
+	 *   inclusions or exclusions.
+	 * 
+	 * @param entity object to be written.
+	 * @param fieldSet fields to include, or null.
+	 * @param exclude fields to exclude, or null.
+	 * @return {@link ObjectWriter}
+	 */
+	protected ObjectWriter getObjectWriter(Object entity, Set<String> fieldSet, Set<String> exclude) 
+			throws IOException {
+		return getObjectWriter(getWriterKey(entity, fieldSet, exclude));
+	}
+
+	/**
+	 * Creates a new {@link ObjectWriter} from the current {@link ObjectMapper}.  Writers do not flush 
+	 *   after each value, so that streamed records can be written in sequence to the same generator.  
+	 *   Subclasses may override this to further configure the writers they use.
+	 * 
+	 * @param type the serialized type.
+	 * @param filters the field filter to apply.
+	 * @return {@link ObjectWriter}
+	 */
+	protected ObjectWriter createObjectWriter(Class<?> type, FilterProvider filters){
+		return getObjectMapper().writerFor(type)
+				.with(filters)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * Returns a cached {@link ObjectWriter} for the entity type and field filter, creating it if 
+	 *   necessary.
+	 */
+	private ObjectWriter getObjectWriter(final WriterKey key) throws IOException {
+		try {
+			return writerCache.get(key, () -> createObjectWriter(key.type, key.getFilterProvider()));
+		} catch (ExecutionException e){
+			throw new HttpMessageNotWritableException("Could not create JSON writer: " + e.getCause().getMessage(), 
+					e.getCause());
+		}
+	}
+
+	/**
+	 * Removes all cached {@link ObjectWriter} instances.
+	 */
+	public void invalidateWriterCache(){
+		if (writerCache != null) writerCache.invalidateAll();
+	}
+
+	/**
+	 * Identifies a cached {@link ObjectWriter} by the serialized type and its normalized field filter.
+	 */
+	private static final class WriterKey {
+		
+		private final Class<?> type;
+		private final Set<String> include;
+		private final Set<String> exclude;
+
+		public WriterKey(Class<?> type, Set<String> include, Set<String> exclude) {
+			this.type = type;
+			this.include = include;
+			this.exclude = exclude;
+		}
+		
+		public FilterProvider getFilterProvider(){
+			SimpleFilterProvider filters = new SimpleFilterProvider().setFailOnUnknownId(false);
+			if (include != null){
+				filters.addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(include));
+			} else if (exclude != null){
+				filters.addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAllExcept(exclude));
+			} else {
+				filters.addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAllExcept());
+			}
+			return filters;
+		}
+
+		@Override 
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof WriterKey)) return false;
+			WriterKey that = (WriterKey) o;
+			return type.equals(that.type) 
+					&& (include != null ? include.equals(that.include) : that.include == null)
+					&& (exclude != null ? exclude.equals(that.exclude) : that.exclude == null);
+		}
+
+		@Override 
+		public int hashCode() {
+			int result = type.hashCode();
+			result = 31 * result + (include != null ? include.hashCode() : 0);
+			result = 31 * result + (exclude != null ? exclude.hashCode() : 0);
+			return result;
+		}
+		
+	}
+	
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
+import org.springframework.data.domain.Slice;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Writes collection responses as newline-delimited JSON (NDJSON, or JSON Lines), with one record 
+ *   serialized per line, so that clients can parse records as they arrive, rather than buffering a 
+ *   complete JSON array.  Records are written one at a time, and the output is flushed after the 
+ *   first record and then after every {@code flushInterval} records.  Supports field filtering 
+ *   using {@link ResponseEnvelope} attributes, in the same way as 
+ *   {@link FilteringJackson2HttpMessageConverter}.  Page metadata and hypermedia links are not 
+ *   included in the output.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class FilteringNdjsonHttpMessageConverter extends FilteringJackson2HttpMessageConverter {
+	
+	private int flushInterval = 1000;
+
+	public FilteringNdjsonHttpMessageConverter() {
+		super();
+		setSupportedMediaTypes(Collections.singletonList(ApiMediaTypes.APPLICATION_NDJSON));
+	}
+
+	@Override 
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override 
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return false;
+	}
+
+	/**
+	 * Each record must be written on a single line, so pretty printing is always disabled.
+	 */
+	@Override 
+	protected ObjectWriter createObjectWriter(Class<?> type, FilterProvider filters) {
+		return super.createObjectWriter(type, filters).without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	@Override 
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		
+		JsonGenerator jsonGenerator = getObjectMapper().getFactory().createGenerator(outputMessage.getBody());
+		jsonGenerator.setRootValueSeparator(null);
+
+		Object entity = object;
+		Set<String> fieldSet = null;
+		Set<String> exclude = null;
+		if (object instanceof ResponseEnvelope){
+			ResponseEnvelope envelope = (ResponseEnvelope) object;
+			entity = envelope.getEntity();
+			fieldSet = envelope.getFieldSet();
+			exclude = envelope.getExclude();
+		}
+		
+		Iterable<?> records;
+		if (entity == null){
+			records = Collections.emptyList();
+		} else if (entity instanceof ResponseStream || entity instanceof Collection){
+			records = (Iterable<?>) entity;
+		} else if (entity instanceof Slice){
+			records = ((Slice<?>) entity).getContent();
+		} else if (entity instanceof Resources){
+			records = ((Resources<?>) entity).getContent();
+		} else {
+			records = Collections.singletonList(entity);
+		}
+
+		try {
+			Class<?> recordType = null;
+			ObjectWriter writer = null;
+			long count = 0;
+			for (Object record: records){
+				if (record == null){
+					jsonGenerator.writeNull();
+				} else {
+					if (!record.getClass().equals(recordType)){
+						recordType = record.getClass();
+						writer = getObjectWriter(record, fieldSet, exclude);
+					}
+					writer.writeValue(jsonGenerator, record);
+				}
+				jsonGenerator.writeRaw('\n');
+				count++;
+				if (count == 1 || count % flushInterval == 0){
+					jsonGenerator.flush();
+				}
+			}
+			jsonGenerator.flush();
+		} catch (JsonProcessingException e){
+			throw new HttpMessageNotWritableException("Could not write JSON: " + e.getMessage(), e);
+		} finally {
+			if (entity instanceof ResponseStream){
+				((ResponseStream) entity).close();
+			}
+		}
+		
+	}
+
+	public int getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Sets the number of records written between each flush of the response output.
+	 */
+	public void setFlushInterval(int flushInterval) {
+		Assert.isTrue(flushInterval > 0, "Flush interval must be greater than zero.");
+		this.flushInterval = flushInterval;
+	}
+	
+}
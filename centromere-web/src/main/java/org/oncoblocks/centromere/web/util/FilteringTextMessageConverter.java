@@ -19,8 +19,8 @@ package org.oncoblocks.centromere.web.util;
 import org.oncoblocks.centromere.core.model.Model;
 import org.oncoblocks.centromere.web.controller.FilterableResource;
 import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
+import org.springframework.data.domain.Slice;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.ResourceSupport;
@@ -31,31 +31,43 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.Assert;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Message converter that takes web service response data and converts it to delimited-text in a
  *   tabular format.  Supports field filtering using {@link org.oncoblocks.centromere.web.controller.ResponseEnvelope} attributes.
- * 
+ *   The columns for each record class and field filter are resolved once and cached, and rows are
+ *   written directly to a buffered writer, one at a time, so that {@link ResponseStream} records
+ *   are written as they are read.  Null values are written as empty fields.  With a comma
+ *   delimiter, values are quoted following RFC 4180; with any other delimiter, such as a tab,
+ *   delimiters, line breaks, and backslashes within values are escaped with a backslash.
+ *
  * @author woemler
  */
 public class FilteringTextMessageConverter extends AbstractHttpMessageConverter<Object> {
-	
+
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	private String delimiter = "\t";
 	private final MediaType mediaType;
+	private final FieldPlanCache columnPlans = new FieldPlanCache();
 
 	public FilteringTextMessageConverter(MediaType supportedMediaType, String delimiter) {
 		super(supportedMediaType);
-		this.delimiter = delimiter;
 		this.mediaType = supportedMediaType;
+		setDelimiter(delimiter);
 	}
 
 	public FilteringTextMessageConverter(MediaType supportedMediaType) {
@@ -64,10 +76,11 @@ public class FilteringTextMessageConverter extends AbstractHttpMessageConverter<
 	}
 
 	public void setDelimiter(String delimiter) {
+		Assert.hasLength(delimiter, "Delimiter must not be empty.");
 		this.delimiter = delimiter;
 	}
 
-	@Override 
+	@Override
 	protected boolean supports(Class<?> aClass) {
 		return Resource.class.equals(aClass)
 				|| FilterableResource.class.equals(aClass)
@@ -75,85 +88,141 @@ public class FilteringTextMessageConverter extends AbstractHttpMessageConverter<
 				|| PagedResources.class.equals(aClass)
 				|| ResourceSupport.class.equals(aClass)
 				|| Model.class.equals(aClass)
-				|| ResponseEnvelope.class.equals(aClass);
+				|| ResponseEnvelope.class.equals(aClass)
+				|| ResponseStream.class.equals(aClass);
 	}
 
-	@Override 
+	@Override
 	protected Object readInternal(Class<?> aClass, HttpInputMessage httpInputMessage)
 			throws IOException, HttpMessageNotReadableException {
 		return null;
 	}
 
-	@Override 
+	@Override
 	protected void writeInternal(Object o, HttpOutputMessage httpOutputMessage)
 			throws IOException, HttpMessageNotWritableException {
-		
+
 		httpOutputMessage.getHeaders().setContentType(this.mediaType);
-		OutputStream out = httpOutputMessage.getBody();
-		PrintWriter writer = new PrintWriter(out);
-		boolean showHeader = true;
-		Set<String> includedFields = new HashSet<>();
-		Set<String> excludedFields = new HashSet<>();
-		
+		Charset charset = mediaType.getCharSet() != null ? mediaType.getCharSet() : DEFAULT_CHARSET;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(httpOutputMessage.getBody(), charset),
+				BUFFER_SIZE);
+		Set<String> includedFields = null;
+		Set<String> excludedFields = null;
+
 		if (o.getClass().equals(ResponseEnvelope.class)){
 			includedFields = ((ResponseEnvelope) o).getFieldSet();
 			excludedFields = ((ResponseEnvelope) o).getExclude();
 			o = ((ResponseEnvelope) o).getEntity();
 		}
-		if (o.getClass().equals(PageImpl.class)){
-			o = ((Page) o).getContent();
+		if (o instanceof Slice){
+			o = ((Slice) o).getContent();
+		} else if (o instanceof Resources){
+			o = ((Resources) o).getContent();
 		}
-		
-		if (!(o instanceof Collection<?>)) {
-			o = Arrays.asList(o);
+
+		Iterable<?> records;
+		if (o == null){
+			records = Collections.emptyList();
+		} else if (o instanceof Collection<?> || o instanceof ResponseStream) {
+			records = (Iterable<?>) o;
+		} else {
+			records = Collections.singletonList(o);
 		}
-		for (Object entity: (Collection<?>) o){
-			String entityString;
-			try {
-				StringBuilder buffer = new StringBuilder();
-				if (showHeader){
-					for (Field field: entity.getClass().getDeclaredFields()){
-						if (includedFields != null && !includedFields.isEmpty()){
-							if (includedFields.contains(field.getName())){
-								buffer.append(field.getName()).append(delimiter);
-							}
-						} else if (excludedFields != null && !excludedFields.isEmpty()){
-							if (!excludedFields.contains(field.getName())){
-								buffer.append(field.getName()).append(delimiter);
-							}
-						} else {
-							buffer.append(field.getName()).append(delimiter);
-						}
-					}
-					buffer.append("\n");
+
+		try {
+			Class<?> recordType = null;
+			List<Field> columns = null;
+			long rows = 0;
+			for (Object record: records){
+				if (record instanceof Resource){
+					record = ((Resource) record).getContent();
 				}
-				for (Field field: entity.getClass().getDeclaredFields()){
-					field.setAccessible(true);
-					if (includedFields != null && !includedFields.isEmpty()){
-						if (includedFields.contains(field.getName())){
-							buffer.append(field.get(entity)).append(delimiter);
-						}
-					} else if (excludedFields != null && !excludedFields.isEmpty()){
-						if (!excludedFields.contains(field.getName())){
-							buffer.append(field.get(entity)).append(delimiter);
-						}
-					} else {
-						buffer.append(field.get(entity)).append(delimiter);
+				if (record == null) continue;
+				if (!record.getClass().equals(recordType)){
+					recordType = record.getClass();
+					columns = columnPlans.getFields(recordType, includedFields, excludedFields);
+					if (rows == 0){
+						writeHeader(writer, columns);
 					}
 				}
-				buffer.append("\n");
-				entityString = buffer.toString();
-			} catch (IllegalAccessException e){
-				e.printStackTrace();
-				entityString = "# Invalid record.";
+				writeRow(writer, record, columns);
+				rows++;
+				if (rows == 1){
+					writer.flush();
+				}
+			}
+			writer.flush();
+		} finally {
+			if (o instanceof ResponseStream){
+				((ResponseStream) o).close();
+			}
+		}
+
+	}
+
+	private void writeHeader(Writer writer, List<Field> columns) throws IOException {
+		for (int i = 0; i < columns.size(); i++){
+			if (i > 0) writer.write(delimiter);
+			writeValue(writer, columns.get(i).getName());
+		}
+		writer.write('\n');
+	}
+
+	private void writeRow(Writer writer, Object record, List<Field> columns) throws IOException {
+		for (int i = 0; i < columns.size(); i++){
+			if (i > 0) writer.write(delimiter);
+			Object value = FieldPlanCache.getValue(columns.get(i), record);
+			if (value != null){
+				writeValue(writer, value.toString());
+			}
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes a single value, escaping it if it contains the delimiter, a line break, or a quote
+	 *   (for comma-delimited output) or backslash (for other delimiters).
+	 */
+	private void writeValue(Writer writer, String value) throws IOException {
+		boolean csv = ",".equals(delimiter);
+		if (!requiresEscaping(value, csv)){
+			writer.write(value);
+		} else if (csv){
+			writer.write('"');
+			for (int i = 0; i < value.length(); i++){
+				char c = value.charAt(i);
+				if (c == '"') writer.write('"');
+				writer.write(c);
+			}
+			writer.write('"');
+		} else {
+			for (int i = 0; i < value.length(); i++){
+				char c = value.charAt(i);
+				if (c == '\\'){
+					writer.write("\\\\");
+				} else if (c == '\n'){
+					writer.write("\\n");
+				} else if (c == '\r'){
+					writer.write("\\r");
+				} else if (c == '\t'){
+					writer.write("\\t");
+				} else if (value.startsWith(delimiter, i)){
+					writer.write('\\');
+					writer.write(c);
+				} else {
+					writer.write(c);
+				}
 			}
-			writer.write(entityString);
-			showHeader = false;
 		}
-		
-		
-		writer.close();
-		
+	}
+
+	private boolean requiresEscaping(String value, boolean csv){
+		if (value.contains(delimiter)) return true;
+		for (int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			if (c == '\n' || c == '\r' || (csv ? c == '"' : c == '\\')) return true;
+		}
+		return false;
 	}
 
 }
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.oncoblocks.centromere.web.util;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.collections.AbstractCollectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.StreamException;
+import com.thoughtworks.xstream.io.xml.QNameMap;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
+import com.thoughtworks.xstream.io.xml.StaxWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+import com.thoughtworks.xstream.mapper.MapperWrapper;
+import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
+import org.springframework.data.domain.Slice;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.Assert;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes web service responses as XML using a StAX {@link XMLStreamWriter}, so that records are 
+ *   serialized as they are read from a {@link ResponseStream}, rather than being collected into a 
+ *   complete object graph first.  Responses keep the document shape of the XStream marshalling 
+ *   used by {@link org.oncoblocks.centromere.web.config.WebServicesConfig} for reading XML: each 
+ *   object is written by XStream, and a streamed response is written as the {@code list}, or 
+ *   {@link Resources}, that the controller would otherwise have materialized.  Fields declared by 
+ *   top-level record classes are filtered by the {@link ResponseEnvelope} field inclusions and 
+ *   exclusions, in the same way as {@link FilteringTextMessageConverter}.  This converter only 
+ *   writes responses; request bodies are left to the next XML converter in the chain.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class FilteringXmlHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ThreadLocal<ResponseContext> responseContext = new ThreadLocal<>();
+	private final XStream xStream;
+	private int flushInterval = 1000;
+
+	public FilteringXmlHttpMessageConverter() {
+		this(MediaType.APPLICATION_XML, ApiMediaTypes.APPLICATION_HAL_XML);
+	}
+
+	public FilteringXmlHttpMessageConverter(MediaType... supportedMediaTypes) {
+		super(supportedMediaTypes);
+		this.xStream = createXStream();
+	}
+
+	/**
+	 * Sets the number of records written between flushes of a streamed response.  The first record 
+	 *   is always flushed immediately.
+	 *
+	 * @param flushInterval number of records, must be positive.
+	 */
+	public void setFlushInterval(int flushInterval) {
+		Assert.isTrue(flushInterval > 0, "Flush interval must be positive.");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Creates the {@link XStream} instance used to write each object.  Its mapper skips the fields 
+	 *   filtered out of the current response, and names streamed records after the collection types 
+	 *   that XStream would have written for a materialized response.
+	 */
+	private XStream createXStream(){
+		XStream xStream = new XStream(new StaxDriver()) {
+			@Override 
+			protected MapperWrapper wrapMapper(MapperWrapper next) {
+				return new MapperWrapper(next) {
+					@Override 
+					@SuppressWarnings("rawtypes")
+					public boolean shouldSerializeMember(Class definedIn, String fieldName) {
+						ResponseContext context = responseContext.get();
+						return (context == null || context.isWritten(definedIn, fieldName)) 
+								&& super.shouldSerializeMember(definedIn, fieldName);
+					}
+					@Override 
+					@SuppressWarnings("rawtypes")
+					public String serializedClass(Class type) {
+						if (type == StreamedList.class) return super.serializedClass(ArrayList.class);
+						if (type == StreamedResources.class) return super.serializedClass(Resources.class);
+						return super.serializedClass(type);
+					}
+				};
+			}
+		};
+		xStream.registerConverter(new StreamedRecordsConverter(xStream.getMapper()));
+		return xStream;
+	}
+
+	@Override 
+	protected boolean supports(Class<?> aClass) {
+		return true;
+	}
+
+	@Override 
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override 
+	protected Object readInternal(Class<?> aClass, HttpInputMessage httpInputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		throw new HttpMessageNotReadableException("Reading XML is not supported by this converter.");
+	}
+
+	@Override 
+	protected void writeInternal(Object o, HttpOutputMessage httpOutputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		
+		MediaType contentType = httpOutputMessage.getHeaders().getContentType();
+		Charset charset = contentType != null && contentType.getCharSet() != null 
+				? contentType.getCharSet() : DEFAULT_CHARSET;
+		Set<String> fieldSet = null;
+		Set<String> exclude = null;
+		Object entity = o;
+		if (o instanceof ResponseEnvelope){
+			fieldSet = ((ResponseEnvelope) o).getFieldSet();
+			exclude = ((ResponseEnvelope) o).getExclude();
+			entity = ((ResponseEnvelope) o).getEntity();
+		}
+		
+		OutputStream out = new BufferedOutputStream(httpOutputMessage.getBody(), BUFFER_SIZE);
+		ResponseContext context = new ResponseContext(out, fieldSet, exclude);
+		Object document = o;
+		if (entity instanceof ResponseStream){
+			ResponseStream stream = (ResponseStream) entity;
+			Object records = stream.isHypermedia() ? new StreamedResources(stream) : new StreamedList(stream);
+			document = o instanceof ResponseEnvelope ? new ResponseEnvelope(records, fieldSet, exclude) : records;
+		} else {
+			context.addRecordClasses(entity);
+		}
+		
+		responseContext.set(context);
+		try {
+			XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, charset.name());
+			writer.writeStartDocument(charset.name(), "1.0");
+			xStream.marshal(document, new StaxWriter(new QNameMap(), writer, false, false));
+			writer.writeEndDocument();
+			writer.close();
+			out.flush();
+		} catch (XMLStreamException | XStreamException e){
+			throw new HttpMessageNotWritableException("Could not write XML: " + e.getMessage(), e);
+		} finally {
+			responseContext.remove();
+			if (entity instanceof ResponseStream){
+				((ResponseStream) entity).close();
+			}
+		}
+		
+	}
+
+	/**
+	 * Holds the field filter and output stream of the response being written by the current thread.
+	 *   Only fields declared by top-level record classes are filtered, so that nested objects, and 
+	 *   the envelope and hypermedia wrappers, are written in full.
+	 */
+	private static class ResponseContext {
+		
+		private final OutputStream out;
+		private final Set<String> fieldSet;
+		private final Set<String> exclude;
+		private final Set<Class<?>> recordClasses = new HashSet<>();
+		private long count = 0;
+
+		public ResponseContext(OutputStream out, Set<String> fieldSet, Set<String> exclude) {
+			this.out = out;
+			this.fieldSet = fieldSet != null && !fieldSet.isEmpty() ? fieldSet : null;
+			this.exclude = exclude != null && !exclude.isEmpty() ? exclude : null;
+		}
+
+		/**
+		 * Registers the classes of the top-level records in a materialized response entity.
+		 */
+		public void addRecordClasses(Object entity){
+			if (entity instanceof Resources){
+				entity = ((Resources<?>) entity).getContent();
+			} else if (entity instanceof Slice){
+				entity = ((Slice<?>) entity).getContent();
+			}
+			if (entity instanceof Collection){
+				for (Object record: (Collection<?>) entity){
+					addRecordClass(record);
+				}
+			} else {
+				addRecordClass(entity);
+			}
+		}
+
+		/**
+		 * Registers the class of a top-level record, or of the content of its {@link Resource} wrapper.
+		 */
+		public void addRecordClass(Object record){
+			if (record instanceof Resource){
+				record = ((Resource<?>) record).getContent();
+			}
+			if (record != null){
+				recordClasses.add(record.getClass());
+			}
+		}
+
+		/**
+		 * Determines whether a field is written.  If included fields are specified, excluded fields 
+		 *   are ignored.
+		 */
+		public boolean isWritten(Class<?> definedIn, String fieldName){
+			if (!recordClasses.contains(definedIn)) return true;
+			if (fieldSet != null) return fieldSet.contains(fieldName);
+			return exclude == null || !exclude.contains(fieldName);
+		}
+		
+	}
+
+	/**
+	 * Streamed records, written in the shape of a materialized {@link java.util.List} entity.
+	 */
+	private static class StreamedList {
+		
+		private final ResponseStream stream;
+
+		public StreamedList(ResponseStream stream) {
+			this.stream = stream;
+		}
+		
+	}
+
+	/**
+	 * Streamed records, written in the shape of a materialized {@link Resources} entity.
+	 */
+	private static class StreamedResources extends StreamedList {
+
+		public StreamedResources(ResponseStream stream) {
+			super(stream);
+		}
+		
+	}
+
+	/**
+	 * Writes the records of a {@link StreamedList} as the items of a collection, with the links 
+	 *   and content field of {@link Resources} for hypermedia streams.  Each record is flushed after 
+	 *   the first and every {@code flushInterval} records, so that streamed responses reach the 
+	 *   client as they are read.
+	 */
+	private class StreamedRecordsConverter extends AbstractCollectionConverter {
+
+		public StreamedRecordsConverter(Mapper mapper) {
+			super(mapper);
+		}
+
+		@Override 
+		@SuppressWarnings("rawtypes")
+		public boolean canConvert(Class type) {
+			return type == StreamedList.class || type == StreamedResources.class;
+		}
+
+		@Override 
+		public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+			ResponseStream stream = ((StreamedList) source).stream;
+			if (source instanceof StreamedResources){
+				writer.startNode(mapper().serializedMember(ResourceSupport.class, "links"));
+				for (Link link: stream.getLinks()){
+					writeItem(link, context, writer);
+				}
+				writer.endNode();
+				writer.startNode(mapper().serializedMember(Resources.class, "content"));
+				writer.addAttribute(mapper().aliasForSystemAttribute("class"), 
+						mapper().serializedClass(ArrayList.class));
+				writeRecords(stream, writer, context);
+				writer.endNode();
+			} else {
+				writeRecords(stream, writer, context);
+			}
+		}
+
+		private void writeRecords(ResponseStream stream, HierarchicalStreamWriter writer, 
+				MarshallingContext context){
+			ResponseContext response = responseContext.get();
+			for (Object record: stream){
+				response.addRecordClass(record);
+				writeItem(record, context, writer);
+				response.count++;
+				if (response.count == 1 || response.count % flushInterval == 0){
+					writer.flush();
+					try {
+						response.out.flush();
+					} catch (IOException e){
+						throw new StreamException(e);
+					}
+				}
+			}
+		}
+
+		@Override 
+		public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+			throw new UnsupportedOperationException("Streamed records cannot be read.");
+		}
+		
+	}
+
+}
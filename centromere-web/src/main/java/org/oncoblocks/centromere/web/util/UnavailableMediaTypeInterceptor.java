@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.web.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes media types that no registered message converter can write, such as binary formats 
+ *   whose Jackson data format module is not on the classpath, from the producible media types of 
+ *   a matched request mapping.  Controller mappings list these types in their {@code produces} 
+ *   attribute, so without this check a client accepting one of them would have the request handled, 
+ *   and the repository queried, only to receive a 406 response once the body is written, even 
+ *   when another acceptable type could have been returned.  Requests that accept none of the 
+ *   remaining types are rejected with a {@link HttpMediaTypeNotAcceptableException} before the 
+ *   handler is invoked.
+ *
+ * @author woemler
+ * @since 0.4.1
+ */
+public class UnavailableMediaTypeInterceptor extends HandlerInterceptorAdapter {
+
+	private final List<MediaType> unavailableMediaTypes;
+
+	public UnavailableMediaTypeInterceptor(Collection<MediaType> unavailableMediaTypes) {
+		Assert.notNull(unavailableMediaTypes);
+		this.unavailableMediaTypes = new ArrayList<>(unavailableMediaTypes);
+	}
+
+	@Override 
+	@SuppressWarnings("unchecked")
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) 
+			throws Exception {
+		Set<MediaType> producible 
+				= (Set<MediaType>) request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+		if (producible == null || producible.isEmpty()) return true;
+		Set<MediaType> available = new LinkedHashSet<>();
+		for (MediaType mediaType: producible){
+			if (!isUnavailable(mediaType)) available.add(mediaType);
+		}
+		if (available.size() == producible.size()) return true;
+		if (available.isEmpty()){
+			throw new HttpMediaTypeNotAcceptableException("No message converter is available for media type(s): " 
+					+ producible);
+		}
+		request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, available);
+		return true;
+	}
+
+	private boolean isUnavailable(MediaType mediaType){
+		for (MediaType unavailable: unavailableMediaTypes){
+			if (unavailable.getType().equalsIgnoreCase(mediaType.getType()) 
+					&& unavailable.getSubtype().equalsIgnoreCase(mediaType.getSubtype())){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public List<MediaType> getUnavailableMediaTypes() {
+		return unavailableMediaTypes;
+	}
+
+}
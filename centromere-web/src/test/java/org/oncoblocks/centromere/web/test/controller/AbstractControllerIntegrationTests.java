@@ -26,6 +26,7 @@ import org.oncoblocks.centromere.web.test.repository.CopyNumberRepository;
 import org.oncoblocks.centromere.web.test.repository.MongoRepositoryConfig;
 import org.oncoblocks.centromere.web.util.ApiMediaTypes;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -35,6 +36,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -95,6 +97,21 @@ public class AbstractControllerIntegrationTests {
 				.andExpect(status().isNotFound());
 	}
 
+	@Test
+	public void findByMultipleIds() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/{id}", "3,1,99"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].id", is("3")))
+				.andExpect(jsonPath("$[1].id", is("1")));
+	}
+
+	@Test
+	public void findByMultipleIdsNotFound() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/{id}", "98,99"))
+				.andExpect(status().isNotFound());
+	}
+
 	@Test
 	public void findByIdFiltered() throws Exception {
 		mockMvc.perform(get(BASE_URL + "/{id}?exclude=links,geneSymbol", "1"))
@@ -205,6 +222,39 @@ public class AbstractControllerIntegrationTests {
 				.andExpect(jsonPath("$.content[0].id", is("5")));
 	}
 	
+	@Test
+	public void search() throws Exception {
+		mockMvc.perform(post(BASE_URL + "/search")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"criteria\": [{\"geneId\": [\"33\", \"45\", \"4453\"]}, " 
+						+ "{\"or\": [{\"gene\": \"GeneB\"}, {\"signalGreaterThan\": 1.1}]}], " 
+						+ "\"sort\": [\"gene,desc\"], \"exclude\": [\"signal\"]}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].id", is("3")))
+				.andExpect(jsonPath("$[1].id", is("1")))
+				.andExpect(jsonPath("$[0]", not(hasKey("signal"))));
+	}
+
+	@Test
+	public void searchPaged() throws Exception {
+		mockMvc.perform(post(BASE_URL + "/search")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"criteria\": {\"not\": {\"gene\": \"GeneB\"}}, \"page\": 1, \"size\": 3}")
+				.accept(ApiMediaTypes.APPLICATION_HAL_JSON_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content", hasSize(1)))
+				.andExpect(jsonPath("$.page.totalElements", is(4)));
+	}
+
+	@Test
+	public void searchInvalidParameter() throws Exception {
+		mockMvc.perform(post(BASE_URL + "/search")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"criteria\": [{\"notAField\": 1}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
 	@Test
 	public void findByFieldName() throws Exception {
 		mockMvc.perform(get(BASE_URL + "?geneId=45")
@@ -37,6 +37,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.Assert;
 import org.springframework.web.context.WebApplicationContext;
 
 import static org.hamcrest.Matchers.*;
@@ -342,6 +343,30 @@ public class CrudControllerIntegrationTests {
 
 	}
 
+	@Test
+	public void deleteByParamsTest() throws Exception {
+
+		geneRepository.insert(new EntrezGene(8L, "GeneH", 9606, "", "10", "", "", "test-gene", null, null, null));
+		geneRepository.insert(new EntrezGene(9L, "GeneI", 9606, "", "10", "", "", "test-gene", null, null, null));
+
+		mockMvc.perform(delete(BASE_URL + "?geneType=test-gene"))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get(BASE_URL + "/{id}", 8L))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get(BASE_URL + "/{id}", 9L))
+				.andExpect(status().isNotFound());
+		Assert.isTrue(geneRepository.count() == 5);
+
+	}
+
+	@Test
+	public void deleteWithoutParamsTest() throws Exception {
+		mockMvc.perform(delete(BASE_URL))
+				.andExpect(status().isBadRequest());
+		Assert.isTrue(geneRepository.count() == 5);
+	}
+
 //	@Test
 //	public void optionsTest() throws Exception {
 //		MvcResult result = mockMvc.perform(request(HttpMethod.OPTIONS, "/genes").accept(MediaType.APPLICATION_JSON))
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.web.test.controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.web.controller.FilterableResource;
+import org.oncoblocks.centromere.web.controller.ModelResourceAssembler;
+import org.oncoblocks.centromere.web.test.models.CopyNumber;
+import org.oncoblocks.centromere.web.test.models.EntrezGene;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.EntityLinks;
+import org.springframework.hateoas.core.ControllerEntityLinks;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mvc.ControllerLinkBuilderFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ModelResourceAssemblerTests.EmptyContext.class})
+public class ModelResourceAssemblerTests {
+	
+	private EntityLinks entityLinks;
+	private ModelResourceAssembler<CopyNumber> assembler;
+	
+	@Before
+	public void setup(){
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		entityLinks = new ControllerEntityLinks(
+				Arrays.asList(CopyNumberController.class, EntrezGeneCrudController.class), 
+				new ControllerLinkBuilderFactory());
+		assembler = new ModelResourceAssembler<>(CopyNumberController.class, CopyNumber.class, entityLinks);
+	}
+	
+	@After
+	public void teardown(){
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void toResourceTest(){
+		CopyNumber copyNumber = new CopyNumber("1", "33", "GeneA", 1.20, "Y");
+		FilterableResource resource = assembler.toResource(copyNumber);
+		Assert.isTrue(resource.getLinks().size() == 2);
+		Link self = resource.getLink(Link.REL_SELF);
+		Assert.isTrue(self.getHref().equals(entityLinks.linkToSingleResource(CopyNumber.class, "1").getHref()));
+		Assert.isTrue(self.getHref().endsWith("/cnv/1"));
+		Link gene = resource.getLink("gene");
+		Assert.isTrue(gene.getHref().equals(entityLinks.linkToSingleResource(EntrezGene.class, "33").getHref()));
+	}
+
+	@Test
+	public void toResourcesTest(){
+		List<FilterableResource> resources = assembler.toResources(Arrays.asList(
+				new CopyNumber("1", "33", "GeneA", 1.20, "Y"), 
+				new CopyNumber("2", "101", "GeneB", 2.11, "N")));
+		Assert.isTrue(resources.size() == 2);
+		Assert.isTrue(resources.get(1).getLink(Link.REL_SELF).getHref().endsWith("/cnv/2"));
+		Assert.isTrue(resources.get(1).getLink("gene").getHref()
+				.equals(entityLinks.linkToSingleResource(EntrezGene.class, "101").getHref()));
+	}
+	
+	@Configuration
+	public static class EmptyContext {}
+	
+}
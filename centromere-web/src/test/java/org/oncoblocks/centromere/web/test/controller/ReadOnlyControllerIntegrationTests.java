@@ -263,7 +263,65 @@ public class ReadOnlyControllerIntegrationTests {
 				.andExpect(jsonPath("$", hasSize(3)))
 				.andExpect(jsonPath("$[2]", is("GeneD")));
 	}
-	
+
+	@Test
+	public void findDistinctPaged() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/distinct?field=primaryGeneSymbol&prefix=Gene&offset=1&limit=2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0]", is("GeneB")))
+				.andExpect(jsonPath("$[1]", is("GeneC")));
+	}
+
+	@Test
+	public void findDistinctInvalidLimit() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/distinct?field=primaryGeneSymbol&limit=-1"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void findDistinctInvalidField() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/distinct?field=badField"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get(BASE_URL + "/distinct?field=description"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void aggregateTest() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=geneType&metrics=count,max:primaryGeneSymbol"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].geneType", is("protein-coding")))
+				.andExpect(jsonPath("$[0].count", is(3)))
+				.andExpect(jsonPath("$[0].max_primaryGeneSymbol", is("GeneD")));
+	}
+
+	@Test
+	public void aggregateTopGroupsTest() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=geneType&orderBy=-count&limit=1&chromosome=X"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].geneType", is("pseudo")))
+				.andExpect(jsonPath("$[0].count", is(1)));
+	}
+
+	@Test
+	public void aggregateInvalidMetricTest() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=geneType&metrics=median:taxId"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=geneType&orderBy=bad"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void aggregateInvalidFieldTest() throws Exception {
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=badField"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get(BASE_URL + "/aggregate?groupBy=geneType&metrics=max:badField"))
+				.andExpect(status().isBadRequest());
+	}
+
 	@Test
 	public void postTest() throws Exception {
 		EntrezGene
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 William Oemler, Blueprint Medicines
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.oncoblocks.centromere.web.test.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.core.repository.CountStrategy;
+import org.oncoblocks.centromere.core.repository.Evaluation;
+import org.oncoblocks.centromere.core.repository.QueryCriteria;
+import org.oncoblocks.centromere.core.repository.QueryCriteriaGroup;
+import org.oncoblocks.centromere.web.controller.SearchRequest;
+import org.oncoblocks.centromere.web.exceptions.InvalidParameterException;
+import org.oncoblocks.centromere.web.test.models.CopyNumber;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author woemler
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {SearchRequestTests.EmptyContext.class})
+public class SearchRequestTests {
+	
+	private SearchRequest parse(String json) throws IOException {
+		return SearchRequest.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 
+				CopyNumber.class);
+	}
+
+	@Test
+	public void criteriaTest() throws Exception {
+		SearchRequest request = parse("{\"criteria\": [{\"geneId\": [\"33\", 45]}, " 
+				+ "{\"gene\": \"GeneA\", \"signalGreaterThan\": 2}, " 
+				+ "{\"signal\": {\"evaluation\": \"between\", \"value\": [1, 3.5]}}, {\"gene\": null}]}");
+		List<QueryCriteria> criterias = request.getQueryCriterias();
+		Assert.isTrue(criterias.size() == 5);
+		Assert.isTrue(criterias.get(0).getKey().equals("geneId"));
+		Assert.isTrue(criterias.get(0).getEvaluation().equals(Evaluation.IN));
+		Assert.isTrue(criterias.get(0).getValue().equals(Arrays.asList("33", "45")));
+		Assert.isTrue(criterias.get(1).getKey().equals("geneSymbol"));
+		Assert.isTrue(criterias.get(1).getEvaluation().equals(Evaluation.EQUALS));
+		Assert.isTrue(criterias.get(2).getKey().equals("signal"));
+		Assert.isTrue(criterias.get(2).getEvaluation().equals(Evaluation.GREATER_THAN));
+		Assert.isTrue(criterias.get(2).getValue().equals(2.0));
+		Assert.isTrue(criterias.get(3).getEvaluation().equals(Evaluation.BETWEEN));
+		Assert.isTrue(criterias.get(3).getValue().equals(Arrays.asList(1.0, 3.5)));
+		Assert.isTrue(criterias.get(4).getEvaluation().equals(Evaluation.IS_NULL));
+		Assert.isTrue(!request.isPaged());
+		Assert.isTrue(!request.isKeyset());
+	}
+
+	@Test
+	public void criteriaGroupTest() throws Exception {
+		SearchRequest request = parse("{\"criteria\": {\"or\": [{\"gene\": \"GeneA\"}, " 
+				+ "{\"gene\": \"GeneB\", \"signalLessThan\": 2}, {\"not\": {\"geneId\": \"33\"}}]}}");
+		List<QueryCriteria> criterias = request.getQueryCriterias();
+		Assert.isTrue(criterias.size() == 1);
+		QueryCriteriaGroup group = (QueryCriteriaGroup) criterias.get(0);
+		Assert.isTrue(group.getOperator().equals(QueryCriteriaGroup.Operator.OR));
+		Assert.isTrue(group.getQueryCriterias().size() == 3);
+		QueryCriteriaGroup and = (QueryCriteriaGroup) group.getQueryCriterias().get(1);
+		Assert.isTrue(and.getOperator().equals(QueryCriteriaGroup.Operator.AND));
+		Assert.isTrue(and.getQueryCriterias().size() == 2);
+		QueryCriteriaGroup not = (QueryCriteriaGroup) group.getQueryCriterias().get(2);
+		Assert.isTrue(not.getOperator().equals(QueryCriteriaGroup.Operator.NOT));
+		Assert.isTrue(not.getQueryCriterias().get(0).getValue().equals("33"));
+	}
+
+	@Test
+	public void pagingTest() throws Exception {
+		SearchRequest request = parse("{\"sort\": [\"gene,desc\", \"signal\"], \"page\": 2, \"size\": 10, " 
+				+ "\"fields\": [\"id\", \"gene\"], \"countStrategy\": \"estimated\"}");
+		Assert.isTrue(request.isPaged());
+		Assert.isTrue(request.getFields().size() == 2);
+		Assert.isTrue(request.getCountStrategy().equals(CountStrategy.ESTIMATED));
+		Pageable pageable = request.getPageable();
+		Assert.isTrue(pageable.getPageNumber() == 2);
+		Assert.isTrue(pageable.getPageSize() == 10);
+		Sort.Order order = pageable.getSort().getOrderFor("geneSymbol");
+		Assert.notNull(order);
+		Assert.isTrue(order.getDirection().equals(Sort.Direction.DESC));
+		request = parse("{\"cursor\": null}");
+		Assert.isTrue(request.isKeyset());
+		Assert.isNull(request.getCursor());
+		Assert.isTrue(request.getPageable().getPageSize() == SearchRequest.DEFAULT_PAGE_SIZE);
+	}
+
+	@Test(expected = InvalidParameterException.class)
+	public void invalidParameterTest() throws Exception {
+		parse("{\"criteria\": [{\"notAField\": 1}]}");
+	}
+
+	@Test(expected = InvalidParameterException.class)
+	public void malformedBodyTest() throws Exception {
+		parse("{\"criteria\": [{\"gene\": }]}");
+	}
+	
+	@Configuration
+	public static class EmptyContext {}
+	
+}
@@ -16,27 +16,58 @@
 
 package org.oncoblocks.centromere.web.test.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oncoblocks.centromere.web.controller.FilterableResource;
 import org.oncoblocks.centromere.web.controller.ResponseEnvelope;
+import org.oncoblocks.centromere.web.controller.ResponseStream;
 import org.oncoblocks.centromere.web.test.models.EntrezGene;
+import org.oncoblocks.centromere.web.util.FilteringArrowHttpMessageConverter;
+import org.oncoblocks.centromere.web.util.FilteringBinaryJackson2HttpMessageConverter;
 import org.oncoblocks.centromere.web.util.FilteringJackson2HttpMessageConverter;
+import org.oncoblocks.centromere.web.util.FilteringNdjsonHttpMessageConverter;
 import org.oncoblocks.centromere.web.util.FilteringTextMessageConverter;
+import org.oncoblocks.centromere.web.util.FilteringXmlHttpMessageConverter;
 import org.oncoblocks.centromere.web.util.ApiMediaTypes;
+import org.oncoblocks.centromere.web.util.UnavailableMediaTypeInterceptor;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
 import org.springframework.http.MediaType;
 import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.oxm.xstream.XStreamMarshaller;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.util.Assert;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.w3c.dom.Document;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * @author woemler
@@ -116,6 +147,238 @@ public class HttpMessageConverterTests {
 		Assert.isTrue(((Integer) gene.get("entrezGeneId")) == 1);
 	}
 	
+	@Test
+	public void writeToJsonWithAlternatingFilters() throws Exception {
+		Set<String> fields = new HashSet<>();
+		fields.add("primaryGeneSymbol");
+		Set<String> exclude = new HashSet<>();
+		exclude.add("primaryGeneSymbol");
+		for (int i = 0; i < 3; i++){
+			MockHttpOutputMessage message =  new MockHttpOutputMessage();
+			jsonConverter.write(new ResponseEnvelope(EntrezGene.createDummyData(), fields, new HashSet<>()), 
+					MediaType.APPLICATION_JSON, message);
+			Assert.isTrue(message.getBodyAsString().contains("\n")); // pretty printed
+			Map<String,Object> gene = JsonPath.read(Configuration.defaultConfiguration()
+					.jsonProvider().parse(message.getBodyAsString()), "$[0]");
+			Assert.isTrue(gene.size() == 1);
+			Assert.isTrue(gene.containsKey("primaryGeneSymbol"));
+			message =  new MockHttpOutputMessage();
+			jsonConverter.write(new ResponseEnvelope(EntrezGene.createDummyData(), new HashSet<>(), exclude), 
+					MediaType.APPLICATION_JSON, message);
+			gene = JsonPath.read(Configuration.defaultConfiguration()
+					.jsonProvider().parse(message.getBodyAsString()), "$[0]");
+			Assert.isTrue(gene.containsKey("entrezGeneId"));
+			Assert.isTrue(!gene.containsKey("primaryGeneSymbol"));
+		}
+		Assert.isTrue(fields.size() == 1);
+		Assert.isNull(jsonConverter.getObjectMapper().getSerializationConfig().getFilterProvider());
+	}
+	
+	@Test
+	public void writeStreamToJson() throws Exception {
+		Set<String> fields = new HashSet<>();
+		fields.add("primaryGeneSymbol");
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor), fields, new HashSet<>());
+		MockHttpOutputMessage message =  new MockHttpOutputMessage();
+		jsonConverter.write(envelope, MediaType.APPLICATION_JSON, message);
+		Assert.isTrue(cursor.isClosed());
+		Object document = Configuration.defaultConfiguration()
+				.jsonProvider().parse(message.getBodyAsString());
+		Assert.isTrue(((List<String>) JsonPath.read(document, "$")).size() == 5);
+		Map<String,Object> gene = JsonPath.read(document, "$[0]");
+		Assert.isTrue(gene.size() == 1);
+		Assert.isTrue(gene.get("primaryGeneSymbol").equals("GeneA"));
+	}
+
+	@Test
+	public void writeHypermediaStreamToJson() throws Exception {
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseStream stream = new ResponseStream(cursor, gene -> new FilterableResource(gene), 
+				Collections.singletonList(new Link("http://localhost/genes", Link.REL_SELF)));
+		MockHttpOutputMessage message =  new MockHttpOutputMessage();
+		jsonConverter.write(new ResponseEnvelope(stream), ApiMediaTypes.APPLICATION_HAL_JSON, message);
+		Assert.isTrue(cursor.isClosed());
+		Object document = Configuration.defaultConfiguration()
+				.jsonProvider().parse(message.getBodyAsString());
+		Assert.isTrue(((List<String>) JsonPath.read(document, "$.content")).size() == 5);
+		Assert.isTrue((Integer) JsonPath.read(document, "$.content[0].entrezGeneId") == 1);
+		Assert.isTrue(JsonPath.read(document, "$.links[0].rel").equals("self"));
+		Assert.isTrue(JsonPath.read(document, "$.links[0].href").equals("http://localhost/genes"));
+	}
+
+	@Test
+	public void writeEmptyStreamToJson() throws Exception {
+		TestCursor<EntrezGene> cursor = new TestCursor<>(new ArrayList<>());
+		MockHttpOutputMessage message =  new MockHttpOutputMessage();
+		jsonConverter.write(new ResponseEnvelope(new ResponseStream(cursor)), MediaType.APPLICATION_JSON, message);
+		Assert.isTrue(cursor.isClosed());
+		Assert.isTrue(message.getBodyAsString().replaceAll("\\s", "").equals("[]"));
+	}
+
+	@Test
+	public void writeLazyStreamToJson() throws Exception {
+		List<TestCursor<EntrezGene>> cursors = new ArrayList<>();
+		Supplier<CloseableIterator<EntrezGene>> supplier = () -> {
+			TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+			cursors.add(cursor);
+			return cursor;
+		};
+		new ResponseStream(supplier, EntrezGene.class).close();
+		Assert.isTrue(cursors.isEmpty());
+		MockHttpOutputMessage message =  new MockHttpOutputMessage();
+		jsonConverter.write(new ResponseEnvelope(new ResponseStream(supplier, EntrezGene.class)),
+				MediaType.APPLICATION_JSON, message);
+		Assert.isTrue(cursors.size() == 1);
+		Assert.isTrue(cursors.get(0).isClosed());
+		Object document = Configuration.defaultConfiguration()
+				.jsonProvider().parse(message.getBodyAsString());
+		Assert.isTrue(((List<String>) JsonPath.read(document, "$")).size() == 5);
+	}
+
+	@Test
+	public void writeToNdjson() throws Exception {
+		FilteringNdjsonHttpMessageConverter ndjsonConverter = new FilteringNdjsonHttpMessageConverter();
+		ndjsonConverter.setPrettyPrint(true);
+		Set<String> exclude = new HashSet<>();
+		exclude.add("aliases");
+		ResponseEnvelope envelope = new ResponseEnvelope(EntrezGene.createDummyData(), new HashSet<>(), exclude);
+		Assert.isTrue(ndjsonConverter.canWrite(envelope.getClass(), ApiMediaTypes.APPLICATION_NDJSON));
+		Assert.isTrue(!ndjsonConverter.canWrite(envelope.getClass(), MediaType.APPLICATION_JSON));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		ndjsonConverter.write(envelope, ApiMediaTypes.APPLICATION_NDJSON, message);
+		String[] lines = message.getBodyAsString().split("\n");
+		Assert.isTrue(lines.length == 5);
+		for (int i = 0; i < lines.length; i++){
+			Map<String,Object> gene = JsonPath.read(Configuration.defaultConfiguration()
+					.jsonProvider().parse(lines[i]), "$");
+			Assert.isTrue((Integer) gene.get("entrezGeneId") == i + 1);
+			Assert.isTrue(!gene.containsKey("aliases"));
+		}
+	}
+
+	@Test
+	public void writeStreamToNdjson() throws Exception {
+		FilteringNdjsonHttpMessageConverter ndjsonConverter = new FilteringNdjsonHttpMessageConverter();
+		ndjsonConverter.setFlushInterval(2);
+		Set<String> fields = new HashSet<>();
+		fields.add("primaryGeneSymbol");
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor), fields, new HashSet<>());
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		ndjsonConverter.write(envelope, ApiMediaTypes.APPLICATION_NDJSON, message);
+		Assert.isTrue(cursor.isClosed());
+		String body = message.getBodyAsString();
+		Assert.isTrue(body.endsWith("\n"));
+		String[] lines = body.split("\n");
+		Assert.isTrue(lines.length == 5);
+		Assert.isTrue(lines[0].equals("{\"primaryGeneSymbol\":\"GeneA\"}"));
+	}
+	
+	@Test
+	public void writeToBinaryFormat() throws Exception {
+		// The binary data format modules are optional, so a plain JsonFactory stands in for them here.
+		MediaType mediaType = new MediaType("application", "x-test-format");
+		FilteringBinaryJackson2HttpMessageConverter converter 
+				= new FilteringBinaryJackson2HttpMessageConverter(new JsonFactory(), mediaType);
+		converter.setPrettyPrint(true);
+		Set<String> fields = new HashSet<>();
+		fields.add("entrezGeneId");
+		ResponseEnvelope envelope = new ResponseEnvelope(EntrezGene.createDummyData(), fields, new HashSet<>());
+		Assert.isTrue(converter.canWrite(envelope.getClass(), mediaType));
+		Assert.isTrue(!converter.canWrite(envelope.getClass(), MediaType.APPLICATION_JSON));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.write(envelope, mediaType, message);
+		Assert.isTrue(message.getBodyAsString().startsWith("[{\"entrezGeneId\":1},"));
+		for (FilteringBinaryJackson2HttpMessageConverter.BinaryFormat format
+				: FilteringBinaryJackson2HttpMessageConverter.BinaryFormat.values()){
+			if (format.isAvailable()){
+				Assert.isTrue(format.createConverter().getSupportedMediaTypes().contains(format.getMediaType()));
+			}
+		}
+	}
+
+	@Test
+	public void removeUnavailableMediaTypes() throws Exception {
+		UnavailableMediaTypeInterceptor interceptor = new UnavailableMediaTypeInterceptor(
+				Arrays.asList(ApiMediaTypes.APPLICATION_SMILE, ApiMediaTypes.APPLICATION_CBOR));
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, new LinkedHashSet<>(
+				Arrays.asList(ApiMediaTypes.APPLICATION_SMILE, MediaType.APPLICATION_JSON)));
+		Assert.isTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+		Set<MediaType> producible 
+				= (Set<MediaType>) request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+		Assert.isTrue(producible.size() == 1);
+		Assert.isTrue(producible.contains(MediaType.APPLICATION_JSON));
+		request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, 
+				Collections.singleton(ApiMediaTypes.APPLICATION_CBOR));
+		try {
+			interceptor.preHandle(request, new MockHttpServletResponse(), null);
+			Assert.isTrue(false);
+		} catch (HttpMediaTypeNotAcceptableException e){
+			Assert.isTrue(e.getMessage().contains("application/cbor"));
+		}
+	}
+	
+	@Test
+	public void writeStreamToArrow() throws Exception {
+		FilteringArrowHttpMessageConverter arrowConverter = new FilteringArrowHttpMessageConverter();
+		arrowConverter.setBatchSize(2);
+		Set<String> fields = new HashSet<>();
+		fields.add("entrezGeneId");
+		fields.add("primaryGeneSymbol");
+		fields.add("taxId");
+		fields.add("aliases");
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor, EntrezGene.class), fields, 
+				new HashSet<>());
+		Assert.isTrue(arrowConverter.canWrite(envelope.getClass(), ApiMediaTypes.APPLICATION_ARROW_STREAM));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		arrowConverter.write(envelope, ApiMediaTypes.APPLICATION_ARROW_STREAM, message);
+		Assert.isTrue(cursor.isClosed());
+		
+		ArrowStreamReader reader = new ArrowStreamReader(message.getBodyAsBytes());
+		Assert.isTrue(reader.names.size() == 4);
+		int id = reader.names.indexOf("entrezGeneId");
+		int symbol = reader.names.indexOf("primaryGeneSymbol");
+		int taxId = reader.names.indexOf("taxId");
+		int aliases = reader.names.indexOf("aliases");
+		Assert.isTrue(reader.types.get(id) == 2 && reader.types.get(taxId) == 2); // Int
+		Assert.isTrue(reader.types.get(symbol) == 5 && reader.types.get(aliases) == 5); // Utf8
+		Assert.isTrue(reader.batches.size() == 3);
+		Assert.isTrue(reader.lengths.equals(Arrays.asList(2L, 2L, 1L)));
+		
+		// Buffers per column: validity and values, or validity, offsets, and values for strings.
+		int idBuffer = 0;
+		for (int i = 0; i < id; i++) idBuffer += reader.types.get(i) == 5 ? 3 : 2;
+		int symbolBuffer = 0;
+		for (int i = 0; i < symbol; i++) symbolBuffer += reader.types.get(i) == 5 ? 3 : 2;
+		ByteBuffer ids = reader.getBuffer(1, idBuffer + 1);
+		Assert.isTrue(ids.getLong(0) == 3L && ids.getLong(8) == 4L);
+		ByteBuffer offsets = reader.getBuffer(1, symbolBuffer + 1);
+		ByteBuffer symbols = reader.getBuffer(1, symbolBuffer + 2);
+		byte[] second = new byte[offsets.getInt(8) - offsets.getInt(4)];
+		((ByteBuffer) symbols.position(offsets.getInt(4))).get(second);
+		Assert.isTrue(new String(second, "UTF-8").equals("GeneD"));
+	}
+
+	@Test
+	public void writeEmptyStreamToArrow() throws Exception {
+		FilteringArrowHttpMessageConverter arrowConverter = new FilteringArrowHttpMessageConverter();
+		Set<String> exclude = new HashSet<>();
+		exclude.add("attributes");
+		TestCursor<EntrezGene> cursor = new TestCursor<>(new ArrayList<>());
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor, EntrezGene.class), 
+				new HashSet<>(), exclude);
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		arrowConverter.write(envelope, ApiMediaTypes.APPLICATION_ARROW_STREAM, message);
+		Assert.isTrue(cursor.isClosed());
+		ArrowStreamReader reader = new ArrowStreamReader(message.getBodyAsBytes());
+		Assert.isTrue(reader.names.contains("entrezGeneId"));
+		Assert.isTrue(!reader.names.contains("attributes"));
+		Assert.isTrue(reader.batches.isEmpty());
+	}
+	
 	@Test
 	public void writeToTextNoFilter() throws Exception {
 		List<EntrezGene> genes = EntrezGene.createDummyData();
@@ -128,5 +391,262 @@ public class HttpMessageConverterTests {
 		System.out.println(text);
 		// TODO
 	}
+
+	@Test
+	public void writeStreamToText() throws Exception {
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		textConverter.write(envelope, textMediaType, message);
+		Assert.isTrue(cursor.isClosed());
+		String[] lines = message.getBodyAsString().split("\n");
+		Assert.isTrue(lines.length == 6);
+		Assert.isTrue(lines[0].startsWith("entrezGeneId"));
+	}
+
+	@Test
+	public void writeFilteredStreamToText() throws Exception {
+		List<EntrezGene> genes = EntrezGene.createDummyData();
+		genes.get(0).setDescription("Test\tGene A\nwith a \\ backslash");
+		Set<String> fields = new HashSet<>(Arrays.asList("entrezGeneId", "locusTag", "description"));
+		TestCursor<EntrezGene> cursor = new TestCursor<>(genes);
+		ResponseEnvelope envelope = new ResponseEnvelope(new ResponseStream(cursor), fields, new HashSet<>());
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		textConverter.write(envelope, textMediaType, message);
+		Assert.isTrue(cursor.isClosed());
+		String[] lines = message.getBodyAsString().split("\n");
+		Assert.isTrue(lines.length == 6);
+		Assert.isTrue(lines[0].equals("entrezGeneId\tlocusTag\tdescription"));
+		Assert.isTrue(lines[1].equals("1\t\tTest\\tGene A\\nwith a \\\\ backslash"));
+		Assert.isTrue(lines[2].equals("2\t\tTest Gene B"));
+	}
+
+	@Test
+	public void writeToCsv() throws Exception {
+		FilteringTextMessageConverter csvConverter 
+				= new FilteringTextMessageConverter(ApiMediaTypes.TEXT_CSV_UTF8, ",");
+		List<EntrezGene> genes = EntrezGene.createDummyData();
+		genes.get(0).setDescription("Test Gene A, \"quoted\"");
+		genes.get(1).setDescription("Test Gene B\nsecond line");
+		Set<String> exclude = new HashSet<>(Arrays.asList("attributes", "dbXrefs", "aliases"));
+		ResponseEnvelope envelope = new ResponseEnvelope(genes, new HashSet<>(), exclude);
+		Assert.isTrue(csvConverter.canWrite(envelope.getClass(), ApiMediaTypes.TEXT_CSV_UTF8));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		csvConverter.write(envelope, ApiMediaTypes.TEXT_CSV_UTF8, message);
+		String text = message.getBodyAsString();
+		Assert.isTrue(text.startsWith("entrezGeneId,primaryGeneSymbol,taxId,locusTag,chromosome,"
+				+ "chromosomeLocation,description,geneType\n"));
+		Assert.isTrue(text.contains("\n1,GeneA,9606,,1,,\"Test Gene A, \"\"quoted\"\"\",protein-coding\n"));
+		Assert.isTrue(text.contains("\n2,GeneB,9606,,3,,\"Test Gene B\nsecond line\",protein-coding\n"));
+		Assert.isTrue(text.endsWith("5,GeneE,9606,,X,,Test Gene E,pseudo\n"));
+	}
+
+	@Test
+	public void writeToXml() throws Exception {
+		FilteringXmlHttpMessageConverter xmlConverter = new FilteringXmlHttpMessageConverter();
+		List<EntrezGene> genes = EntrezGene.createDummyData();
+		genes.get(0).setDescription("Test <Gene> & A");
+		Set<String> exclude = new HashSet<>(Arrays.asList("taxId", "geneType"));
+		ResponseEnvelope envelope = new ResponseEnvelope(genes, new HashSet<>(), exclude);
+		Assert.isTrue(xmlConverter.canWrite(envelope.getClass(), MediaType.APPLICATION_XML));
+		Assert.isTrue(!xmlConverter.canRead(EntrezGene.class, MediaType.APPLICATION_XML));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		xmlConverter.write(envelope, MediaType.APPLICATION_XML, message);
+		Document document = parseXml(message.getBodyAsBytes());
+		XPath xPath = XPathFactory.newInstance().newXPath();
+		String genePath = "/" + ResponseEnvelope.class.getName() + "/entity[@class='list']/" + EntrezGene.class.getName();
+		Assert.isTrue(ResponseEnvelope.class.getName().equals(document.getDocumentElement().getNodeName()));
+		Assert.isTrue("5".equals(xPath.evaluate("count(" + genePath + ")", document)));
+		Assert.isTrue("1".equals(xPath.evaluate(genePath + "[1]/entrezGeneId", document)));
+		Assert.isTrue("Test <Gene> & A".equals(xPath.evaluate(genePath + "[1]/description", document)));
+		Assert.isTrue("isKinase".equals(xPath.evaluate(genePath + "[1]/attributes/*[1]/name", document)));
+		Assert.isTrue("ABC".equals(xPath.evaluate(genePath + "[1]/aliases/string", document)));
+		Assert.isTrue("taxId".equals(xPath.evaluate("/*/exclude/string[. = 'taxId']", document)));
+		Assert.isTrue("0".equals(xPath.evaluate("count(//" + EntrezGene.class.getName() + "/taxId)", document)));
+		Assert.isTrue("0".equals(xPath.evaluate("count(//locusTag)", document)));
+	}
+
+	@Test
+	public void writeStreamToXmlAsXStream() throws Exception {
+		FilteringXmlHttpMessageConverter xmlConverter = new FilteringXmlHttpMessageConverter();
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		xmlConverter.write(new ResponseEnvelope(new ResponseStream(cursor)), MediaType.APPLICATION_XML, message);
+		Assert.isTrue(cursor.isClosed());
+		String expected = marshalWithXStream(new ResponseEnvelope(EntrezGene.createDummyData()));
+		Assert.isTrue(parseXml(message.getBodyAsBytes()).isEqualNode(parseXml(expected.getBytes("UTF-8"))));
+	}
+
+	@Test
+	public void writeHypermediaStreamToXml() throws Exception {
+		FilteringXmlHttpMessageConverter xmlConverter = new FilteringXmlHttpMessageConverter();
+		TestCursor<EntrezGene> cursor = new TestCursor<>(EntrezGene.createDummyData());
+		ResponseStream stream = new ResponseStream(cursor, gene -> new FilterableResource(gene, 
+				new Link("http://localhost/genes/" + gene.getEntrezGeneId())),
+				Collections.singletonList(new Link("http://localhost/genes", Link.REL_SELF)));
+		Set<String> fields = new HashSet<>(Arrays.asList("entrezGeneId", "primaryGeneSymbol"));
+		ResponseEnvelope envelope = new ResponseEnvelope(stream, fields, new HashSet<>());
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		xmlConverter.write(envelope, ApiMediaTypes.APPLICATION_HAL_XML, message);
+		Assert.isTrue(cursor.isClosed());
+		Document document = parseXml(message.getBodyAsBytes());
+		XPath xPath = XPathFactory.newInstance().newXPath();
+		String resourcesPath = "/" + ResponseEnvelope.class.getName() + "/entity[@class='" 
+				+ Resources.class.getName() + "']";
+		String genePath = resourcesPath + "/content[@class='list']/" + FilterableResource.class.getName();
+		Assert.isTrue("http://localhost/genes".equals(
+				xPath.evaluate(resourcesPath + "/links/*[rel='self']/href", document)));
+		Assert.isTrue("5".equals(xPath.evaluate("count(" + genePath + ")", document)));
+		Assert.isTrue("GeneB".equals(xPath.evaluate(genePath + "[2]/content/primaryGeneSymbol", document)));
+		Assert.isTrue("http://localhost/genes/2".equals(
+				xPath.evaluate(genePath + "[2]/links/*[rel='self']/href", document)));
+		Assert.isTrue("0".equals(xPath.evaluate("count(//description)", document)));
+	}
+
+	@Test
+	public void writeHypermediaStreamToXmlAsXStream() throws Exception {
+		FilteringXmlHttpMessageConverter xmlConverter = new FilteringXmlHttpMessageConverter();
+		Link selfLink = new Link("http://localhost/genes", Link.REL_SELF);
+		ResponseStream stream = new ResponseStream(new TestCursor<>(EntrezGene.createDummyData()), 
+				gene -> new FilterableResource(gene), Collections.singletonList(selfLink));
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		xmlConverter.write(new ResponseEnvelope(stream), ApiMediaTypes.APPLICATION_HAL_XML, message);
+		List<FilterableResource> resourceList = new ArrayList<>();
+		for (EntrezGene gene: EntrezGene.createDummyData()){
+			resourceList.add(new FilterableResource(gene));
+		}
+		Resources<FilterableResource> resources = new Resources<>(resourceList);
+		resources.add(selfLink);
+		String expected = marshalWithXStream(new ResponseEnvelope(resources));
+		Assert.isTrue(parseXml(message.getBodyAsBytes()).isEqualNode(parseXml(expected.getBytes("UTF-8"))));
+	}
 	
+	private String marshalWithXStream(Object object) throws Exception {
+		XStreamMarshaller marshaller = new XStreamMarshaller();
+		marshaller.afterPropertiesSet();
+		StringWriter writer = new StringWriter();
+		marshaller.marshal(object, new StreamResult(writer));
+		return writer.toString();
+	}
+	
+	private Document parseXml(byte[] bytes) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * In-memory {@link CloseableIterator} that records whether it has been closed.
+	 */
+	public static class TestCursor<T> implements CloseableIterator<T> {
+		
+		private final Iterator<T> iterator;
+		private boolean closed = false;
+
+		public TestCursor(List<T> records) {
+			this.iterator = records.iterator();
+		}
+
+		@Override 
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override 
+		public T next() {
+			return iterator.next();
+		}
+
+		@Override 
+		public void close() {
+			closed = true;
+		}
+
+		public boolean isClosed() {
+			return closed;
+		}
+	}
+
+	/**
+	 * Minimal reader for Arrow IPC streams, which decodes message metadata directly from the 
+	 *   FlatBuffers encoding, and checks the stream framing and alignment.
+	 */
+	public static class ArrowStreamReader {
+		
+		private final List<String> names = new ArrayList<>();
+		private final List<Integer> types = new ArrayList<>();
+		private final List<Long> lengths = new ArrayList<>();
+		private final List<ByteBuffer> batches = new ArrayList<>();
+		private final List<long[]> buffers = new ArrayList<>();
+
+		public ArrowStreamReader(byte[] bytes) {
+			ByteBuffer stream = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+			while (true){
+				Assert.isTrue(stream.getInt() == 0xFFFFFFFF);
+				int metadataLength = stream.getInt();
+				if (metadataLength == 0) break;
+				Assert.isTrue(metadataLength % 8 == 0);
+				ByteBuffer metadata = ((ByteBuffer) stream.slice().limit(metadataLength)).slice()
+						.order(ByteOrder.LITTLE_ENDIAN);
+				stream.position(stream.position() + metadataLength);
+				int message = metadata.getInt(0);
+				Assert.isTrue(metadata.getShort(field(metadata, message, 0)) == 4); // V5
+				byte headerType = metadata.get(field(metadata, message, 1));
+				int header = reference(metadata, field(metadata, message, 2));
+				long bodyLength = metadata.getLong(field(metadata, message, 3));
+				Assert.isTrue(bodyLength % 8 == 0);
+				ByteBuffer body = ((ByteBuffer) stream.slice().limit((int) bodyLength)).slice()
+						.order(ByteOrder.LITTLE_ENDIAN);
+				stream.position(stream.position() + (int) bodyLength);
+				if (headerType == 1){
+					int fields = reference(metadata, field(metadata, header, 1));
+					for (int i = 0; i < metadata.getInt(fields); i++){
+						int field = reference(metadata, fields + 4 + 4 * i);
+						int name = reference(metadata, field(metadata, field, 0));
+						byte[] nameBytes = new byte[metadata.getInt(name)];
+						((ByteBuffer) metadata.duplicate().position(name + 4)).get(nameBytes);
+						names.add(new String(nameBytes, Charset.forName("UTF-8")));
+						types.add((int) metadata.get(field(metadata, field, 2)));
+						Assert.isTrue(field(metadata, field, 5) > 0); // children
+					}
+				} else {
+					Assert.isTrue(headerType == 3);
+					lengths.add(metadata.getLong(field(metadata, header, 0)));
+					int vector = reference(metadata, field(metadata, header, 2));
+					Assert.isTrue((vector + 4) % 8 == 0);
+					long[] batchBuffers = new long[metadata.getInt(vector) * 2];
+					for (int i = 0; i < batchBuffers.length; i++){
+						batchBuffers[i] = metadata.getLong(vector + 4 + 8 * i);
+					}
+					batches.add(body);
+					buffers.add(batchBuffers);
+				}
+			}
+			Assert.isTrue(!stream.hasRemaining());
+		}
+		
+		public ByteBuffer getBuffer(int batch, int buffer){
+			long[] batchBuffers = buffers.get(batch);
+			int offset = (int) batchBuffers[buffer * 2];
+			Assert.isTrue(offset % 8 == 0);
+			ByteBuffer body = batches.get(batch).duplicate();
+			body.position(offset);
+			body.limit(offset + (int) batchBuffers[buffer * 2 + 1]);
+			return body.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Returns the absolute position of a table field, using the table's vtable.
+		 */
+		private static int field(ByteBuffer buffer, int table, int slot){
+			int vtable = table - buffer.getInt(table);
+			Assert.isTrue(vtable % 2 == 0 && table % 4 == 0);
+			int offset = 4 + 2 * slot < buffer.getShort(vtable) ? buffer.getShort(vtable + 4 + 2 * slot) : 0;
+			Assert.isTrue(offset > 0, "Missing field " + slot);
+			return table + offset;
+		}
+		
+		private static int reference(ByteBuffer buffer, int position){
+			return position + buffer.getInt(position);
+		}
+	}
+
 }